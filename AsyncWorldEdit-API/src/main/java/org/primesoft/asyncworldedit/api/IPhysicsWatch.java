@@ -58,6 +58,22 @@ public interface IPhysicsWatch {
      */
     void addLocation(String worldName, BlockVector3 location);
 
+    /**
+     * Add multiple watched locations from the same chunk, the default
+     * implementation adds the locations at the chunk origin
+     *
+     * @param worldName the world name
+     * @param chunkX the chunk X coordinate
+     * @param chunkZ the chunk Z coordinate
+     * @param count number of locations to add
+     */
+    default void addLocations(String worldName, int chunkX, int chunkZ, int count) {
+        final BlockVector3 location = BlockVector3.at(chunkX << 4, 0, chunkZ << 4);
+        for (int i = 0; i < count; i++) {
+            addLocation(worldName, location);
+        }
+    }
+
     /**
      * Remove watched location
      *
@@ -66,6 +82,22 @@ public interface IPhysicsWatch {
      */
     void removeLocation(String worldName, BlockVector3 location);
 
+    /**
+     * Remove multiple watched locations from the same chunk, the default
+     * implementation removes the locations added by the default addLocations
+     *
+     * @param worldName the world name
+     * @param chunkX the chunk X coordinate
+     * @param chunkZ the chunk Z coordinate
+     * @param count number of locations to remove
+     */
+    default void removeLocations(String worldName, int chunkX, int chunkZ, int count) {
+        final BlockVector3 location = BlockVector3.at(chunkX << 4, 0, chunkZ << 4);
+        for (int i = 0; i < count; i++) {
+            removeLocation(worldName, location);
+        }
+    }
+
     
     /**
      * Enable the physics watcher
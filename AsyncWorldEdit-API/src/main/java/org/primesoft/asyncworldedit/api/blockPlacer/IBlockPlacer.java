@@ -181,5 +181,31 @@ public interface IBlockPlacer {
      * @param pause
      */
     void setPause(boolean pause);
+
+    /**
+     * Get the current block placer budget scale.
+     * The permission group renderer blocks and time are multiplied by this
+     * value (1 - the configured budget)
+     * @return
+     */
+    default double getBudgetScale() {
+        return 1;
+    }
+
+    /**
+     * Get the measured average milliseconds per tick
+     * @return 0 if the tick duration is not measured
+     */
+    default double getMspt() {
+        return 0;
+    }
+
+    /**
+     * Get the average milliseconds per tick used by the block placer
+     * @return 0 if the tick duration is not measured
+     */
+    default double getPlacerMspt() {
+        return 0;
+    }
     
 }
@@ -95,6 +95,16 @@ public interface IPermissionGroup {
      */
     int getRendererTime();
 
+    /**
+     * The block placer weight (share of the block placer time compared to
+     * other groups)
+     *
+     * @return
+     */
+    default int getRendererWeight() {
+        return 1;
+    }
+
     /**
      * The minimum number of blocks to show the progress bar
      *
@@ -0,0 +1,130 @@
+/*
+ * AsyncWorldEdit API
+ * Copyright (c) 2015, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit API contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution,
+ * 3. Redistributions of source code, with or without modification, in any form 
+ *    other then free of charge is not allowed,
+ * 4. Redistributions in binary form in any form other then free of charge is 
+ *    not allowed.
+ * 5. Any derived work based on or containing parts of this software must reproduce 
+ *    the above copyright notice, this list of conditions and the following 
+ *    disclaimer in the documentation and/or other materials provided with the 
+ *    derived work.
+ * 6. The original author of the software is allowed to change the license 
+ *    terms or the entire license of the software as he sees fit.
+ * 7. The original author of the software is allowed to sublicense the software 
+ *    or its parts using any license terms he sees fit.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.api.taskdispatcher;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import java.util.Objects;
+
+/**
+ * Key identifying a main thread read operation. Identical in-flight reads
+ * (the same key) are executed only once by the task dispatcher.
+ *
+ * @author SBPrime
+ */
+public final class DispatcherKey {
+
+    /**
+     * Create a block read key
+     *
+     * @param operation the read operation name
+     * @param worldName the world name
+     * @param pos the block position
+     * @return
+     */
+    public static DispatcherKey block(String operation, String worldName, BlockVector3 pos) {
+        return new DispatcherKey(operation, worldName, false, pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    /**
+     * Create a chunk read key
+     *
+     * @param operation the read operation name
+     * @param worldName the world name
+     * @param cx the chunk X coordinate
+     * @param cz the chunk Z coordinate
+     * @return
+     */
+    public static DispatcherKey chunk(String operation, String worldName, int cx, int cz) {
+        return new DispatcherKey(operation, worldName, true, cx, 0, cz);
+    }
+
+    private final String m_operation;
+    private final String m_worldName;
+    private final boolean m_isChunk;
+    private final int m_x;
+    private final int m_y;
+    private final int m_z;
+    private final int m_hash;
+
+    private DispatcherKey(String operation, String worldName, boolean isChunk, int x, int y, int z) {
+        m_operation = operation;
+        m_worldName = worldName;
+        m_isChunk = isChunk;
+        m_x = x;
+        m_y = y;
+        m_z = z;
+
+        int hash = Objects.hashCode(operation);
+        hash = 31 * hash + Objects.hashCode(worldName);
+        hash = 31 * hash + (isChunk ? 1 : 0);
+        hash = 31 * hash + x;
+        hash = 31 * hash + y;
+        m_hash = 31 * hash + z;
+    }
+
+    @Override
+    public int hashCode() {
+        return m_hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof DispatcherKey)) {
+            return false;
+        }
+
+        final DispatcherKey other = (DispatcherKey) obj;
+        return m_hash == other.m_hash
+                && m_x == other.m_x && m_y == other.m_y && m_z == other.m_z
+                && m_isChunk == other.m_isChunk
+                && Objects.equals(m_operation, other.m_operation)
+                && Objects.equals(m_worldName, other.m_worldName);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%1$s %2$s %3$s %4$s %5$s%6$s", m_operation, m_worldName,
+                m_x, m_y, m_z, m_isChunk ? " (chunk)" : "");
+    }
+}
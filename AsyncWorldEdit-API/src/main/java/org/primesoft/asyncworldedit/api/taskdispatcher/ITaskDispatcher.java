@@ -43,10 +43,16 @@ package org.primesoft.asyncworldedit.api.taskdispatcher;
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.primesoft.asyncworldedit.api.IWorld;
 import org.primesoft.asyncworldedit.api.utils.IAction;
 import org.primesoft.asyncworldedit.api.utils.IFunc;
+import org.primesoft.asyncworldedit.api.utils.IFuncParam;
 
 /**
  *
@@ -123,6 +129,35 @@ public interface ITaskDispatcher {
      * @return
      */
     <T> T performSafeChunk(Object mutex, IFunc<T> action, IWorld world, Collection<BlockVector2> chunks);
+
+    /**
+     * Perform the operation for each chunk using a safe wrapper. The chunks
+     * are visited lazily, one at a time in the iteration order, each visit
+     * holds a single chunk lock and watch reference.
+     *
+     * @param <T>
+     * @param mutex
+     * @param action
+     * @param world
+     * @param chunks
+     * @return The chunk results iterator
+     */
+    default <T> Iterator<T> performSafeChunks(Object mutex, IFuncParam<T, BlockVector2> action, IWorld world, Iterable<BlockVector2> chunks) {
+        final Iterator<BlockVector2> it = chunks.iterator();
+
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public T next() {
+                final BlockVector2 chunk = it.next();
+                return performSafeChunk(mutex, () -> action.execute(chunk), world, chunk);
+            }
+        };
+    }
     
 
     /**
@@ -172,6 +207,23 @@ public interface ITaskDispatcher {
      * @return
      */
     <T> T performSafe(Object mutex, IFunc<T> action, IWorld world, BlockVector3 pos);
+
+    /**
+     * Perform a read operation using a safe wrapper. If the basic operation
+     * fails queue it on dispatcher, identical in-flight reads (the same key)
+     * share a single dispatcher execution
+     *
+     * @param <T>
+     * @param mutex
+     * @param action
+     * @param world
+     * @param pos
+     * @param key the read key (null to disable coalescing)
+     * @return
+     */
+    default <T> T performSafe(Object mutex, IFunc<T> action, IWorld world, BlockVector3 pos, DispatcherKey key) {
+        return performSafe(mutex, action, world, pos);
+    }
     
     /**
      * Perform an action on the dispatcher
@@ -185,6 +237,94 @@ public interface ITaskDispatcher {
      */    
     <T> T queueFastOperation(IFunc<T> action);
     
+    /**
+     * Queue an action on the dispatcher without waiting for it
+     * @param action
+     * @return future completed on the main thread when the action is done
+     */
+    default CompletableFuture<Void> queueFastOperationAsync(IAction action) {
+        if (action == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return queueFastOperationAsync(() -> {
+            action.execute();
+            return null;
+        });
+    }
+    
+    /**
+     * Queue a function on the dispatcher without waiting for it
+     * @param <T>
+     * @param action
+     * @return future completed on the main thread with the function result
+     */
+    default <T> CompletableFuture<T> queueFastOperationAsync(IFunc<T> action) {
+        if (action == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return this.<T>queueFastOperationsAsync(Collections.singletonList(action))
+                .thenApply(r -> r.get(0));
+    }
+
+    /**
+     * Perform a read operation on the dispatcher, identical in-flight reads
+     * (the same key) share a single execution and its result
+     * @param <T>
+     * @param key the read key (null to disable coalescing)
+     * @param action
+     * @return
+     */
+    default <T> T queueFastOperation(DispatcherKey key, IFunc<T> action) {
+        return queueFastOperation(action);
+    }
+
+    /**
+     * Queue a read operation on the dispatcher without waiting for it,
+     * identical in-flight reads (the same key) share a single execution
+     * and its result
+     * @param <T>
+     * @param key the read key (null to disable coalescing)
+     * @param action
+     * @return future completed on the main thread with the function result
+     */
+    default <T> CompletableFuture<T> queueFastOperationAsync(DispatcherKey key, IFunc<T> action) {
+        return queueFastOperationAsync(action);
+    }
+    
+    /**
+     * Queue multiple functions on the dispatcher as one task, the functions
+     * are executed in a single main thread pass
+     * @param <T>
+     * @param actions
+     * @return future completed with the function results (in the same order),
+     * or exceptionally if any of the functions failed
+     */
+    default <T> CompletableFuture<List<T>> queueFastOperationsAsync(List<? extends IFunc<? extends T>> actions) {
+        final CompletableFuture<List<T>> result = new CompletableFuture<>();
+        if (actions == null || actions.isEmpty()) {
+            result.complete(Collections.emptyList());
+            return result;
+        }
+
+        /*
+         * The default implementation waits for the functions to be executed
+         */
+        try {
+            result.complete(queueFastOperation(() -> {
+                final List<T> values = new ArrayList<>(actions.size());
+                for (IFunc<? extends T> action : actions) {
+                    values.add(action.execute());
+                }
+                return values;
+            }));
+        } catch (RuntimeException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+    
 
     /**
      * Perform operation using a safe wrapper. If the basic operation fails
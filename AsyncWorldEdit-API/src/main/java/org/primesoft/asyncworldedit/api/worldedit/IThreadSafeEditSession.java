@@ -61,7 +61,7 @@ import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
  *
  * @author SBPprime
  */
-public interface IThreadSafeEditSession extends IAweEditSession {
+public interface IThreadSafeEditSession extends IAweEditSession, IBlocksWriter {
 
     /**
      * Add async job
@@ -75,6 +75,8 @@ public interface IAsyncWorldEditCore extends IAsyncWorldEdit {
         
     public IInnerSerializerManager getInnerChangesetSerializer();
 
+    public IInnerBlockPlacer getInnerBlockPlacer();
+
     public IInnerDirectChunkAPI getInnerDirectChunkAPI();
     
     public EventBus getEventBus();
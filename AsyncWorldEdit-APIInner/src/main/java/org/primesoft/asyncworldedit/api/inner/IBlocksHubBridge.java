@@ -35,6 +35,13 @@
  */
 package org.primesoft.asyncworldedit.api.inner;
 
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.BitSet;
+import java.util.List;
+import org.primesoft.asyncworldedit.api.IWorld;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+
 /**
  *
  * @author SBPrime
@@ -43,4 +50,32 @@ public interface IBlocksHubBridge extends IBlocksHubIntegration {
     void addFactory(IBlocksHubFactory factory);
 
     void initialize(Object blocksHubPlugin);
+
+    /**
+     * Check if the player can place the blocks of a single chunk. The access
+     * is checked once for the chunk when the decision is uniform across the
+     * chunk, otherwise each block is checked.
+     * @param playerEntry
+     * @param world
+     * @param locations the block locations (single chunk)
+     * @param oldBlocks
+     * @param newBlocks
+     * @return the indexes of the blocks that can be placed
+     */
+    BitSet canPlace(IPlayerEntry playerEntry, IWorld world, List<BlockVector3> locations,
+            List<? extends BlockStateHolder> oldBlocks, List<? extends BlockStateHolder> newBlocks);
+
+    /**
+     * Remove the cached access decisions of the player
+     * @param playerEntry 
+     */
+    void invalidateAccess(IPlayerEntry playerEntry);
+
+    /**
+     * Remove the cached access decisions for the chunk
+     * @param worldName
+     * @param cx
+     * @param cz 
+     */
+    void invalidateAccess(String worldName, int cx, int cz);
 }
@@ -38,6 +38,7 @@ package org.primesoft.asyncworldedit.api.inner;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.math.Vector3;
 import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.List;
 import org.primesoft.asyncworldedit.api.IWorld;
 import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
 
@@ -124,9 +125,32 @@ public interface IBlocksHubIntegration {
      */
     void logBlock(IPlayerEntry playerEntry, IWorld world, BlockVector3 location, BlockStateHolder oldBlock, BlockStateHolder newBlock, boolean dc);
 
+    /**
+     * Log a batch of block changes using BlocksHub. This method is called
+     * from the block logger thread, the default implementation logs the
+     * blocks one by one.
+     *
+     * @param entries
+     */
+    default void logBlocks(List<? extends IBlockLogEntry> entries) {
+        for (IBlockLogEntry e : entries) {
+            logBlock(e.getPlayer(), e.getWorld(), e.getLocation(), e.getOldBlock(), e.getNewBlock(), e.isDc());
+        }
+    }
+
     /**
      * Is this a real thing
      * @return 
      */
     boolean isReal();
+
+    /**
+     * Is the access decision uniform across a chunk (does not depend on the
+     * block location inside of the chunk or the blocks). Uniform decisions
+     * are cached per player, world and chunk.
+     * @return 
+     */
+    default boolean isChunkUniform() {
+        return false;
+    }
 }
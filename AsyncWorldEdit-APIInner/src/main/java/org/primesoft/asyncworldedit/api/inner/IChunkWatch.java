@@ -35,6 +35,7 @@
  */
 package org.primesoft.asyncworldedit.api.inner;
 
+import java.util.concurrent.CompletableFuture;
 import org.primesoft.asyncworldedit.api.taskdispatcher.ITaskDispatcher;
 
 /**
@@ -99,6 +100,15 @@ public interface IChunkWatch {
      * @param worldName 
      */
     void loadChunk(int cx, int cz, String worldName);
+
+    /**
+     * Request the chunk to be loaded without waiting for it
+     * @param cx
+     * @param cz
+     * @param worldName 
+     * @return true when the chunk is loaded
+     */
+    CompletableFuture<Boolean> loadChunkAsync(int cx, int cz, String worldName);
     
     /**
      * Sets the task dispatcher
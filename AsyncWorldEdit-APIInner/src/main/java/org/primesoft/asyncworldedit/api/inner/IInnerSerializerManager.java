@@ -35,9 +35,12 @@
  */
 package org.primesoft.asyncworldedit.api.inner;
 
+import com.sk89q.worldedit.history.change.Change;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.stream.Stream;
+import org.primesoft.asyncworldedit.api.changesetSerializer.IMemoryStorage;
 import org.primesoft.asyncworldedit.api.changesetSerializer.ISerializerManager;
 import org.primesoft.asyncworldedit.api.changesetSerializer.IUndoEntry;
 
@@ -56,6 +59,42 @@ public interface IInnerSerializerManager extends ISerializerManager {
      */
     IUndoEntry load(IChunkCacheStream stream) throws IOException;
 
+    /**
+     * Load the undo data from stream, the compact entries type is resolved
+     * using the storage dictionaries
+     *
+     * @param stream
+     * @param storage the undo file memory storage
+     * @return
+     * @throws IOException
+     */
+    IUndoEntry load(IChunkCacheStream stream, IMemoryStorage storage) throws IOException;
+
+    /**
+     * Serialize the changes to the storage file buffers, the data is written
+     * to the file on commit
+     *
+     * @param storageFile
+     * @param data
+     */
+    void queueSave(File storageFile, List<Change> data);
+
+    /**
+     * Write the buffered data to the storage file
+     *
+     * @param storageFile
+     * @return true if any data was written
+     */
+    boolean commit(File storageFile);
+
+    /**
+     * Commit the buffered data and close the storage file handlers, the
+     * handlers are reopened on the next save
+     *
+     * @param storageFile
+     */
+    void release(File storageFile);
+
     Stream<File> getUndoFiles() throws IOException;
     
     /**
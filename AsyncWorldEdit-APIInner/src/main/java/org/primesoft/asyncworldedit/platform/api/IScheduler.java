@@ -47,6 +47,7 @@
  */
 package org.primesoft.asyncworldedit.platform.api;
 
+import java.util.function.DoubleConsumer;
 
 /**
  *
@@ -59,5 +60,23 @@ public interface IScheduler {
     
     ITask runTaskAsynchronously(Runnable task);
 
+    /**
+     * Run the task on the main thread at the end of each server tick
+     *
+     * @param task
+     * @return the task or null if not supported by the platform
+     */
+    ITask runOnTickEnd(Runnable task);
+
+    /**
+     * Report the duration of each server tick (milliseconds) on the main
+     * thread
+     *
+     * @param listener
+     * @return the task or null if the platform does not report the tick
+     * durations
+     */
+    ITask onTickDuration(DoubleConsumer listener);
+
     int tps();
 }
@@ -0,0 +1,243 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2015, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+/**
+ * The adaptive block placer budget. The budget is a scale applied to the
+ * permission group renderer blocks and time. It is increased additively when
+ * the measured milliseconds per tick are below the target and decreased
+ * multiplicatively when the server is lagging (AIMD).
+ *
+ * The measurement uses the server tick durations when the platform reports
+ * them. Otherwise the wall time between the block placer runs is used, which
+ * only shows when the server is lagging.
+ *
+ * @author SBPrime
+ */
+final class AdaptiveBudget {
+
+    /**
+     * The MSPT tolerance (measured tick time jitter)
+     */
+    private final static double TOLERANCE = 1.02;
+
+    /**
+     * The moving average smoothing factor
+     */
+    private final static double ALPHA = 0.2;
+
+    /**
+     * Maximum time between two runs that is used for the measurement
+     */
+    private final static long MAX_TIME_DELTA = 5000;
+
+    /**
+     * Is the adaptive budget enabled
+     */
+    private final boolean m_isEnabled;
+
+    /**
+     * The target milliseconds per tick
+     */
+    private final double m_target;
+
+    /**
+     * Minimum budget scale
+     */
+    private final double m_min;
+
+    /**
+     * Maximum budget scale
+     */
+    private final double m_max;
+
+    /**
+     * Additive increase
+     */
+    private final double m_increase;
+
+    /**
+     * Multiplicative decrease
+     */
+    private final double m_decrease;
+
+    /**
+     * The current budget scale
+     */
+    private volatile double m_scale = 1;
+
+    /**
+     * Average milliseconds per tick
+     */
+    private volatile double m_mspt = -1;
+
+    /**
+     * Average milliseconds per tick used by the block placer
+     */
+    private volatile double m_placerMspt = 0;
+
+    /**
+     * Average reported server tick duration (-1 if not reported)
+     */
+    private volatile double m_tickMspt = -1;
+
+    /**
+     * Create new instance of the adaptive budget
+     *
+     * @param isEnabled is the budget enabled, if disabled the scale is always 1
+     * @param targetMspt the target milliseconds per tick
+     * @param minBudget minimum budget (percent)
+     * @param maxBudget maximum budget (percent)
+     * @param increase budget increase (percent points)
+     * @param decrease budget decrease (percent of the current budget)
+     */
+    AdaptiveBudget(boolean isEnabled, int targetMspt,
+            int minBudget, int maxBudget, int increase, int decrease) {
+        m_isEnabled = isEnabled;
+        m_target = Math.max(1, targetMspt);
+        m_min = Math.max(1, minBudget) / 100.0;
+        m_max = Math.max(m_min, maxBudget / 100.0);
+        m_increase = Math.max(0, increase) / 100.0;
+        m_decrease = Math.min(100, Math.max(0, decrease)) / 100.0;
+    }
+
+    /**
+     * Update the budget
+     *
+     * @param timeDelta time between the block placer runs (ms)
+     * @param ticks number of ticks between the block placer runs
+     * @param placerTime time spent by the block placer in the last run (ms)
+     */
+    void update(long timeDelta, long ticks, double placerTime) {
+        if (ticks <= 0 || timeDelta <= 0 || timeDelta > MAX_TIME_DELTA) {
+            return;
+        }
+
+        final double tickMspt = m_tickMspt;
+        final double mspt = tickMspt >= 0 ? tickMspt : (double) timeDelta / ticks;
+        final double placerMspt = placerTime / ticks;
+        
+        if (m_mspt < 0) {
+            m_mspt = mspt;
+            m_placerMspt = placerMspt;
+        } else {
+            m_mspt = tickMspt >= 0 ? mspt : m_mspt * (1 - ALPHA) + mspt * ALPHA;
+            m_placerMspt = m_placerMspt * (1 - ALPHA) + placerMspt * ALPHA;
+        }
+
+        if (!m_isEnabled) {
+            return;
+        }
+
+        double scale = m_scale;
+        if (m_mspt > m_target * TOLERANCE) {
+            if (placerTime > 0) {
+                scale *= (1 - m_decrease);
+            }
+        } else {
+            scale += m_increase;
+        }
+
+        m_scale = Math.max(m_min, Math.min(m_max, scale));
+    }
+
+    /**
+     * Report the duration of a server tick
+     *
+     * @param duration the tick duration (ms)
+     */
+    void tickDuration(double duration) {
+        if (duration < 0) {
+            return;
+        }
+
+        final double mspt = m_tickMspt;
+        m_tickMspt = mspt < 0 ? duration : mspt * (1 - ALPHA) + duration * ALPHA;
+    }
+
+    /**
+     * Scale the configured budget value
+     *
+     * @param value the configured value (-1 for no limit)
+     * @return
+     */
+    int scale(int value) {
+        if (value < 0) {
+            return value;
+        }
+
+        return (int) Math.max(1, Math.round(value * m_scale));
+    }
+
+    /**
+     * The current budget scale
+     *
+     * @return
+     */
+    double getScale() {
+        return m_isEnabled ? m_scale : 1;
+    }
+
+    /**
+     * Average milliseconds per tick
+     *
+     * @return
+     */
+    double getMspt() {
+        return Math.max(0, m_mspt);
+    }
+
+    /**
+     * Average milliseconds per tick used by the block placer
+     *
+     * @return
+     */
+    double getPlacerMspt() {
+        return m_placerMspt;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2014, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.ArrayList;
+import java.util.List;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+
+/**
+ * Block changes of a single job and chunk buffered before they are added to
+ * the player queue as one batch
+ *
+ * @author SBPrime
+ */
+final class BlockBatch {
+
+    private final IPlayerEntry m_player;
+
+    private final String m_worldName;
+
+    private final int m_jobId;
+
+    private final IBlockSetter m_setter;
+
+    private final int m_cx;
+
+    private final int m_cz;
+
+    private final List<BlockVector3> m_locations = new ArrayList<>();
+
+    private final List<BlockStateHolder> m_blocks = new ArrayList<>();
+
+    BlockBatch(IPlayerEntry player, String worldName, int jobId, IBlockSetter setter, BlockVector3 location) {
+        m_player = player;
+        m_worldName = worldName;
+        m_jobId = jobId;
+        m_setter = setter;
+        m_cx = location.getBlockX() >> 4;
+        m_cz = location.getBlockZ() >> 4;
+    }
+
+    /**
+     * Can the block be added to this batch
+     */
+    boolean accepts(IPlayerEntry player, String worldName, int jobId, IBlockSetter setter, BlockVector3 location) {
+        return m_player == player && m_jobId == jobId && m_setter == setter
+                && (location.getBlockX() >> 4) == m_cx && (location.getBlockZ() >> 4) == m_cz
+                && (m_worldName == null ? worldName == null : m_worldName.equals(worldName));
+    }
+
+    void add(BlockVector3 location, BlockStateHolder block) {
+        m_locations.add(location);
+        m_blocks.add(block);
+    }
+
+    int size() {
+        return m_locations.size();
+    }
+
+    IPlayerEntry getPlayer() {
+        return m_player;
+    }
+
+    String getWorldName() {
+        return m_worldName;
+    }
+
+    int getJobId() {
+        return m_jobId;
+    }
+
+    IBlockSetter getSetter() {
+        return m_setter;
+    }
+
+    List<BlockVector3> getLocations() {
+        return m_locations;
+    }
+
+    List<BlockStateHolder> getBlocks() {
+        return m_blocks;
+    }
+}
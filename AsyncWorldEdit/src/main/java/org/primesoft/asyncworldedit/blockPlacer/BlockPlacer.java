@@ -47,22 +47,24 @@
  */
 package org.primesoft.asyncworldedit.blockPlacer;
 
-import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacer;
 import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacerListener;
 import com.sk89q.worldedit.MaxChangedBlocksException;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
 import org.primesoft.asyncworldedit.blockPlacer.entries.JobEntry;
 import org.primesoft.asyncworldedit.blockPlacer.entries.UndoJob;
+import org.primesoft.asyncworldedit.blockPlacer.entries.WorldBlockEntry;
 import org.primesoft.asyncworldedit.configuration.ConfigProvider;
 import org.primesoft.asyncworldedit.permissions.Permission;
 import org.primesoft.asyncworldedit.strings.MessageType;
 import org.primesoft.asyncworldedit.api.utils.IFuncParamEx;
 import org.primesoft.asyncworldedit.worldedit.AsyncTask;
 import org.primesoft.asyncworldedit.worldedit.CancelabeEditSession;
+import org.primesoft.asyncworldedit.worldedit.TaskContext;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Stream;
 import static org.primesoft.asyncworldedit.LoggerProvider.log;
 import org.primesoft.asyncworldedit.api.IPhysicsWatch;
@@ -73,6 +75,8 @@ import org.primesoft.asyncworldedit.api.blockPlacer.entries.IJobEntry;
 import org.primesoft.asyncworldedit.api.blockPlacer.entries.JobStatus;
 import org.primesoft.asyncworldedit.api.configuration.IPermissionGroup;
 import org.primesoft.asyncworldedit.api.inner.IAsyncWorldEditCore;
+import org.primesoft.asyncworldedit.api.inner.IChunkWatch;
+import org.primesoft.asyncworldedit.api.inner.IInnerBlockPlacer;
 import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
 import org.primesoft.asyncworldedit.api.progressDisplay.IProgressDisplay;
 import org.primesoft.asyncworldedit.api.taskdispatcher.ITaskDispatcher;
@@ -86,15 +90,24 @@ import org.primesoft.asyncworldedit.core.AwePlatform;
 import org.primesoft.asyncworldedit.events.JobAddedEvent;
 import org.primesoft.asyncworldedit.events.JobRemovedEvent;
 import org.primesoft.asyncworldedit.platform.api.IScheduler;
+import org.primesoft.asyncworldedit.platform.api.ITask;
 import org.primesoft.asyncworldedit.utils.GCUtils;
 
 /**
  *
  * @author SBPrime
  */
-public class BlockPlacer implements IBlockPlacer {
+public class BlockPlacer implements IInnerBlockPlacer {
     private final static Object INSTANCE = new Object();
 
+    /**
+     * The player queue offer function
+     */
+    @FunctionalInterface
+    private interface IQueueOffer {
+        boolean offer(BlockPlacerPlayer playerEntry, int limit);
+    }
+
     /**
      * Bukkit scheduler
      */
@@ -115,22 +128,35 @@ public class BlockPlacer implements IBlockPlacer {
      */
     private BlockPlacerTask m_task;
 
+    /**
+     * The server tick duration listener (null if not supported)
+     */
+    private final ITask m_tickDurationTask;
+
     /**
      * Logged events queue (per player)
      */
-    private final HashMap<IPlayerEntry, BlockPlacerPlayer> m_blocks;
+    private final ConcurrentHashMap<IPlayerEntry, BlockPlacerPlayer> m_blocks;
         
-    private final AtomicInteger m_blocksCount = new AtomicInteger(0);
+    /**
+     * Number of entries on all the queues
+     */
+    private final LongAdder m_blocksCount = new LongAdder();
+
+    /**
+     * The queue overflow tier (spill files)
+     */
+    private final BlockSpill m_spill;
 
     /**
      * All locked queues
      */
-    private final HashSet<IPlayerEntry> m_lockedQueues;
+    private final Set<IPlayerEntry> m_lockedQueues;
 
     /**
      * Is the global queue locked
      */
-    private boolean m_globalQueueLocked;
+    private volatile boolean m_globalQueueLocked;
 
     /**
      * Global queue max size
@@ -198,6 +224,41 @@ public class BlockPlacer implements IBlockPlacer {
      * The blocks placer interval
      */
     private long m_interval;
+
+    /**
+     * Maximum number of blocks from the same chunk placed as one batch
+     */
+    private int m_chunkBatchSize;
+
+    /**
+     * The adaptive block placer budget
+     */
+    private volatile AdaptiveBudget m_budget;
+
+    /**
+     * The fair queuing scheduler
+     */
+    private volatile FairQueueScheduler m_fairQueue;
+
+    /**
+     * Should the blocks near the player be placed first
+     */
+    private volatile boolean m_proximityOrder;
+
+    /**
+     * Maximum number of buffered blocks in a batch
+     */
+    private final static int BATCH_SIZE = 4096;
+
+    /**
+     * The per thread buffered block batch
+     */
+    private final ThreadLocal<BlockBatch> m_batches = new ThreadLocal<>();
+
+    /**
+     * The chunk watcher (proximity order)
+     */
+    private final IChunkWatch m_chunkWatch;
     
     private long addPerSecond = 0;
     private long addPerSecondAvg = 0;
@@ -223,6 +284,21 @@ public class BlockPlacer implements IBlockPlacer {
         m_isPaused = pause;
     }
 
+    @Override
+    public double getBudgetScale() {
+        return m_budget.getScale();
+    }
+
+    @Override
+    public double getMspt() {
+        return m_budget.getMspt();
+    }
+
+    @Override
+    public double getPlacerMspt() {
+        return m_budget.getPlacerMspt();
+    }
+
     /**
      * Get the physics watcher
      *
@@ -232,6 +308,16 @@ public class BlockPlacer implements IBlockPlacer {
         return m_physicsWatcher;
     }
 
+    /**
+     * Get the chunk watcher
+     *
+     * @return
+     */
+    @Override
+    public IChunkWatch getChunkWatch() {
+        return m_chunkWatch;
+    }
+
     /**
      * Initialize new instance of the block placer
      *
@@ -241,15 +327,21 @@ public class BlockPlacer implements IBlockPlacer {
         m_jobAddedListeners = new ConcurrentHashMap<>();
         m_lastRunTime = System.currentTimeMillis();
         m_runNumber = 0;
-        m_blocks = new HashMap<>();
-        m_lockedQueues = new HashSet<>();
+        m_blocks = new ConcurrentHashMap<>();
+        m_lockedQueues = ConcurrentHashMap.newKeySet();
         m_scheduler = aweCore.getPlatform().getScheduler();
         m_progressDisplay = aweCore.getProgressDisplayManager();        
 
         m_physicsWatcher = aweCore.getPhysicsWatcher();
+        m_chunkWatch = aweCore.getChunkWatch();
         m_taskDispatcher = aweCore.getTaskDispatcher();
+        m_spill = new BlockSpill(ConfigProvider.getSpillFolder(), m_blocksCount, m_physicsWatcher);
         
         loadConfig();
+        m_tickDurationTask = m_scheduler.onTickDuration(d -> m_budget.tickDuration(d));
+        if (m_tickDurationTask == null && ConfigProvider.renderer().isAdaptiveBudgetEnabled()) {
+            log("Warning: the server does not report the tick duration, the adaptive budget uses the tick rate only.");
+        }
     }
 
     /**
@@ -264,11 +356,18 @@ public class BlockPlacer implements IBlockPlacer {
         m_talkInterval = rConfig.getQueueTalkInterval();
         m_queueMaxSizeHard = rConfig.getQueueMaxSizeHard();
         m_queueMaxSizeSoft = rConfig.getQueueMaxSizeSoft();
+        m_chunkBatchSize = Math.max(1, rConfig.getChunkBatchSize());
+        m_budget = new AdaptiveBudget(rConfig.isAdaptiveBudgetEnabled(), rConfig.getTargetMspt(),
+                rConfig.getMinBudget(), rConfig.getMaxBudget(), 
+                rConfig.getBudgetIncrease(), rConfig.getBudgetDecrease());
+        m_fairQueue = new FairQueueScheduler(rConfig.getFairQuantum());
+        m_proximityOrder = rConfig.isProximityOrderEnabled();
         
         ConfigMemory mConfig = ConfigProvider.memory();
         
         m_minMemoryHard = mConfig.getMinMemoryHard() * 1000;
         m_minMemorySoft = mConfig.getMinMemorySoft() * 1000;
+        m_spill.setConfig(rConfig.isSpillToDiskEnabled(), m_queueMaxSizeSoft, m_minMemorySoft);
 
         if (m_task != null) {
             m_task.queueStop();
@@ -325,16 +424,6 @@ public class BlockPlacer implements IBlockPlacer {
 
         boolean talk = false;
         final List<IJobEntry> jobsToCancel = new ArrayList<>();
-        //Number of blocks placed for player        
-        final Map<IPermissionGroup, Set<IPlayerEntry>> groups;
-
-        synchronized (m_mutex) {
-            groups = m_blocks.keySet().stream()
-                    .collect(Collectors.groupingBy(
-                            i -> i.getPermissionGroup(), 
-                            Collectors.toSet())
-                    );
-        }
         
         m_runNumber++;
         if (m_runNumber > m_talkInterval) {
@@ -347,27 +436,19 @@ public class BlockPlacer implements IBlockPlacer {
             return;
         }
         
+        //Number of blocks placed for player
         final HashMap<IPlayerEntry, Integer> blocksPlaced = new HashMap<>();
-        final Map.Entry<IPermissionGroup, HashSet<IPlayerEntry>>[] knownGroups = groups.entrySet().toArray(new Map.Entry[0]);
-        final List<BlockPlacerGroup> processedGroups;        
-        processedGroups = new ArrayList<>(knownGroups.length);
+        final List<FairQueueScheduler.Flow> flows = m_fairQueue.prepare(m_blocks, m_budget);
         
-        for (Map.Entry<IPermissionGroup, HashSet<IPlayerEntry>> entry : knownGroups) {
-            IPermissionGroup permissionGroup = entry.getKey();
-            IPlayerEntry[] keys = entry.getValue().toArray(new IPlayerEntry[0]);
-
-            if (keys.length > 0) {
-                processedGroups.add(new BlockPlacerGroup(permissionGroup, keys));
-            }
-        }
-        
-        boolean blockPlaced = !groups.isEmpty() && processQueue(processedGroups, blocksPlaced, jobsToCancel);
+        long placerStart = System.nanoTime();
+        boolean blockPlaced = !flows.isEmpty() && processQueue(flows, blocksPlaced, jobsToCancel);
+        m_budget.update(timeDelte, m_interval, (System.nanoTime() - placerStart) / 1000000.0);
 
         if (m_globalQueueLocked) {
             boolean unlock = GCUtils.getTotalAvailableMemory() >= m_minMemorySoft;
 
             if (blockPlaced) {
-                int globalSize = m_blocksCount.get();
+                long globalSize = m_spill.getBlocksInMemory();
                 unlock &= (globalSize < m_queueMaxSizeSoft);
             }
 
@@ -382,14 +463,12 @@ public class BlockPlacer implements IBlockPlacer {
             }
         }
 
-        synchronized (m_mutex) {
-            for (Map.Entry<IPlayerEntry, BlockPlacerPlayer> queueEntry : m_blocks.entrySet()) {
-                IPlayerEntry playerEntry = queueEntry.getKey();
-                BlockPlacerPlayer entry = queueEntry.getValue();
-                Integer cnt = blocksPlaced.get(playerEntry);
+        for (Map.Entry<IPlayerEntry, BlockPlacerPlayer> queueEntry : m_blocks.entrySet()) {
+            IPlayerEntry playerEntry = queueEntry.getKey();
+            BlockPlacerPlayer entry = queueEntry.getValue();
+            Integer cnt = blocksPlaced.get(playerEntry);
 
-                showProgress(playerEntry, entry, cnt != null ? cnt : 0, timeDelte, talk);
-            }
+            showProgress(playerEntry, entry, cnt != null ? cnt : 0, timeDelte, talk);
         }
 
         for (IJobEntry job : jobsToCancel) {
@@ -401,10 +480,7 @@ public class BlockPlacer implements IBlockPlacer {
     }
 
     private void runOnShutdown() {
-        IPlayerEntry[] entries;
-        synchronized (m_mutex) {
-            entries = m_blocks.keySet().toArray(new IPlayerEntry[0]);
-        }
+        IPlayerEntry[] entries = m_blocks.keySet().toArray(new IPlayerEntry[0]);
         
         for (IPlayerEntry pe : entries) {
             Object mutex = pe.getWaitMutex();
@@ -415,54 +491,67 @@ public class BlockPlacer implements IBlockPlacer {
     }
 
     /**
-     * process queued blocks
+     * process queued blocks (deficit round robin)
      *
+     * @param flows the player flows ordered by priority
      * @param blocksPlaced number of blocksplaced for players
      * @param jobsToCancel canceled blocks
      */
-    private boolean processQueue(final List<BlockPlacerGroup> groups,
+    private boolean processQueue(final List<FairQueueScheduler.Flow> flows,
             final HashMap<IPlayerEntry, Integer> blocksPlaced, final List<IJobEntry> jobsToCancel) {        
         long startTime = System.currentTimeMillis();
         int blocks = 0;
         
         boolean demanding = false;
+        final List<IBlockPlacerEntry> batch = new ArrayList<>(m_chunkBatchSize);
+        final List<FairQueueScheduler.Flow> active = new ArrayList<>(flows);
+        final boolean proximity = m_proximityOrder;
+        for (FairQueueScheduler.Flow flow : flows) {
+            flow.getEntry().updateView(proximity);
+        }
 
-        int pos = 0;
-        while (! groups.isEmpty()) {
-            BlockPlacerGroup group = groups.get(pos);
-            int maxTime = group.getRendererTime();
-            int maxBlocksCount = group.getRendererBlocks();
-            
-            IBlockPlacerEntry entry;
-            synchronized (m_mutex) {
-                entry = fetchEntry(group, blocksPlaced, jobsToCancel);
-            }
+        while (!active.isEmpty() && !demanding) {
+            for (Iterator<FairQueueScheduler.Flow> it = active.iterator(); it.hasNext() && !demanding;) {
+                final FairQueueScheduler.Flow flow = it.next();
+                final BlockPlacerGroup group = flow.getGroup();
+                final IPlayerEntry player = flow.getPlayer();
+                final int maxTime = group.getRendererTime();
+                final int maxBlocksCount = group.getRendererBlocks();
+
+                flow.addQuantum();
+                while (flow.getDeficit() > 0 && !demanding) {
+                    long now = System.currentTimeMillis();
+                    int blocksLeft = Math.min(group.getBlocksLeft(player),
+                            maxBlocksCount == -1 ? Integer.MAX_VALUE : maxBlocksCount - group.getBlocksPlaced());
+                    
+                    if ((maxTime != -1 && (now - startTime) >= maxTime) || blocksLeft <= 0) {
+                        it.remove();
+                        break;
+                    }
 
-            if (entry == null) {
-                groups.remove(group);
-            } else {
-                entry.process(this);
-                blocks++;
-                
-                
-                boolean isDemanding = entry.isDemanding();
-                demanding |= isDemanding;
-                
-                long now = System.currentTimeMillis();
-                if (isDemanding) {
-                    groups.clear();
-                } 
-                else if ((maxTime != -1 && (now - startTime) >= maxTime) ||
-                        (maxBlocksCount != -1 && blocks > maxBlocksCount))
-                {
-                    groups.remove(group);
+                    int batchSize = (int) Math.min(Math.min(m_chunkBatchSize, flow.getDeficit()), blocksLeft);
+                    final int cnt;
+                    batch.clear();
+                    synchronized (m_mutex) {
+                        cnt = fetchEntries(flow, group, batchSize, batch, blocksPlaced, jobsToCancel);
+                    }
+
+                    if (batch.isEmpty()) {
+                        flow.reset();
+                        it.remove();
+                        break;
+                    }
+
+                    for (IBlockPlacerEntry entry : batch) {
+                        entry.process(this);
+                        demanding |= entry.isDemanding();
+                    }
+                    
+                    blocks += cnt;
+                    flow.consume(cnt);
+                    group.addBlocksPlaced(cnt);
                 }
             }
-            
-            pos = pos + 1;
-            if (pos >= groups.size()) {
-                pos = 0;
-            }
         }
 
         if (ConfigProvider.messages().debugLevel().isAtLeast(DebugLevel.TRACE)) {
@@ -474,85 +563,86 @@ public class BlockPlacer implements IBlockPlacer {
     }
 
     /**
-     * Fetch next entry that is going to be processed in this run
+     * Fetch next entries that are going to be processed in this run. If the
+     * first entry is a world block entry the consecutive world block entries
+     * are fetched as well (up to batchSize) and grouped by chunk. Packed
+     * block entries are fetched in slices of up to batchSize blocks. The
+     * entries are fetched from one job queue segment (round robin). When
+     * the proximity order is enabled the blocks are fetched from the loaded
+     * chunks near the player first.
      *
-     * @param playerNames list of all players
-     * @param seqNumber sequence number in player names (everyone is treated
-     * equally)
+     * @param flow the player flow
+     * @param permissionGroup the permission group
+     * @param batchSize maximum number of entries to fetch
+     * @param result the fetched entries
      * @param blocksPlaced number of blocks placed for player
      * @param jobsToCancel jobs to cancel
-     * @return fatched block
+     * @return number of fetched blocks
      */
-    private IBlockPlacerEntry fetchEntry(final BlockPlacerGroup permissionGroup,
+    private int fetchEntries(final FairQueueScheduler.Flow flow,
+            final BlockPlacerGroup permissionGroup,
+            final int batchSize,
+            final List<IBlockPlacerEntry> result,
             final HashMap<IPlayerEntry, Integer> blocksPlaced,
             final List<IJobEntry> jobsToCancel) {
-        if (permissionGroup == null) {
-            return null;
-        }
+        final IPlayerEntry player = flow.getPlayer();
+        final BlockPlacerPlayer playerEntry = flow.getEntry();
         
-        IPlayerEntry[] playerEntries = permissionGroup.getPlayers();        
-        if (playerEntries == null || playerEntries.length == 0) {
-            return null;
+        if (m_blocks.get(player) != playerEntry) {
+            return 0;
         }
+        
+        int cnt = 0;
+        final JobQueue queue = playerEntry.nextJobQueue();
+        IBlockPlacerEntry entry = queue != null ? playerEntry.poll(queue, batchSize, m_chunkWatch) : null;
+        if (entry != null) {
+            cnt = BlockPlacerPlayer.getBlockCount(entry);
+            result.add(entry);
 
-        int keyPos = permissionGroup.getSeqNumber() % playerEntries.length;
-        IBlockPlacerEntry result = null;
-        IPlayerEntry resultPlayer = null;
-
-        for (int retry = playerEntries.length; result == null && retry > 0; retry--) {
-            final IPlayerEntry player = playerEntries[keyPos];
-            final BlockPlacerPlayer playerEntry = m_blocks.get(player);
-            if (playerEntry != null) {
-                Queue<IBlockPlacerEntry> queue = playerEntry.getQueue();
-                synchronized (queue) {
-                    if (!queue.isEmpty()) {
-                        IBlockPlacerEntry entry = queue.poll();
-                        m_blocksCount.decrementAndGet();
-                        
-                        if (entry != null) {
-                            result = entry;
-                            resultPlayer = player;
-
-                            if (blocksPlaced.containsKey(player)) {
-                                blocksPlaced.put(player, blocksPlaced.get(player) + 1);
-                            } else {
-                                blocksPlaced.put(player, 1);
-                            }
-                        }
-                    } else {
-                        for (IJobEntry job : playerEntry.getJobs()) {
-                            JobStatus jStatus = job.getStatus();
-                            if (jStatus == JobStatus.Done
-                                    || jStatus == JobStatus.Waiting
-                                    || jStatus == JobStatus.Canceled) {
-                                jobsToCancel.add(job);
-                            }
-                        }
-
-                        for (IJobEntry job : jobsToCancel) {
-                            playerEntry.removeJob(job);
-                        }
-                    }
+            if (entry instanceof WorldBlockEntry && batchSize > 1) {
+                while (cnt < batchSize && queue.peek() instanceof WorldBlockEntry) {
+                    result.add(playerEntry.poll(queue, 1));
+                    cnt++;
                 }
 
-                final int size = queue.size();
-                if (size < permissionGroup.getQueueSoftLimit()) {
-                    unlockQueue(player, true);
-                }
-                if (size == 0 && !playerEntry.hasJobs()) {
-                    m_blocks.remove(playerEntries[keyPos]);
-                    if (player.getMessaging(MessageSystem.BAR)) {
-                        hideProgressBar(player, playerEntry);
-                    }
-                }
+                ChunkBatch.groupByChunk(result);
+            }
+
+            m_blocksCount.add(-cnt);
+            if (blocksPlaced.containsKey(player)) {
+                blocksPlaced.put(player, blocksPlaced.get(player) + cnt);
             } else {
-                unlockQueue(player, true);
+                blocksPlaced.put(player, cnt);
+            }
+            
+            permissionGroup.updateProgress(0, player, cnt);
+        } else {
+            for (IJobEntry job : playerEntry.getJobs()) {
+                JobStatus jStatus = job.getStatus();
+                if (jStatus == JobStatus.Done
+                        || jStatus == JobStatus.Waiting
+                        || jStatus == JobStatus.Canceled) {
+                    jobsToCancel.add(job);
+                }
+            }
+
+            for (IJobEntry job : jobsToCancel) {
+                playerEntry.removeJob(job);
             }
-            keyPos = (keyPos + 1) % playerEntries.length;
         }
 
-        permissionGroup.updateProgress(keyPos, resultPlayer);
-        return result;
+        final int size = playerEntry.getQueueSize();
+        if (size < permissionGroup.getQueueSoftLimit()) {
+            unlockQueue(player, true);
+        }
+        if (size == 0 && !playerEntry.hasJobs() && playerEntry.tryRetire()) {
+            m_blocks.remove(player, playerEntry);
+            if (player.getMessaging(MessageSystem.BAR)) {
+                hideProgressBar(player, playerEntry);
+            }
+        }
+        
+        return cnt;
     }
 
     /**
@@ -560,12 +650,12 @@ public class BlockPlacer implements IBlockPlacer {
      */
     public void stop() {
         m_task.stop();
-
-        BlockPlacerPlayer[] entries;
-        synchronized (m_mutex) {
-            entries = m_blocks.values().toArray(new BlockPlacerPlayer[0]);
+        if (m_tickDurationTask != null) {
+            m_tickDurationTask.cancel();
         }
 
+        BlockPlacerPlayer[] entries = m_blocks.values().toArray(new BlockPlacerPlayer[0]);
+
         for (BlockPlacerPlayer pe : entries) {
             for (IJobEntry je : pe.getJobs()) {
                 je.cancel();
@@ -589,7 +679,7 @@ public class BlockPlacer implements IBlockPlacer {
     public int getJobId(IPlayerEntry player) {
         final BlockPlacerPlayer playerEntry;
         synchronized (m_mutex) {
-            playerEntry = m_blocks.computeIfAbsent(player, pe -> new BlockPlacerPlayer(pe));
+            playerEntry = getPlayerEntry(player);
         }
 
         return playerEntry.getNextJobId();
@@ -604,13 +694,11 @@ public class BlockPlacer implements IBlockPlacer {
      */
     @Override
     public IJobEntry getJob(IPlayerEntry player, int jobId) {
-        synchronized (m_mutex) {
-            BlockPlacerPlayer playerEntry = m_blocks.get(player);
-            if (playerEntry == null) {
-                return null;
-            }
-            return playerEntry.getJob(jobId);
+        BlockPlacerPlayer playerEntry = m_blocks.get(player);
+        if (playerEntry == null) {
+            return null;
         }
+        return playerEntry.getJob(jobId);
     }
 
     /**
@@ -625,8 +713,7 @@ public class BlockPlacer implements IBlockPlacer {
         final boolean result;
 
         synchronized (m_mutex) {
-            result = m_blocks.computeIfAbsent(player, pe -> new BlockPlacerPlayer(pe))
-                    .addJob(job, false);
+            result = getPlayerEntry(player).addJob(job, false);
         }
 
         if (result) {
@@ -641,6 +728,58 @@ public class BlockPlacer implements IBlockPlacer {
         return result;
     }
     
+    /**
+     * Get or create the player entry. Retired player entries are replaced with
+     * new entries. Entries that are going to receive jobs should be fetched
+     * under the mutex (entries are retired under the mutex).
+     *
+     * @param player
+     * @return
+     */
+    private BlockPlacerPlayer getPlayerEntry(IPlayerEntry player) {
+        BlockPlacerPlayer result = m_blocks.get(player);
+        if (result != null && !result.isRetired()) {
+            return result;
+        }
+        
+        return m_blocks.compute(player, (pe, entry) -> entry == null || entry.isRetired() ? new BlockPlacerPlayer(pe, m_spill) : entry);
+    }
+
+    /**
+     * Add the entry to the player queue
+     *
+     * @param player
+     * @param entry
+     * @param limit maximum queue size, -1 for no limit
+     * @return True if entry was added, False if the queue is full
+     */
+    private boolean offer(IPlayerEntry player, IBlockPlacerEntry entry, int limit) {
+        return offer(player, limit, 1, (playerEntry, l) -> playerEntry.offer(entry, l));
+    }
+
+    /**
+     * Add the entry to the player queue
+     *
+     * @param player
+     * @param limit maximum queue size, -1 for no limit
+     * @param count number of the offered blocks
+     * @param offer the player queue offer function
+     * @return True if entry was added, False if the queue is full
+     */
+    private boolean offer(IPlayerEntry player, int limit, int count, IQueueOffer offer) {
+        while (true) {
+            final BlockPlacerPlayer playerEntry = getPlayerEntry(player);
+            if (offer.offer(playerEntry, limit)) {
+                m_blocksCount.add(count);
+                return true;
+            }
+            
+            if (!playerEntry.isRetired()) {
+                return false;
+            }
+        }
+    }
+    
     private void updateQueueSpeed() {
         addPerSecond++;
         long now = System.currentTimeMillis();
@@ -664,6 +803,148 @@ public class BlockPlacer implements IBlockPlacer {
      */
     @Override
     public boolean addTasks(final IPlayerEntry player, final IBlockPlacerEntry entry) {
+        final IBlockPlacerLocationEntry bpEntry = entry instanceof IBlockPlacerLocationEntry
+                ? (IBlockPlacerLocationEntry) entry : null;
+
+        if (!flushBlocks() && !(entry instanceof JobEntry)) {
+            return false;
+        }
+        return addTasks(player, entry instanceof JobEntry,
+                bpEntry != null ? bpEntry.getWorldName() : null,
+                bpEntry != null ? Collections.singletonList(bpEntry.getLocation()) : null,
+                (playerEntry, limit) -> playerEntry.offer(entry, limit),
+                entry instanceof JobEntry ? (JobEntry) entry : null);
+    }
+
+    /**
+     * Add block change to perform in async mode. The block is stored in the
+     * packed (primitive) block entries.
+     *
+     * @param player
+     * @param worldName
+     * @param jobId
+     * @param location
+     * @param block
+     * @param setter the function used to set the block
+     * @return
+     */
+    public boolean addBlock(final IPlayerEntry player, final String worldName, final int jobId,
+            final BlockVector3 location, final BlockStateHolder block, final IBlockSetter setter) {
+        if (!flushBlocks()) {
+            return false;
+        }
+        return addTasks(player, false, worldName, Collections.singletonList(location),
+                (playerEntry, limit) -> playerEntry.offerBlock(worldName, jobId, location, block, setter, 
+                        m_proximityOrder, limit),
+                null);
+    }
+
+    /**
+     * Add a batch of block changes to perform in async mode. The blocks are
+     * added to the player queue at once and stored in the packed (primitive)
+     * block entries.
+     *
+     * @param player
+     * @param worldName
+     * @param jobId
+     * @param locations
+     * @param blocks
+     * @param setter the function used to set the blocks
+     * @return
+     */
+    public boolean addBlocks(final IPlayerEntry player, final String worldName, final int jobId,
+            final List<BlockVector3> locations, final List<? extends BlockStateHolder> blocks,
+            final IBlockSetter setter) {
+        if (!flushBlocks()) {
+            return false;
+        }
+        return addBatch(player, worldName, jobId, locations, blocks, setter);
+    }
+
+    private boolean addBatch(final IPlayerEntry player, final String worldName, final int jobId,
+            final List<BlockVector3> locations, final List<? extends BlockStateHolder> blocks,
+            final IBlockSetter setter) {
+        if (locations.isEmpty()) {
+            return true;
+        }
+
+        return addTasks(player, false, worldName, locations,
+                (playerEntry, limit) -> playerEntry.offerBlocks(worldName, jobId, locations, blocks, setter,
+                        m_proximityOrder, limit),
+                null);
+    }
+
+    /**
+     * Buffer the block change, the blocks are added to the player queue in
+     * per chunk batches. The blocks are buffered only inside of an AWE task
+     * (the task flushes the buffer), otherwise the block is added directly.
+     *
+     * @param player
+     * @param worldName
+     * @param jobId
+     * @param location
+     * @param block
+     * @param setter the function used to set the block
+     * @return false if the block (or the previously buffered blocks) was
+     * rejected. The buffered blocks are queued when the batch is flushed,
+     * the task that buffered them is canceled if the flush fails.
+     */
+    public boolean bufferBlock(final IPlayerEntry player, final String worldName, final int jobId,
+            final BlockVector3 location, final BlockStateHolder block, final IBlockSetter setter) {
+        if (!TaskContext.isActive()) {
+            return addBlock(player, worldName, jobId, location, block, setter);
+        }
+        if (player == null || player.isDisposed()) {
+            return false;
+        }
+
+        BlockBatch batch = m_batches.get();
+        if (batch != null && !batch.accepts(player, worldName, jobId, setter, location)) {
+            if (!flushBlocks()) {
+                return false;
+            }
+            batch = null;
+        }
+        if (batch == null) {
+            batch = new BlockBatch(player, worldName, jobId, setter, location);
+            m_batches.set(batch);
+        }
+
+        batch.add(location, block);
+        return batch.size() < BATCH_SIZE || flushBlocks();
+    }
+
+    /**
+     * Add the blocks buffered by the current thread to the player queue
+     *
+     * @return false if the buffered blocks were not queued
+     */
+    @Override
+    public boolean flushBlocks() {
+        final BlockBatch batch = m_batches.get();
+        if (batch == null) {
+            return true;
+        }
+
+        m_batches.remove();
+        return addBatch(batch.getPlayer(), batch.getWorldName(), batch.getJobId(),
+                batch.getLocations(), batch.getBlocks(), batch.getSetter());
+    }
+
+    /**
+     * Add task to perform in async mode
+     *
+     * @param player
+     * @param isJob is the job entry added
+     * @param worldName the entry world name (physics watcher)
+     * @param locations the entry locations (physics watcher)
+     * @param offer the player queue offer function
+     * @param job the job entry
+     * @return
+     */
+    private boolean addTasks(final IPlayerEntry player, final boolean isJob,
+            final String worldName, final List<BlockVector3> locations,
+            final IQueueOffer offer, final JobEntry job) {
         if (player == null) {
             return false;
         }
@@ -697,83 +978,67 @@ public class BlockPlacer implements IBlockPlacer {
                 }
             }
 
-            synchronized (m_mutex) {
-                final BlockPlacerPlayer playerEntry = 
-                        m_blocks.computeIfAbsent(player, pe -> new BlockPlacerPlayer(pe));
+            if (m_lockedQueues.contains(player) && !isJob) {
+                waitOn = player.getWaitMutex();
+                retry = true;
+                continue;
+            }
 
-                if (m_lockedQueues.contains(player) && !(entry instanceof JobEntry)) {
-                    waitOn = player.getWaitMutex();
-                    retry = true;
-                    continue;
-                }
+            final BlockPlacerPlayer playerEntry = getPlayerEntry(player);
+            final boolean bypassGlobal = (player.isAllowed(Permission.QUEUE_BYPASS) && !ConfigProvider.permission().isQueueBypassDisabled())
+                    || isJob;
+            final boolean bypass = player.isAllowed(Permission.QUEUE_BYPASS) || isJob;
+            final IPermissionGroup group = player.getPermissionGroup();
 
-                final Queue<IBlockPlacerEntry> queue = playerEntry.getQueue();
-                final boolean bypassGlobal = (player.isAllowed(Permission.QUEUE_BYPASS) && !ConfigProvider.permission().isQueueBypassDisabled())
-                        || entry instanceof JobEntry;
-                final boolean bypass = player.isAllowed(Permission.QUEUE_BYPASS) || entry instanceof JobEntry;
-                final IPermissionGroup group = player.getPermissionGroup();
-                
-                int globalSize = m_blocksCount.get();
-                long memAvailable = GCUtils.getTotalAvailableMemory();
+            long globalSize = m_spill.getBlocksInMemory();
+            long memAvailable = GCUtils.getTotalAvailableMemory();
 
-                boolean queueFull = m_queueMaxSizeHard > 0 && globalSize > m_queueMaxSizeHard;
-                boolean memLow = m_minMemoryHard > 0 && memAvailable < m_minMemoryHard;
+            boolean queueFull = m_queueMaxSizeHard > 0 && globalSize > m_queueMaxSizeHard;
+            boolean memLow = m_minMemoryHard > 0 && memAvailable < m_minMemoryHard;
 
-                if ((queueFull || memLow) && !bypassGlobal) {
-                    if (!playerEntry.isInformed()) {
-                        playerEntry.setInformed(true);
+            if ((queueFull || memLow) && !bypassGlobal) {
+                if (!playerEntry.isInformed()) {
+                    playerEntry.setInformed(true);
 
-                        if (queueFull) {
-                            player.say(MessageType.BLOCK_PLACER_GLOBAL_QUEUE_FULL.format());
-                        } else if (memLow) {
-                            player.say(MessageType.BLOCK_PLACER_MEMORY_LOW.format());
-                        }
+                    if (queueFull) {
+                        player.say(MessageType.BLOCK_PLACER_GLOBAL_QUEUE_FULL.format());
+                    } else if (memLow) {
+                        player.say(MessageType.BLOCK_PLACER_MEMORY_LOW.format());
                     }
-
-                    waitOn = m_globalWaitMutex;
-                    m_globalQueueLocked = true;
-                    retry = true;
-
-                    continue;
                 }
 
-                if (playerEntry.isInformed()) {
-                    playerEntry.setInformed(false);
-                }
+                waitOn = m_globalWaitMutex;
+                m_globalQueueLocked = true;
+                retry = true;
 
-                boolean wait;
-                synchronized (queue) {
-                    if (queue.size() >= group.getQueueHardLimit() && !bypass) {
-                        wait = true;
-                    } else {
-                        queue.add(entry);
-                        m_blocksCount.incrementAndGet();
-                        
-                        wait = false;
-                    }
-                }
+                continue;
+            }
 
-                if (wait) {
-                    if (!m_lockedQueues.contains(player)) {
-                        m_lockedQueues.add(player);
-                        player.say(MessageType.BLOCK_PLACER_QUEUE_FULL.format());
-                    }
+            if (playerEntry.isInformed()) {
+                playerEntry.setInformed(false);
+            }
+
+            final int count = locations != null ? locations.size() : 1;
+            if (worldName != null && locations != null) {
+                watchLocations(worldName, locations, true);
+            }
 
-                    waitOn = player.getWaitMutex();
-                    retry = true;
-                    continue;
+            if (isJob) {
+                synchronized (m_mutex) {
+                    offer(player, -1, count, offer);
+                    getPlayerEntry(player).addJob(job, true);
                 }
-                
-                if (entry instanceof IBlockPlacerLocationEntry) {
-                    IBlockPlacerLocationEntry bpEntry = (IBlockPlacerLocationEntry) entry;
-                    String worldName = bpEntry.getWorldName();
-                    if (worldName != null) {
-                        m_physicsWatcher.addLocation(worldName, bpEntry.getLocation());
-                    }
+            } else if (!offer(player, bypass ? -1 : group.getQueueHardLimit(), count, offer)) {
+                if (worldName != null && locations != null) {
+                    watchLocations(worldName, locations, false);
                 }
-                if (entry instanceof JobEntry) {
-                    playerEntry.addJob((JobEntry) entry, true);
+
+                if (m_lockedQueues.add(player)) {
+                    player.say(MessageType.BLOCK_PLACER_QUEUE_FULL.format());
                 }
+
+                waitOn = player.getWaitMutex();
+                retry = true;
             }
         } while (retry);
 
@@ -781,6 +1046,38 @@ public class BlockPlacer implements IBlockPlacer {
         return true;
     }
 
+    /**
+     * Add or remove the physics watch locations, consecutive locations from
+     * the same chunk are registered as one entry
+     *
+     * @param worldName
+     * @param locations
+     * @param add
+     */
+    private void watchLocations(String worldName, List<BlockVector3> locations, boolean add) {
+        final int size = locations.size();
+        int idx = 0;
+        while (idx < size) {
+            final BlockVector3 location = locations.get(idx);
+            final int cx = location.getBlockX() >> 4;
+            final int cz = location.getBlockZ() >> 4;
+
+            int end = idx + 1;
+            while (end < size
+                    && (locations.get(end).getBlockX() >> 4) == cx
+                    && (locations.get(end).getBlockZ() >> 4) == cz) {
+                end++;
+            }
+
+            if (add) {
+                m_physicsWatcher.addLocations(worldName, cx, cz, end - idx);
+            } else {
+                m_physicsWatcher.removeLocations(worldName, cx, cz, end - idx);
+            }
+            idx = end;
+        }
+    }
+
     /**
      * Wait for job to finish
      *
@@ -834,7 +1131,6 @@ public class BlockPlacer implements IBlockPlacer {
     public int cancelJob(IPlayerEntry player, int jobId) {
         int newSize, result;
         final BlockPlacerPlayer playerEntry;
-        Queue<IBlockPlacerEntry> queue = null;
         IJobEntry[] jobs = null;
         synchronized (m_mutex) {
             playerEntry = m_blocks.get(player);
@@ -856,8 +1152,6 @@ public class BlockPlacer implements IBlockPlacer {
                 jobs = new IJobEntry[]{job};
             }        
             
-            queue = playerEntry.getQueue();
-
             for (IJobEntry job : jobs)
             {
                 playerEntry.removeJob(job);
@@ -872,42 +1166,24 @@ public class BlockPlacer implements IBlockPlacer {
             jobIds.add(job.getJobId());
         }
 
+        final List<JobQueue> removed = new ArrayList<>();
         synchronized (m_mutex) {
-            Queue<IBlockPlacerEntry> filtered = new LinkedList<>();
-            if (queue != null) {
-                synchronized (queue) {
-                    //TODO: Optimize this for undo
-                    for (IBlockPlacerEntry entry : queue) {
-                        if (jobIds.contains(entry.getJobId())) {
-                            if (entry instanceof IBlockPlacerLocationEntry) {
-                                IBlockPlacerLocationEntry bpEntry = (IBlockPlacerLocationEntry) entry;
-                                String worldName = bpEntry.getWorldName();
-                                if (worldName != null) {
-                                    m_physicsWatcher.removeLocation(worldName, bpEntry.getLocation());
-                                }
-                            } else if (entry instanceof JobEntry) {
-                                JobEntry jobEntry = (JobEntry) entry;
-                                playerEntry.removeJob(jobEntry);
-                                onJobRemoved(jobEntry);
-                            }
-                        } else {
-                            filtered.add(entry);
-                        }
-                    }
+            result = 0;
+            for (int id : jobIds) {
+                final JobQueue queue = playerEntry.removeJobQueue(id);
+                if (queue != null) {
+                    result += queue.getBlockCount();
+                    removed.add(queue);
                 }
-
-                newSize = filtered.size();
-                result = queue.size() - filtered.size();
-            } else {
-                newSize = 0;
-                result = 0;
             }
+
+            newSize = playerEntry.getQueueSize();
             IPermissionGroup group = player.getPermissionGroup();
-            m_blocksCount.addAndGet(-result);
-            if (newSize > 0) {
-                playerEntry.updateQueue(filtered);
-            } else if (newSize == 0) {
-                m_blocks.remove(player);
+            m_blocksCount.add(-result);
+            if (newSize == 0) {
+                if (!playerEntry.hasJobs() && playerEntry.tryRetire()) {
+                    m_blocks.remove(player, playerEntry);
+                }
                 if (player.getMessaging(MessageSystem.BAR)) {
                     hideProgressBar(player, playerEntry);
                 }
@@ -916,8 +1192,45 @@ public class BlockPlacer implements IBlockPlacer {
                 unlockQueue(player, newSize != 0);
             }
         }
+        
+        final ChunkBatch.ChunkCounter locations = new ChunkBatch.ChunkCounter();
+        for (JobQueue queue : removed) {
+            for (IBlockPlacerEntry entry : queue.getEntries()) {
+                releaseEntry(playerEntry, entry, locations);
+            }
+        }
+        locations.release(m_physicsWatcher);
+        
         return result;
     }
+    
+    /**
+     * Release the removed queue entry, the physics watch locations are
+     * added to the counter and the spill file segments are released
+     *
+     * @param playerEntry
+     * @param entry
+     * @param locations 
+     */
+    private void releaseEntry(BlockPlacerPlayer playerEntry, IBlockPlacerEntry entry, 
+            ChunkBatch.ChunkCounter locations) {
+        if (entry instanceof PackedBlocksEntry) {
+            final PackedBlocksEntry packed = (PackedBlocksEntry) entry;
+            packed.countLocations(locations);
+            packed.discard();
+        } else if (entry instanceof ChunkBuckets) {
+            final ChunkBuckets buckets = (ChunkBuckets) entry;
+            buckets.countLocations(locations);
+            buckets.discard();
+        } else if (entry instanceof IBlockPlacerLocationEntry) {
+            IBlockPlacerLocationEntry bpEntry = (IBlockPlacerLocationEntry) entry;
+            locations.add(bpEntry.getWorldName(), bpEntry.getLocation());
+        } else if (entry instanceof JobEntry) {
+            JobEntry jobEntry = (JobEntry) entry;
+            playerEntry.removeJob(jobEntry);
+            onJobRemoved(jobEntry);
+        }
+    }
 
     /**
      * Remove all entries for player
@@ -931,35 +1244,27 @@ public class BlockPlacer implements IBlockPlacer {
         synchronized (m_mutex) {
             final BlockPlacerPlayer playerEntry = m_blocks.get(player);
             if (playerEntry != null) {
-                Queue<IBlockPlacerEntry> queue = playerEntry.getQueue();
-                synchronized (queue) {
-                    for (IBlockPlacerEntry entry : queue) {
-                        if (entry instanceof IBlockPlacerLocationEntry) {
-                            IBlockPlacerLocationEntry bpEntry = (IBlockPlacerLocationEntry) entry;
-                            String name = bpEntry.getWorldName();
-                            if (name != null) {
-                                m_physicsWatcher.removeLocation(name, bpEntry.getLocation());
-                            }
-                        } else if (entry instanceof JobEntry) {
-                            JobEntry jobEntry = (JobEntry) entry;
-                            playerEntry.removeJob(jobEntry);
-                            onJobRemoved(jobEntry);
-                        }
-                    }
+                final ChunkBatch.ChunkCounter locations = new ChunkBatch.ChunkCounter();
+                IBlockPlacerEntry entry;
+                while ((entry = playerEntry.poll()) != null) {
+                    result += BlockPlacerPlayer.getBlockCount(entry);
+                    releaseEntry(playerEntry, entry, locations);
                 }
+                locations.release(m_physicsWatcher);
 
                 IJobEntry[] jobs = playerEntry.getJobs();
                 for (IJobEntry job : jobs) {
                     playerEntry.removeJob(job.getJobId());
                     onJobRemoved(job);
                 }
-                result = queue.size();
-                m_blocks.remove(player);                
+                if (playerEntry.tryRetire()) {
+                    m_blocks.remove(player, playerEntry);
+                }
                 if (player.getMessaging(MessageSystem.BAR)) {
                     hideProgressBar(player, playerEntry);
                 }
                 
-                m_blocksCount.addAndGet(-result);
+                m_blocksCount.add(-result);
             }
             unlockQueue(player, false);
         }
@@ -991,9 +1296,7 @@ public class BlockPlacer implements IBlockPlacer {
      */
     @Override
     public IPlayerEntry[] getAllPlayers() {
-        synchronized (m_mutex) {
-            return m_blocks.keySet().toArray(new IPlayerEntry[0]);
-        }
+        return m_blocks.keySet().toArray(new IPlayerEntry[0]);
     }
 
     /**
@@ -1004,9 +1307,7 @@ public class BlockPlacer implements IBlockPlacer {
      */
     @Override
     public IBlockPlacerPlayer getPlayerEvents(IPlayerEntry player) {
-        synchronized (m_mutex) {
-            return m_blocks.get(player);
-        }
+        return m_blocks.get(player);
     }
 
     /**
@@ -1016,10 +1317,7 @@ public class BlockPlacer implements IBlockPlacer {
      * @return
      */
     public String getPlayerMessage(IPlayerEntry player) {
-        final BlockPlacerPlayer entry;
-        synchronized (m_mutex) {
-            entry = m_blocks.get(player);
-        }
+        final BlockPlacerPlayer entry = m_blocks.get(player);
 
         boolean bypass = player.isAllowed(Permission.QUEUE_BYPASS);
         IPermissionGroup group = player.getPermissionGroup();
@@ -1061,10 +1359,7 @@ public class BlockPlacer implements IBlockPlacer {
      */
     @Override
     public void removeJob(final IPlayerEntry player, IJobEntry jobEntry) {
-        BlockPlacerPlayer playerEntry;
-        synchronized (m_mutex) {
-            playerEntry = m_blocks.get(player);
-        }
+        BlockPlacerPlayer playerEntry = m_blocks.get(player);
 
         if (playerEntry != null) {
             playerEntry.removeJob(jobEntry);
@@ -1171,11 +1466,10 @@ public class BlockPlacer implements IBlockPlacer {
      * @param player
      */
     private void unlockQueue(final IPlayerEntry player, boolean talk) {
-        if (m_lockedQueues.contains(player)) {
+        if (m_lockedQueues.remove(player)) {
             if (talk) {
                 player.say(MessageType.BLOCK_PLACER_QUEUE_UNLOCKED.format());
             }
-            m_lockedQueues.remove(player);
 
             Object mutex = player.getWaitMutex();
             synchronized (mutex) {
@@ -61,11 +61,20 @@ public class BlockPlacerGroup {
 
     private final Map<IPlayerEntry, Integer> m_players;
     private final IPermissionGroup m_permGroup;
+    
+    private final AdaptiveBudget m_budget;
 
     private int m_seqNumber = 0;
+    
+    private int m_blocksPlaced = 0;
 
     public BlockPlacerGroup(IPermissionGroup group, IPlayerEntry[] players) {
+        this(group, players, null);
+    }
+
+    public BlockPlacerGroup(IPermissionGroup group, IPlayerEntry[] players, AdaptiveBudget budget) {
         m_players = new HashMap<>();
+        m_budget = budget;
 
         for (IPlayerEntry p : players) {
             int cnt = p.getRenderBlocks();
@@ -100,6 +109,17 @@ public class BlockPlacerGroup {
      * @param pe
      */
     public void updateProgress(int keyPos, IPlayerEntry pe) {
+        updateProgress(keyPos, pe, 1);
+    }
+
+    /**
+     * Set new sequence number and update player blocks left
+     *
+     * @param keyPos
+     * @param pe
+     * @param blocks number of blocks placed
+     */
+    public void updateProgress(int keyPos, IPlayerEntry pe, int blocks) {
         m_seqNumber = keyPos;
         if (pe == null) {
             return;
@@ -110,7 +130,7 @@ public class BlockPlacerGroup {
             return;
         }
         
-        cnt--;
+        cnt -= blocks;
         if (cnt <= 0) {
             m_players.remove(pe);            
         } else {
@@ -118,15 +138,46 @@ public class BlockPlacerGroup {
         }
     }
 
+    /**
+     * Get the number of blocks the player can place in this run
+     *
+     * @param pe
+     * @return
+     */
+    public int getBlocksLeft(IPlayerEntry pe) {
+        Integer cnt = m_players.getOrDefault(pe, 0);
+        return cnt == INFINITE ? Integer.MAX_VALUE : cnt;
+    }
+
+    /**
+     * Add placed blocks to the group blocks count
+     *
+     * @param blocks
+     */
+    public void addBlocksPlaced(int blocks) {
+        m_blocksPlaced += blocks;
+    }
+
+    /**
+     * Number of blocks placed by the group in this run
+     *
+     * @return
+     */
+    public int getBlocksPlaced() {
+        return m_blocksPlaced;
+    }
+
     public int getQueueSoftLimit() {
         return m_permGroup.getQueueSoftLimit();
     }
 
     public int getRendererBlocks() {
-        return m_permGroup.getRendererBlocks();
+        int blocks = m_permGroup.getRendererBlocks();
+        return m_budget == null ? blocks : m_budget.scale(blocks);
     }
 
     public int getRendererTime() {
-        return m_permGroup.getRendererTime();
+        int time = m_permGroup.getRendererTime();
+        return m_budget == null ? time : m_budget.scale(time);
     }
 }
@@ -47,22 +47,28 @@
  */
 package org.primesoft.asyncworldedit.blockPlacer;
 
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.ArrayList;
 import java.util.Comparator;
 import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacerPlayer;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacerEntry;
 import org.primesoft.asyncworldedit.api.blockPlacer.ICountProvider;
 import org.primesoft.asyncworldedit.api.blockPlacer.entries.IJobEntry;
+import org.primesoft.asyncworldedit.api.inner.IChunkWatch;
 import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
 import org.primesoft.asyncworldedit.blockPlacer.entries.RedoJob;
 import org.primesoft.asyncworldedit.blockPlacer.entries.UndoJob;
 import org.primesoft.asyncworldedit.configuration.ConfigProvider;
+import org.primesoft.asyncworldedit.playerManager.PlayerEntry;
+import org.primesoft.asyncworldedit.playerManager.PlayerView;
 import org.primesoft.asyncworldedit.strings.MessageType;
 
 /**
@@ -73,12 +79,39 @@ import org.primesoft.asyncworldedit.strings.MessageType;
 public class BlockPlacerPlayer implements IBlockPlacerPlayer {
     private final static double MIN_SPEED = 0.01;
     private final static Object ITEM = new Object();
+    
+    /**
+     * The queue size marker for retired entries
+     */
+    private final static int RETIRED = Integer.MIN_VALUE;
+    
     private final Map<ICountProvider, Object> m_otherCountSources = new ConcurrentHashMap<>();
 
     /**
-     * The queue
+     * The per job queue segments (multiple producers, single consumer)
      */
-    private Queue<IBlockPlacerEntry> m_queue;
+    private final Map<Integer, JobQueue> m_jobQueues = new ConcurrentHashMap<>();
+
+    /**
+     * The last served job queue (round robin)
+     */
+    private int m_lastJobId = Integer.MIN_VALUE;
+    
+    /**
+     * The number of blocks on the queue (including reserved entries)
+     * or RETIRED when the entry was removed from the block placer
+     */
+    private final AtomicInteger m_queueSize = new AtomicInteger(0);
+
+    /**
+     * The block placer overflow tier (null if not available)
+     */
+    private final BlockSpill m_spill;
+
+    /**
+     * Number of blocks from the queue stored in the spill files
+     */
+    private final AtomicInteger m_spilledBlocks = new AtomicInteger(0);
     /**
      * Current block placing speed (blocks per second)
      */
@@ -105,14 +138,30 @@ public class BlockPlacerPlayer implements IBlockPlacerPlayer {
      */
     private final IPlayerEntry m_player;
 
+    /**
+     * The player position snapshot used by the proximity order
+     * (null if not available)
+     */
+    private PlayerView m_view;
+
     /**
      * Create new player entry
      *
      * @param player
      */
     public BlockPlacerPlayer(IPlayerEntry player) {
+        this(player, null);
+    }
+
+    /**
+     * Create new player entry
+     *
+     * @param player
+     * @param spill the block placer overflow tier
+     */
+    BlockPlacerPlayer(IPlayerEntry player, BlockSpill spill) {
         m_player = player;
-        m_queue = new LinkedList<>();
+        m_spill = spill;
         m_speed = 0;
         m_jobs = new ConcurrentHashMap<>();
     }
@@ -138,13 +187,17 @@ public class BlockPlacerPlayer implements IBlockPlacerPlayer {
     }
 
     /**
-     * Get block entries queue
+     * Get a snapshot of the block entries queue (all job segments)
      *
      * @return
      */
     @Override
     public Queue<IBlockPlacerEntry> getQueue() {
-        return m_queue;
+        final List<IBlockPlacerEntry> result = new ArrayList<>();
+        m_jobQueues.keySet().stream().sorted().map(m_jobQueues::get)
+                .filter(q -> q != null).forEach(q -> q.copyTo(result));
+        
+        return new ConcurrentLinkedQueue<>(result);
     }
 
     /**
@@ -154,7 +207,301 @@ public class BlockPlacerPlayer implements IBlockPlacerPlayer {
      */
     @Override
     public void updateQueue(Queue<IBlockPlacerEntry> newQueue) {
-        m_queue = newQueue;
+        for (JobQueue queue : m_jobQueues.values()) {
+            queue.close();
+        }
+        m_jobQueues.clear();
+        
+        int blocks = 0;
+        for (IBlockPlacerEntry entry : newQueue) {
+            if (entry instanceof PackedBlocksEntry) {
+                ((PackedBlocksEntry) entry).seal();
+            } else if (entry instanceof ChunkBuckets) {
+                ((ChunkBuckets) entry).seal();
+            }
+            
+            m_jobQueues.computeIfAbsent(entry.getJobId(), JobQueue::new).offer(entry);
+            blocks += getBlockCount(entry);
+        }
+        
+        final int size = blocks;
+        m_queueSize.updateAndGet(s -> s == RETIRED ? RETIRED : size);
+    }
+
+    /**
+     * Add entry to the queue (thread safe)
+     *
+     * @param entry the entry to add
+     * @param limit maximum queue size, -1 for no limit
+     * @return True if entry was added, False if queue is full or the player
+     * entry is retired
+     */
+    public boolean offer(IBlockPlacerEntry entry, int limit) {
+        if (!reserve(1, limit)) {
+            return false;
+        }
+        
+        final int jobId = entry.getJobId();
+        JobQueue queue = getJobQueue(jobId);
+        while (!queue.offer(entry)) {
+            queue = getJobQueue(jobId);
+        }
+        return true;
+    }
+
+    /**
+     * Add a block to the queue using the packed block entries (thread safe)
+     *
+     * @param worldName the world name
+     * @param jobId the job ID
+     * @param location the block location
+     * @param block the new block
+     * @param setter the block setter
+     * @param proximity group the blocks by chunk (proximity order)
+     * @param limit maximum queue size, -1 for no limit
+     * @return True if block was added, False if queue is full or the player
+     * entry is retired
+     */
+    public boolean offerBlock(String worldName, int jobId, BlockVector3 location,
+            BlockStateHolder block, IBlockSetter setter, boolean proximity, int limit) {
+        if (!reserve(1, limit)) {
+            return false;
+        }
+
+        JobQueue queue = getJobQueue(jobId);
+        while (!queue.offerBlock(m_player, worldName, location, block, setter,
+                m_spill, m_spilledBlocks, proximity)) {
+            queue = getJobQueue(jobId);
+        }
+        return true;
+    }
+
+    /**
+     * Add a batch of blocks to the queue using the packed block entries
+     * (thread safe). The queue space is reserved once for the whole batch.
+     *
+     * @param worldName the world name
+     * @param jobId the job ID
+     * @param locations the block locations
+     * @param blocks the new blocks
+     * @param setter the block setter
+     * @param proximity group the blocks by chunk (proximity order)
+     * @param limit maximum queue size, -1 for no limit
+     * @return True if the blocks were added, False if queue is full or the
+     * player entry is retired
+     */
+    public boolean offerBlocks(String worldName, int jobId, List<BlockVector3> locations,
+            List<? extends BlockStateHolder> blocks, IBlockSetter setter, boolean proximity, int limit) {
+        final int count = locations.size();
+        if (!reserve(count, limit)) {
+            return false;
+        }
+
+        JobQueue queue = getJobQueue(jobId);
+        for (int i = 0; i < count; i++) {
+            while (!queue.offerBlock(m_player, worldName, locations.get(i), blocks.get(i),
+                    setter, m_spill, m_spilledBlocks, proximity)) {
+                queue = getJobQueue(jobId);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the open job queue segment. A closed segment that was not removed
+     * yet is replaced by a new segment, so the producers do not wait for
+     * the consumer to remove it.
+     *
+     * @param jobId
+     * @return
+     */
+    private JobQueue getJobQueue(int jobId) {
+        final JobQueue queue = m_jobQueues.get(jobId);
+        if (queue != null && !queue.isClosed()) {
+            return queue;
+        }
+
+        return m_jobQueues.compute(jobId, (id, q) -> q == null || q.isClosed() ? new JobQueue(id) : q);
+    }
+
+    /**
+     * Reserve space for the blocks on the queue, the blocks stored in
+     * the spill files are not included in the limit. A batch is accepted
+     * when there is space for at least one block.
+     *
+     * @param count number of blocks
+     * @param limit maximum queue size, -1 for no limit
+     * @return
+     */
+    private boolean reserve(int count, int limit) {
+        int size;
+        do {
+            size = m_queueSize.get();
+            if (size == RETIRED || (limit >= 0 && size - m_spilledBlocks.get() >= limit)) {
+                return false;
+            }
+        } while (!m_queueSize.compareAndSet(size, size + count));
+
+        return true;
+    }
+
+    /**
+     * Get the next job queue segment to process (round robin, single consumer).
+     * Empty segments are removed.
+     *
+     * @return null if there are no queued blocks
+     */
+    JobQueue nextJobQueue() {
+        JobQueue first = null;
+        JobQueue next = null;
+        
+        for (JobQueue queue : m_jobQueues.values()) {
+            final int jobId = queue.getJobId();
+            
+            if (queue.getBlockCount() == 0) {
+                if (queue.tryClose()) {
+                    m_jobQueues.remove(jobId, queue);
+                }
+                continue;
+            }
+            
+            if (first == null || jobId < first.getJobId()) {
+                first = queue;
+            }
+            if (jobId > m_lastJobId && (next == null || jobId < next.getJobId())) {
+                next = queue;
+            }
+        }
+        
+        final JobQueue result = next != null ? next : first;
+        if (result != null) {
+            m_lastJobId = result.getJobId();
+        }
+        
+        return result;
+    }
+
+    /**
+     * Get the next entry from the job queue segment (single consumer).
+     * Packed block entries are returned in slices of up to maxBlocks blocks.
+     *
+     * @param queue the job queue segment
+     * @param maxBlocks maximum number of blocks to take from a packed entry
+     * @return
+     */
+    IBlockPlacerEntry poll(JobQueue queue, int maxBlocks) {
+        return poll(queue, maxBlocks, null);
+    }
+
+    /**
+     * Get the next entry from the job queue segment (single consumer).
+     * Packed block entries are returned in slices of up to maxBlocks blocks,
+     * the blocks grouped by chunk are returned starting from the loaded
+     * chunks near the player.
+     *
+     * @param queue the job queue segment
+     * @param maxBlocks maximum number of blocks to take from a packed entry
+     * @param chunkWatch the chunk watcher (null if not available)
+     * @return
+     */
+    IBlockPlacerEntry poll(JobQueue queue, int maxBlocks, IChunkWatch chunkWatch) {
+        final IBlockPlacerEntry result = queue.poll(maxBlocks, m_view, chunkWatch);
+        if (result != null) {
+            m_queueSize.addAndGet(-getBlockCount(result));
+        }
+        
+        return result;
+    }
+
+    /**
+     * Get the next queue entry from any job (single consumer)
+     *
+     * @return
+     */
+    public IBlockPlacerEntry poll() {
+        JobQueue queue;
+        while ((queue = nextJobQueue()) != null) {
+            final IBlockPlacerEntry result = poll(queue, Integer.MAX_VALUE);
+            if (result != null) {
+                return result;
+            }
+        }
+        
+        return null;
+    }
+
+    /**
+     * Remove the job queue segment (O(1)). This method should not be run in
+     * parallel with poll.
+     *
+     * @param jobId
+     * @return the removed (closed) segment, null if there is no segment
+     * for the job
+     */
+    JobQueue removeJobQueue(int jobId) {
+        final JobQueue queue = m_jobQueues.remove(jobId);
+        if (queue == null) {
+            return null;
+        }
+        
+        queue.close();
+        m_queueSize.addAndGet(-queue.getBlockCount());
+        
+        return queue;
+    }
+
+    /**
+     * Get the number of blocks stored in the queue entry
+     *
+     * @param entry
+     * @return
+     */
+    static int getBlockCount(IBlockPlacerEntry entry) {
+        if (entry instanceof PackedBlocksEntry) {
+            return ((PackedBlocksEntry) entry).getBlockCount();
+        } else if (entry instanceof ChunkBuckets) {
+            return ((ChunkBuckets) entry).getBlockCount();
+        }
+        
+        return 1;
+    }
+
+    /**
+     * Update the player position snapshot used by the proximity order
+     * (server main thread)
+     *
+     * @param enabled is the proximity order enabled
+     */
+    void updateView(boolean enabled) {
+        m_view = enabled && m_player instanceof PlayerEntry ? ((PlayerEntry) m_player).getView() : null;
+    }
+
+    /**
+     * Get the number of blocks on the queue
+     *
+     * @return
+     */
+    public int getQueueSize() {
+        return Math.max(0, m_queueSize.get());
+    }
+
+    /**
+     * Try to retire the entry, an entry can be retired only when the queue
+     * is empty. Retired entries do not accept new blocks.
+     *
+     * @return
+     */
+    public boolean tryRetire() {
+        return m_queueSize.compareAndSet(0, RETIRED);
+    }
+
+    /**
+     * Is the player entry retired
+     *
+     * @return
+     */
+    public boolean isRetired() {
+        return m_queueSize.get() == RETIRED;
     }
 
     /**
@@ -337,12 +684,12 @@ public class BlockPlacerPlayer implements IBlockPlacerPlayer {
 
     @Override
     public boolean hasBlocks() {
-        return !m_queue.isEmpty() || m_otherCountSources.keySet().stream().anyMatch(i -> i.getCount() > 0);
+        return getQueueSize() > 0 || m_otherCountSources.keySet().stream().anyMatch(i -> i.getCount() > 0);
     }
 
     @Override
     public int getOperationCount() {
-        return m_queue.size() + m_otherCountSources.keySet().stream().mapToInt(ICountProvider::getCount).sum();
+        return getQueueSize() + m_otherCountSources.keySet().stream().mapToInt(ICountProvider::getCount).sum();
     }
 
     @Override
@@ -0,0 +1,343 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2014, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import static org.primesoft.asyncworldedit.LoggerProvider.log;
+import org.primesoft.asyncworldedit.api.IPhysicsWatch;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+import org.primesoft.asyncworldedit.utils.ExceptionHelper;
+import org.primesoft.asyncworldedit.utils.GCUtils;
+
+/**
+ * The block placer overflow tier. When the number of blocks in memory
+ * exceeds the soft limit (or the server is low on memory) the packed block
+ * entries are stored in per job spill files and loaded back when the
+ * block placer reaches them.
+ *
+ * @author SBPrime
+ */
+final class BlockSpill {
+
+    private final static String EXTENSION = ".spill";
+
+    /**
+     * Is spilling enabled
+     */
+    private volatile boolean m_enabled;
+
+    /**
+     * The spill files folder
+     */
+    private final File m_folder;
+
+    /**
+     * Maximum number of blocks in memory
+     */
+    private volatile long m_softLimit;
+
+    /**
+     * Minimum free memory
+     */
+    private volatile long m_minMemorySoft;
+
+    /**
+     * Number of blocks on all the queues
+     */
+    private final LongAdder m_blocksCount;
+
+    /**
+     * Number of blocks stored in the spill files
+     */
+    private final LongAdder m_spilledBlocks = new LongAdder();
+
+    /**
+     * The open spill files
+     */
+    private final Map<String, SpillFile> m_files = new HashMap<>();
+
+    private final AtomicInteger m_fileId = new AtomicInteger();
+
+    /**
+     * The physics watcher, used to release the locations of blocks that
+     * could not be loaded
+     */
+    private final IPhysicsWatch m_physicsWatcher;
+
+    /**
+     * The spilled blocks reader
+     */
+    private final ExecutorService m_reader = Executors.newSingleThreadExecutor(r -> {
+        final Thread th = new Thread(r);
+        th.setName("AWE:BlockSpill:reader");
+        th.setDaemon(true);
+        return th;
+    });
+
+    BlockSpill(File folder, LongAdder blocksCount, IPhysicsWatch physicsWatcher) {
+        m_folder = folder;
+        m_blocksCount = blocksCount;
+        m_physicsWatcher = physicsWatcher;
+
+        clean();
+    }
+
+    /**
+     * The spilled blocks reader
+     *
+     * @return
+     */
+    ExecutorService getReader() {
+        return m_reader;
+    }
+
+    IPhysicsWatch getPhysicsWatcher() {
+        return m_physicsWatcher;
+    }
+
+    /**
+     * Update the spill configuration
+     *
+     * @param enabled
+     * @param softLimit maximum number of blocks in memory
+     * @param minMemorySoft minimum free memory
+     */
+    void setConfig(boolean enabled, long softLimit, long minMemorySoft) {
+        m_enabled = enabled && m_folder != null;
+        m_softLimit = softLimit;
+        m_minMemorySoft = minMemorySoft;
+
+        if (m_enabled && !m_folder.exists()) {
+            m_folder.mkdirs();
+        }
+    }
+
+    /**
+     * Remove all spill files left by the previous server run
+     */
+    private void clean() {
+        if (m_folder == null || !m_folder.exists()) {
+            return;
+        }
+
+        final File[] files = m_folder.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) {
+            return;
+        }
+
+        for (File f : files) {
+            if (!f.delete()) {
+                log("Warinig: Unable to delete spill file " + f.getName());
+            }
+        }
+    }
+
+    /**
+     * Should the queued blocks be stored on disk
+     *
+     * @return
+     */
+    boolean shouldSpill() {
+        if (!m_enabled) {
+            return false;
+        }
+
+        return (m_softLimit > 0 && getBlocksInMemory() > m_softLimit)
+                || (m_minMemorySoft > 0 && GCUtils.getTotalAvailableMemory() < m_minMemorySoft);
+    }
+
+    /**
+     * Number of queued blocks that are stored in memory
+     *
+     * @return
+     */
+    long getBlocksInMemory() {
+        return m_blocksCount.sum() - m_spilledBlocks.sum();
+    }
+
+    /**
+     * Number of queued blocks that are stored on disk
+     *
+     * @return
+     */
+    long getSpilledBlocks() {
+        return m_spilledBlocks.sum();
+    }
+
+    void addSpilledBlocks(int blocks) {
+        m_spilledBlocks.add(blocks);
+    }
+
+    /**
+     * Get the spill file for the job
+     *
+     * @param player
+     * @param jobId
+     * @return
+     */
+    synchronized SpillFile getFile(IPlayerEntry player, int jobId) {
+        final String key = player.getUUID() + "_" + jobId;
+        SpillFile result = m_files.get(key);
+        if (result == null) {
+            result = new SpillFile(this, key, new File(m_folder, key + "_" + m_fileId.incrementAndGet() + EXTENSION));
+            m_files.put(key, result);
+        }
+
+        return result;
+    }
+
+    private synchronized void remove(String key, SpillFile file) {
+        m_files.remove(key, file);
+    }
+
+    /**
+     * Spill file with the stored packed block entries (segments). The file
+     * is removed when all the segments are loaded back.
+     */
+    static final class SpillFile {
+
+        private final BlockSpill m_owner;
+
+        private final String m_key;
+
+        private final File m_file;
+
+        private RandomAccessFile m_raf;
+
+        /**
+         * Number of segments that were not loaded
+         */
+        private int m_segments;
+
+        private boolean m_isClosed;
+
+        private SpillFile(BlockSpill owner, String key, File file) {
+            m_owner = owner;
+            m_key = key;
+            m_file = file;
+        }
+
+        /**
+         * Write new segment
+         *
+         * @param data
+         * @param length
+         * @return the segment offset or -1 if the file is closed
+         * @throws IOException
+         */
+        synchronized long write(byte[] data, int length) throws IOException {
+            if (m_isClosed) {
+                return -1;
+            }
+            if (m_raf == null) {
+                m_raf = new RandomAccessFile(m_file, "rw");
+            }
+
+            final long offset = m_raf.length();
+            m_raf.seek(offset);
+            m_raf.write(data, 0, length);
+            m_segments++;
+
+            return offset;
+        }
+
+        /**
+         * Read the segment
+         *
+         * @param offset
+         * @param length
+         * @return
+         * @throws IOException
+         */
+        synchronized byte[] read(long offset, int length) throws IOException {
+            if (m_raf == null) {
+                throw new IOException("Spill file " + m_file.getName() + " is closed");
+            }
+
+            final byte[] result = new byte[length];
+            m_raf.seek(offset);
+            m_raf.readFully(result);
+
+            return result;
+        }
+
+        /**
+         * Release the segment
+         */
+        synchronized void release() {
+            m_segments--;
+            if (m_segments > 0) {
+                return;
+            }
+
+            m_isClosed = true;
+            m_owner.remove(m_key, this);
+
+            try {
+                if (m_raf != null) {
+                    m_raf.close();
+                }
+            } catch (IOException ex) {
+                ExceptionHelper.printException(ex, "Unable to close spill file " + m_file.getName());
+            }
+            m_raf = null;
+
+            if (m_file.exists() && !m_file.delete()) {
+                log("Warinig: Unable to delete spill file " + m_file.getName());
+            }
+        }
+    }
+}
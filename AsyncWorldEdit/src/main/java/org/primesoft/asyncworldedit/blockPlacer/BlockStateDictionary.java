@@ -0,0 +1,119 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2014, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the immutable block states to int ids. The ids are only valid for the
+ * current server run and are never removed (the number of block states is
+ * limited).
+ *
+ * @author SBPrime
+ */
+final class BlockStateDictionary {
+
+    private final static int INITIAL_CAPACITY = 256;
+
+    /**
+     * Block state to id map
+     */
+    private final Map<BlockStateHolder, Integer> m_ids = new ConcurrentHashMap<>();
+
+    /**
+     * Id to block state map
+     */
+    private volatile BlockStateHolder[] m_states = new BlockStateHolder[INITIAL_CAPACITY];
+
+    /**
+     * Number of registered block states
+     */
+    private int m_count;
+
+    /**
+     * Get (or register) the block state id
+     *
+     * @param state
+     * @return
+     */
+    int getId(BlockStateHolder state) {
+        final Integer id = m_ids.get(state);
+        return id != null ? id : register(state);
+    }
+
+    /**
+     * Get the block state for the id
+     *
+     * @param id
+     * @return
+     */
+    BlockStateHolder get(int id) {
+        return m_states[id];
+    }
+
+    private synchronized int register(BlockStateHolder state) {
+        final Integer id = m_ids.get(state);
+        if (id != null) {
+            return id;
+        }
+
+        BlockStateHolder[] states = m_states;
+        if (m_count == states.length) {
+            states = Arrays.copyOf(states, states.length * 2);
+        }
+
+        states[m_count] = state;
+        m_states = states;
+        m_ids.put(state, m_count);
+
+        return m_count++;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2015, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.primesoft.asyncworldedit.api.IPhysicsWatch;
+import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacerEntry;
+
+/**
+ * Groups the block placer location entries by world and chunk
+ * @author SBPrime
+ */
+final class ChunkBatch {
+
+    private ChunkBatch() {
+    }
+
+    /**
+     * Get the chunk key for the provided location
+     *
+     * @param location
+     * @return
+     */
+    static long chunkKey(BlockVector3 location) {
+        return chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
+    /**
+     * Get the chunk key for the provided chunk coordinates
+     *
+     * @param cx
+     * @param cz
+     * @return
+     */
+    static long chunkKey(int cx, int cz) {
+        return (long) cx << 32 | cz & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Reorder the entries so the entries from the same world and chunk are
+     * placed next to each other. The order of the entries within a chunk is
+     * preserved, chunks are ordered by their first occurrence.
+     *
+     * @param entries
+     */
+    static void groupByChunk(List<IBlockPlacerEntry> entries) {
+        if (entries.size() < 2) {
+            return;
+        }
+
+        final Map<String, Map<Long, List<IBlockPlacerEntry>>> worlds = new LinkedHashMap<>();
+        final List<IBlockPlacerEntry> other = new ArrayList<>();
+        
+        String lastWorld = null;
+        long lastChunk = 0;
+        List<IBlockPlacerEntry> lastBatch = null;
+        boolean sorted = true;
+        
+        for (IBlockPlacerEntry entry : entries) {
+            if (!(entry instanceof IBlockPlacerLocationEntry)) {
+                other.add(entry);
+                continue;
+            }
+
+            IBlockPlacerLocationEntry lEntry = (IBlockPlacerLocationEntry) entry;
+            String worldName = lEntry.getWorldName();
+            BlockVector3 location = lEntry.getLocation();
+            long chunk = location == null ? 0 : chunkKey(location);
+
+            if (lastBatch == null || chunk != lastChunk || !sameWorld(worldName, lastWorld)) {
+                List<IBlockPlacerEntry> batch = worlds
+                        .computeIfAbsent(worldName, w -> new LinkedHashMap<>())
+                        .computeIfAbsent(chunk, c -> new ArrayList<>());
+                
+                sorted &= batch.isEmpty();
+                lastBatch = batch;
+                lastWorld = worldName;
+                lastChunk = chunk;
+            }
+
+            lastBatch.add(entry);
+        }
+
+        if (sorted) {
+            return;
+        }
+
+        entries.clear();
+        for (Map<Long, List<IBlockPlacerEntry>> chunks : worlds.values()) {
+            for (List<IBlockPlacerEntry> batch : chunks.values()) {
+                entries.addAll(batch);
+            }
+        }
+        entries.addAll(other);
+    }
+
+    private static boolean sameWorld(String w1, String w2) {
+        return w1 == null ? w2 == null : w1.equals(w2);
+    }
+
+    /**
+     * Counts the physics watch locations per world and chunk so they can be
+     * released in bulk
+     */
+    static final class ChunkCounter {
+
+        private final Map<String, Map<Long, int[]>> m_worlds = new HashMap<>();
+
+        /**
+         * Add location
+         *
+         * @param worldName
+         * @param location
+         */
+        void add(String worldName, BlockVector3 location) {
+            if (worldName == null || location == null) {
+                return;
+            }
+
+            add(worldName, location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        }
+
+        /**
+         * Add location
+         *
+         * @param worldName
+         * @param cx the chunk X coordinate
+         * @param cz the chunk Z coordinate
+         */
+        void add(String worldName, int cx, int cz) {
+            add(worldName, cx, cz, 1);
+        }
+
+        /**
+         * Add locations
+         *
+         * @param worldName
+         * @param cx the chunk X coordinate
+         * @param cz the chunk Z coordinate
+         * @param count number of locations
+         */
+        void add(String worldName, int cx, int cz, int count) {
+            m_worlds.computeIfAbsent(worldName, w -> new HashMap<>())
+                    .computeIfAbsent(chunkKey(cx, cz), c -> new int[1])[0] += count;
+        }
+
+        /**
+         * Release all the counted locations
+         *
+         * @param physicsWatch
+         */
+        void release(IPhysicsWatch physicsWatch) {
+            for (Map.Entry<String, Map<Long, int[]>> world : m_worlds.entrySet()) {
+                final String worldName = world.getKey();
+                for (Map.Entry<Long, int[]> chunk : world.getValue().entrySet()) {
+                    final long key = chunk.getKey();
+                    physicsWatch.removeLocations(worldName, (int) (key >> 32), (int) key, chunk.getValue()[0]);
+                }
+            }
+
+            m_worlds.clear();
+        }
+    }
+}
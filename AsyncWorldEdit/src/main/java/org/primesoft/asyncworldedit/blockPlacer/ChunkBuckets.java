@@ -0,0 +1,411 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2014, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacer;
+import org.primesoft.asyncworldedit.api.inner.IChunkWatch;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+import org.primesoft.asyncworldedit.playerManager.PlayerView;
+import org.primesoft.asyncworldedit.utils.InOutParam;
+
+/**
+ * Block placer entry that stores the blocks of a single job grouped by
+ * chunk (packed block entries per chunk). The blocks are taken from the
+ * loaded chunk nearest to the player first, then from the loaded chunks in
+ * submission order. Chunks that are not loaded are deferred and processed
+ * last. The order of blocks within a chunk is preserved.
+ *
+ * @author SBPrime
+ */
+final class ChunkBuckets extends BlockPlacerEntry {
+
+    /**
+     * The number of spilled entries read back ahead of the bucket cursor
+     */
+    private final static int READ_AHEAD = 2;
+
+    /**
+     * The buckets by world and chunk key
+     */
+    private final Map<String, Map<Long, Bucket>> m_worlds = new HashMap<>();
+
+    /**
+     * The buckets in submission order (removed buckets are skipped)
+     */
+    private final Queue<Bucket> m_order = new ArrayDeque<>();
+
+    /**
+     * The buckets for chunks that were not loaded
+     */
+    private final Queue<Bucket> m_deferred = new ArrayDeque<>();
+
+    private final IPlayerEntry m_player;
+
+    /**
+     * Number of not processed blocks
+     */
+    private int m_blocks;
+
+    /**
+     * Is the entry sealed (no new blocks can be added)
+     */
+    private boolean m_sealed;
+
+    /**
+     * The last selected bucket near the player
+     */
+    private Bucket m_near;
+
+    /**
+     * The player view used to select the near bucket, the bucket is kept
+     * while the player stays in the same chunk
+     */
+    private PlayerView m_nearView;
+
+    ChunkBuckets(int jobId, IPlayerEntry player) {
+        super(jobId, false);
+
+        m_player = player;
+    }
+
+    /**
+     * Try to add a block to the entry
+     *
+     * @param worldName
+     * @param setter
+     * @param location
+     * @param block
+     * @param replaced the bucket tail replaced by a new entry (it can be
+     * stored in the spill file)
+     * @return false if the entry is sealed
+     */
+    synchronized boolean add(String worldName, IBlockSetter setter,
+            BlockVector3 location, BlockStateHolder block,
+            InOutParam<PackedBlocksEntry> replaced) {
+        if (m_sealed) {
+            return false;
+        }
+
+        final int cx = location.getBlockX() >> 4;
+        final int cz = location.getBlockZ() >> 4;
+        final Bucket bucket = m_worlds.computeIfAbsent(worldName, w -> new HashMap<>())
+                .computeIfAbsent(ChunkBatch.chunkKey(cx, cz), k -> {
+                    final Bucket b = new Bucket(worldName, cx, cz);
+                    m_order.add(b);
+                    return b;
+                });
+
+        final PackedBlocksEntry tail = bucket.m_tail;
+        if (tail == null || !tail.add(worldName, getJobId(), setter, location, block)) {
+            final PackedBlocksEntry entry = new PackedBlocksEntry(worldName, getJobId(), m_player, setter);
+            entry.add(worldName, getJobId(), setter, location, block);
+
+            bucket.m_entries.add(entry);
+            bucket.m_tail = entry;
+
+            if (tail != null) {
+                replaced.setValue(tail);
+            }
+        }
+
+        m_blocks++;
+        return true;
+    }
+
+    /**
+     * Seal the entry, no new blocks are accepted
+     */
+    synchronized void seal() {
+        m_sealed = true;
+    }
+
+    /**
+     * Seal the entry if it is empty
+     *
+     * @return
+     */
+    synchronized boolean trySeal() {
+        if (m_blocks != 0) {
+            return false;
+        }
+
+        m_sealed = true;
+        return true;
+    }
+
+    /**
+     * Number of not processed blocks
+     *
+     * @return
+     */
+    synchronized int getBlockCount() {
+        return m_blocks;
+    }
+
+    /**
+     * Take the next blocks from a single chunk (single consumer)
+     *
+     * @param maxBlocks
+     * @param view the player view, null to use the submission order
+     * @param chunkWatch the chunk watcher, null to ignore the chunk state
+     * @return null if there are no blocks
+     */
+    synchronized PackedBlocksEntry take(int maxBlocks, PlayerView view, IChunkWatch chunkWatch) {
+        final Bucket bucket = select(view, chunkWatch);
+        if (bucket == null) {
+            return null;
+        }
+
+        final PackedBlocksEntry entry = bucket.m_entries.peek();
+        final PackedBlocksEntry result = entry.take(Math.max(1, maxBlocks));
+        if (entry.getBlockCount() == 0) {
+            bucket.m_entries.poll();
+            if (bucket.m_tail == entry) {
+                bucket.m_tail = null;
+            }
+        }
+        PackedBlocksEntry.readAhead(bucket.m_entries, READ_AHEAD);
+
+        final int cnt = result.getBlockCount();
+        m_blocks -= cnt;
+
+        if (bucket.m_entries.isEmpty()) {
+            remove(bucket);
+        }
+
+        return result;
+    }
+
+    /**
+     * Count the physics watch locations of all not processed blocks
+     *
+     * @param counter
+     */
+    synchronized void countLocations(ChunkBatch.ChunkCounter counter) {
+        for (Map<Long, Bucket> chunks : m_worlds.values()) {
+            for (Bucket bucket : chunks.values()) {
+                for (PackedBlocksEntry entry : bucket.m_entries) {
+                    entry.countLocations(counter);
+                }
+            }
+        }
+    }
+
+    /**
+     * Release the spill files of the entry removed from the queue
+     */
+    synchronized void discard() {
+        m_sealed = true;
+        for (Map<Long, Bucket> chunks : m_worlds.values()) {
+            for (Bucket bucket : chunks.values()) {
+                for (PackedBlocksEntry entry : bucket.m_entries) {
+                    entry.discard();
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean process(IBlockPlacer bp) {
+        boolean result = true;
+        PackedBlocksEntry slice;
+        while ((slice = take(Integer.MAX_VALUE, null, null)) != null) {
+            result &= slice.process(bp);
+        }
+
+        return result;
+    }
+
+    /**
+     * Select the bucket to process
+     *
+     * @param view
+     * @param chunkWatch
+     * @return
+     */
+    private Bucket select(PlayerView view, IChunkWatch chunkWatch) {
+        if (view != null) {
+            if (m_near == null || !view.equals(m_nearView) || !isLoaded(m_near, chunkWatch)) {
+                m_near = findNear(view, chunkWatch);
+                m_nearView = view;
+            }
+
+            if (m_near != null) {
+                return m_near;
+            }
+        }
+
+        Bucket bucket;
+        while ((bucket = m_order.peek()) != null) {
+            if (bucket.m_removed) {
+                m_order.poll();
+            } else if (chunkWatch == null
+                    || chunkWatch.isChunkLoaded(bucket.m_cx, bucket.m_cz, bucket.m_worldName)) {
+                return bucket;
+            } else {
+                m_deferred.add(m_order.poll());
+            }
+        }
+
+        while ((bucket = m_deferred.peek()) != null) {
+            if (!bucket.m_removed) {
+                return bucket;
+            }
+
+            m_deferred.poll();
+        }
+
+        return null;
+    }
+
+    /**
+     * Find the nearest loaded bucket within the player view distance. The
+     * chunks are scanned ring by ring around the player, or all the world
+     * buckets are checked if there are less buckets than chunks in view.
+     *
+     * @param view
+     * @param chunkWatch
+     * @return
+     */
+    private Bucket findNear(PlayerView view, IChunkWatch chunkWatch) {
+        final Map<Long, Bucket> chunks = m_worlds.get(view.getWorldName());
+        if (chunks == null || chunks.isEmpty()) {
+            return null;
+        }
+
+        final int viewDistance = view.getViewDistance();
+        final long area = (2L * viewDistance + 1) * (2L * viewDistance + 1);
+
+        if (chunks.size() < area) {
+            Bucket result = null;
+            int resultDistance = Integer.MAX_VALUE;
+            for (Bucket bucket : chunks.values()) {
+                final int distance = view.distance(bucket.m_cx, bucket.m_cz);
+                if (distance <= viewDistance && distance < resultDistance && isLoaded(bucket, chunkWatch)) {
+                    result = bucket;
+                    resultDistance = distance;
+                }
+            }
+
+            return result;
+        }
+
+        final int px = view.getChunkX();
+        final int pz = view.getChunkZ();
+        for (int r = 0; r <= viewDistance; r++) {
+            for (int dx = -r; dx <= r; dx++) {
+                final int step = (dx == -r || dx == r) ? 1 : 2 * r;
+                for (int dz = -r; dz <= r; dz += step) {
+                    final Bucket bucket = chunks.get(ChunkBatch.chunkKey(px + dx, pz + dz));
+                    if (bucket != null && isLoaded(bucket, chunkWatch)) {
+                        return bucket;
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean isLoaded(Bucket bucket, IChunkWatch chunkWatch) {
+        return chunkWatch == null || chunkWatch.isChunkLoaded(bucket.m_cx, bucket.m_cz, bucket.m_worldName);
+    }
+
+    /**
+     * Remove the empty bucket
+     *
+     * @param bucket
+     */
+    private void remove(Bucket bucket) {
+        bucket.m_removed = true;
+
+        final Map<Long, Bucket> chunks = m_worlds.get(bucket.m_worldName);
+        chunks.remove(ChunkBatch.chunkKey(bucket.m_cx, bucket.m_cz));
+        if (chunks.isEmpty()) {
+            m_worlds.remove(bucket.m_worldName);
+        }
+
+        if (m_near == bucket) {
+            m_near = null;
+            m_nearView = null;
+        }
+    }
+
+    /**
+     * The blocks of a single chunk
+     */
+    private static final class Bucket {
+
+        private final String m_worldName;
+
+        private final int m_cx;
+
+        private final int m_cz;
+
+        private final Queue<PackedBlocksEntry> m_entries = new ArrayDeque<>();
+
+        /**
+         * The packed entry that accepts new blocks
+         */
+        private PackedBlocksEntry m_tail;
+
+        private boolean m_removed;
+
+        Bucket(String worldName, int cx, int cz) {
+            m_worldName = worldName;
+            m_cx = cx;
+            m_cz = cz;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2015, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.primesoft.asyncworldedit.api.configuration.IPermissionGroup;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+
+/**
+ * Deficit round robin scheduler for the block placer queues.
+ * Each permission group gets a quantum proportional to its weight, the group
+ * quantum is split equally between the group players. The player deficit
+ * (credit) is kept between the block placer runs, players with the shortest
+ * remaining queue (minus credit) are served first.
+ *
+ * @author SBPrime
+ */
+final class FairQueueScheduler {
+
+    /**
+     * Maximum credit a player can accumulate (number of quantums)
+     */
+    private final static int MAX_CREDIT = 4;
+
+    /**
+     * The player flow
+     */
+    static final class Flow {
+
+        /**
+         * The player
+         */
+        private final IPlayerEntry m_player;
+
+        /**
+         * The player queue
+         */
+        private BlockPlacerPlayer m_entry;
+
+        /**
+         * The player group for the current run
+         */
+        private BlockPlacerGroup m_group;
+
+        /**
+         * The player quantum
+         */
+        private int m_quantum;
+
+        /**
+         * The deficit counter (number of blocks the player can place)
+         */
+        private long m_deficit;
+
+        /**
+         * Last run the flow was active
+         */
+        private int m_runNumber;
+
+        /**
+         * The flow priority (remaining work minus the credit) for the current run
+         */
+        private long m_priority;
+
+        private Flow(IPlayerEntry player) {
+            m_player = player;
+        }
+
+        IPlayerEntry getPlayer() {
+            return m_player;
+        }
+
+        BlockPlacerPlayer getEntry() {
+            return m_entry;
+        }
+
+        BlockPlacerGroup getGroup() {
+            return m_group;
+        }
+
+        long getDeficit() {
+            return m_deficit;
+        }
+
+        /**
+         * Start new round, add the quantum to the deficit counter
+         */
+        void addQuantum() {
+            m_deficit = Math.min(m_deficit + m_quantum, (long) m_quantum * MAX_CREDIT);
+        }
+
+        /**
+         * Consume the deficit
+         *
+         * @param blocks
+         */
+        void consume(int blocks) {
+            m_deficit = Math.max(0, m_deficit - blocks);
+        }
+
+        /**
+         * The queue is empty, the credit is lost
+         */
+        void reset() {
+            m_deficit = 0;
+        }
+
+        private long getPriority() {
+            return m_priority;
+        }
+    }
+
+    /**
+     * The per player flows
+     */
+    private final Map<IPlayerEntry, Flow> m_flows = new HashMap<>();
+
+    /**
+     * The active flows grouped by permission group (reused between runs)
+     */
+    private final Map<IPermissionGroup, List<Flow>> m_groups = new HashMap<>();
+
+    /**
+     * The base quantum
+     */
+    private final int m_quantum;
+
+    /**
+     * The run number
+     */
+    private int m_runNumber;
+
+    /**
+     * Create new instance of the scheduler
+     *
+     * @param quantum number of blocks a group with weight 1 can place in one round
+     */
+    FairQueueScheduler(int quantum) {
+        m_quantum = Math.max(1, quantum);
+    }
+
+    /**
+     * Prepare the flows for the block placer run
+     *
+     * @param players the player queues
+     * @param budget the block placer budget
+     * @return the active flows ordered by priority
+     */
+    List<Flow> prepare(Map<IPlayerEntry, BlockPlacerPlayer> players, AdaptiveBudget budget) {
+        m_runNumber++;
+
+        for (List<Flow> flows : m_groups.values()) {
+            flows.clear();
+        }
+
+        for (Map.Entry<IPlayerEntry, BlockPlacerPlayer> entry : players.entrySet()) {
+            IPlayerEntry player = entry.getKey();
+            Flow flow = m_flows.computeIfAbsent(player, Flow::new);
+            flow.m_entry = entry.getValue();
+            flow.m_runNumber = m_runNumber;
+
+            m_groups.computeIfAbsent(player.getPermissionGroup(), g -> new ArrayList<>()).add(flow);
+        }
+
+        m_flows.values().removeIf(f -> f.m_runNumber != m_runNumber);
+        m_groups.values().removeIf(List::isEmpty);
+
+        final List<Flow> result = new ArrayList<>(m_flows.size());
+        for (Map.Entry<IPermissionGroup, List<Flow>> entry : m_groups.entrySet()) {
+            IPermissionGroup permissionGroup = entry.getKey();
+            List<Flow> flows = entry.getValue();
+
+            IPlayerEntry[] groupPlayers = new IPlayerEntry[flows.size()];
+            for (int i = 0; i < groupPlayers.length; i++) {
+                groupPlayers[i] = flows.get(i).m_player;
+            }
+
+            BlockPlacerGroup group = new BlockPlacerGroup(permissionGroup, groupPlayers, budget);
+            int weight = permissionGroup == null ? 1 : Math.max(1, permissionGroup.getRendererWeight());
+            int quantum = Math.max(1, m_quantum * weight / flows.size());
+
+            for (Flow flow : flows) {
+                flow.m_group = group;
+                flow.m_quantum = quantum;
+                flow.m_priority = flow.m_entry.getQueueSize() - flow.m_deficit;
+                result.add(flow);
+            }
+        }
+
+        result.sort(Comparator.comparingLong(Flow::getPriority));
+        return result;
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2014, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacerEntry;
+import org.primesoft.asyncworldedit.api.inner.IChunkWatch;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+import org.primesoft.asyncworldedit.playerManager.PlayerView;
+import org.primesoft.asyncworldedit.utils.InOutParam;
+
+/**
+ * The player queue segment that contains the entries of a single job
+ * (multiple producers, single consumer). Entries are added under the
+ * segment lock so a closed segment never receives new entries.
+ *
+ * @author SBPrime
+ */
+final class JobQueue {
+
+    /**
+     * Number of entries checked for spilled blocks to read ahead
+     */
+    private final static int READ_AHEAD = 3;
+
+    private final int m_jobId;
+
+    private final Queue<IBlockPlacerEntry> m_queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of blocks in the segment
+     */
+    private final AtomicInteger m_blocks = new AtomicInteger(0);
+
+    /**
+     * The last packed blocks entry added to the segment, new blocks are
+     * appended to it as long as no other entry was added
+     */
+    private PackedBlocksEntry m_packedTail;
+
+    /**
+     * The last chunk buckets entry added to the segment (proximity order),
+     * new blocks are added to it as long as no other entry was added
+     */
+    private ChunkBuckets m_bucketsTail;
+
+    /**
+     * Is the segment closed (removed from the player queue)
+     */
+    private volatile boolean m_isClosed;
+
+    JobQueue(int jobId) {
+        m_jobId = jobId;
+    }
+
+    int getJobId() {
+        return m_jobId;
+    }
+
+    /**
+     * Is the segment closed, closed segments do not accept new entries
+     *
+     * @return
+     */
+    boolean isClosed() {
+        return m_isClosed;
+    }
+
+    /**
+     * Number of blocks in the segment
+     *
+     * @return
+     */
+    int getBlockCount() {
+        return m_blocks.get();
+    }
+
+    /**
+     * Add entry to the segment
+     *
+     * @param entry
+     * @return false if the segment is closed
+     */
+    synchronized boolean offer(IBlockPlacerEntry entry) {
+        if (m_isClosed) {
+            return false;
+        }
+
+        m_blocks.addAndGet(BlockPlacerPlayer.getBlockCount(entry));
+        m_queue.add(entry);
+        m_packedTail = null;
+        m_bucketsTail = null;
+        return true;
+    }
+
+    /**
+     * Add block to the segment using the packed block entries. When the block
+     * starts a new entry the previous tail is stored in the spill file, the
+     * spill file is written outside of the segment lock.
+     *
+     * @param player
+     * @param worldName
+     * @param location
+     * @param block
+     * @param setter
+     * @param spill the overflow tier (null if not available)
+     * @param spillCounter the player spilled blocks counter
+     * @param proximity group the blocks by chunk (proximity order)
+     * @return false if the segment is closed
+     */
+    boolean offerBlock(IPlayerEntry player, String worldName,
+            BlockVector3 location, BlockStateHolder block, IBlockSetter setter,
+            BlockSpill spill, AtomicInteger spillCounter, boolean proximity) {
+        final InOutParam<PackedBlocksEntry> replaced = InOutParam.Out();
+        if (!addBlock(player, worldName, location, block, setter, proximity, replaced)) {
+            return false;
+        }
+
+        if (replaced.isSet() && spill != null && spill.shouldSpill()) {
+            replaced.getValue().spill(spill, spillCounter);
+        }
+        return true;
+    }
+
+    /**
+     * Add block to the segment using the packed block entries
+     *
+     * @param player
+     * @param worldName
+     * @param location
+     * @param block
+     * @param setter
+     * @param proximity group the blocks by chunk (proximity order)
+     * @param replaced the packed entry replaced by a new tail
+     * @return false if the segment is closed
+     */
+    private synchronized boolean addBlock(IPlayerEntry player, String worldName,
+            BlockVector3 location, BlockStateHolder block, IBlockSetter setter,
+            boolean proximity, InOutParam<PackedBlocksEntry> replaced) {
+        if (m_isClosed) {
+            return false;
+        }
+
+        m_blocks.incrementAndGet();
+        if (proximity) {
+            m_packedTail = null;
+            
+            final ChunkBuckets buckets = m_bucketsTail;
+            if (buckets != null && buckets.add(worldName, setter, location, block, replaced)) {
+                return true;
+            }
+
+            final ChunkBuckets entry = new ChunkBuckets(m_jobId, player);
+            entry.add(worldName, setter, location, block, replaced);
+
+            m_queue.add(entry);
+            m_bucketsTail = entry;
+            return true;
+        }
+
+        m_bucketsTail = null;
+        final PackedBlocksEntry tail = m_packedTail;
+        if (tail != null && tail.add(worldName, m_jobId, setter, location, block)) {
+            return true;
+        }
+
+        final PackedBlocksEntry entry = new PackedBlocksEntry(worldName, m_jobId, player, setter);
+        entry.add(worldName, m_jobId, setter, location, block);
+
+        m_queue.add(entry);
+        m_packedTail = entry;
+
+        if (tail != null) {
+            replaced.setValue(tail);
+        }
+        return true;
+    }
+
+    /**
+     * Get the next entry without removing it (single consumer)
+     *
+     * @return
+     */
+    IBlockPlacerEntry peek() {
+        return m_queue.peek();
+    }
+
+    /**
+     * Get the next entry (single consumer). Packed block entries are
+     * returned in slices of up to maxBlocks blocks.
+     *
+     * @param maxBlocks
+     * @return
+     */
+    IBlockPlacerEntry poll(int maxBlocks) {
+        return poll(maxBlocks, null, null);
+    }
+
+    /**
+     * Get the next entry (single consumer). Packed block entries are
+     * returned in slices of up to maxBlocks blocks, the chunk buckets
+     * entries are returned in slices from the chunk nearest to the player.
+     *
+     * @param maxBlocks
+     * @param view the player view (null if not available)
+     * @param chunkWatch the chunk watcher (null if not available)
+     * @return
+     */
+    IBlockPlacerEntry poll(int maxBlocks, PlayerView view, IChunkWatch chunkWatch) {
+        IBlockPlacerEntry head = m_queue.peek();
+        while (head instanceof ChunkBuckets) {
+            final ChunkBuckets buckets = (ChunkBuckets) head;
+            final PackedBlocksEntry result = buckets.take(maxBlocks, view, chunkWatch);
+            if (result != null) {
+                m_blocks.addAndGet(-result.getBlockCount());
+                return result;
+            }
+
+            if (!buckets.trySeal()) {
+                return null;
+            }
+
+            m_queue.poll();
+            head = m_queue.peek();
+        }
+        
+        if (head instanceof PackedBlocksEntry) {
+            final PackedBlocksEntry packed = (PackedBlocksEntry) head;
+            final PackedBlocksEntry result = packed.take(Math.max(1, maxBlocks));
+            if (packed.getBlockCount() == 0) {
+                m_queue.poll();
+            }
+            PackedBlocksEntry.readAhead(m_queue, READ_AHEAD);
+
+            m_blocks.addAndGet(-result.getBlockCount());
+            return result;
+        }
+
+        final IBlockPlacerEntry result = m_queue.poll();
+        if (result != null) {
+            m_blocks.decrementAndGet();
+        }
+
+        return result;
+    }
+
+    /**
+     * Close the segment if it is empty
+     *
+     * @return
+     */
+    synchronized boolean tryClose() {
+        if (m_blocks.get() != 0) {
+            return false;
+        }
+
+        m_isClosed = true;
+        return true;
+    }
+
+    /**
+     * Close the segment, closed segments do not accept new entries
+     */
+    synchronized void close() {
+        m_isClosed = true;
+        m_packedTail = null;
+        m_bucketsTail = null;
+    }
+
+    /**
+     * Get the segment entries, should be used only for closed segments
+     *
+     * @return
+     */
+    Iterable<IBlockPlacerEntry> getEntries() {
+        return m_queue;
+    }
+
+    /**
+     * Copy the segment entries
+     *
+     * @param result
+     */
+    void copyTo(List<IBlockPlacerEntry> result) {
+        result.addAll(m_queue);
+    }
+}
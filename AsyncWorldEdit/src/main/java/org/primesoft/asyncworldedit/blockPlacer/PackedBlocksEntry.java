@@ -0,0 +1,648 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2014, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.primesoft.asyncworldedit.api.IPhysicsWatch;
+import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacer;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+import org.primesoft.asyncworldedit.utils.ExceptionHelper;
+import org.primesoft.asyncworldedit.utils.io.VarInt;
+
+/**
+ * Block placer entry that stores multiple block changes of a single job
+ * in primitive arrays (packed position and block state id). Blocks with
+ * NBT data are stored in a side table.
+ *
+ * The entry accepts new blocks until it is sealed, the block placer seals
+ * the entry when it starts processing it and takes the blocks in slices.
+ * Sealed entries can be stored in a spill file, the blocks are read back on
+ * a background thread ahead of the block placer.
+ *
+ * @author SBPrime
+ */
+public class PackedBlocksEntry extends BlockPlacerEntry {
+
+    private final static int INITIAL_CAPACITY = 64;
+
+    /**
+     * Maximum number of blocks stored in one entry
+     */
+    final static int MAX_BLOCKS = 4096;
+
+    /**
+     * The block state ids
+     */
+    private final static BlockStateDictionary s_dictionary = new BlockStateDictionary();
+
+    private final String m_worldName;
+
+    private final IPlayerEntry m_player;
+
+    private final IBlockSetter m_setter;
+
+    /**
+     * The packed block positions
+     */
+    private long[] m_positions;
+
+    /**
+     * The block state ids, negative values are side table indices
+     */
+    private int[] m_states;
+
+    /**
+     * Blocks that can not be stored as block state ids (NBT data)
+     */
+    private List<BlockStateHolder> m_sideTable;
+
+    /**
+     * First not processed block
+     */
+    private int m_start;
+
+    /**
+     * Number of stored blocks
+     */
+    private int m_end;
+
+    /**
+     * Is the entry sealed (no new blocks can be added)
+     */
+    private boolean m_sealed;
+
+    /**
+     * Did the block placer start processing the entry
+     */
+    private boolean m_taken;
+
+    /**
+     * Is the entry being stored in the spill file
+     */
+    private boolean m_spilling;
+
+    /**
+     * Was the entry removed from the queue
+     */
+    private boolean m_discarded;
+
+    /**
+     * The spill file, null if the blocks are stored in memory
+     */
+    private BlockSpill.SpillFile m_spillFile;
+
+    private long m_spillOffset;
+
+    private int m_spillLength;
+
+    private BlockSpill m_spill;
+
+    /**
+     * The player spilled blocks counter
+     */
+    private AtomicInteger m_spillCounter;
+
+    /**
+     * The chunks of the spilled blocks (chunk key)
+     */
+    private long[] m_spillChunks;
+
+    /**
+     * Number of spilled blocks in each chunk
+     */
+    private int[] m_spillChunkBlocks;
+
+    /**
+     * The spilled blocks read ahead of the block placer
+     */
+    private CompletableFuture<Segment> m_readAhead;
+
+    public PackedBlocksEntry(String worldName, int jobId,
+            IPlayerEntry player, IBlockSetter setter) {
+        super(jobId, false);
+
+        m_worldName = worldName;
+        m_player = player;
+        m_setter = setter;
+        m_positions = new long[INITIAL_CAPACITY];
+        m_states = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Create a slice of the sealed entry
+     *
+     * @param parent
+     * @param start
+     * @param end
+     */
+    private PackedBlocksEntry(PackedBlocksEntry parent, int start, int end) {
+        super(parent.getJobId(), false);
+
+        m_worldName = parent.m_worldName;
+        m_player = parent.m_player;
+        m_setter = parent.m_setter;
+        m_positions = parent.m_positions;
+        m_states = parent.m_states;
+        m_sideTable = parent.m_sideTable;
+        m_start = start;
+        m_end = end;
+        m_sealed = true;
+        m_taken = true;
+    }
+
+    public String getWorldName() {
+        return m_worldName;
+    }
+
+    /**
+     * Try to add a block to the entry
+     *
+     * @param worldName
+     * @param jobId
+     * @param setter
+     * @param location
+     * @param block
+     * @return false if the entry is sealed, full or belongs to other job
+     */
+    synchronized boolean add(String worldName, int jobId, IBlockSetter setter,
+            BlockVector3 location, BlockStateHolder block) {
+        if (m_sealed || m_end >= MAX_BLOCKS
+                || getJobId() != jobId || m_setter != setter
+                || !m_worldName.equals(worldName)) {
+            return false;
+        }
+
+        if (m_end == m_positions.length) {
+            final int capacity = Math.min(MAX_BLOCKS, m_positions.length * 2);
+            m_positions = Arrays.copyOf(m_positions, capacity);
+            m_states = Arrays.copyOf(m_states, capacity);
+        }
+
+        m_positions[m_end] = pack(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        m_states[m_end] = encode(block);
+        m_end++;
+
+        return true;
+    }
+
+    /**
+     * Seal the entry, no new blocks are accepted
+     */
+    synchronized void seal() {
+        m_sealed = true;
+    }
+
+    /**
+     * Number of not processed blocks
+     *
+     * @return
+     */
+    synchronized int getBlockCount() {
+        return m_end - m_start;
+    }
+
+    /**
+     * Seal the entry and take the next blocks (single consumer)
+     *
+     * @param maxBlocks
+     * @return
+     */
+    synchronized PackedBlocksEntry take(int maxBlocks) {
+        m_sealed = true;
+        m_taken = true;
+        restore();
+
+        final int start = m_start;
+        final int end = (int) Math.min(m_end, (long) start + maxBlocks);
+        m_start = end;
+
+        return new PackedBlocksEntry(this, start, end);
+    }
+
+    /**
+     * Count the physics watch locations of all not processed blocks
+     *
+     * @param counter
+     */
+    synchronized void countLocations(ChunkBatch.ChunkCounter counter) {
+        if (m_spillFile != null) {
+            for (int i = 0; i < m_spillChunks.length; i++) {
+                final long key = m_spillChunks[i];
+                counter.add(m_worldName, (int) (key >> 32), (int) key, m_spillChunkBlocks[i]);
+            }
+            return;
+        }
+        if (m_positions == null) {
+            return;
+        }
+        
+        for (int i = m_start; i < m_end; i++) {
+            final long position = m_positions[i];
+            counter.add(m_worldName, unpackX(position) >> 4, unpackZ(position) >> 4);
+        }
+    }
+
+    @Override
+    public boolean process(IBlockPlacer bp) {
+        final IPhysicsWatch physicsWatch = ((BlockPlacer) bp).getPhysicsWatcher();
+        final int start;
+        final int end;
+        synchronized (this) {
+            m_sealed = true;
+            m_taken = true;
+            restore();
+            
+            start = m_start;
+            end = m_end;
+            m_start = end;
+        }
+
+        if (m_positions == null) {
+            return false;
+        }
+
+        boolean result = true;
+        int cx = 0;
+        int cz = 0;
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            final long position = m_positions[i];
+            final int x = unpackX(position) >> 4;
+            final int z = unpackZ(position) >> 4;
+            if (count > 0 && (x != cx || z != cz)) {
+                physicsWatch.removeLocations(m_worldName, cx, cz, count);
+                count = 0;
+            }
+            cx = x;
+            cz = z;
+            count++;
+
+            try {
+                result &= m_setter.setBlock(m_player, unpack(position), decode(m_states[i]));
+            } catch (Exception ex) {
+                ExceptionHelper.printException(ex, "Error while processing extent function.");
+                result = false;
+            }
+        }
+
+        if (count > 0) {
+            physicsWatch.removeLocations(m_worldName, cx, cz, count);
+        }
+
+        return result;
+    }
+
+    /**
+     * Seal the entry and store the blocks in the job spill file. Entries
+     * that are processed by the block placer are not stored. The blocks are
+     * encoded and written without holding the entry lock, if the block
+     * placer takes the entry in the meantime the stored segment is released.
+     *
+     * @param spill
+     * @param spillCounter the player spilled blocks counter
+     * @return number of blocks stored on disk
+     */
+    int spill(BlockSpill spill, AtomicInteger spillCounter) {
+        final long[] positions;
+        final int[] states;
+        final int count;
+        synchronized (this) {
+            if (m_taken || m_discarded || m_spilling || m_spillFile != null || m_end == 0) {
+                return 0;
+            }
+            m_sealed = true;
+            m_spilling = true;
+
+            positions = m_positions;
+            states = m_states;
+            count = m_end;
+        }
+
+        BlockSpill.SpillFile file = null;
+        long offset = -1;
+        byte[] data = null;
+        long[] chunks = null;
+        int[] chunkBlocks = null;
+        int chunkCount = 0;
+        try {
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream(count * 4);
+            try (DataOutputStream out = new DataOutputStream(buffer)) {
+                VarInt.writeInt(out, count);
+
+                int x = 0, y = 0, z = 0;
+                for (int i = 0; i < count; i++) {
+                    final long position = positions[i];
+                    final int nx = unpackX(position);
+                    final int ny = unpackY(position);
+                    final int nz = unpackZ(position);
+
+                    VarInt.writeSignedInt(out, nx - x);
+                    VarInt.writeSignedInt(out, ny - y);
+                    VarInt.writeSignedInt(out, nz - z);
+                    VarInt.writeSignedInt(out, states[i]);
+
+                    x = nx;
+                    y = ny;
+                    z = nz;
+                }
+            }
+            data = buffer.toByteArray();
+
+            chunks = new long[count];
+            for (int i = 0; i < count; i++) {
+                final long position = positions[i];
+                chunks[i] = ChunkBatch.chunkKey(unpackX(position) >> 4, unpackZ(position) >> 4);
+            }
+            Arrays.sort(chunks);
+
+            chunkBlocks = new int[count];
+            for (int i = 0; i < count; i++) {
+                if (i == 0 || chunks[i] != chunks[chunkCount - 1]) {
+                    chunks[chunkCount++] = chunks[i];
+                }
+                chunkBlocks[chunkCount - 1]++;
+            }
+
+            do {
+                file = spill.getFile(m_player, getJobId());
+                offset = file.write(data, data.length);
+            } while (offset < 0);
+        } catch (IOException ex) {
+            ExceptionHelper.printException(ex, "Unable to store the blocks in the spill file.");
+            file = null;
+        }
+
+        synchronized (this) {
+            m_spilling = false;
+            if (file == null) {
+                return 0;
+            }
+            if (m_taken || m_discarded) {
+                file.release();
+                return 0;
+            }
+
+            m_spillFile = file;
+            m_spillOffset = offset;
+            m_spillLength = data.length;
+            m_positions = null;
+            m_states = null;
+            m_spill = spill;
+            m_spillCounter = spillCounter;
+            m_spillChunks = Arrays.copyOf(chunks, chunkCount);
+            m_spillChunkBlocks = Arrays.copyOf(chunkBlocks, chunkCount);
+
+            spill.addSpilledBlocks(count);
+            spillCounter.addAndGet(count);
+        }
+
+        return count;
+    }
+
+    /**
+     * Release the spill file segment of the entry removed from the queue,
+     * the blocks are dropped
+     */
+    synchronized void discard() {
+        m_sealed = true;
+        m_discarded = true;
+        releaseSpill();
+    }
+
+    /**
+     * Start reading the spilled blocks on the spill reader thread
+     */
+    synchronized void readAhead() {
+        if (m_spillFile == null || m_readAhead != null) {
+            return;
+        }
+
+        final BlockSpill.SpillFile file = m_spillFile;
+        final long offset = m_spillOffset;
+        final int length = m_spillLength;
+        m_readAhead = CompletableFuture.supplyAsync(() -> {
+            try {
+                return read(file, offset, length);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }, m_spill.getReader());
+    }
+
+    /**
+     * Start reading the spilled blocks of the first entries
+     *
+     * @param entries
+     * @param count number of entries to check
+     */
+    static void readAhead(Iterable<?> entries, int count) {
+        final Iterator<?> it = entries.iterator();
+        for (int i = 0; i < count && it.hasNext(); i++) {
+            final Object entry = it.next();
+            if (entry instanceof PackedBlocksEntry) {
+                ((PackedBlocksEntry) entry).readAhead();
+            }
+        }
+    }
+
+    /**
+     * Load the blocks from the spill file. If the blocks can not be
+     * loaded they are dropped and the physics watch locations are released.
+     */
+    private void restore() {
+        if (m_spillFile == null) {
+            return;
+        }
+
+        try {
+            final Segment segment = m_readAhead != null
+                    ? m_readAhead.join()
+                    : read(m_spillFile, m_spillOffset, m_spillLength);
+
+            m_positions = segment.m_positions;
+            m_states = segment.m_states;
+        } catch (IOException | CompletionException ex) {
+            ExceptionHelper.printException(ex, "Unable to load the spilled blocks, blocks dropped.");
+            for (int i = 0; i < m_spillChunks.length; i++) {
+                final long key = m_spillChunks[i];
+                m_spill.getPhysicsWatcher().removeLocations(m_worldName,
+                        (int) (key >> 32), (int) key, m_spillChunkBlocks[i]);
+            }
+        } finally {
+            releaseSpill();
+        }
+    }
+
+    /**
+     * Release the spill file segment and remove the blocks from the spilled
+     * blocks counters
+     */
+    private void releaseSpill() {
+        if (m_spillFile == null) {
+            return;
+        }
+
+        m_spillFile.release();
+        m_spillFile = null;
+        m_readAhead = null;
+        m_spillChunks = null;
+        m_spillChunkBlocks = null;
+
+        m_spill.addSpilledBlocks(-m_end);
+        m_spillCounter.addAndGet(-m_end);
+    }
+
+    /**
+     * Read and decode the spilled blocks
+     */
+    private static Segment read(BlockSpill.SpillFile file, long offset, int length) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                file.read(offset, length)))) {
+            final int count = VarInt.readInt(in);
+            final long[] positions = new long[count];
+            final int[] states = new int[count];
+
+            int x = 0, y = 0, z = 0;
+            for (int i = 0; i < count; i++) {
+                x += VarInt.readSignedInt(in);
+                y += VarInt.readSignedInt(in);
+                z += VarInt.readSignedInt(in);
+
+                positions[i] = pack(x, y, z);
+                states[i] = VarInt.readSignedInt(in);
+            }
+
+            return new Segment(positions, states);
+        }
+    }
+
+    private int encode(BlockStateHolder block) {
+        if (block instanceof BlockState) {
+            return s_dictionary.getId(block);
+        }
+        if (block instanceof BaseBlock && !((BaseBlock) block).hasNbtData()) {
+            return s_dictionary.getId(block.toImmutableState());
+        }
+
+        if (m_sideTable == null) {
+            m_sideTable = new ArrayList<>();
+        }
+        m_sideTable.add(block);
+
+        return -m_sideTable.size();
+    }
+
+    private BlockStateHolder decode(int id) {
+        return id >= 0 ? s_dictionary.get(id) : m_sideTable.get(-id - 1);
+    }
+
+    /**
+     * Pack the block position (26 bits for x and z, 12 bits for y)
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return
+     */
+    static long pack(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFF) << 38 | ((long) z & 0x3FFFFFF) << 12 | (y & 0xFFF);
+    }
+
+    /**
+     * Unpack the block position
+     *
+     * @param packed
+     * @return
+     */
+    static BlockVector3 unpack(long packed) {
+        return BlockVector3.at(unpackX(packed), unpackY(packed), unpackZ(packed));
+    }
+
+    private static int unpackX(long packed) {
+        return (int) (packed >> 38);
+    }
+
+    private static int unpackY(long packed) {
+        return (int) (packed << 52 >> 52);
+    }
+
+    private static int unpackZ(long packed) {
+        return (int) (packed << 26 >> 38);
+    }
+
+    /**
+     * The blocks loaded from the spill file
+     */
+    private static final class Segment {
+
+        private final long[] m_positions;
+
+        private final int[] m_states;
+
+        private Segment(long[] positions, int[] states) {
+            m_positions = positions;
+            m_states = states;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2016, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockshub;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The chunk granular access decision cache. The decisions are stored per
+ * player, world and chunk for a short time.
+ *
+ * @author SBPrime
+ */
+final class AccessCache {
+
+    static final int HAS_ACCESS = 0;
+    static final int HAS_ACCESS_DC = 1;
+    static final int CAN_PLACE = 2;
+    static final int CAN_PLACE_DC = 3;
+
+    /**
+     * Number of cached decisions per player and world after which the expired
+     * entries are removed
+     */
+    private static final int PURGE_SIZE = 4096;
+
+    private final Map<UUID, Map<String, Map<Long, Long>>> m_entries = new ConcurrentHashMap<>();
+
+    private static long encode(int cx, int cz, int kind) {
+        return ((long) cx & 0xFFFFFFFL) << 36 | ((long) cz & 0xFFFFFFFL) << 8 | kind;
+    }
+
+    /**
+     * Get the cached decision or compute a new one
+     *
+     * @param player the player UUID
+     * @param worldName
+     * @param cx
+     * @param cz
+     * @param kind the kind of the access check
+     * @param ttl the decision time to live (ms)
+     * @param check the access check
+     * @return
+     */
+    boolean get(UUID player, String worldName, int cx, int cz, int kind, long ttl, BooleanSupplier check) {
+        final Map<Long, Long> world = m_entries
+                .computeIfAbsent(player, _p -> new ConcurrentHashMap<>())
+                .computeIfAbsent(worldName, _w -> new ConcurrentHashMap<>());
+        final long key = encode(cx, cz, kind);
+        final long now = System.currentTimeMillis();
+
+        final Long entry = world.get(key);
+        if (entry != null && (entry >> 1) > now) {
+            return (entry & 1) != 0;
+        }
+
+        final boolean result = check.getAsBoolean();
+        if (world.size() >= PURGE_SIZE) {
+            world.values().removeIf(e -> (e >> 1) <= now);
+        }
+        world.put(key, (now + ttl) << 1 | (result ? 1 : 0));
+
+        return result;
+    }
+
+    /**
+     * Remove all the player decisions
+     *
+     * @param player
+     */
+    void invalidate(UUID player) {
+        m_entries.remove(player);
+    }
+
+    /**
+     * Remove all the decisions for the chunk
+     *
+     * @param worldName
+     * @param cx
+     * @param cz
+     */
+    void invalidate(String worldName, int cx, int cz) {
+        for (Map<String, Map<Long, Long>> playerEntries : m_entries.values()) {
+            final Map<Long, Long> world = playerEntries.get(worldName);
+            if (world == null) {
+                continue;
+            }
+
+            for (int kind = HAS_ACCESS; kind <= CAN_PLACE_DC; kind++) {
+                world.remove(encode(cx, cz, kind));
+            }
+        }
+    }
+
+    void clear() {
+        m_entries.clear();
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2016, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockshub;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import static org.primesoft.asyncworldedit.LoggerProvider.log;
+import org.primesoft.asyncworldedit.api.IWorld;
+import org.primesoft.asyncworldedit.api.inner.IBlockLogEntry;
+import org.primesoft.asyncworldedit.api.inner.IBlocksHubIntegration;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+import org.primesoft.asyncworldedit.utils.ExceptionHelper;
+
+/**
+ * The asynchronous block logger. The block changes are stored in a lock free
+ * ring buffer and passed to the integration in batches by the logger thread.
+ * When the ring buffer is full the block is logged on the calling thread.
+ *
+ * @author SBPrime
+ */
+final class BlockLogger {
+
+    /**
+     * The ring buffer size (power of 2)
+     */
+    private final static int CAPACITY = 1 << 16;
+
+    private final static int MASK = CAPACITY - 1;
+
+    /**
+     * Maximum number of entries passed to the integration at once
+     */
+    private final static int BATCH_SIZE = 512;
+
+    /**
+     * Minimum time between the logger overflow warnings (ms)
+     */
+    private final static long WARN_INTERVAL = 60000;
+
+    private final AtomicReferenceArray<IBlockLogEntry> m_slots = new AtomicReferenceArray<>(CAPACITY);
+
+    /**
+     * The next slot to write (producers)
+     */
+    private final AtomicLong m_head = new AtomicLong();
+
+    /**
+     * The next slot to read (logger thread)
+     */
+    private final AtomicLong m_tail = new AtomicLong();
+
+    private final Supplier<IBlocksHubIntegration> m_integrator;
+
+    private final Object m_waitMutex = new Object();
+
+    /**
+     * Number of blocks logged by the logger thread
+     */
+    private final LongAdder m_logged = new LongAdder();
+
+    /**
+     * Number of blocks logged on the calling thread (ring buffer full)
+     */
+    private final LongAdder m_overflow = new LongAdder();
+
+    private volatile long m_maxPending;
+
+    private volatile long m_lastWarn;
+
+    private volatile boolean m_isRunning;
+
+    BlockLogger(Supplier<IBlocksHubIntegration> integrator) {
+        m_integrator = integrator;
+    }
+
+    /**
+     * Number of blocks waiting for the logger thread
+     *
+     * @return
+     */
+    long getPending() {
+        return m_head.get() - m_tail.get();
+    }
+
+    /**
+     * The highest number of pending blocks
+     *
+     * @return
+     */
+    long getMaxPending() {
+        return m_maxPending;
+    }
+
+    long getLoggedCount() {
+        return m_logged.sum();
+    }
+
+    /**
+     * Number of blocks that were logged on the calling thread because the
+     * logger was not able to keep up
+     *
+     * @return
+     */
+    long getOverflowCount() {
+        return m_overflow.sum();
+    }
+
+    /**
+     * Log the block change
+     *
+     * @param playerEntry
+     * @param world
+     * @param location
+     * @param oldBlock
+     * @param newBlock
+     * @param dc
+     */
+    void logBlock(IPlayerEntry playerEntry, IWorld world, BlockVector3 location,
+            BlockStateHolder oldBlock, BlockStateHolder newBlock, boolean dc) {
+        if (!offer(new BlockLogEntry(playerEntry, world, location, oldBlock, newBlock, dc))) {
+            m_overflow.increment();
+            warnOverflow();
+            m_integrator.get().logBlock(playerEntry, world, location, oldBlock, newBlock, dc);
+            return;
+        }
+
+        if (!m_isRunning) {
+            start();
+        }
+    }
+
+    /**
+     * Stop the logger thread and log all the pending blocks
+     */
+    void stop() {
+        synchronized (m_waitMutex) {
+            m_isRunning = false;
+            m_waitMutex.notifyAll();
+        }
+
+        final List<IBlockLogEntry> batch = new ArrayList<>(BATCH_SIZE);
+        while (drain(batch) > 0) {
+            logBatch(batch);
+        }
+    }
+
+    private boolean offer(IBlockLogEntry entry) {
+        long head;
+        long pending;
+        do {
+            head = m_head.get();
+            pending = head - m_tail.get();
+            if (pending >= CAPACITY) {
+                return false;
+            }
+        } while (!m_head.compareAndSet(head, head + 1));
+
+        m_slots.lazySet((int) (head & MASK), entry);
+        if (pending >= m_maxPending) {
+            m_maxPending = pending + 1;
+        }
+        if (pending == 0) {
+            synchronized (m_waitMutex) {
+                m_waitMutex.notifyAll();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Take the published entries (single consumer)
+     */
+    private synchronized int drain(List<IBlockLogEntry> batch) {
+        batch.clear();
+
+        long tail = m_tail.get();
+        while (batch.size() < BATCH_SIZE) {
+            final int idx = (int) (tail & MASK);
+            final IBlockLogEntry entry = m_slots.get(idx);
+            if (entry == null) {
+                break;
+            }
+
+            m_slots.lazySet(idx, null);
+            batch.add(entry);
+            tail++;
+        }
+        m_tail.set(tail);
+
+        return batch.size();
+    }
+
+    private void logBatch(List<IBlockLogEntry> batch) {
+        try {
+            m_integrator.get().logBlocks(batch);
+        } catch (Exception ex) {
+            ExceptionHelper.printException(ex, "Unable to log the block changes.");
+        }
+        m_logged.add(batch.size());
+    }
+
+    private void warnOverflow() {
+        final long now = System.currentTimeMillis();
+        if (now - m_lastWarn < WARN_INTERVAL) {
+            return;
+        }
+
+        m_lastWarn = now;
+        log(String.format("Warinig: BlocksHub logger is not able to keep up, blocks logged on the calling thread: %1$s, logged: %2$s, max pending: %3$s",
+                getOverflowCount(), getLoggedCount(), getMaxPending()));
+    }
+
+    private synchronized void start() {
+        if (m_isRunning) {
+            return;
+        }
+
+        m_isRunning = true;
+        final Thread th = new Thread(this::logLoop);
+        th.setName("AWE:BlockLogger:logLoop");
+        th.setDaemon(true);
+        th.start();
+    }
+
+    /**
+     * The logger thread loop
+     */
+    private void logLoop() {
+        final List<IBlockLogEntry> batch = new ArrayList<>(BATCH_SIZE);
+
+        while (m_isRunning) {
+            if (drain(batch) > 0) {
+                logBatch(batch);
+                continue;
+            }
+
+            synchronized (m_waitMutex) {
+                if (m_isRunning && getPending() == 0) {
+                    try {
+                        m_waitMutex.wait(1000);
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The block change log record
+     */
+    private static final class BlockLogEntry implements IBlockLogEntry {
+
+        private final IPlayerEntry m_player;
+        private final IWorld m_world;
+        private final BlockVector3 m_location;
+        private final BlockStateHolder m_oldBlock;
+        private final BlockStateHolder m_newBlock;
+        private final boolean m_dc;
+
+        BlockLogEntry(IPlayerEntry player, IWorld world, BlockVector3 location,
+                BlockStateHolder oldBlock, BlockStateHolder newBlock, boolean dc) {
+            m_player = player;
+            m_world = world;
+            m_location = location;
+            m_oldBlock = oldBlock;
+            m_newBlock = newBlock;
+            m_dc = dc;
+        }
+
+        @Override
+        public IPlayerEntry getPlayer() {
+            return m_player;
+        }
+
+        @Override
+        public IWorld getWorld() {
+            return m_world;
+        }
+
+        @Override
+        public BlockVector3 getLocation() {
+            return m_location;
+        }
+
+        @Override
+        public BlockStateHolder getOldBlock() {
+            return m_oldBlock;
+        }
+
+        @Override
+        public BlockStateHolder getNewBlock() {
+            return m_newBlock;
+        }
+
+        @Override
+        public boolean isDc() {
+            return m_dc;
+        }
+    }
+}
@@ -51,13 +51,17 @@ import com.sk89q.worldedit.LocalConfiguration;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.math.Vector3;
 import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
 import static org.primesoft.asyncworldedit.LoggerProvider.log;
 import org.primesoft.asyncworldedit.api.IWorld;
 import org.primesoft.asyncworldedit.api.configuration.IPermissionGroup;
 import org.primesoft.asyncworldedit.api.configuration.IWorldEditConfig;
+import org.primesoft.asyncworldedit.api.inner.IBlockLogEntry;
 import org.primesoft.asyncworldedit.api.inner.IBlocksHubBridge;
 import org.primesoft.asyncworldedit.api.inner.IBlocksHubFactory;
 import org.primesoft.asyncworldedit.api.inner.IBlocksHubIntegration;
@@ -82,7 +86,7 @@ public class BlocksHubBridge implements IBlocksHubBridge {
     /**
      * The current integrator
      */
-    private IBlocksHubIntegration m_integrator = new NullBlocksHubIntegration();
+    private volatile IBlocksHubIntegration m_integrator = new NullBlocksHubIntegration();
     
     /**
      * This flag helps in speeding up the checks
@@ -99,6 +103,16 @@ public class BlocksHubBridge implements IBlocksHubBridge {
      */
     private final IPlatform m_platform;
 
+    /**
+     * The cached chunk access decisions
+     */
+    private final AccessCache m_accessCache = new AccessCache();
+
+    /**
+     * The asynchronous block logger
+     */
+    private final BlockLogger m_logger = new BlockLogger(() -> m_integrator);
+
     public BlocksHubBridge(IPlatform platform) {
         m_platform = platform;
     }
@@ -120,7 +134,24 @@ public class BlocksHubBridge implements IBlocksHubBridge {
             return;
         }
 
-        m_integrator.logBlock(playerEntry, world, location, oldBlock, newBlock, dc);
+        if (ConfigProvider.blocksHub().isLogAsync()) {
+            m_logger.logBlock(playerEntry, world, location, oldBlock, newBlock, dc);
+        } else {
+            m_integrator.logBlock(playerEntry, world, location, oldBlock, newBlock, dc);
+        }
+    }
+
+    @Override
+    public void logBlocks(List<? extends IBlockLogEntry> entries) {
+        entries.forEach(e -> logBlock(e.getPlayer(), e.getWorld(), e.getLocation(),
+                e.getOldBlock(), e.getNewBlock(), e.isDc()));
+    }
+
+    /**
+     * Stop the block logger, the pending block changes are logged
+     */
+    public void stop() {
+        m_logger.stop();
     }
 
     @Override
@@ -165,7 +196,8 @@ public class BlocksHubBridge implements IBlocksHubBridge {
             return bhConfig.isAccessAllowed(AccessType.Offline);
         }
 
-        return m_integrator.hasAccess(playerEntry, world, location);
+        return checkAccess(playerEntry, world, (int) Math.floor(location.getX()) >> 4, (int) Math.floor(location.getZ()) >> 4, AccessCache.HAS_ACCESS, bhConfig,
+                () -> m_integrator.hasAccess(playerEntry, world, location));
     }
     
     
@@ -202,7 +234,8 @@ public class BlocksHubBridge implements IBlocksHubBridge {
             return bhConfig.isAccessAllowed(AccessType.Offline);
         }
 
-        return m_integrator.hasAccess(playerEntry, world, location);
+        return checkAccess(playerEntry, world, location.getBlockX() >> 4, location.getBlockZ() >> 4, AccessCache.HAS_ACCESS, bhConfig,
+                () -> m_integrator.hasAccess(playerEntry, world, location));
     }
 
     @Override
@@ -238,9 +271,40 @@ public class BlocksHubBridge implements IBlocksHubBridge {
             return bhConfig.isAccessAllowed(AccessType.Offline);
         }
 
-        return m_integrator.hasAccess(playerEntry, world, location, dc);
+        return checkAccess(playerEntry, world, (int) Math.floor(location.getX()) >> 4, (int) Math.floor(location.getZ()) >> 4,
+                dc ? AccessCache.HAS_ACCESS_DC : AccessCache.HAS_ACCESS, bhConfig,
+                () -> m_integrator.hasAccess(playerEntry, world, location, dc));
     }    
 
+    /**
+     * Run the integrator access check. The decision is cached per chunk when
+     * it is uniform across the chunk.
+     */
+    private boolean checkAccess(IPlayerEntry playerEntry, IWorld world, int cx, int cz, int kind,
+            ConfigBlocksHub bhConfig, BooleanSupplier check) {
+        final long ttl = bhConfig.getAccessCacheTime();
+        if (ttl <= 0 || world == null
+                || !(bhConfig.isAccessChunkUniform() || m_integrator.isChunkUniform())) {
+            return check.getAsBoolean();
+        }
+
+        return m_accessCache.get(playerEntry.getUUID(), world.getName(), cx, cz, kind, ttl, check);
+    }
+
+    @Override
+    public void invalidateAccess(IPlayerEntry playerEntry) {
+        if (playerEntry != null && playerEntry.getUUID() != null) {
+            m_accessCache.invalidate(playerEntry.getUUID());
+        }
+    }
+
+    @Override
+    public void invalidateAccess(String worldName, int cx, int cz) {
+        if (worldName != null) {
+            m_accessCache.invalidate(worldName, cx, cz);
+        }
+    }
+
     /**
      * Check if player can place a block using WorldEdit black list
      */
@@ -341,7 +405,8 @@ public class BlocksHubBridge implements IBlocksHubBridge {
             return bhConfig.isAccessAllowed(AccessType.Offline);
         }
 
-        return m_integrator.canPlace(playerEntry, world, location, oldBlock, newBlock);
+        return checkAccess(playerEntry, world, location.getBlockX() >> 4, location.getBlockZ() >> 4, AccessCache.CAN_PLACE, bhConfig,
+                () -> m_integrator.canPlace(playerEntry, world, location, oldBlock, newBlock));
     }
 
     @Override
@@ -386,7 +451,9 @@ public class BlocksHubBridge implements IBlocksHubBridge {
             return bhConfig.isAccessAllowed(AccessType.Offline);
         }
 
-        return m_integrator.canPlace(playerEntry, world, location, oldBlock, newBlock, dc);
+        return checkAccess(playerEntry, world, (int) Math.floor(location.getX()) >> 4, (int) Math.floor(location.getZ()) >> 4,
+                dc ? AccessCache.CAN_PLACE_DC : AccessCache.CAN_PLACE, bhConfig,
+                () -> m_integrator.canPlace(playerEntry, world, location, oldBlock, newBlock, dc));
     }
     
     @Override
@@ -431,7 +498,98 @@ public class BlocksHubBridge implements IBlocksHubBridge {
             return bhConfig.isAccessAllowed(AccessType.Offline);
         }
 
-        return m_integrator.canPlace(playerEntry, world, location, oldBlock, newBlock, dc);
+        return checkAccess(playerEntry, world, location.getBlockX() >> 4, location.getBlockZ() >> 4,
+                dc ? AccessCache.CAN_PLACE_DC : AccessCache.CAN_PLACE, bhConfig,
+                () -> m_integrator.canPlace(playerEntry, world, location, oldBlock, newBlock, dc));
+    }
+
+    @Override
+    public BitSet canPlace(IPlayerEntry playerEntry, IWorld world, List<BlockVector3> locations,
+            List<? extends BlockStateHolder> oldBlocks, List<? extends BlockStateHolder> newBlocks) {
+        final int size = locations.size();
+        final BitSet result = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            if (canPlace(playerEntry, newBlocks.get(i))) {
+                result.set(i);
+            }
+        }
+
+        if (result.isEmpty() || !m_shouldProcess) {
+            return result;
+        }
+
+        if (playerEntry != null && playerEntry.isAllowed(Permission.BYPASS_BLOCKS_HUB)) {
+            return result;
+        }
+
+        ConfigBlocksHub bhConfig = ConfigProvider.blocksHub();
+
+        BHLevel level = bhConfig.getCheckAccess();
+        if (level == BHLevel.Disabled) {
+            return result;
+        }
+
+        final Boolean allowed = getAccess(playerEntry, bhConfig);
+        if (allowed != null) {
+            if (!allowed) {
+                result.clear();
+            }
+            return result;
+        }
+
+        if (bhConfig.isAccessChunkUniform() || m_integrator.isChunkUniform()) {
+            final int idx = result.nextSetBit(0);
+            final BlockVector3 location = locations.get(idx);
+            final BooleanSupplier check = () -> m_integrator.canPlace(playerEntry, world, location,
+                    oldBlocks.get(idx), newBlocks.get(idx));
+            final long ttl = bhConfig.getAccessCacheTime();
+            final boolean chunkAllowed = ttl > 0 && world != null
+                    ? m_accessCache.get(playerEntry.getUUID(), world.getName(),
+                            location.getBlockX() >> 4, location.getBlockZ() >> 4, AccessCache.CAN_PLACE, ttl, check)
+                    : check.getAsBoolean();
+
+            if (!chunkAllowed) {
+                result.clear();
+            }
+            return result;
+        }
+
+        for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+            if (!m_integrator.canPlace(playerEntry, world, locations.get(i), oldBlocks.get(i), newBlocks.get(i))) {
+                result.clear(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the access decision that does not need the integrator check
+     *
+     * @return the access or null if the integrator should be checked
+     */
+    private Boolean getAccess(IPlayerEntry playerEntry, ConfigBlocksHub bhConfig) {
+        if (playerEntry == null) {
+            return bhConfig.isAccessAllowed(AccessType.Null);
+        }
+
+        boolean isUnknown = playerEntry.isUnknown()
+                || playerEntry.getName() == null || playerEntry.getName().isEmpty()
+                || playerEntry.getUUID() == null || !playerEntry.isPlayer();
+
+        boolean isConsole = playerEntry.isConsole();
+        boolean isOffline = playerEntry.isPlayer() && playerEntry.isDisposed();
+
+        if (isUnknown) {
+            return bhConfig.isAccessAllowed(AccessType.Unknown);
+        }
+        if (isConsole) {
+            return bhConfig.isAccessAllowed(AccessType.Console);
+        }
+        if (isOffline) {
+            return bhConfig.isAccessAllowed(AccessType.Offline);
+        }
+
+        return null;
     }
 
     @Override
@@ -443,6 +601,7 @@ public class BlocksHubBridge implements IBlocksHubBridge {
         log(String.format("Initializing BlocksHub using %1$s...", blocksHubPlugin.getClass().getName()));
 
         m_shouldProcess = false;
+        m_accessCache.clear();
         for (IBlocksHubFactory factory : m_factories.keySet()) {
             IBlocksHubIntegration integrator = create(factory, blocksHubPlugin);
 
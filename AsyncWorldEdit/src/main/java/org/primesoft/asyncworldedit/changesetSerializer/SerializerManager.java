@@ -56,7 +56,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.file.FileVisitOption;
@@ -80,9 +79,11 @@ import org.primesoft.asyncworldedit.api.worldedit.ICancelabeEditSession;
 import org.primesoft.asyncworldedit.changesetSerializer.serializers.SerializerBiomeChange;
 import org.primesoft.asyncworldedit.configuration.ConfigMemory;
 import org.primesoft.asyncworldedit.configuration.ConfigProvider;
+import org.primesoft.asyncworldedit.configuration.ConfigUndo;
 import org.primesoft.asyncworldedit.configuration.UndoBehaviour;
 import org.primesoft.asyncworldedit.strings.MessageType;
-import org.primesoft.asyncworldedit.utils.io.ChunkCacheStream;
+import org.primesoft.asyncworldedit.utils.io.FrameCodec;
+import org.primesoft.asyncworldedit.utils.io.FramedCacheStream;
 import org.primesoft.asyncworldedit.utils.ExceptionHelper;
 import org.primesoft.asyncworldedit.utils.GCUtils;
 import org.primesoft.asyncworldedit.utils.io.VarInt;
@@ -198,7 +199,9 @@ public final class SerializerManager implements IInnerSerializerManager {
         }
 
         try {
-            m_undoDescriptors.put(undoFile, new UndoDescriptor(undoFile));
+            final ConfigUndo undoConfig = ConfigProvider.undo();
+            m_undoDescriptors.put(undoFile, new UndoDescriptor(undoFile,
+                    createCodec(undoConfig), undoConfig.getCompressionFrameSize()));
 
             return undoFile;
         } catch (IOException ioe) {
@@ -208,6 +211,24 @@ public final class SerializerManager implements IInnerSerializerManager {
         }
     }
 
+    /**
+     * Create the undo file frame codec
+     *
+     * @param undoConfig
+     * @return the codec or null if the undo files are not compressed
+     */
+    private static FrameCodec createCodec(ConfigUndo undoConfig) {
+        switch (undoConfig.getCompression()) {
+            case Lz:
+                return FrameCodec.create(FrameCodec.LZ, 0);
+            case Deflate:
+                return FrameCodec.create(FrameCodec.DEFLATE, undoConfig.getCompressionLevel());
+            case None:
+            default:
+                return null;
+        }
+    }
+
     @Override
     public void close(File storageFile) {
         if (storageFile == null) {
@@ -237,6 +258,12 @@ public final class SerializerManager implements IInnerSerializerManager {
 
     @Override
     public void save(File storageFile, List<Change> data) {
+        queueSave(storageFile, data);
+        commit(storageFile);
+    }
+
+    @Override
+    public void queueSave(File storageFile, List<Change> data) {
         if (storageFile == null) {
             return;
         }
@@ -246,97 +273,69 @@ public final class SerializerManager implements IInnerSerializerManager {
             return;
         }
 
-        final StreamProvider sp = StreamProvider.getInstance();
-        final File fileName = ud.getFile();
-        final File fileNameIdx = new File(ud.getFile().getPath() + ".idx");
-
-        sp.reserve();
-        sp.reserve();
-
-        sp.addReference(fileName);
-        sp.addReference(fileNameIdx);
-
         synchronized (ud.getMutex()) {
-            FileOutputStream stream = null;
-            FileOutputStream streamIdx = null;
-
             try {
-                stream = new FileOutputStream(fileName, true);
-                streamIdx = new FileOutputStream(fileNameIdx, true);
-
-                ByteArrayOutputStream memoryOut = new ByteArrayOutputStream();
-                ByteArrayOutputStream memoryOutIdx = new ByteArrayOutputStream();
-
-                DataOutputStream bufferStream = new DataOutputStream(memoryOut);
-                DataOutputStream bufferStreamIdx = new DataOutputStream(memoryOutIdx);
+                final UndoFileWriter writer = ud.getWriter();
+                final DataOutputStream stream = writer.getStream();
+                final DataOutputStream streamIdx = writer.getStreamIdx();
 
                 for (Change change : data) {
-                    if (bufferStreamIdx.size() > 1000000) {
-                        bufferStreamIdx.flush();
-                        bufferStreamIdx.close();
-                        streamIdx.write(memoryOutIdx.toByteArray());
-
-                        memoryOutIdx = new ByteArrayOutputStream();
-                        bufferStreamIdx = new DataOutputStream(memoryOutIdx);
-                    }
-                    if (bufferStream.size() > 1000000) {
-                        bufferStream.flush();
-                        bufferStream.close();
-                        stream.write(memoryOut.toByteArray());
-
-                        memoryOut = new ByteArrayOutputStream();
-                        bufferStream = new DataOutputStream(memoryOut);
-                    }
-
-                    long size = save(ud, bufferStream, change);
-                    VarInt.writeLong(bufferStreamIdx, size);
+                    long size = save(ud, stream, change);
+                    VarInt.writeLong(streamIdx, size);
 
                     if (ud.isClosed()) {
                         break;
                     }
-                }
-
-                bufferStream.flush();
-                bufferStream.close();
 
-                bufferStreamIdx.flush();
-                bufferStreamIdx.close();
+                    if (writer.isFull()) {
+                        writer.commit();
+                    }
+                }
 
-                memoryOut.flush();
-                memoryOut.close();
+                stream.flush();
+            } catch (IOException ioe) {
+                ExceptionHelper.printException(ioe, String.format("Unable to save undo data. Data might be corrupted"));
+            }
+        }
+    }
 
-                memoryOutIdx.flush();
-                memoryOutIdx.close();
+    @Override
+    public boolean commit(File storageFile) {
+        if (storageFile == null) {
+            return false;
+        }
 
-                stream.write(memoryOut.toByteArray());
-                stream.flush();
-                stream.close();
+        final UndoDescriptor ud = m_undoDescriptors.get(storageFile);
+        if (ud == null) {
+            return false;
+        }
 
-                streamIdx.write(memoryOutIdx.toByteArray());
-                streamIdx.flush();
-                streamIdx.close();
+        synchronized (ud.getMutex()) {
+            try {
+                return ud.getWriter().commit();
             } catch (IOException ioe) {
                 ExceptionHelper.printException(ioe, String.format("Unable to save undo data. Data might be corrupted"));
+                return false;
+            }
+        }
+    }
 
-                if (stream != null) {
-                    try {
-                        stream.close();
-                    } catch (IOException ex) {
-                    }
-                }
+    @Override
+    public void release(File storageFile) {
+        if (storageFile == null) {
+            return;
+        }
 
-                if (streamIdx != null) {
-                    try {
-                        streamIdx.close();
-                    } catch (IOException ex) {
-                    }
-                }
-            } finally {
-                sp.release();
-                sp.release();
+        final UndoDescriptor ud = m_undoDescriptors.get(storageFile);
+        if (ud == null) {
+            return;
+        }
 
-                sp.removeReference(fileName);
-                sp.removeReference(fileNameIdx);
+        synchronized (ud.getMutex()) {
+            try {
+                ud.getWriter().release();
+            } catch (IOException ioe) {
+                ExceptionHelper.printException(ioe, String.format("Unable to save undo data. Data might be corrupted"));
             }
         }
     }
@@ -374,10 +373,10 @@ public final class SerializerManager implements IInnerSerializerManager {
                 UndoEntry uEntry;
                 boolean breakLoop = false;
 
-                IChunkCacheStream dataStream = new ChunkCacheStream(stream);
+                IChunkCacheStream dataStream = FramedCacheStream.open(stream);
 
                 do {
-                    uEntry = UndoEntry.load(dataStream);
+                    uEntry = UndoEntry.load(dataStream, ud.getTypes());
                     Change change = deserialize(uEntry, ud);
 
                     if (change != null) {
@@ -451,7 +450,7 @@ public final class SerializerManager implements IInnerSerializerManager {
         }
 
         data.setId(idx);
-        return save(stream, data);
+        return UndoEntry.saveCompact(stream, data, descriptor.getTypes().getId(data.getType()));
     }
 
     /**
@@ -536,6 +535,10 @@ public final class SerializerManager implements IInnerSerializerManager {
         }
 
         String type = entry.getType();
+        if ("".equals(type) && entry instanceof UndoEntry && storage instanceof UndoDescriptor) {
+            //Compact entry loaded without the undo file types dictionary
+            type = ((UndoDescriptor) storage).getTypes().get(((UndoEntry) entry).getTypeId());
+        }
         if (type == null) {
             return null;
         }
@@ -604,6 +607,11 @@ public final class SerializerManager implements IInnerSerializerManager {
         return UndoEntry.load(stream);
     }
 
+    @Override
+    public IUndoEntry load(IChunkCacheStream stream, IMemoryStorage storage) throws IOException {
+        return UndoEntry.load(stream, storage instanceof UndoDescriptor ? ((UndoDescriptor) storage).getTypes() : null);
+    }
+
     @Override
     public int save(RandomAccessFile stream, IUndoEntry undoEntry) throws IOException {
         return UndoEntry.save(stream, undoEntry);
@@ -48,6 +48,8 @@
 package org.primesoft.asyncworldedit.changesetSerializer;
 
 import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockState;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -57,6 +59,7 @@ import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.primesoft.asyncworldedit.api.changesetSerializer.IMemoryStorage;
+import org.primesoft.asyncworldedit.utils.io.FrameCodec;
 
 /**
  *
@@ -71,6 +74,26 @@ public class UndoDescriptor implements IMemoryStorage {
 
     private final Map<UUID, Change> m_memoryChanges = new ConcurrentHashMap<UUID, Change>();
 
+    /**
+     * The change types dictionary
+     */
+    private final UndoDictionary<String> m_types = new UndoDictionary<>();
+
+    /**
+     * The block states dictionary
+     */
+    private final UndoDictionary<BlockState> m_blockStates = new UndoDictionary<>();
+
+    /**
+     * The origin of the delta encoded positions
+     */
+    private volatile BlockVector3 m_origin;
+
+    /**
+     * The undo file writer
+     */
+    private final UndoFileWriter m_writer;
+
     /**
      * The current entry IDX
      *
@@ -98,8 +121,66 @@ public class UndoDescriptor implements IMemoryStorage {
         return (++m_entryIdx);
     }
 
-    UndoDescriptor(File file) throws FileNotFoundException {
+    /**
+     * The change types dictionary
+     *
+     * @return
+     */
+    public UndoDictionary<String> getTypes() {
+        return m_types;
+    }
+
+    /**
+     * The block states dictionary
+     *
+     * @return
+     */
+    public UndoDictionary<BlockState> getBlockStates() {
+        return m_blockStates;
+    }
+
+    /**
+     * Get the origin of the delta encoded positions, the first position
+     * stored in the file becomes the origin
+     *
+     * @param position
+     * @return
+     */
+    public BlockVector3 getOrigin(BlockVector3 position) {
+        final BlockVector3 result = m_origin;
+        if (result != null) {
+            return result;
+        }
+
+        synchronized (m_mutex) {
+            if (m_origin == null) {
+                m_origin = position;
+            }
+            return m_origin;
+        }
+    }
+
+    /**
+     * Get the origin of the delta encoded positions
+     *
+     * @return the origin or null if no position was stored
+     */
+    public BlockVector3 getOrigin() {
+        return m_origin;
+    }
+
+    UndoDescriptor(File file, FrameCodec codec, int frameSize) throws FileNotFoundException {
         m_file = file;
+        m_writer = new UndoFileWriter(file, codec, frameSize);
+    }
+
+    /**
+     * The undo file writer, use only when holding the mutex
+     *
+     * @return
+     */
+    UndoFileWriter getWriter() {
+        return m_writer;
     }
 
     /**
@@ -163,6 +244,10 @@ public class UndoDescriptor implements IMemoryStorage {
 
     void close() throws IOException {
         m_isClosed = true;
+
+        synchronized (m_mutex) {
+            m_writer.close();
+        }
     }
 
     boolean isClosed() {
@@ -0,0 +1,121 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2016, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.changesetSerializer;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Undo file dictionary, maps the values to small sequential ids
+ *
+ * @author SBPrime
+ * @param <T>
+ */
+public final class UndoDictionary<T> {
+
+    private final Map<T, Integer> m_ids = new ConcurrentHashMap<>();
+
+    /**
+     * The values (id to value), the array is replaced when it grows
+     */
+    private volatile Object[] m_values = new Object[16];
+
+    private int m_size;
+
+    /**
+     * Get the value id, adds the value to the dictionary if needed
+     *
+     * @param value
+     * @return
+     */
+    public int getId(T value) {
+        final Integer result = m_ids.get(value);
+        return result != null ? result : add(value);
+    }
+
+    /**
+     * Get the value
+     *
+     * @param id
+     * @return the value or null if unknown
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int id) {
+        final Object[] values = m_values;
+        return id >= 0 && id < values.length ? (T) values[id] : null;
+    }
+
+    /**
+     * The number of values in the dictionary
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return m_size;
+    }
+
+    private synchronized int add(T value) {
+        final Integer result = m_ids.get(value);
+        if (result != null) {
+            return result;
+        }
+
+        Object[] values = m_values;
+        if (m_size == values.length) {
+            values = Arrays.copyOf(values, m_size * 2);
+        }
+
+        final int id = m_size++;
+        values[id] = value;
+        m_values = values;
+        m_ids.put(value, id);
+
+        return id;
+    }
+}
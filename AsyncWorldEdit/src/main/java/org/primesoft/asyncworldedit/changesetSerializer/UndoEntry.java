@@ -47,14 +47,18 @@
  */
 package org.primesoft.asyncworldedit.changesetSerializer;
 
+import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.charset.Charset;
 import org.primesoft.asyncworldedit.api.changesetSerializer.IUndoEntry;
 import org.primesoft.asyncworldedit.api.inner.IChunkCacheStream;
 import org.primesoft.asyncworldedit.utils.io.UnsafeDataInput;
+import org.primesoft.asyncworldedit.utils.io.VarInt;
 
 /**
  *
@@ -62,11 +66,18 @@ import org.primesoft.asyncworldedit.utils.io.UnsafeDataInput;
  */
 public class UndoEntry implements IUndoEntry {
 
+    /**
+     * The compact (v2) format marker. The v1 entries start with the entry id
+     * (big endian long) so the first byte is always 0x00 or 0xff.
+     */
+    public final static int COMPACT = 2;
+
     private final static int LONG_SIZE = 8;
     private final static int INT_SIZE = 4;
     private final static Charset UTF8 = Charset.forName("UTF8");
 
     private final String m_type;
+    private final int m_typeId;
     private final byte[] m_data;
     private long m_id = -1;
 
@@ -80,12 +91,143 @@ public class UndoEntry implements IUndoEntry {
         return m_data;
     }
 
+    /**
+     * The change type dictionary id (compact entries only)
+     *
+     * @return the type id or -1 if the type is stored as string
+     */
+    public int getTypeId() {
+        return m_typeId;
+    }
+
     UndoEntry(String type, byte[] data, long id) {
         m_type = type == null ? "" : type;
+        m_typeId = -1;
         m_data = data == null ? new byte[0] : data;
         m_id = id;
     }
 
+    /**
+     * Create a compact entry, the type is resolved using the undo file types
+     * dictionary
+     *
+     * @param typeId
+     * @param types the types dictionary, when null the type is left empty
+     * @param data
+     * @param id
+     */
+    private UndoEntry(int typeId, UndoDictionary<String> types, byte[] data, long id) {
+        final String type = types != null ? types.get(typeId) : null;
+        m_type = type == null ? "" : type;
+        m_typeId = typeId;
+        m_data = data;
+        m_id = id;
+    }
+
+    /**
+     * Save the undo data to stream using the compact format
+     *
+     * @param stream
+     * @param entry
+     * @param typeId the change type dictionary id
+     * @return number of bytes written
+     * @throws IOException
+     */
+    static int saveCompact(DataOutputStream stream, IUndoEntry entry, int typeId) throws IOException {
+        final int start = stream.size();
+        final byte[] data = entry.getData();
+
+        stream.writeByte(COMPACT);
+        VarInt.writeLong(stream, entry.getId());
+        VarInt.writeInt(stream, typeId);
+        VarInt.writeInt(stream, data.length);
+        stream.write(data);
+
+        return stream.size() - start;
+    }
+
+    /**
+     * Save a nested undo entry (without the id) using the compact format
+     *
+     * @param stream
+     * @param entry
+     * @param typeId the change type dictionary id
+     * @throws IOException
+     */
+    public static void saveNested(DataOutput stream, IUndoEntry entry, int typeId) throws IOException {
+        final byte[] data = entry.getData();
+
+        VarInt.writeInt(stream, typeId);
+        VarInt.writeInt(stream, data.length);
+        stream.write(data);
+    }
+
+    /**
+     * Load a nested undo entry saved using the compact format
+     *
+     * @param stream
+     * @param types the undo file types dictionary
+     * @return
+     * @throws IOException
+     */
+    public static UndoEntry loadNested(UnsafeDataInput stream, UndoDictionary<String> types) throws IOException {
+        final int typeId = VarInt.readInt(stream);
+        final int dataLen = VarInt.readInt(stream);
+        if (dataLen < 0 || stream.available() < dataLen) {
+            return null;
+        }
+
+        final byte[] data = new byte[dataLen];
+        stream.readFully(data);
+
+        return new UndoEntry(typeId, types, data, -1);
+    }
+
+    /**
+     * Load the rest of a compact entry (after the format marker)
+     *
+     * @param stream
+     * @param remaining
+     * @param types the undo file types dictionary
+     * @return the entry or null if the entry is truncated
+     * @throws IOException
+     */
+    private static UndoEntry loadCompact(DataInput stream, IRemaining remaining,
+            UndoDictionary<String> types) throws IOException {
+        try {
+            final long id = VarInt.readLong(stream);
+            final int typeId = VarInt.readInt(stream);
+            final int dataLen = VarInt.readInt(stream);
+            if (dataLen < 0 || remaining.get() < dataLen) {
+                return null;
+            }
+
+            final byte[] data = new byte[dataLen];
+            stream.readFully(data);
+
+            return new UndoEntry(typeId, types, data, id);
+        } catch (EOFException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Read the rest of the v1 entry id
+     *
+     * @param stream
+     * @param first the first id byte
+     * @return
+     * @throws IOException
+     */
+    private static long readId(DataInput stream, int first) throws IOException {
+        long result = first;
+        for (int i = 1; i < LONG_SIZE; i++) {
+            result = (result << 8) | stream.readUnsignedByte();
+        }
+
+        return result;
+    }
+
     /**
      * Save the undo data to stream
      *
@@ -152,13 +294,34 @@ public class UndoEntry implements IUndoEntry {
      * @throws IOException
      */
     static IUndoEntry load(RandomAccessFile stream) throws IOException {
+        return load(stream, null);
+    }
+
+    /**
+     * Load the undo data from stream
+     *
+     * @param stream
+     * @param types the undo file types dictionary used to resolve the compact
+     * entries type
+     * @return
+     * @throws IOException
+     */
+    static IUndoEntry load(RandomAccessFile stream, UndoDictionary<String> types) throws IOException {
         long pos = stream.getFilePointer();
         long length = stream.length();
 
+        if (length - pos < 1) {
+            return null;
+        }
+        final int format = stream.readUnsignedByte();
+        if (format == COMPACT) {
+            return loadCompact(stream, () -> stream.length() - stream.getFilePointer(), types);
+        }
+
         if (length - pos < LONG_SIZE) {
             return null;
         }
-        long id = stream.readLong();//The ID
+        long id = readId(stream, format);//The ID
         pos += LONG_SIZE;
 
         if (length - pos < INT_SIZE) {
@@ -197,13 +360,34 @@ public class UndoEntry implements IUndoEntry {
      * @throws IOException
      */
     static UndoEntry load(IChunkCacheStream stream) throws IOException {
+        return load(stream, null);
+    }
+
+    /**
+     * Load the undo data from stream
+     *
+     * @param stream
+     * @param types the undo file types dictionary used to resolve the compact
+     * entries type
+     * @return
+     * @throws IOException
+     */
+    static UndoEntry load(IChunkCacheStream stream, UndoDictionary<String> types) throws IOException {
         long pos = stream.getFilePointer();
         long length = stream.length();
 
+        if (length - pos < 1) {
+            return null;
+        }
+        final int format = stream.readUnsignedByte();
+        if (format == COMPACT) {
+            return loadCompact(stream, () -> stream.length() - stream.getFilePointer(), types);
+        }
+
         if (length - pos < LONG_SIZE) {
             return null;
         }
-        long id = stream.readLong();//The ID
+        long id = readId(stream, format);//The ID
         pos += LONG_SIZE;
 
         if (length - pos < INT_SIZE) {
@@ -242,13 +426,34 @@ public class UndoEntry implements IUndoEntry {
      * @throws IOException
      */
     public static IUndoEntry load(UnsafeDataInput stream) throws IOException {
+        return load(stream, null);
+    }
+
+    /**
+     * Load the undo data from stream
+     *
+     * @param stream
+     * @param types the undo file types dictionary used to resolve the compact
+     * entries type
+     * @return
+     * @throws IOException
+     */
+    public static IUndoEntry load(UnsafeDataInput stream, UndoDictionary<String> types) throws IOException {
 
         long available = stream.available();
 
+        if (available < 1) {
+            return null;
+        }
+        final int format = stream.readUnsignedByte();
+        if (format == COMPACT) {
+            return loadCompact(stream, stream::available, types);
+        }
+
         if (available < LONG_SIZE) {
             return null;
         }
-        long id = stream.readLong();
+        long id = readId(stream, format);
         available -= LONG_SIZE;
 
         if (available < INT_SIZE) {
@@ -287,13 +492,34 @@ public class UndoEntry implements IUndoEntry {
      * @throws IOException
      */
     static IUndoEntry load(DataInputStream stream) throws IOException {
+        return load(stream, null);
+    }
+
+    /**
+     * Load the undo data from stream
+     *
+     * @param stream
+     * @param types the undo file types dictionary used to resolve the compact
+     * entries type
+     * @return
+     * @throws IOException
+     */
+    static IUndoEntry load(DataInputStream stream, UndoDictionary<String> types) throws IOException {
 
         long available = stream.available();
 
+        if (available < 1) {
+            return null;
+        }
+        final int format = stream.readUnsignedByte();
+        if (format == COMPACT) {
+            return loadCompact(stream, stream::available, types);
+        }
+
         if (available < LONG_SIZE) {
             return null;
         }
-        long id = stream.readLong();
+        long id = readId(stream, format);
         available -= LONG_SIZE;
 
         if (available < INT_SIZE) {
@@ -332,4 +558,9 @@ public class UndoEntry implements IUndoEntry {
     void setId(long id) {
         m_id = id;
     }
+
+    @FunctionalInterface
+    private interface IRemaining {
+        long get() throws IOException;
+    }
 }
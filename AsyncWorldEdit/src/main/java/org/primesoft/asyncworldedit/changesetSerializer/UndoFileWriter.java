@@ -0,0 +1,266 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2016, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.changesetSerializer;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import org.primesoft.asyncworldedit.utils.io.FrameCodec;
+import org.primesoft.asyncworldedit.utils.io.FramedOutputStream;
+import org.primesoft.asyncworldedit.utils.io.GatheringOutputStream;
+
+/**
+ * The undo file writer. The saved data is buffered and written to the undo
+ * files on commit, the file channels are kept open until the writer is
+ * released. All methods should be called when holding the undo descriptor
+ * mutex.
+ *
+ * @author SBPrime
+ */
+final class UndoFileWriter {
+
+    /**
+     * The maximum number of buffered bytes, the data should be committed when
+     * the limit is reached
+     */
+    private final static int MAX_BUFFERED = 0x100000;
+
+    private final File m_file;
+
+    private final File m_fileIdx;
+
+    /**
+     * The frame codec (null for uncompressed files)
+     */
+    private final FrameCodec m_codec;
+
+    private final int m_frameSize;
+
+    private final GatheringOutputStream m_buffer = new GatheringOutputStream();
+
+    private final GatheringOutputStream m_bufferIdx = new GatheringOutputStream();
+
+    private FileChannel m_channel;
+
+    private FileChannel m_channelIdx;
+
+    private DataOutputStream m_stream;
+
+    private DataOutputStream m_streamIdx;
+
+    private boolean m_isReferenced;
+
+    private boolean m_isClosed;
+
+    UndoFileWriter(File file, FrameCodec codec, int frameSize) {
+        m_file = file;
+        m_fileIdx = new File(file.getPath() + ".idx");
+        m_codec = codec;
+        m_frameSize = frameSize;
+    }
+
+    /**
+     * The undo data stream
+     *
+     * @return
+     * @throws IOException
+     */
+    DataOutputStream getStream() throws IOException {
+        open();
+        return m_stream;
+    }
+
+    /**
+     * The undo index stream
+     *
+     * @return
+     * @throws IOException
+     */
+    DataOutputStream getStreamIdx() throws IOException {
+        open();
+        return m_streamIdx;
+    }
+
+    /**
+     * Is the buffer limit reached
+     *
+     * @return
+     */
+    boolean isFull() {
+        return m_buffer.size() + m_bufferIdx.size() >= MAX_BUFFERED;
+    }
+
+    /**
+     * Write the buffered data to the undo files. If the write fails both files
+     * are truncated to the last commit so the index matches the data.
+     *
+     * @return true if any data was written
+     * @throws IOException
+     */
+    boolean commit() throws IOException {
+        if (m_channel == null) {
+            return false;
+        }
+
+        m_stream.flush();
+        m_streamIdx.flush();
+
+        final boolean result = m_buffer.size() > 0 || m_bufferIdx.size() > 0;
+        if (!result) {
+            return false;
+        }
+
+        final long size = m_channel.size();
+        final long sizeIdx = m_channelIdx.size();
+        try {
+            m_buffer.writeTo(m_channel);
+            m_bufferIdx.writeTo(m_channelIdx);
+        } catch (IOException ex) {
+            m_buffer.reset();
+            m_bufferIdx.reset();
+
+            try {
+                m_channel.truncate(size);
+                m_channelIdx.truncate(sizeIdx);
+            } finally {
+                closeChannels();
+            }
+
+            throw ex;
+        }
+
+        return true;
+    }
+
+    /**
+     * Commit the buffered data and close the file channels, the channels are
+     * reopened on the next save
+     *
+     * @throws IOException
+     */
+    void release() throws IOException {
+        try {
+            commit();
+        } finally {
+            closeChannels();
+        }
+    }
+
+    /**
+     * Drop the buffered data and close the writer
+     */
+    void close() {
+        m_isClosed = true;
+
+        m_buffer.reset();
+        m_bufferIdx.reset();
+        closeChannels();
+    }
+
+    private void open() throws IOException {
+        if (m_isClosed) {
+            throw new IOException(String.format("Undo file %1$s is closed", m_file));
+        }
+        if (m_channel != null) {
+            return;
+        }
+
+        final StreamProvider sp = StreamProvider.getInstance();
+        sp.addReference(m_file);
+        sp.addReference(m_fileIdx);
+        m_isReferenced = true;
+
+        final boolean isNew = m_file.length() == 0;
+        try {
+            m_channel = FileChannel.open(m_file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            m_channelIdx = FileChannel.open(m_fileIdx.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+            closeChannels();
+            throw ex;
+        }
+
+        final OutputStream out = m_codec != null
+                ? new FramedOutputStream(m_buffer, m_codec, m_frameSize, isNew)
+                : m_buffer;
+        m_stream = new DataOutputStream(out);
+        m_streamIdx = new DataOutputStream(m_bufferIdx);
+    }
+
+    private void closeChannels() {
+        close(m_channel);
+        close(m_channelIdx);
+
+        m_channel = null;
+        m_channelIdx = null;
+        m_stream = null;
+        m_streamIdx = null;
+
+        if (m_isReferenced) {
+            final StreamProvider sp = StreamProvider.getInstance();
+            sp.removeReference(m_file);
+            sp.removeReference(m_fileIdx);
+            m_isReferenced = false;
+        }
+    }
+
+    private static void close(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (IOException ex) {
+        }
+    }
+}
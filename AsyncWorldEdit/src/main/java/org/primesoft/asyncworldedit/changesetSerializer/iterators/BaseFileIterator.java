@@ -58,7 +58,7 @@ import org.primesoft.asyncworldedit.api.inner.IInnerSerializerManager;
 import org.primesoft.asyncworldedit.api.utils.IDisposable;
 import org.primesoft.asyncworldedit.changesetSerializer.StreamProvider;
 import org.primesoft.asyncworldedit.utils.ExceptionHelper;
-import org.primesoft.asyncworldedit.utils.io.ChunkCacheStream;
+import org.primesoft.asyncworldedit.utils.io.FramedCacheStream;
 import org.primesoft.asyncworldedit.worldedit.history.changeset.ThreadSafeChangeSet;
 
 /**
@@ -119,7 +119,7 @@ public abstract class BaseFileIterator implements Iterator<Change>, ThreadSafeCh
 
         try {
             stream = new RandomAccessFile(storageFile, "r");
-            dataStream = new ChunkCacheStream(stream);
+            dataStream = FramedCacheStream.open(stream);
 
         } catch (IOException ex) {
             ExceptionHelper.printException(ex, String.format("Unable to create undo iterator for %1$s", storageFile.getName()));
@@ -143,7 +143,7 @@ public class UndoFileBackwordIterator extends BaseFileIterator {
             while (id > position && m_offsetPos >= 0) {
                 m_dataStream.seek(m_offsets[m_offsetPos], SeekOrigin.Begin);
                 m_offsetPos--;
-                uEntry = m_changesetSerializer.load(m_dataStream);
+                uEntry = m_changesetSerializer.load(m_dataStream, m_memoryStorage);
                 if (uEntry == null) {
                     return null;
                 }
@@ -61,9 +61,13 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import org.primesoft.asyncworldedit.api.changesetSerializer.IChangesetSerializer;
 import org.primesoft.asyncworldedit.api.changesetSerializer.IMemoryStorage;
+import org.primesoft.asyncworldedit.changesetSerializer.UndoDescriptor;
+import org.primesoft.asyncworldedit.changesetSerializer.UndoDictionary;
+import org.primesoft.asyncworldedit.changesetSerializer.UndoEntry;
 import org.primesoft.asyncworldedit.utils.ExceptionHelper;
 import org.primesoft.asyncworldedit.utils.io.UnsafeDataInput;
 import org.primesoft.asyncworldedit.utils.io.UnsafeDataOutput;
+import org.primesoft.asyncworldedit.utils.io.VarInt;
 import org.primesoft.asyncworldedit.worldedit.blocks.BlockStates;
 import org.bukkit.Bukkit;
 
@@ -77,6 +81,13 @@ public class SerializerBlockChange implements IChangesetSerializer {
 
     private static final String CLASS_TYPE = BlockChange.class.getName();    
 
+    /**
+     * The compact block flags (stored in the low bits of the state id)
+     */
+    private static final int FLAG_STATE = 1;
+    private static final int FLAG_NBT = 2;
+    private static final int FLAG_BITS = 2;
+
     @Override
     public boolean canSerialize(String type) {
         return (type != null) && type.equalsIgnoreCase(CLASS_TYPE);
@@ -109,6 +120,11 @@ public class SerializerBlockChange implements IChangesetSerializer {
         try {
             UnsafeDataOutput stream = new UnsafeDataOutput();
 
+            if (storage instanceof UndoDescriptor) {
+                writeCompact(stream, (UndoDescriptor) storage, position, previous, current);
+                return stream.toByteArray();
+            }
+
             stream.writeDouble(position.getX());
             stream.writeDouble(position.getY());
             stream.writeDouble(position.getZ());
@@ -132,6 +148,10 @@ public class SerializerBlockChange implements IChangesetSerializer {
         try {
             UnsafeDataInput stream = new UnsafeDataInput(data);
 
+            if (data.length > 0 && data[0] == UndoEntry.COMPACT) {
+                return storage instanceof UndoDescriptor ? readCompact(stream, (UndoDescriptor) storage) : null;
+            }
+
             double x = stream.readDouble();
             double y = stream.readDouble();
             double z = stream.readDouble();
@@ -146,6 +166,73 @@ public class SerializerBlockChange implements IChangesetSerializer {
         }
     }
 
+    /**
+     * Write the change using the compact format: the position is stored as
+     * zig-zag varint delta from the file origin and the blocks as block state
+     * dictionary ids. The v1 data starts with the X coordinate (double), its
+     * first byte is never equal to the compact marker for block coordinates.
+     */
+    private void writeCompact(DataOutput stream, UndoDescriptor descriptor, BlockVector3 position,
+            BlockStateHolder previous, BlockStateHolder current) throws IOException {
+        final BlockVector3 origin = descriptor.getOrigin(position);
+        final UndoDictionary<BlockState> states = descriptor.getBlockStates();
+
+        stream.writeByte(UndoEntry.COMPACT);
+        VarInt.writeSignedInt(stream, position.getX() - origin.getX());
+        VarInt.writeSignedInt(stream, position.getY() - origin.getY());
+        VarInt.writeSignedInt(stream, position.getZ() - origin.getZ());
+
+        writeBlockCompact(stream, states, previous);
+        writeBlockCompact(stream, states, current);
+    }
+
+    private Change readCompact(UnsafeDataInput stream, UndoDescriptor descriptor) throws IOException {
+        final BlockVector3 origin = descriptor.getOrigin();
+        final UndoDictionary<BlockState> states = descriptor.getBlockStates();
+        if (origin == null) {
+            return null;
+        }
+
+        stream.readByte();
+        final int x = origin.getX() + VarInt.readSignedInt(stream);
+        final int y = origin.getY() + VarInt.readSignedInt(stream);
+        final int z = origin.getZ() + VarInt.readSignedInt(stream);
+
+        final BlockStateHolder previous = readBlockCompact(stream, states);
+        final BlockStateHolder current = readBlockCompact(stream, states);
+
+        return new BlockChange(BlockVector3.at(x, y, z), previous, current);
+    }
+
+    private void writeBlockCompact(DataOutput stream, UndoDictionary<BlockState> states,
+            BlockStateHolder bsh) throws IOException {
+        final boolean isBs = isBlockState(bsh);
+        final BaseBlock block = isBs ? null : bsh.toBaseBlock();
+        final BlockState state = isBs ? (BlockState) bsh : block.toImmutableState();
+        final boolean hasNbt = block != null && block.hasNbtData();
+
+        VarInt.writeInt(stream, states.getId(state) << FLAG_BITS
+                | (isBs ? FLAG_STATE : 0) | (hasNbt ? FLAG_NBT : 0));
+        if (hasNbt) {
+            NbtTagSerializer.serialize(stream, block.getNbtData());
+        }
+    }
+
+    private BlockStateHolder readBlockCompact(DataInput stream, UndoDictionary<BlockState> states) throws IOException {
+        final int value = VarInt.readInt(stream);
+        final BlockState state = states.get(value >>> FLAG_BITS);
+        final Tag nbtTag = (value & FLAG_NBT) != 0 ? NbtTagSerializer.deserialize(stream) : null;
+
+        if (state == null) {
+            return null;
+        }
+        if (nbtTag instanceof CompoundTag) {
+            return state.toBaseBlock((CompoundTag) nbtTag);
+        }
+
+        return (value & FLAG_STATE) != 0 ? state : state.toBaseBlock();
+    }
+
     /**
      * Serialize block data
      *
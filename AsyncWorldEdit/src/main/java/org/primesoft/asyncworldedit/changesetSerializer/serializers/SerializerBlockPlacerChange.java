@@ -55,6 +55,7 @@ import org.primesoft.asyncworldedit.api.changesetSerializer.IMemoryStorage;
 import org.primesoft.asyncworldedit.api.changesetSerializer.ISerializerManager;
 import org.primesoft.asyncworldedit.api.changesetSerializer.IUndoEntry;
 import org.primesoft.asyncworldedit.blockPlacer.BlockPlacerChange;
+import org.primesoft.asyncworldedit.changesetSerializer.UndoDescriptor;
 import org.primesoft.asyncworldedit.changesetSerializer.UndoEntry;
 import org.primesoft.asyncworldedit.utils.Compression;
 import org.primesoft.asyncworldedit.utils.ExceptionHelper;
@@ -69,6 +70,12 @@ public class SerializerBlockPlacerChange implements IChangesetSerializer {
 
     private static final String CLASS_TYPE = BlockPlacerChange.class.getName();
 
+    /**
+     * The compact format flags
+     */
+    private static final int FLAG_DEMANDING = 1;
+    private static final int FLAG_CHANGE = 2;
+
     private final IBlockPlacer m_blockPlacer;
     private final ISerializerManager m_serializerManager;
 
@@ -94,12 +101,25 @@ public class SerializerBlockPlacerChange implements IChangesetSerializer {
         try {
             UnsafeDataOutput stream = new UnsafeDataOutput();
 
-            stream.writeBoolean(bpChange.isDemanding());
             IUndoEntry entry = null;
             if (subChange != null) {
                 entry = m_serializerManager.serialize(subChange, storage);
             }
 
+            if (storage instanceof UndoDescriptor) {
+                //The compact format is not compressed, the dictionaries already
+                //remove most of the redundancy of a single change
+                stream.writeByte(UndoEntry.COMPACT);
+                stream.writeByte((bpChange.isDemanding() ? FLAG_DEMANDING : 0) | (entry != null ? FLAG_CHANGE : 0));
+                if (entry != null) {
+                    UndoEntry.saveNested(stream, entry, ((UndoDescriptor) storage).getTypes().getId(entry.getType()));
+                }
+
+                return stream.toByteArray();
+            }
+
+            stream.writeBoolean(bpChange.isDemanding());
+
             if (entry == null) {
                 stream.writeBoolean(false);
             } else {
@@ -117,6 +137,10 @@ public class SerializerBlockPlacerChange implements IChangesetSerializer {
     @Override
     public Change deserialize(byte[] data, IMemoryStorage storage) {
         try {
+            if (data != null && data.length > 0 && data[0] == UndoEntry.COMPACT) {
+                return deserializeCompact(data, storage);
+            }
+
             data = Compression.decompress(data);
             
             UnsafeDataInput stream = new UnsafeDataInput(data);
@@ -136,4 +160,22 @@ public class SerializerBlockPlacerChange implements IChangesetSerializer {
         }
     }
 
+    /**
+     * Deserialize the compact format, the v1 data is zlib compressed so it
+     * never starts with the compact marker
+     */
+    private Change deserializeCompact(byte[] data, IMemoryStorage storage) throws IOException {
+        final UnsafeDataInput stream = new UnsafeDataInput(data);
+        stream.readByte();
+
+        final int flags = stream.readUnsignedByte();
+        Change subChange = null;
+        if ((flags & FLAG_CHANGE) != 0) {
+            IUndoEntry subEntry = UndoEntry.loadNested(stream,
+                    storage instanceof UndoDescriptor ? ((UndoDescriptor) storage).getTypes() : null);
+            subChange = m_serializerManager.deserialize(subEntry, storage);
+        }
+
+        return new BlockPlacerChange(subChange, m_blockPlacer, (flags & FLAG_DEMANDING) != 0);
+    }
 }
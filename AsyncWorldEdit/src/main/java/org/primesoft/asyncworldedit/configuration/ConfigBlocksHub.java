@@ -60,6 +60,12 @@ public class ConfigBlocksHub {
     private final BHLevel m_checkAccess;
 
     private final BHLevel m_logBlocks;
+
+    private final boolean m_logAsync;
+
+    private final long m_accessCacheTime;
+
+    private final boolean m_accessChunkUniform;
     
     
 
@@ -72,6 +78,15 @@ public class ConfigBlocksHub {
         return m_logBlocks;
     }
 
+    /**
+     * Should the block changes be logged by the logger thread
+     *
+     * @return
+     */
+    public boolean isLogAsync() {
+        return m_logAsync;
+    }
+
     /**
      * Get block perms checking integration level
      *
@@ -82,6 +97,24 @@ public class ConfigBlocksHub {
     }
     
     
+    /**
+     * How long (ms) the chunk access decisions are cached, 0 to disable
+     *
+     * @return
+     */
+    public long getAccessCacheTime() {
+        return m_accessCacheTime;
+    }
+
+    /**
+     * Treat all access decisions as uniform across a chunk
+     *
+     * @return
+     */
+    public boolean isAccessChunkUniform() {
+        return m_accessChunkUniform;
+    }
+
     /**
      * World access override for "special" player entries
      *
@@ -96,16 +129,21 @@ public class ConfigBlocksHub {
         m_accessOverride = EnumSet.noneOf(AccessType.class);
         if (bhSection == null) {
             m_logBlocks = BHLevel.Regular;
+            m_logAsync = true;
             m_checkAccess = BHLevel.Disabled;
+            m_accessCacheTime = 1000;
+            m_accessChunkUniform = false;
             return;
         }
 
         IConfigurationSection logSection = bhSection.getConfigurationSection("log");
         if (logSection == null) {
             m_logBlocks = BHLevel.Regular;
+            m_logAsync = true;
         } else {
             boolean isEnabled = logSection.getBoolean("isEnabled", true);
             boolean isDcEnabled = logSection.getBoolean("isDcEnabled", false);
+            m_logAsync = logSection.getBoolean("isAsync", true);
 
             if (!isEnabled) {
                 m_logBlocks = BHLevel.Disabled;
@@ -119,6 +157,8 @@ public class ConfigBlocksHub {
         IConfigurationSection accessSection = bhSection.getConfigurationSection("access");
         if (accessSection == null) {
             m_checkAccess = BHLevel.Disabled;
+            m_accessCacheTime = 1000;
+            m_accessChunkUniform = false;
         } else {
             boolean isEnabled = accessSection.getBoolean("isEnabled", true);
             boolean isDcEnabled = accessSection.getBoolean("isDcEnabled", false);
@@ -143,6 +183,9 @@ public class ConfigBlocksHub {
             if (accessSection.getBoolean("allowOffline", false)) {
                 m_accessOverride.add(AccessType.Offline);
             }
+
+            m_accessCacheTime = Math.max(0, accessSection.getInt("cacheTime", 1000));
+            m_accessChunkUniform = accessSection.getBoolean("chunkUniform", false);
         }
     }
     
@@ -71,6 +71,16 @@ public class ConfigDispatcher {
      */
     private int m_maxTime;
 
+    /**
+     * How long (ms) an unwatched chunk stays force loaded
+     */
+    private int m_forceloadGrace;
+
+    /**
+     * Serve the queued jobs at the end of the server tick
+     */
+    private boolean m_tickEndDrain;
+
     public int getMaxIdle() {
         return m_maxIdle;
     }
@@ -83,15 +93,27 @@ public class ConfigDispatcher {
         return m_maxTime;
     }
 
+    public int getForceloadGrace() {
+        return m_forceloadGrace;
+    }
+
+    public boolean isTickEndDrain() {
+        return m_tickEndDrain;
+    }
+
     public ConfigDispatcher(IConfigurationSection dSection) {
         if (dSection == null) {
             m_maxIdle = 200;
             m_maxJobs = 2000;
             m_maxTime = 20;
+            m_forceloadGrace = 1000;
+            m_tickEndDrain = false;
         } else {
             m_maxIdle = dSection.getInt("max-idle-runs", 200);
             m_maxJobs = dSection.getInt("max-jobs", 2000);
             m_maxTime = dSection.getInt("max-time", 20);
+            m_forceloadGrace = dSection.getInt("forceload-grace", 1000);
+            m_tickEndDrain = dSection.getBoolean("tick-end-drain", false);
         }
 
         if (m_maxTime < 1) {
@@ -107,6 +129,11 @@ public class ConfigDispatcher {
             m_maxIdle = 10;
             log("Warning: Dispatcher max idle is lower then 1, changing to 10");
         }
+
+        if (m_forceloadGrace < 0) {
+            m_forceloadGrace = 0;
+            log("Warning: Dispatcher forceload grace is lower then 0, changing to 0");
+        }
     }
 
 }
@@ -141,6 +141,11 @@ public class ConfigProvider {
      * The undo folder
      */
     private static File m_undoFolder;
+
+    /**
+     * The block placer spill folder
+     */
+    private static File m_spillFolder;
     
     /**
      * The DIrectChunk API configuration
@@ -274,6 +279,14 @@ public class ConfigProvider {
     public static File getUndoFolder() {
         return m_undoFolder;
     }
+
+    /**
+     * The block placer spill folder
+     * @return
+     */
+    public static File getSpillFolder() {
+        return m_spillFolder;
+    }
     
 
     /**
@@ -321,6 +334,7 @@ public class ConfigProvider {
         IConfiguration config = aweCore.getPlatform().getConfig();
         m_pluginFolder = config.getDataFolder();
         m_undoFolder = new File(m_pluginFolder, "undo");
+        m_spillFolder = new File(m_pluginFolder, "spill");
         
         if (!m_undoFolder.exists()) {
             m_undoFolder.mkdirs();
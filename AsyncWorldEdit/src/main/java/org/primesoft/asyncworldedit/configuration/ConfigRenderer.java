@@ -68,6 +68,26 @@ public class ConfigRenderer {
     
     private final int m_bpsAverage;
 
+    private final int m_chunkBatchSize;
+
+    private final int m_fairQuantum;
+
+    private final boolean m_spillToDisk;
+
+    private final boolean m_proximityOrder;
+
+    private final boolean m_adaptiveBudget;
+
+    private final int m_targetMspt;
+
+    private final int m_minBudget;
+
+    private final int m_maxBudget;
+
+    private final int m_budgetIncrease;
+
+    private final int m_budgetDecrease;
+
     /**
      * Get maximum size of the queue
      *
@@ -102,7 +122,121 @@ public class ConfigRenderer {
         return m_bpsAverage;
     }
 
+    /**
+     * Maximum number of blocks from the same chunk placed as one batch
+     *
+     * @return
+     */
+    public int getChunkBatchSize() {
+        return m_chunkBatchSize;
+    }
+
+    /**
+     * Number of blocks a permission group with weight 1 can place in one
+     * fair queuing round
+     *
+     * @return
+     */
+    public int getFairQuantum() {
+        return m_fairQuantum;
+    }
+
+    /**
+     * Should the queued blocks be stored on disk when the queue soft limit
+     * is reached
+     *
+     * @return
+     */
+    public boolean isSpillToDiskEnabled() {
+        return m_spillToDisk;
+    }
+
+    /**
+     * Should the queued blocks be placed in the chunks near the player first
+     *
+     * @return
+     */
+    public boolean isProximityOrderEnabled() {
+        return m_proximityOrder;
+    }
+
+    /**
+     * Is the adaptive (MSPT based) block placer budget enabled
+     *
+     * @return
+     */
+    public boolean isAdaptiveBudgetEnabled() {
+        return m_adaptiveBudget;
+    }
+
+    /**
+     * The target milliseconds per tick
+     *
+     * @return
+     */
+    public int getTargetMspt() {
+        return m_targetMspt;
+    }
+
+    /**
+     * Minimum block placer budget (percent)
+     *
+     * @return
+     */
+    public int getMinBudget() {
+        return m_minBudget;
+    }
+
+    /**
+     * Maximum block placer budget (percent)
+     *
+     * @return
+     */
+    public int getMaxBudget() {
+        return m_maxBudget;
+    }
+
+    /**
+     * Block placer budget increase (percent points)
+     *
+     * @return
+     */
+    public int getBudgetIncrease() {
+        return m_budgetIncrease;
+    }
+
+    /**
+     * Block placer budget decrease (percent of current budget)
+     *
+     * @return
+     */
+    public int getBudgetDecrease() {
+        return m_budgetDecrease;
+    }
+
     public ConfigRenderer(IConfigurationSection renderSection) {
+        IConfigurationSection adaptiveSection = renderSection != null ? renderSection.getConfigurationSection("adaptive") : null;
+        if (adaptiveSection == null) {
+            m_adaptiveBudget = false;
+            m_targetMspt = 40;
+            m_minBudget = 10;
+            m_maxBudget = 400;
+            m_budgetIncrease = 5;
+            m_budgetDecrease = 50;
+        } else {
+            m_adaptiveBudget = adaptiveSection.getBoolean("enabled", false);
+            m_targetMspt = adaptiveSection.getInt("target-mspt", 40);
+            m_minBudget = adaptiveSection.getInt("min-budget", 10);
+            m_maxBudget = adaptiveSection.getInt("max-budget", 400);
+            m_budgetIncrease = adaptiveSection.getInt("increase", 5);
+            m_budgetDecrease = adaptiveSection.getInt("decrease", 50);
+            
+            if (m_minBudget > m_maxBudget) {
+                log("Warinig: Adaptive budget min-budget > max-budget!");
+            }
+        }
+        
+
         if (renderSection == null) {
             m_interval = 15;
             m_queueTalkInterval = 10;
@@ -110,6 +244,10 @@ public class ConfigRenderer {
             m_queueMaxSizeHard = 10000000;
             m_queueMaxSizeSoft = 5000000;
             m_bpsAverage = 5;
+            m_chunkBatchSize = 256;
+            m_fairQuantum = 1000;
+            m_spillToDisk = false;
+            m_proximityOrder = false;
         } else {
             m_interval = renderSection.getInt("interval", 15);
             m_queueTalkInterval = renderSection.getInt("talk-interval", 10);
@@ -117,6 +255,10 @@ public class ConfigRenderer {
             m_queueMaxSizeHard = renderSection.getInt("queue-max-size-hard", 10000000);
             m_queueMaxSizeSoft = renderSection.getInt("queue-max-size-soft", 5000000);
             m_bpsAverage = renderSection.getInt("bps-avg-data-points", 5);
+            m_chunkBatchSize = renderSection.getInt("chunk-batch-size", 256);
+            m_fairQuantum = Math.max(1, renderSection.getInt("fair-quantum", 1000));
+            m_spillToDisk = renderSection.getBoolean("spill-to-disk", false);
+            m_proximityOrder = renderSection.getBoolean("proximity-order", false);
 
             if (m_bpsAverage < 2) {
                 log("Warinig: Not enough data points to properly calculate the BPS. Value: " + m_bpsAverage + " minimum: 2");
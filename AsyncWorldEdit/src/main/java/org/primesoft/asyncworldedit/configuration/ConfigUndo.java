@@ -63,6 +63,9 @@ public class ConfigUndo {
     private final int m_keepSessionOnLogoutFor;
     private final int m_keepUndoFileFor;
     private final int m_undoFileCleanupInterval;
+    private final UndoCompression m_compression;
+    private final int m_compressionLevel;
+    private final int m_compressionFrameSize;
 
     public UndoBehaviour getMainBehaviour() {
         return m_undoMain;
@@ -92,6 +95,22 @@ public class ConfigUndo {
         return m_keepUndoFileFor;
     }
 
+    public UndoCompression getCompression() {
+        return m_compression;
+    }
+
+    public int getCompressionLevel() {
+        return m_compressionLevel;
+    }
+
+    /**
+     * The compression frame size in bytes
+     * @return 
+     */
+    public int getCompressionFrameSize() {
+        return m_compressionFrameSize;
+    }
+
 
     ConfigUndo(IConfigurationSection secUndo) {
         if (secUndo == null) {
@@ -102,11 +121,29 @@ public class ConfigUndo {
             m_keepSessionOnLogoutFor = 0;
             m_undoFileCleanupInterval = 30;
             m_keepUndoFileFor = 0;
+            m_compression = UndoCompression.Lz;
+            m_compressionLevel = 6;
+            m_compressionFrameSize = 64 * 1024;
         } else {
             m_storeOnDisk = secUndo.getBoolean("storeOnDisk", true);
             m_keepSessionOnLogoutFor = secUndo.getInt("keepSessionOnLogoutFor", 0);
             m_undoFileCleanupInterval = secUndo.getInt("undoFileCleanupInterval", 30);
             m_keepUndoFileFor = secUndo.getInt("keepUndoFileFor", 0);
+
+            m_compression = parse(secUndo.getString("compression", null), UndoCompression.Lz);
+            int level = secUndo.getInt("compressionLevel", 6);
+            if (level < 0 || level > 9) {
+                log("WARNING: Invalid undo compression level, using 6");
+                level = 6;
+            }
+            m_compressionLevel = level;
+
+            int frameSize = secUndo.getInt("compressionFrameSize", 64);
+            if (frameSize < 4 || frameSize > 1024) {
+                log("WARNING: Undo compression frame size should be between 4 and 1024 KB");
+                frameSize = Math.max(4, Math.min(1024, frameSize));
+            }
+            m_compressionFrameSize = frameSize * 1024;
             
             m_undoAsync = parse(secUndo.getString("memoryLow", null), UndoBehaviour.Wait);
             UndoBehaviour uLoad = parse(secUndo.getString("memoryLowStorage", null), UndoBehaviour.Wait);
@@ -131,12 +168,12 @@ public class ConfigUndo {
         }
     }
 
-    private UndoBehaviour parse(String value, UndoBehaviour defaultValue) {
+    private <T extends Enum<T>> T parse(String value, T defaultValue) {
         if (value == null) {
             return defaultValue;
         }
         
-        for (UndoBehaviour i : UndoBehaviour.values()) {
+        for (T i : defaultValue.getDeclaringClass().getEnumConstants()) {
             if (i.name().equalsIgnoreCase(value)) {
                 return i;
             }
@@ -86,6 +86,7 @@ import org.primesoft.asyncworldedit.api.IAweOperations;
 import org.primesoft.asyncworldedit.api.changesetSerializer.ISerializerManager;
 import org.primesoft.asyncworldedit.api.inner.IAsyncWorldEditCore;
 import org.primesoft.asyncworldedit.api.inner.IChunkWatch;
+import org.primesoft.asyncworldedit.api.inner.IInnerBlockPlacer;
 import org.primesoft.asyncworldedit.api.inner.IWorldeditIntegratorInner;
 import org.primesoft.asyncworldedit.api.inner.IInnerSerializerManager;
 import org.primesoft.asyncworldedit.api.map.IMapUtils;
@@ -269,6 +270,11 @@ public abstract class AsyncWorldEditCore implements IAsyncWorldEditCore, IAweOpe
         return m_blockPlacer;
     }
 
+    @Override
+    public IInnerBlockPlacer getInnerBlockPlacer() {
+        return m_blockPlacer;
+    }
+
     @Override
     public ITaskDispatcher getTaskDispatcher() {
         return m_dispatcher;
@@ -444,6 +450,10 @@ public abstract class AsyncWorldEditCore implements IAsyncWorldEditCore, IAweOpe
                 bRelighter.stop();
             }
 
+            if (m_blocksHubBridge instanceof BlocksHubBridge) {
+                ((BlocksHubBridge) m_blocksHubBridge).stop();
+            }
+
             m_isInitialized = false;
 
             m_platform.onDisable();
@@ -0,0 +1,287 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2014, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.core;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The chunk reference counts of a single world stored in a primitive, long
+ * keyed open addressing table. The table is modified under the object lock
+ * and read without locking. Entries are never removed from a live table,
+ * released chunks are dropped when the table is rebuilt.
+ *
+ * @author SBPrime
+ */
+final class ChunkRefMap {
+
+    private final static long EMPTY = Long.MIN_VALUE;
+
+    private final static int INITIAL_CAPACITY = 64;
+
+    private static long encode(int cx, int cz) {
+        return (long) cx << 32 | cz & 0xFFFFFFFFL;
+    }
+
+    private static int hash(long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * How long (ms) the chunk stays locked after all references are released
+     */
+    private final long m_cooldown;
+
+    private volatile Table m_table = new Table(INITIAL_CAPACITY);
+
+    ChunkRefMap(long cooldown) {
+        m_cooldown = cooldown;
+    }
+
+    /**
+     * Add chunk references
+     *
+     * @param cx
+     * @param cz
+     * @param count
+     */
+    synchronized void add(int cx, int cz, int count) {
+        final long key = encode(cx, cz);
+        Table table = m_table;
+        int idx = table.find(key);
+        if (idx < 0) {
+            if ((table.m_used + 1) * 2 > table.capacity()) {
+                table = rebuild(table, System.currentTimeMillis(), true);
+            }
+            idx = table.insert(key);
+        }
+
+        table.m_refs.addAndGet(idx, count);
+    }
+
+    /**
+     * Release chunk references
+     *
+     * @param cx
+     * @param cz
+     * @param count
+     */
+    synchronized void remove(int cx, int cz, int count) {
+        final Table table = m_table;
+        final int idx = table.find(encode(cx, cz));
+        if (idx < 0) {
+            return;
+        }
+
+        final int refs = Math.max(0, table.m_refs.get(idx) - count);
+        if (refs == 0) {
+            table.m_zeroTime.set(idx, System.currentTimeMillis());
+        }
+        table.m_refs.set(idx, refs);
+    }
+
+    /**
+     * Is any chunk in the square around the chunk locked (lock free)
+     *
+     * @param cx
+     * @param cz
+     * @param delta the square radius
+     * @return
+     */
+    boolean isLocked(int cx, int cz, int delta) {
+        final Table table = m_table;
+        if (table.m_used == 0) {
+            return false;
+        }
+
+        long now = 0;
+        for (int px = cx - delta; px <= cx + delta; px++) {
+            for (int pz = cz - delta; pz <= cz + delta; pz++) {
+                final int idx = table.find(encode(px, pz));
+                if (idx < 0) {
+                    continue;
+                }
+
+                if (table.m_refs.get(idx) > 0) {
+                    return true;
+                }
+
+                if (now == 0) {
+                    now = System.currentTimeMillis();
+                }
+                if (now - table.m_zeroTime.get(idx) < m_cooldown) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Drop the released chunks
+     */
+    synchronized void cleanup() {
+        final Table table = m_table;
+        final long now = System.currentTimeMillis();
+
+        boolean expired = false;
+        for (int idx = 0; idx < table.capacity() && !expired; idx++) {
+            expired = table.m_keys.get(idx) != EMPTY && table.isExpired(idx, now, m_cooldown);
+        }
+
+        if (expired) {
+            rebuild(table, now, false);
+        }
+    }
+
+    synchronized void clear() {
+        m_table = new Table(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Copy the live entries to a new table and publish it
+     *
+     * @param grow make room for a new entry
+     */
+    private Table rebuild(Table table, long now, boolean grow) {
+        int live = 0;
+        for (int idx = 0; idx < table.capacity(); idx++) {
+            if (table.m_keys.get(idx) != EMPTY && !table.isExpired(idx, now, m_cooldown)) {
+                live++;
+            }
+        }
+
+        int capacity = INITIAL_CAPACITY;
+        while ((live + (grow ? 1 : 0)) * 4 > capacity) {
+            capacity <<= 1;
+        }
+
+        final Table result = new Table(capacity);
+        for (int idx = 0; idx < table.capacity(); idx++) {
+            final long key = table.m_keys.get(idx);
+            if (key == EMPTY || table.isExpired(idx, now, m_cooldown)) {
+                continue;
+            }
+
+            final int nIdx = result.insert(key);
+            result.m_refs.set(nIdx, table.m_refs.get(idx));
+            result.m_zeroTime.set(nIdx, table.m_zeroTime.get(idx));
+        }
+
+        m_table = result;
+        return result;
+    }
+
+    private static final class Table {
+
+        private final AtomicLongArray m_keys;
+
+        private final AtomicIntegerArray m_refs;
+
+        private final AtomicLongArray m_zeroTime;
+
+        private final int m_mask;
+
+        /**
+         * Number of used slots, modified under the map lock
+         */
+        private volatile int m_used;
+
+        Table(int capacity) {
+            m_keys = new AtomicLongArray(capacity);
+            m_refs = new AtomicIntegerArray(capacity);
+            m_zeroTime = new AtomicLongArray(capacity);
+            m_mask = capacity - 1;
+
+            for (int i = 0; i < capacity; i++) {
+                m_keys.lazySet(i, EMPTY);
+            }
+        }
+
+        int capacity() {
+            return m_mask + 1;
+        }
+
+        boolean isExpired(int idx, long now, long cooldown) {
+            return m_refs.get(idx) <= 0 && now - m_zeroTime.get(idx) >= cooldown;
+        }
+
+        int find(long key) {
+            int idx = hash(key) & m_mask;
+            while (true) {
+                final long k = m_keys.get(idx);
+                if (k == key) {
+                    return idx;
+                }
+                if (k == EMPTY) {
+                    return -1;
+                }
+                idx = (idx + 1) & m_mask;
+            }
+        }
+
+        /**
+         * Insert a new key (the key should not be in the table), the key is
+         * published after the slot data is reset
+         */
+        int insert(long key) {
+            int idx = hash(key) & m_mask;
+            while (m_keys.get(idx) != EMPTY) {
+                idx = (idx + 1) & m_mask;
+            }
+
+            m_refs.set(idx, 0);
+            m_zeroTime.set(idx, 0);
+            m_keys.set(idx, key);
+            m_used++;
+            return idx;
+        }
+    }
+}
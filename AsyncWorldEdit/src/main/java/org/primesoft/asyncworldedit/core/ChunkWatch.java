@@ -47,11 +47,16 @@
  */
 package org.primesoft.asyncworldedit.core;
 
+import org.primesoft.asyncworldedit.api.inner.IAsyncWorldEditCore;
+import org.primesoft.asyncworldedit.api.inner.IBlocksHubBridge;
 import org.primesoft.asyncworldedit.api.inner.IChunkWatch;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import org.primesoft.asyncworldedit.api.taskdispatcher.ITaskDispatcher;
+import org.primesoft.asyncworldedit.utils.ConcurrentLongMap;
 import org.primesoft.asyncworldedit.utils.InOutParam;
+import org.primesoft.asyncworldedit.worldedit.world.SectionSnapshotCache;
 
 /**
  * This class suppresses chunk unloading
@@ -59,8 +64,6 @@ import org.primesoft.asyncworldedit.utils.InOutParam;
  * @author SBPrime
  */
 public abstract class ChunkWatch implements IChunkWatch {
-    private final static Object INSTANCE = new Object();
-   
     private final Map<String, WorldEntry> m_entries = new ConcurrentHashMap<>();
 
     /**
@@ -73,7 +76,8 @@ public abstract class ChunkWatch implements IChunkWatch {
     }
     
     private WorldEntry getEntry(String world) {
-        return m_entries.computeIfAbsent(world, _wn -> new WorldEntry());
+        final WorldEntry result = m_entries.get(world);
+        return result != null ? result : m_entries.computeIfAbsent(world, _wn -> new WorldEntry());
     }
 
     /**
@@ -95,10 +99,9 @@ public abstract class ChunkWatch implements IChunkWatch {
     public void add(int cx, int cz, String worldName) {        
         final long chunk = encode(cx, cz);
         final WorldEntry worldEntry = getEntry(worldName);
-        worldEntry.Watched.compute(chunk, (_chunk, value) -> {
-            if (value == null) {
+        worldEntry.Watched.update(chunk, (_chunk, value) -> {
+            if (value == 0) {
                 forceloadOn(worldName, cx, cz);
-                return 1;
             }
 
             return value + 1;
@@ -117,35 +120,27 @@ public abstract class ChunkWatch implements IChunkWatch {
         final WorldEntry worldEntry = getEntry(worldName);
         final long chunk = encode(cx, cz);
         
-        worldEntry.Watched.computeIfPresent(chunk, (_chunk, value) -> {            
-            if (value == null) {
-                return null;
+        worldEntry.Watched.update(chunk, (_chunk, value) -> {
+            if (value <= 0) {
+                return 0;
             }
 
-            value = value - 1;
-            try {
-                return value <= 0 ? null : value;
-            } finally {
-                if (value <= 0) {
-                    forceloadOff(worldName, cx, cz);
-                }
+            if (value == 1) {
+                forceloadOff(worldName, cx, cz);
             }
-        });        
+            return value - 1;
+        });
     }
 
     protected final int getReferences(String worldName, int cx, int cz) {
         final WorldEntry worldEntry = getEntry(worldName);
         final long chunk = encode(cx, cz);
                 
-        Integer value = worldEntry.Watched.get(chunk);
-        if (value == null) {
-            return 0;
-        }
-        return value;
+        return (int) worldEntry.Watched.get(chunk);
     }
 
     protected void chunkLoaded(String worldName, int cx, int cz) {
-        getEntry(worldName).Loaded.put(encode(cx, cz), INSTANCE);
+        getEntry(worldName).Loaded.put(encode(cx, cz), 1);
     }
 
     public boolean chunkUnloading(String worldName, int cx, int cz) {
@@ -153,8 +148,8 @@ public abstract class ChunkWatch implements IChunkWatch {
         final long chunk = encode(cx, cz);
         final InOutParam<Boolean> result = InOutParam.Ref(false);
         
-        worldEntry.Watched.computeIfPresent(chunk, (_chunk, value) -> {
-            boolean cancel = value != null && value > 0;
+        worldEntry.Watched.update(chunk, (_chunk, value) -> {
+            boolean cancel = value > 0;
             
             if (cancel && supportUnloadCancel()) {
                 result.setValue(true);
@@ -165,6 +160,15 @@ public abstract class ChunkWatch implements IChunkWatch {
             return value;
         });
 
+        if (!result.getValue()) {
+            SectionSnapshotCache.invalidateChunk(worldName, cx, cz);
+
+            final IAsyncWorldEditCore core = AwePlatform.getInstance().getCore();
+            final IBlocksHubBridge blocksHub = core != null ? core.getBlocksHubBridge() : null;
+            if (blocksHub != null) {
+                blocksHub.invalidateAccess(worldName, cx, cz);
+            }
+        }
         return result.getValue();
     }
 
@@ -178,6 +182,7 @@ public abstract class ChunkWatch implements IChunkWatch {
     @Override
     public void setChunkUnloaded(int cx, int cz, String worldName) {
         getEntry(worldName).Loaded.remove(encode(cx, cz));
+        SectionSnapshotCache.invalidateChunk(worldName, cx, cz);
     }
 
     /**
@@ -211,6 +216,18 @@ public abstract class ChunkWatch implements IChunkWatch {
         }
     }
 
+    @Override
+    public CompletableFuture<Boolean> loadChunkAsync(final int cx, final int cz, final String worldName) {
+        if (isChunkLoaded(cx, cz, worldName)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        if (m_dispatcher == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        return doLoadChunkAsync(cx, cz, worldName);
+    }
+
     /**
      * Register the chunk watcher events
      */
@@ -226,6 +243,23 @@ public abstract class ChunkWatch implements IChunkWatch {
      */
     protected abstract boolean doLoadChunk(int cx, int cz, String worldName);
 
+    /**
+     * Do the actual chunk loading without waiting for the result. By default
+     * the chunk is loaded on the dispatcher.
+     *
+     * @param cx
+     * @param cz
+     * @param worldName
+     * @return
+     */
+    protected CompletableFuture<Boolean> doLoadChunkAsync(int cx, int cz, String worldName) {
+        return m_dispatcher.queueFastOperationAsync(() -> doLoadChunk(cx, cz, worldName));
+    }
+
+    protected ITaskDispatcher getDispatcher() {
+        return m_dispatcher;
+    }
+
     @Override
     public void setTaskDispat(ITaskDispatcher dispatcher) {
         m_dispatcher = dispatcher;
@@ -241,11 +275,11 @@ public abstract class ChunkWatch implements IChunkWatch {
         /**
          * List of all loaded chunks
          */
-        public final Map<Long, Object> Loaded = new ConcurrentHashMap<>();
+        public final ConcurrentLongMap Loaded = new ConcurrentLongMap();
     
         /**
-         * Suppressed chunks
+         * Suppressed chunks (chunk to reference count)
          */
-        public final Map<Long, Integer> Watched = new ConcurrentHashMap<>();
+        public final ConcurrentLongMap Watched = new ConcurrentLongMap();
     }
 }
@@ -55,10 +55,8 @@ import org.primesoft.asyncworldedit.platform.api.IPlatform;
 import org.primesoft.asyncworldedit.platform.api.IScheduler;
 import org.primesoft.asyncworldedit.platform.api.ITask;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
 
 /**
@@ -76,19 +74,15 @@ public abstract class PhysicsWatch implements IPhysicsWatch, IPlatform.PlatformE
     /**
      * Is physics watch enabled
      */
-    protected boolean m_isEnabled;
+    protected volatile boolean m_isEnabled;
     
-    private Function<String, Boolean> m_check = i -> true;
+    private volatile Function<String, Boolean> m_check = i -> true;
 
     /**
-     * MTA mutex
+     * Locked chunks (per world). The world maps are never removed, the
+     * physics events read them without locking.
      */
-    private final Object m_mutex;
-
-    /**
-     * Locked blocks
-     */
-    private final Map<String, Map<Integer, Map<Integer, ChunkData>>> m_locked;
+    private final ConcurrentMap<String, ChunkRefMap> m_locked;
 
     private ITask m_cleanupTask;
 
@@ -98,8 +92,7 @@ public abstract class PhysicsWatch implements IPhysicsWatch, IPlatform.PlatformE
     protected PhysicsWatch(
             final IScheduler scheduler) {
 
-        m_mutex = new Object();
-        m_locked = new HashMap<>();
+        m_locked = new ConcurrentHashMap<>();
         m_scheduler = scheduler;
     }
 
@@ -124,9 +117,7 @@ public abstract class PhysicsWatch implements IPhysicsWatch, IPlatform.PlatformE
     @Override
     public void disable() {
         m_isEnabled = false;
-        synchronized (m_mutex) {
-            m_locked.clear();
-        }
+        m_locked.values().forEach(ChunkRefMap::clear);
 
         synchronized (this) {
             if (m_cleanupTask != null) {
@@ -143,19 +134,24 @@ public abstract class PhysicsWatch implements IPhysicsWatch, IPlatform.PlatformE
      */
     @Override
     public void addLocation(String name, BlockVector3 location) {
-        int x = location.getBlockX() / 16;
-        //int y = location.getBlockY();
-        int z = location.getBlockZ() / 16;
-
-        synchronized (m_mutex) {
-            if (!m_isEnabled) {
-                return;
-            }
+        addLocations(name, location.getBlockX() >> 4, location.getBlockZ() >> 4, 1);
+    }
 
-            Map<Integer, Map<Integer, ChunkData>> xhash = m_locked.computeIfAbsent(name, i -> new HashMap<>());
-            Map<Integer, ChunkData> zhash = xhash.computeIfAbsent(x, i -> new HashMap<>());
-            zhash.compute(z, (_z, value) -> (value == null ? new ChunkData() : value).incRefs());
+    /**
+     * Add multiple watched locations from the same chunk
+     *
+     * @param name the world name
+     * @param x the chunk X coordinate
+     * @param z the chunk Z coordinate
+     * @param count number of locations to add
+     */
+    @Override
+    public void addLocations(String name, int x, int z, int count) {
+        if (!m_isEnabled || count <= 0) {
+            return;
         }
+
+        m_locked.computeIfAbsent(name, i -> new ChunkRefMap(CHUNK_COOLDOWN)).add(x, z, count);
     }
 
     /**
@@ -166,40 +162,26 @@ public abstract class PhysicsWatch implements IPhysicsWatch, IPlatform.PlatformE
      */
     @Override
     public void removeLocation(String name, BlockVector3 location) {
-        int x = location.getBlockX() / 16;
-        //int y = location.getBlockY();
-        int z = location.getBlockZ() / 16;
-
-        synchronized (m_mutex) {
-            if (!m_isEnabled) {
-                return;
-            }
-
-            final Map<Integer, Map<Integer, ChunkData>> xhash = m_locked.get(name);
-            if (xhash == null) {
-                return;
-            }
-
-            final Map<Integer, ChunkData> zhash = xhash.get(x);
-            if (zhash == null) {
-                return;
-            }
-            
-            zhash.compute(z, (_z, value) -> {
-                if (value == null) {
-                    return null;
-                }
+        removeLocations(name, location.getBlockX() >> 4, location.getBlockZ() >> 4, 1);
+    }
 
-                value.decRefs();
-                return value;
-            });
+    /**
+     * Remove multiple watched locations from the same chunk
+     *
+     * @param name the world name
+     * @param x the chunk X coordinate
+     * @param z the chunk Z coordinate
+     * @param count number of locations to remove
+     */
+    @Override
+    public void removeLocations(String name, int x, int z, int count) {
+        if (!m_isEnabled || count <= 0) {
+            return;
+        }
 
-            if (zhash.isEmpty()) {
-                xhash.remove(x);
-            }
-            if (xhash.isEmpty()) {
-                m_locked.remove(name);
-            }
+        final ChunkRefMap chunks = m_locked.get(name);
+        if (chunks != null) {
+            chunks.remove(x, z, count);
         }
     }
     
@@ -207,47 +189,11 @@ public abstract class PhysicsWatch implements IPhysicsWatch, IPlatform.PlatformE
      * Perform test if block event should by canceled
      */
     protected boolean cancelEvent(String name, int x, int y, int z, String material) {
-        x = x / 16;
-        z = z / 16;
-
-        synchronized (m_mutex) {
-            Map<Integer, Map<Integer, ChunkData>> xhash = m_locked.get(name);
-            if (xhash == null) {
-                return false;
-            }
-
-            for (int px = x - TEST_DELTA; px <= x + TEST_DELTA; px++) {
-                final Map<Integer, ChunkData> zhash = xhash.get(px);
-                if (zhash == null) {
-                    continue;
-                }
-
-                for (int pz = z - TEST_DELTA; pz <= z + TEST_DELTA; pz++) {
-                    ChunkData data = zhash.get(pz);
-                    if (data == null) {
-                        continue;
-                    }
-
-                    if (data.refCount <= 0 && (System.currentTimeMillis() - data.zeroTime) >= CHUNK_COOLDOWN) {
-                        zhash.remove(pz);
-                        if (zhash.isEmpty()) {
-                            xhash.remove(x);
-                        }
-                        if (xhash.isEmpty()) {
-                            m_locked.remove(name);
-                        }
-
-                        continue;
-                    }
-
-                    if (m_check.apply(material)) {
-                        return true;
-                    }
-                }
-            }
-        }
+        final ChunkRefMap chunks = m_locked.get(name);
         
-        return false;
+        return chunks != null 
+                && chunks.isLocked(x >> 4, z >> 4, TEST_DELTA) 
+                && m_check.apply(material);
     }
     
     
@@ -273,57 +219,6 @@ public abstract class PhysicsWatch implements IPhysicsWatch, IPlatform.PlatformE
     }
 
     private void doCleanup() {
-        synchronized (m_mutex) {
-            Set<String> toRemoveWorld = new HashSet<>();
-            for (Map.Entry<String, Map<Integer, Map<Integer, ChunkData>>> entryWorld : m_locked.entrySet()) {
-                final Map<Integer, Map<Integer, ChunkData>> xhash = entryWorld.getValue();
-
-                Set<Integer> toRemoveX = new HashSet<>();
-                for (Map.Entry<Integer, Map<Integer, ChunkData>> entryX : xhash.entrySet()) {
-                    final Map<Integer, ChunkData> zhash = entryX.getValue();
-
-                    Set<Integer> toRemoveZ = new HashSet<>();
-                    for (Map.Entry<Integer, ChunkData> entryZ : zhash.entrySet()) {
-                        ChunkData data = entryZ.getValue();
-
-                        if (data.refCount <= 0 && (System.currentTimeMillis() - data.zeroTime) >= CHUNK_COOLDOWN) {
-                           toRemoveZ.add(entryZ.getKey());
-                        }
-                    }
-
-                    zhash.keySet().removeAll(toRemoveZ);
-                    if (zhash.isEmpty()) {
-                        toRemoveX.add(entryX.getKey());
-                    }
-                }
-
-                xhash.keySet().removeAll(toRemoveX);
-                if (xhash.isEmpty()) {
-                    toRemoveWorld.add(entryWorld.getKey());
-                }
-            }
-            m_locked.keySet().removeAll(toRemoveWorld);
-        }
-    }
-
-    private static class ChunkData {
-        private int refCount;
-
-        private long zeroTime;
-
-        public ChunkData incRefs() {
-            refCount ++;
-            return this;
-        }
-
-        public void decRefs() {
-            if (refCount > 0) {
-                refCount --;
-            }
-
-            if (refCount == 0) {
-                zeroTime = System.currentTimeMillis();
-            }
-        }
+        m_locked.values().forEach(ChunkRefMap::cleanup);
     }
 }
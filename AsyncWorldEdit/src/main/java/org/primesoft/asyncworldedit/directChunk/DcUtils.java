@@ -59,7 +59,6 @@ import org.primesoft.asyncworldedit.api.taskdispatcher.ITaskDispatcher;
 import org.primesoft.asyncworldedit.configuration.ConfigDirectChunkApi;
 import org.primesoft.asyncworldedit.configuration.ConfigProvider;
 import org.primesoft.asyncworldedit.utils.MutexProvider;
-import org.primesoft.asyncworldedit.utils.PositionHelper;
 
 /**
  * A few helper functions for DirectChunk API
@@ -86,7 +85,7 @@ public class DcUtils {
     private static IWrappedChunk wrapChunk(ITaskDispatcher taskDispatcher, final IDirectChunkAPI chunkApi,
             Object mutex, final IWorld world, final IPlayerEntry player,
             final int cx, final int cz) {
-        IWrappedChunk wrappedChunk = taskDispatcher.performSafe(mutex, () -> {
+        IWrappedChunk wrappedChunk = taskDispatcher.performSafeChunk(mutex, () -> {
             IChunk chunk = world.getChunkAt(cx, cz);
 
                 if (player == null) {
@@ -94,7 +93,7 @@ public class DcUtils {
                 } else {
                     return chunkApi.wrapChunk(chunk, player);
                 }
-            }, world, PositionHelper.chunkToPosition(cx, 0, cz)
+            }, world, BlockVector2.at(cx, cz)
         );
 
         return wrappedChunk;
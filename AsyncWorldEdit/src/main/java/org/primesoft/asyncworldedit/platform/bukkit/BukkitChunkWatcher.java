@@ -47,7 +47,9 @@
  */
 package org.primesoft.asyncworldedit.platform.bukkit;
 
+import java.lang.reflect.Method;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import org.bukkit.Chunk;
 import org.bukkit.Server;
@@ -58,7 +60,11 @@ import org.bukkit.event.world.ChunkLoadEvent;
 import org.bukkit.event.world.ChunkUnloadEvent;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitScheduler;
+import org.primesoft.asyncworldedit.configuration.ConfigDispatcher;
+import org.primesoft.asyncworldedit.configuration.ConfigProvider;
+import org.primesoft.asyncworldedit.utils.ExceptionHelper;
 import org.primesoft.asyncworldedit.core.ChunkWatch;
+import org.primesoft.asyncworldedit.utils.ConcurrentLongMap;
 
 /**
  *
@@ -66,11 +72,39 @@ import org.primesoft.asyncworldedit.core.ChunkWatch;
  */
 class BukkitChunkWatcher extends ChunkWatch implements Listener {
 
-    private final static int HOLD_CHUNK = 1000;
+    private final static int DEFAULT_GRACE = 1000;
+
+    /**
+     * The chunk is used by AWE
+     */
+    private final static long WATCHED = 1;
+
+    /**
+     * The chunk is force loaded
+     */
+    private final static long FORCED = 2;
+
+    /**
+     * The chunk was force loaded by someone else
+     */
+    private final static long FOREIGN = 4;
+
+    /**
+     * The release time is stored above the flags
+     */
+    private final static int TIME_SHIFT = 3;
+
+    /**
+     * The asynchronous chunk loading method (if supported by the server)
+     */
+    private final static Method s_getChunkAtAsync = findGetChunkAtAsync();
 
     private final Plugin m_plugin;
 
-    private final Map<String, Map<Long, ChunkEntry>> m_forceload = new ConcurrentHashMap<>();
+    /**
+     * The force load state: chunk to (release time &lt;&lt; TIME_SHIFT) | flags
+     */
+    private final Map<String, ConcurrentLongMap> m_forceload = new ConcurrentHashMap<>();
 
     private final BukkitScheduler m_scheduler;
     private final Server m_server;
@@ -83,40 +117,49 @@ class BukkitChunkWatcher extends ChunkWatch implements Listener {
         m_scheduler.runTaskTimer(plugin, this::forceLoadProcessor, 1, 1);
     }
 
+    private ConcurrentLongMap getForceload(String world) {
+        final ConcurrentLongMap result = m_forceload.get(world);
+        return result != null ? result : m_forceload.computeIfAbsent(world, _w -> new ConcurrentLongMap());
+    }
+
+    /**
+     * Apply the force load state, a chunk is force loaded while it is watched
+     * and released after the grace period. Chunks that were released before
+     * they got force loaded are not touched at all.
+     */
     private void forceLoadProcessor() {
-        long now = System.currentTimeMillis();
-        long minTime = now - HOLD_CHUNK;
+        final ConfigDispatcher config = ConfigProvider.dispatcher();
+        final long grace = config != null ? config.getForceloadGrace() : DEFAULT_GRACE;
+        final long now = System.currentTimeMillis();
 
-        for (String worldName : m_forceload.keySet()) {
-            final World world = m_server.getWorld(worldName);
+        for (Map.Entry<String, ConcurrentLongMap> entry : m_forceload.entrySet()) {
+            final World world = m_server.getWorld(entry.getKey());
             if (world == null) {
                 continue;
             }
-            
-            final Map<Long, ChunkEntry> chunks = m_forceload.get(worldName);
-            for (Long coords : chunks.keySet()) {
-                ChunkEntry ce = chunks.get(coords);
-                final Chunk chunk = world.getChunkAt(ce.cx, ce.cz);
-                
-                chunks.computeIfPresent(coords, (_coords, chunkEntry) -> {                   
-                    if (chunk == null) {
-                        return null;
-                    }
 
-                    final boolean forceLoadCurrent = chunk.isForceLoaded();
-                    final boolean forceLoadDesired = chunkEntry.timestamp < 0 && -chunkEntry.timestamp < minTime;
+            final ConcurrentLongMap chunks = entry.getValue();
+            chunks.forEach((coords, state) -> {
+                final int cx = (int) (coords >> 32);
+                final int cz = (int) coords;
 
-                    if (forceLoadCurrent != forceLoadDesired) {
-                        chunk.setForceLoaded(forceLoadDesired);
-                    }
+                if ((state & WATCHED) != 0) {
+                    if ((state & FORCED) == 0) {
+                        final long flags = world.isChunkForceLoaded(cx, cz) ? FORCED | FOREIGN : FORCED;
+                        if ((flags & FOREIGN) == 0) {
+                            world.setChunkForceLoaded(cx, cz, true);
+                        }
 
-                    if (!forceLoadDesired) {
-                        return null;
+                        chunks.update(coords, (_coords, value) -> value | flags);
                     }
-                    
-                    return chunkEntry;
-                });
-            }
+                } else if (now - (state >> TIME_SHIFT) >= grace) {
+                    if ((state & FOREIGN) == 0) {
+                        world.setChunkForceLoaded(cx, cz, false);
+                    }
+
+                    chunks.update(coords, (_coords, value) -> (value & WATCHED) != 0 ? WATCHED : 0);
+                }
+            });
         }
     }
 
@@ -164,6 +207,36 @@ class BukkitChunkWatcher extends ChunkWatch implements Listener {
         return w.getChunkAt(cx, cz) != null;
     }
 
+    @Override
+    protected CompletableFuture<Boolean> doLoadChunkAsync(int cx, int cz, String worldName) {
+        if (s_getChunkAtAsync == null) {
+            return super.doLoadChunkAsync(cx, cz, worldName);
+        }
+
+        return getDispatcher().<CompletableFuture<?>>queueFastOperationAsync(() -> {
+            final World w = m_server.getWorld(worldName);
+            if (w == null) {
+                return CompletableFuture.completedFuture((Object) null);
+            }
+
+            try {
+                return (CompletableFuture<?>) s_getChunkAtAsync.invoke(w, cx, cz);
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                ExceptionHelper.printException(ex, String.format("Unable to load chunk %1$s %2$s %3$s", worldName, cx, cz));
+                return CompletableFuture.completedFuture(w.getChunkAt(cx, cz));
+            }
+        }).thenCompose(f -> f).thenApply(chunk -> chunk != null);
+    }
+
+    private static Method findGetChunkAtAsync() {
+        try {
+            final Method result = World.class.getMethod("getChunkAtAsync", int.class, int.class);
+            return CompletableFuture.class.isAssignableFrom(result.getReturnType()) ? result : null;
+        } catch (NoSuchMethodException | SecurityException ex) {
+            return null;
+        }
+    }
+
     @Override
     protected final boolean supportUnloadCancel() {
         return false;
@@ -172,74 +245,39 @@ class BukkitChunkWatcher extends ChunkWatch implements Listener {
     @Override
     protected void forceloadOff(String world, int cx, int cz) {
         final long now = System.currentTimeMillis();
-        
-        m_forceload.computeIfAbsent(world, _w -> new ConcurrentHashMap<>())
-            .computeIfPresent(encode(cx, cz), (_coords, value) -> {
-                if ((value.timestamp < 0 && -value.timestamp < now) || 
-                    (value.timestamp >= 0 && value.timestamp < now)) {
-                    value.timestamp = -now;
-                }
 
-                return value;
-            });
+        getForceload(world).update(encode(cx, cz), (_coords, value) -> {
+            if ((value & FORCED) == 0) {
+                return 0;
+            }
+
+            return (now << TIME_SHIFT) | (value & FOREIGN) | FORCED;
+        });
     }
 
     @Override
     protected void forceloadOn(String world, int cx, int cz) {
-        final long now = System.currentTimeMillis();
-        
-        m_forceload.computeIfAbsent(world, _w -> new ConcurrentHashMap<>())
-            .compute(encode(cx, cz), (_coords, value) -> {
-                if (value == null) {
-                    return new ChunkEntry(cx, cz, now);
-                }
-
-                if ((value.timestamp < 0 && -value.timestamp < now) || 
-                    (value.timestamp >= 0 && value.timestamp < now)) {
-                    value.timestamp = now;
-                }
-
-                return value;
-            });
+        getForceload(world).update(encode(cx, cz), (_coords, value) -> value | WATCHED);
     }
 
     @Override
     public void clear() {
         super.clear();
 
-        /*
-        for (Map.Entry<String, Map<Long, Boolean>> entry : m_forceload.entrySet()) {
-            final String world = entry.getKey();
-            m_scheduler.runTask(m_plugin, () -> {
-                World w = m_server.getWorld(world);
-                if (w == null) {
-                    return;
+        if (m_server.isPrimaryThread()) {
+            for (Map.Entry<String, ConcurrentLongMap> entry : m_forceload.entrySet()) {
+                final World world = m_server.getWorld(entry.getKey());
+                if (world == null) {
+                    continue;
                 }
-                for (Map.Entry<Long, Boolean> chunkEntry : entry.getValue().entrySet()) {
-                    if (chunkEntry.getValue()) {
-                        long c = chunkEntry.getKey();
-                        Chunk chunk = w.getChunkAt((int) (c >> 32), (int) c);
-                        if (chunk != null) {
-                            chunk.setForceLoaded(false);
-                        }
+
+                entry.getValue().forEach((coords, state) -> {
+                    if ((state & FORCED) != 0 && (state & FOREIGN) == 0) {
+                        world.setChunkForceLoaded((int) (coords >> 32), (int) coords, false);
                     }
-                }
-            });
+                });
+            }
         }
-         */
         m_forceload.clear();
     }
-
-    private static class ChunkEntry {
-        public volatile long timestamp;
-        
-        public final int cx;
-        public final int cz;
-        
-        public ChunkEntry(int cx, int cz, long timestamp) {
-            this.cx = cx;
-            this.cz = cz;
-            this.timestamp = timestamp;
-        }
-    }
 }
@@ -47,12 +47,15 @@
  */
 package org.primesoft.asyncworldedit.platform.bukkit;
 
+import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.primesoft.asyncworldedit.api.permissions.IPermission;
 import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
 import org.primesoft.asyncworldedit.permissions.PermissionManager;
 import org.primesoft.asyncworldedit.platform.api.IPermissionProvider;
 import org.primesoft.asyncworldedit.playerManager.PlayerEntry;
+import org.primesoft.asyncworldedit.playerManager.PlayerView;
 
 /**
  *
@@ -133,6 +136,23 @@ public class BukkitPlayerEntry extends PlayerEntry {
         m_player = ((BukkitPlayerEntry) player).getPlayer();
     }
 
+    @Override
+    public PlayerView getView() {
+        final Player player = m_player;
+        if (player == null || !player.isOnline()) {
+            return null;
+        }
+
+        final Location location = player.getLocation();
+        final World world = location.getWorld();
+        if (world == null) {
+            return null;
+        }
+
+        return new PlayerView(world.getName(), location.getBlockX() >> 4, location.getBlockZ() >> 4,
+                player.getServer().getViewDistance());
+    }
+
     @Override
     public void updatePermissionGroup() {
         setPermissionGroup(PermissionManager.getPermissionGroup(m_permissionProvider));
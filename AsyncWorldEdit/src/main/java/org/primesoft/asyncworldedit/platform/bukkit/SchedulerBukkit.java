@@ -47,6 +47,14 @@
  */
 package org.primesoft.asyncworldedit.platform.bukkit;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.DoubleConsumer;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitScheduler;
 import org.bukkit.scheduler.BukkitTask;
@@ -58,6 +66,16 @@ import org.primesoft.asyncworldedit.platform.api.ITask;
  * @author SBPrime
  */
 public class SchedulerBukkit implements IScheduler {
+    /**
+     * The Paper tick end event (null if not available)
+     */
+    private final static Class<? extends Event> s_tickEndEvent = findTickEndEvent();
+
+    /**
+     * The Paper tick end event getTickDuration method (null if not available)
+     */
+    private final static Method s_getTickDuration = findTickDuration();
+
     private final Plugin m_plugin;
     
     /**
@@ -99,6 +117,66 @@ public class SchedulerBukkit implements IScheduler {
         return wrapResult(m_scheduler.runTaskTimer(m_plugin, task, startDelay, delay));
     }
 
+    @Override
+    public ITask runOnTickEnd(Runnable task) {
+        if (s_tickEndEvent == null) {
+            return null;
+        }
+
+        return registerTickEnd((l, event) -> {
+            if (s_tickEndEvent.isInstance(event)) {
+                task.run();
+            }
+        });
+    }
+
+    @Override
+    public ITask onTickDuration(DoubleConsumer listener) {
+        if (s_tickEndEvent == null || s_getTickDuration == null) {
+            return null;
+        }
+
+        return registerTickEnd((l, event) -> {
+            if (!s_tickEndEvent.isInstance(event)) {
+                return;
+            }
+
+            try {
+                listener.accept(((Number) s_getTickDuration.invoke(event)).doubleValue());
+            } catch (IllegalAccessException | InvocationTargetException ex) {
+            }
+        });
+    }
+
+    private ITask registerTickEnd(EventExecutor executor) {
+        final Listener listener = new Listener() {};
+
+        m_plugin.getServer().getPluginManager().registerEvent(s_tickEndEvent, listener,
+                EventPriority.MONITOR, executor, m_plugin);
+
+        return () -> HandlerList.unregisterAll(listener);
+    }
+
+    private static Method findTickDuration() {
+        if (s_tickEndEvent == null) {
+            return null;
+        }
+
+        try {
+            return s_tickEndEvent.getMethod("getTickDuration");
+        } catch (NoSuchMethodException | SecurityException ex) {
+            return null;
+        }
+    }
+
+    private static Class<? extends Event> findTickEndEvent() {
+        try {
+            return Class.forName("com.destroystokyo.paper.event.server.ServerTickEndEvent").asSubclass(Event.class);
+        } catch (ClassNotFoundException | ClassCastException ex) {
+            return null;
+        }
+    }
+
     @Override
     public int tps() {
         return 20;
@@ -342,4 +342,14 @@ public abstract class PlayerEntry implements IPlayerEntry {
 
     @Override
     public abstract boolean isFake();
+
+    /**
+     * Get the player position snapshot, this method should be called only
+     * from the server main thread
+     *
+     * @return null if the player is not in game
+     */
+    public PlayerView getView() {
+        return null;
+    }
 }
@@ -56,6 +56,7 @@ import java.util.UUID;
 import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import org.primesoft.asyncworldedit.api.inner.IAsyncWorldEditCore;
+import org.primesoft.asyncworldedit.api.inner.IBlocksHubBridge;
 import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacer;
 import org.primesoft.asyncworldedit.api.configuration.IPermissionGroup;
 import org.primesoft.asyncworldedit.api.inner.ICron;
@@ -155,6 +156,11 @@ public class PlayerManager implements IPlayerManager, IPlayerStorage {
         }
         entry.dispose();
 
+        final IBlocksHubBridge blocksHub = m_parent.getBlocksHubBridge();
+        if (blocksHub != null) {
+            blocksHub.invalidateAccess(entry);
+        }
+
         final ConfigUndo undoConfig = ConfigProvider.undo();
         final int keepSessionOnLogoutFor = undoConfig != null ? undoConfig.keepSessionOnLogoutFor() * 60000 : 0;
 
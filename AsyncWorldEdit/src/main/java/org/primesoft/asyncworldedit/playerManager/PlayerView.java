@@ -0,0 +1,146 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2014, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.playerManager;
+
+import java.util.Objects;
+
+/**
+ * The player position snapshot (world and chunk) used to order the
+ * placed blocks
+ *
+ * @author SBPrime
+ */
+public final class PlayerView {
+
+    private final String m_worldName;
+
+    private final int m_chunkX;
+
+    private final int m_chunkZ;
+
+    private final int m_viewDistance;
+
+    /**
+     * Create new player view
+     *
+     * @param worldName the player world
+     * @param chunkX the player chunk X coordinate
+     * @param chunkZ the player chunk Z coordinate
+     * @param viewDistance the view distance (in chunks)
+     */
+    public PlayerView(String worldName, int chunkX, int chunkZ, int viewDistance) {
+        m_worldName = worldName;
+        m_chunkX = chunkX;
+        m_chunkZ = chunkZ;
+        m_viewDistance = Math.max(0, viewDistance);
+    }
+
+    public String getWorldName() {
+        return m_worldName;
+    }
+
+    public int getChunkX() {
+        return m_chunkX;
+    }
+
+    public int getChunkZ() {
+        return m_chunkZ;
+    }
+
+    public int getViewDistance() {
+        return m_viewDistance;
+    }
+
+    /**
+     * Get the distance (in chunks) from the player chunk
+     *
+     * @param cx
+     * @param cz
+     * @return
+     */
+    public int distance(int cx, int cz) {
+        return Math.max(Math.abs(cx - m_chunkX), Math.abs(cz - m_chunkZ));
+    }
+
+    /**
+     * Is the chunk within the player view distance
+     *
+     * @param worldName
+     * @param cx
+     * @param cz
+     * @return
+     */
+    public boolean isInView(String worldName, int cx, int cz) {
+        return m_worldName.equals(worldName) && distance(cx, cz) <= m_viewDistance;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 37 * hash + Objects.hashCode(m_worldName);
+        hash = 37 * hash + m_chunkX;
+        hash = 37 * hash + m_chunkZ;
+        hash = 37 * hash + m_viewDistance;
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final PlayerView other = (PlayerView) obj;
+
+        return m_chunkX == other.m_chunkX && m_chunkZ == other.m_chunkZ
+                && m_viewDistance == other.m_viewDistance
+                && Objects.equals(m_worldName, other.m_worldName);
+    }
+}
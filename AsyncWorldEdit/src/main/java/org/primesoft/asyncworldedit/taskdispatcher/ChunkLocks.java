@@ -0,0 +1,221 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2014, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.taskdispatcher;
+
+import com.sk89q.worldedit.math.BlockVector2;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Striped chunk locks. The stripe is selected using the world mutex and the
+ * chunk coordinates, so operations on distant chunks of the same world do
+ * not block each other. Multiple stripes are always acquired in ascending
+ * stripe order.
+ *
+ * The chunk operations of a world mutex (the world UUID) also hold the read
+ * lock of the world, the world operations that are not bound to a chunk hold
+ * the world write lock instead of the stripes. The world lock is always
+ * acquired before the stripes. Other mutexes (edit sessions) are not bound to
+ * a world and have no world lock.
+ *
+ * @author SBPrime
+ */
+final class ChunkLocks {
+
+    /**
+     * Number of lock stripes (power of two)
+     */
+    private final static int STRIPES = 256;
+
+    /**
+     * Number of world lock stripes (power of two)
+     */
+    private final static int WORLD_STRIPES = 16;
+
+    private final Lock[] m_locks;
+
+    private final ReadWriteLock[] m_worldLocks;
+
+    ChunkLocks() {
+        m_locks = new Lock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            m_locks[i] = new ReentrantLock();
+        }
+
+        m_worldLocks = new ReadWriteLock[WORLD_STRIPES];
+        for (int i = 0; i < WORLD_STRIPES; i++) {
+            m_worldLocks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * Is the mutex a world mutex (see MutexProvider)
+     *
+     * @param mutex
+     * @return
+     */
+    private static boolean isWorldMutex(Object mutex) {
+        return mutex instanceof UUID;
+    }
+
+    /**
+     * Get the world lock for the mutex
+     *
+     * @param worldMutex
+     * @return
+     */
+    private ReadWriteLock world(Object worldMutex) {
+        int h = Objects.hashCode(worldMutex) * 0x9E3779B9;
+
+        return m_worldLocks[(h ^ h >>> 16) & (WORLD_STRIPES - 1)];
+    }
+
+    /**
+     * Get the stripe index for the chunk
+     *
+     * @param worldMutex
+     * @param cx
+     * @param cz
+     * @return
+     */
+    static int stripe(Object worldMutex, int cx, int cz) {
+        long h = ((long) cx << 32 | cz & 0xFFFFFFFFL) * 0x9E3779B97F4A7C15L;
+        h ^= Objects.hashCode(worldMutex) * 0xC2B2AE3D27D4EB4FL;
+        h ^= h >>> 29;
+
+        return (int) (h ^ h >>> 32) & (STRIPES - 1);
+    }
+
+    /**
+     * Lock the whole world, excludes all the chunk operations of the world
+     *
+     * @param worldMutex
+     * @return the acquired lock, null if the mutex is not a world mutex
+     */
+    Lock lockWorld(Object worldMutex) {
+        if (!isWorldMutex(worldMutex)) {
+            return null;
+        }
+
+        final Lock result = world(worldMutex).writeLock();
+        result.lock();
+
+        return result;
+    }
+
+    /**
+     * Lock the chunk stripe
+     *
+     * @param worldMutex
+     * @param cx
+     * @param cz
+     * @return the acquired locks
+     */
+    Lock[] lock(Object worldMutex, int cx, int cz) {
+        final Lock result = m_locks[stripe(worldMutex, cx, cz)];
+        if (!isWorldMutex(worldMutex)) {
+            result.lock();
+            return new Lock[]{result};
+        }
+
+        final Lock worldLock = world(worldMutex).readLock();
+        worldLock.lock();
+        result.lock();
+
+        return new Lock[]{worldLock, result};
+    }
+
+    /**
+     * Lock the stripes of all the chunks (in ascending stripe order)
+     *
+     * @param worldMutex
+     * @param chunks
+     * @return the acquired locks
+     */
+    Lock[] lock(Object worldMutex, Collection<BlockVector2> chunks) {
+        final BitSet stripes = new BitSet(STRIPES);
+        for (BlockVector2 chunk : chunks) {
+            stripes.set(stripe(worldMutex, chunk.getBlockX(), chunk.getBlockZ()));
+            if (stripes.cardinality() == STRIPES) {
+                break;
+            }
+        }
+
+        final boolean isWorld = isWorldMutex(worldMutex);
+        final Lock[] result = new Lock[stripes.cardinality() + (isWorld ? 1 : 0)];
+        int pos = 0;
+        if (isWorld) {
+            result[pos] = world(worldMutex).readLock();
+            result[pos++].lock();
+        }
+
+        for (int i = stripes.nextSetBit(0); i >= 0; i = stripes.nextSetBit(i + 1)) {
+            m_locks[i].lock();
+            result[pos++] = m_locks[i];
+        }
+
+        return result;
+    }
+
+    /**
+     * Release the locks (in reverse order)
+     *
+     * @param locks
+     */
+    static void unlock(Lock[] locks) {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+}
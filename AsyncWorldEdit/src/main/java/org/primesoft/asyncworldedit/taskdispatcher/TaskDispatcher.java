@@ -51,13 +51,21 @@ import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
 import org.primesoft.asyncworldedit.api.taskdispatcher.ITaskDispatcher;
 import org.primesoft.asyncworldedit.api.taskdispatcher.IDispatcherEntry;
+import org.primesoft.asyncworldedit.api.taskdispatcher.DispatcherKey;
 import com.sk89q.worldedit.regions.Region;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
 import org.primesoft.asyncworldedit.api.IWorld;
 import org.primesoft.asyncworldedit.api.inner.IAsyncWorldEditCore;
 import org.primesoft.asyncworldedit.api.inner.IChunkWatch;
@@ -65,6 +73,7 @@ import org.primesoft.asyncworldedit.configuration.ConfigProvider;
 import org.primesoft.asyncworldedit.api.utils.IAction;
 import org.primesoft.asyncworldedit.utils.ExceptionHelper;
 import org.primesoft.asyncworldedit.api.utils.IFunc;
+import org.primesoft.asyncworldedit.api.utils.IFuncParam;
 import org.primesoft.asyncworldedit.configuration.ConfigDispatcher;
 import org.primesoft.asyncworldedit.platform.api.IScheduler;
 import org.primesoft.asyncworldedit.platform.api.ITask;
@@ -92,6 +101,16 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
      */
     private final Object m_mutex = new Object();
 
+    /**
+     * The striped chunk locks used by the chunk and region operations
+     */
+    private final ChunkLocks m_chunkLocks = new ChunkLocks();
+
+    /**
+     * The in-flight keyed read operations
+     */
+    private final Map<DispatcherKey, CompletableFuture<?>> m_pendingReads = new ConcurrentHashMap<>();
+
     /**
      * Bukkit scheduler
      */
@@ -107,6 +126,11 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
      */
     private ITask m_fastTask;
 
+    /**
+     * The end of tick hook (null if not supported by the platform)
+     */
+    private ITask m_tickEndTask;
+
     /**
      * Number of fast task empty runs remaining
      */
@@ -121,18 +145,38 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
      * List of fast tasks (high priority) Use linked list to overcome memory
      * leakage
      */
-    private final Queue<IDispatcherEntry> m_fastTasks = new LinkedList<>();
+    private final Deque<IDispatcherEntry> m_fastTasks = new LinkedList<>();
+
+    /**
+     * The tasks taken from the queue in the current pass (main thread only)
+     */
+    private final ArrayDeque<IDispatcherEntry> m_batch = new ArrayDeque<>();
 
     /**
      * The main thread
      */
-    private Thread m_mainThread;
+    private volatile Thread m_mainThread;
 
     /**
-     * Last enter time
+     * Last enter time (ns)
      */
     private long m_lastEnter = -1;
 
+    /**
+     * Time (ns) spent processing the tasks since the last run
+     */
+    private long m_busyTime;
+
+    /**
+     * Time (ns) spent processing the tasks in the current tick
+     */
+    private long m_tickTime;
+
+    /**
+     * Number of tasks processed in the current tick
+     */
+    private int m_tickJobs;
+
     /**
      * Dispatcher main thread usage
      */
@@ -173,7 +217,8 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
         m_aweCore = core;
         m_chunkWatch = m_aweCore.getChunkWatch();
 
-        m_lastEnter = System.currentTimeMillis();
+        m_lastEnter = System.nanoTime();
+        m_tickEndTask = m_scheduler.runOnTickEnd(this::runTickEnd);
         startFastTask();
     }
 
@@ -195,74 +240,90 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
      */
     @Override
     public void run() {
-        long enter = System.currentTimeMillis();
-        long runDelta = enter - m_lastEnter;
-        long runTime;
-        ConfigDispatcher dConfig = ConfigProvider.dispatcher();
+        final long enter = System.nanoTime();
+        final long runDelta = enter - m_lastEnter;
+        m_lastEnter = enter;
+        m_mainThread = Thread.currentThread();
 
-        int jobsCount = dConfig.getMaxJobs();
-        int maxTime = dConfig.getMaxTime();
+        m_tickTime = 0;
+        m_tickJobs = 0;
 
-        if (runDelta < 1) {
-            runDelta = 0;
+        if (!isPaused() && !drain()) {
+            synchronized (m_mutex) {
+                m_fastTaskRunsRemaining--;
+                if (m_fastTaskRunsRemaining <= 0 && m_fastTask != null) {
+                    m_fastTask.cancel();
+                    m_fastTask = null;
+                }
+            }
         }
-        m_lastEnter = enter;
 
-        if (Double.isNaN(m_usage)) {
-            m_usage = 0;
-        }
+        final double usage = runDelta > 0 ? Math.min(1000.0, 1000.0 * m_busyTime / runDelta) : 0;
+        m_busyTime = 0;
+        m_usage = (m_usage * 3 + usage) / 4;
+    }
 
-        double usage = m_usage;
+    /**
+     * Serve the tasks queued during the tick (uses the remaining tick budget)
+     */
+    private void runTickEnd() {
+        if (isPaused() || m_fastTask == null || !ConfigProvider.dispatcher().isTickEndDrain()) {
+            return;
+        }
 
         m_mainThread = Thread.currentThread();
-        if (!isPaused()) {
+        drain();
+    }
 
-            boolean processed = false;
-            for (int i = 0; i < jobsCount && (m_usage * 3 + usage) / 4 < maxTime; i++) {
-                IDispatcherEntry task = null;
-                synchronized (m_fastTasks) {
-                    if (!m_fastTasks.isEmpty()) {
-                        task = m_fastTasks.poll();
-                    }
+    /**
+     * Process the queued tasks until the queue is empty or the tick budget
+     * (max-jobs, max-time) is used up. The tasks queued while processing are
+     * served in the same pass.
+     *
+     * @return true if any task was processed
+     */
+    private boolean drain() {
+        final ConfigDispatcher config = ConfigProvider.dispatcher();
+        final long start = System.nanoTime();
+        final long budget = config.getMaxTime() * 1000000L - m_tickTime;
+        final int maxJobs = config.getMaxJobs();
+
+        boolean processed = false;
+        boolean timeout = budget <= 0;
+        while (!timeout && m_tickJobs < maxJobs) {
+            synchronized (m_fastTasks) {
+                if (m_fastTasks.isEmpty()) {
+                    break;
                 }
 
-                if (task != null) {
-                    task.Process();
-                    processed = true;
-                } else {
-                    try {
-                        //Force thread change
-                        Thread.sleep(1);
-                    } catch (InterruptedException ex) {
-                    }
-                }
+                m_batch.addAll(m_fastTasks);
+                m_fastTasks.clear();
+            }
 
-                runTime = System.currentTimeMillis() - enter;
-                if (runTime + runDelta > 0) {
-                    usage = 1000.0 * runTime / (runTime + runDelta);
-                } else {
-                    usage = 0;
-                }
+            IDispatcherEntry task;
+            while (!timeout && m_tickJobs < maxJobs && (task = m_batch.poll()) != null) {
+                task.Process();
+                processed = true;
+                m_tickJobs++;
+
+                timeout = System.nanoTime() - start >= budget;
             }
 
-            if (!processed) {
-                synchronized (m_mutex) {
-                    m_fastTaskRunsRemaining--;
-                    if (m_fastTaskRunsRemaining <= 0 && m_fastTask != null) {
-                        m_fastTask.cancel();
-                        m_fastTask = null;
+            if (!m_batch.isEmpty()) {
+                synchronized (m_fastTasks) {
+                    for (Iterator<IDispatcherEntry> it = m_batch.descendingIterator(); it.hasNext();) {
+                        m_fastTasks.addFirst(it.next());
                     }
                 }
+                m_batch.clear();
             }
         }
 
-        runTime = System.currentTimeMillis() - enter;
-        if (runTime + runDelta > 0) {
-            usage = 1000.0 * runTime / (runTime + runDelta);
-        } else {
-            usage = 0;
-        }
-        m_usage = (m_usage * 3 + usage) / 4;
+        final long time = System.nanoTime() - start;
+        m_tickTime += time;
+        m_busyTime += time;
+
+        return processed;
     }
 
     /**
@@ -274,6 +335,10 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
                 m_fastTask.cancel();
                 m_fastTask = null;
             }
+            if (m_tickEndTask != null) {
+                m_tickEndTask.cancel();
+                m_tickEndTask = null;
+            }
         }
 
     }
@@ -383,6 +448,143 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
         }
     }
 
+    /**
+     * Queue an action on the dispatcher without waiting for it
+     *
+     * @param action
+     * @return
+     */
+    @Override
+    public CompletableFuture<Void> queueFastOperationAsync(IAction action) {
+        if (action == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return queueFastOperationAsync(() -> {
+            action.execute();
+            return null;
+        });
+    }
+
+    /**
+     * Queue a function on the dispatcher without waiting for it
+     *
+     * @param <T>
+     * @param action
+     * @return
+     */
+    @Override
+    public <T> CompletableFuture<T> queueFastOperationAsync(IFunc<T> action) {
+        if (action == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return queueFastOperationsAsync(Collections.singletonList(action))
+                .thenApply(r -> r.get(0));
+    }
+
+    /**
+     * Perform a read operation on the dispatcher sharing the identical
+     * in-flight reads
+     *
+     * @param <T>
+     * @param key
+     * @param action
+     * @return
+     */
+    @Override
+    public <T> T queueFastOperation(DispatcherKey key, IFunc<T> action) {
+        if (key == null) {
+            return queueFastOperation(action);
+        }
+        if (action == null) {
+            return null;
+        }
+        if (isMainTask()) {
+            return action.execute();
+        }
+
+        try {
+            return queueFastOperationAsync(key, action).join();
+        } catch (CompletionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw ex;
+        }
+    }
+
+    /**
+     * Queue a read operation on the dispatcher sharing the identical
+     * in-flight reads. The key is released as soon as the read is done so
+     * later requests get a fresh result.
+     *
+     * @param <T>
+     * @param key
+     * @param action
+     * @return
+     */
+    @Override
+    public <T> CompletableFuture<T> queueFastOperationAsync(DispatcherKey key, IFunc<T> action) {
+        if (key == null || isMainTask()) {
+            //The main thread never waits for a shared read
+            return queueFastOperationAsync(action);
+        }
+        if (action == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final InOutParam<CompletableFuture<T>> created = InOutParam.Out();
+        final CompletableFuture<?> result = m_pendingReads.computeIfAbsent(key, _k -> {
+            final CompletableFuture<T> future = new CompletableFuture<>();
+            created.setValue(future);
+
+            return future;
+        });
+
+        if (created.isSet()) {
+            final CompletableFuture<T> future = created.getValue();
+            queueFastOperationAsync(action).whenComplete((r, ex) -> {
+                m_pendingReads.remove(key, future);
+                if (ex != null) {
+                    future.completeExceptionally(ex);
+                } else {
+                    future.complete(r);
+                }
+            });
+        }
+
+        return (CompletableFuture<T>) result;
+    }
+
+    /**
+     * Queue multiple functions on the dispatcher as one task
+     *
+     * @param <T>
+     * @param actions
+     * @return
+     */
+    @Override
+    public <T> CompletableFuture<List<T>> queueFastOperationsAsync(List<? extends IFunc<? extends T>> actions) {
+        if (actions == null || actions.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        final FutureEntry<T> entry = new FutureEntry<>(actions);
+        if (isMainTask()) {
+            entry.Process();
+        } else {
+            addFastTask(entry);
+        }
+
+        return entry.getFuture();
+    }
+
     /**
      * Try to mark thread
      *
@@ -428,11 +630,12 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
         }
 
         try {
-            synchronized (mutex) {
-                int cx = pos.getBlockX();
-                int cz = pos.getBlockZ();
-                String worldName = world != null ? world.getName() : null;
+            int cx = pos.getBlockX();
+            int cz = pos.getBlockZ();
+            String worldName = world != null ? world.getName() : null;
 
+            final Lock[] locks = m_chunkLocks.lock(mutex, cx, cz);
+            try {
                 try {
                     m_chunkWatch.add(cx, cz, worldName);
                     if (canPerform(world, cx, cz)) {
@@ -452,6 +655,8 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
                 } finally {
                     m_chunkWatch.remove(cx, cz, worldName);
                 }
+            } finally {
+                ChunkLocks.unlock(locks);
             }
             queueFastOperation(action);
         } finally {
@@ -477,11 +682,12 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
         }
 
         try {
-            synchronized (mutex) {
-                int cx = PositionHelper.positionToChunk(pos.getX());
-                int cz = PositionHelper.positionToChunk(pos.getZ());
-                String worldName = world != null ? world.getName() : null;
+            int cx = PositionHelper.positionToChunk(pos.getX());
+            int cz = PositionHelper.positionToChunk(pos.getZ());
+            String worldName = world != null ? world.getName() : null;
 
+            final Lock[] locks = m_chunkLocks.lock(mutex, cx, cz);
+            try {
                 try {
                     m_chunkWatch.add(cx, cz, worldName);
                     if (canPerform(world, cx, cz)) {
@@ -501,6 +707,8 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
                 } finally {
                     m_chunkWatch.remove(cx, cz, worldName);
                 }
+            } finally {
+                ChunkLocks.unlock(locks);
             }
             queueFastOperation(action);
         } finally {
@@ -526,10 +734,11 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
         }
 
         try {
-            synchronized (mutex) {
-                Set<BlockVector2> chunks = region.getChunks();
-                String worldName = world != null ? world.getName() : null;
+            Set<BlockVector2> chunks = region.getChunks();
+            String worldName = world != null ? world.getName() : null;
 
+            final Lock[] locks = m_chunkLocks.lock(mutex, chunks);
+            try {
                 try {
                     boolean canPerform = true;
                     for (BlockVector2 vector : chunks) {
@@ -559,6 +768,8 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
                         m_chunkWatch.remove(cx, cz, worldName);
                     }
                 }
+            } finally {
+                ChunkLocks.unlock(locks);
             }
 
             queueFastOperation(action);
@@ -585,10 +796,11 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
             return action.execute();
         }
         try {
-            synchronized (mutex) {
-                Set<BlockVector2> chunks = region.getChunks();
-                String worldName = world != null ? world.getName() : null;
+            Set<BlockVector2> chunks = region.getChunks();
+            String worldName = world != null ? world.getName() : null;
 
+            final Lock[] locks = m_chunkLocks.lock(mutex, chunks);
+            try {
                 try {
                     boolean canPerform = true;
                     for (BlockVector2 vector : chunks) {
@@ -618,6 +830,8 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
                         m_chunkWatch.remove(cx, cz, worldName);
                     }
                 }
+            } finally {
+                ChunkLocks.unlock(locks);
             }
             return queueFastOperation(action);
         } finally {
@@ -638,15 +852,34 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
      */
     @Override
     public <T> T performSafe(Object mutex, IFunc<T> action, IWorld world, BlockVector3 pos) {
+        return performSafe(mutex, action, world, pos, null);
+    }
+
+    /**
+     * Perform a read operation using a safe wrapper. If the basic operation
+     * fails queue it on dispatcher sharing the identical in-flight reads
+     *
+     * @param <T>
+     * @param mutex
+     * @param action
+     * @param world
+     * @param pos
+     * @param key
+     * @return
+     */
+    @Override
+    public <T> T performSafe(Object mutex, IFunc<T> action, IWorld world, BlockVector3 pos, DispatcherKey key) {
         long id = Thread.currentThread().getId();
         if (isMainTask() || !markThread(id)) {
             return action.execute();
         }
         try {
-            synchronized (mutex) {
-                int cx = PositionHelper.positionToChunk(pos.getX());
-                int cz = PositionHelper.positionToChunk(pos.getZ());
-                String worldName = world != null ? world.getName() : null;
+            int cx = PositionHelper.positionToChunk(pos.getX());
+            int cz = PositionHelper.positionToChunk(pos.getZ());
+            String worldName = world != null ? world.getName() : null;
+
+            final Lock[] locks = m_chunkLocks.lock(mutex, cx, cz);
+            try {
                 try {
                     m_chunkWatch.add(cx, cz, worldName);
                     if (canPerform(world, cx, cz)) {
@@ -666,8 +899,10 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
                 } finally {
                     m_chunkWatch.remove(cx, cz, worldName);
                 }
+            } finally {
+                ChunkLocks.unlock(locks);
             }
-            return queueFastOperation(action);
+            return queueFastOperation(key, action);
         } finally {
             unmarkThread(id);
         }
@@ -691,10 +926,12 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
             return action.execute();
         }
         try {
-            synchronized (mutex) {
-                int cx = pos.getBlockX();
-                int cz = pos.getBlockZ();
-                String worldName = world != null ? world.getName() : null;
+            int cx = pos.getBlockX();
+            int cz = pos.getBlockZ();
+            String worldName = world != null ? world.getName() : null;
+
+            final Lock[] locks = m_chunkLocks.lock(mutex, cx, cz);
+            try {
                 try {
                     m_chunkWatch.add(cx, cz, worldName);
                     if (canPerform(world, cx, cz)) {
@@ -714,6 +951,8 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
                 } finally {
                     m_chunkWatch.remove(cx, cz, worldName);
                 }
+            } finally {
+                ChunkLocks.unlock(locks);
             }
             return queueFastOperation(action);
         } finally {
@@ -736,16 +975,20 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
             return;
         }
         try {
-            synchronized (mutex) {
+            final Lock lock = m_chunkLocks.lockWorld(mutex);
+            if (lock == null) {
+                synchronized (mutex) {
+                    if (tryExecute(action)) {
+                        return;
+                    }
+                }
+            } else {
                 try {
-                    action.execute();
-                    return;
-                } catch (Exception ex) {
-                    /*
-                     * Exception here indicates that async block get is not
-                     * available. Therefore use the queue fallback.
-                     */
-                    ExceptionHelper.printException(ex, "Error performing safe operation.");
+                    if (tryExecute(action)) {
+                        return;
+                    }
+                } finally {
+                    lock.unlock();
                 }
             }
             queueFastOperation(action);
@@ -770,16 +1013,21 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
             return action.execute();
         }
         try {
-            synchronized (mutex) {
+            final InOutParam<T> result = InOutParam.Out();
+            final Lock lock = m_chunkLocks.lockWorld(mutex);
+            if (lock == null) {
+                synchronized (mutex) {
+                    if (tryExecute(action, result)) {
+                        return result.getValue();
+                    }
+                }
+            } else {
                 try {
-                    T result = action.execute();
-                    return result;
-                } catch (Exception ex) {
-                    /*
-                     * Exception here indicates that async block get is not
-                     * available. Therefore use the queue fallback.
-                     */
-                    ExceptionHelper.printException(ex, "Error performing safe operation.");
+                    if (tryExecute(action, result)) {
+                        return result.getValue();
+                    }
+                } finally {
+                    lock.unlock();
                 }
             }
             return queueFastOperation(action);
@@ -788,6 +1036,50 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
         }
     }
 
+    /**
+     * Execute the safe operation, the caller holds the world lock (world
+     * mutex) or the mutex monitor (edit session mutex)
+     *
+     * @param action
+     * @return false if the operation failed and should be queued
+     */
+    private static boolean tryExecute(IAction action) {
+        try {
+            action.execute();
+            return true;
+        } catch (Exception ex) {
+            /*
+             * Exception here indicates that async block get is not
+             * available. Therefore use the queue fallback.
+             */
+            ExceptionHelper.printException(ex, "Error performing safe operation.");
+            return false;
+        }
+    }
+
+    /**
+     * Execute the safe operation, the caller holds the world lock (world
+     * mutex) or the mutex monitor (edit session mutex)
+     *
+     * @param <T>
+     * @param action
+     * @param result the operation result
+     * @return false if the operation failed and should be queued
+     */
+    private static <T> boolean tryExecute(IFunc<T> action, InOutParam<T> result) {
+        try {
+            result.setValue(action.execute());
+            return true;
+        } catch (Exception ex) {
+            /*
+             * Exception here indicates that async block get is not
+             * available. Therefore use the queue fallback.
+             */
+            ExceptionHelper.printException(ex, "Error performing safe operation.");
+            return false;
+        }
+    }
+
     @Override
     public void performSafeChunk(Object mutex, IAction action, IWorld world, Collection<BlockVector2> chunks) {
         long id = Thread.currentThread().getId();
@@ -796,9 +1088,10 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
             return;
         }
         try {
-            synchronized (mutex) {
-                String worldName = world != null ? world.getName() : null;
+            String worldName = world != null ? world.getName() : null;
 
+            final Lock[] locks = m_chunkLocks.lock(mutex, chunks);
+            try {
                 try {
                     boolean canPerform = true;
                     for (BlockVector2 vector : chunks) {
@@ -828,6 +1121,8 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
                         m_chunkWatch.remove(cx, cz, worldName);
                     }
                 }
+            } finally {
+                ChunkLocks.unlock(locks);
             }
 
             queueFastOperation(action);
@@ -844,9 +1139,10 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
         }
 
         try {
-            synchronized (mutex) {
-                String worldName = world != null ? world.getName() : null;
+            String worldName = world != null ? world.getName() : null;
 
+            final Lock[] locks = m_chunkLocks.lock(mutex, chunks);
+            try {
                 try {
                     boolean canPerform = true;
                     for (BlockVector2 vector : chunks) {
@@ -876,10 +1172,31 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
                         m_chunkWatch.remove(cx, cz, worldName);
                     }
                 }
+            } finally {
+                ChunkLocks.unlock(locks);
             }
             return queueFastOperation(action);
         } finally {
             unmarkThread(id);
         }
     }
+
+    @Override
+    public <T> Iterator<T> performSafeChunks(final Object mutex, final IFuncParam<T, BlockVector2> action,
+            final IWorld world, final Iterable<BlockVector2> chunks) {
+        final Iterator<BlockVector2> it = chunks.iterator();
+
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public T next() {
+                final BlockVector2 pos = it.next();
+                return performSafeChunk(mutex, () -> action.execute(pos), world, pos);
+            }
+        };
+    }
 }
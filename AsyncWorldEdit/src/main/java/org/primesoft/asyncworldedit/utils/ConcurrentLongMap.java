@@ -0,0 +1,306 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2016, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent long to long map without boxing. The value 0 is used as "no
+ * entry", storing 0 removes the key. Modifications are serialized per segment,
+ * reads do not lock.
+ *
+ * @author SBPrime
+ */
+public final class ConcurrentLongMap {
+
+    private final static long EMPTY = Long.MIN_VALUE;
+
+    private final static int SEGMENTS = 16;
+
+    private final static int INITIAL_CAPACITY = 32;
+
+    /**
+     * The value update function
+     */
+    @FunctionalInterface
+    public interface IUpdate {
+
+        /**
+         * Compute the new value, called under the segment lock
+         *
+         * @param key the key
+         * @param value the current value (0 if none)
+         * @return the new value (0 to remove)
+         */
+        long apply(long key, long value);
+    }
+
+    /**
+     * The entry consumer
+     */
+    @FunctionalInterface
+    public interface IEntryConsumer {
+
+        void accept(long key, long value);
+    }
+
+    private static int hash(long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private final Segment[] m_segments;
+
+    public ConcurrentLongMap() {
+        m_segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            m_segments[i] = new Segment();
+        }
+    }
+
+    private Segment segment(int hash) {
+        return m_segments[(hash >>> 28) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Get the value
+     *
+     * @param key
+     * @return the value or 0 if there is no entry
+     */
+    public long get(long key) {
+        if (key == EMPTY) {
+            return 0;
+        }
+
+        final int hash = hash(key);
+        final Table table = segment(hash).m_table;
+        final int idx = table.find(key, hash);
+        return idx < 0 ? 0 : table.m_values.get(idx);
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != 0;
+    }
+
+    /**
+     * Set the value
+     *
+     * @param key
+     * @param value the value (0 to remove)
+     */
+    public void put(long key, long value) {
+        update(key, (k, v) -> value);
+    }
+
+    public void remove(long key) {
+        put(key, 0);
+    }
+
+    /**
+     * Atomically update the value
+     *
+     * @param key
+     * @param update the update function
+     * @return the new value
+     */
+    public long update(long key, IUpdate update) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Unsupported key");
+        }
+
+        final int hash = hash(key);
+        return segment(hash).update(key, hash, update);
+    }
+
+    /**
+     * Iterate over all entries (weakly consistent)
+     *
+     * @param consumer
+     */
+    public void forEach(IEntryConsumer consumer) {
+        for (Segment segment : m_segments) {
+            final Table table = segment.m_table;
+            for (int idx = 0; idx < table.capacity(); idx++) {
+                final long key = table.m_keys.get(idx);
+                if (key == EMPTY) {
+                    continue;
+                }
+
+                final long value = table.m_values.get(idx);
+                if (value != 0) {
+                    consumer.accept(key, value);
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        for (Segment segment : m_segments) {
+            segment.clear();
+        }
+    }
+
+    private static final class Segment {
+
+        private volatile Table m_table = new Table(INITIAL_CAPACITY);
+
+        synchronized long update(long key, int hash, IUpdate update) {
+            Table table = m_table;
+            int idx = table.find(key, hash);
+            final long oldValue = idx < 0 ? 0 : table.m_values.get(idx);
+            final long newValue = update.apply(key, oldValue);
+
+            if (newValue == oldValue) {
+                return newValue;
+            }
+
+            if (idx < 0) {
+                if ((table.m_used + 1) * 2 > table.capacity()) {
+                    table = rebuild(table);
+                }
+                idx = table.insert(key, hash, newValue);
+            } else {
+                table.m_values.set(idx, newValue);
+            }
+
+            return newValue;
+        }
+
+        synchronized void clear() {
+            m_table = new Table(INITIAL_CAPACITY);
+        }
+
+        /**
+         * Copy the live entries to a new table (with room for one more entry)
+         * and publish it
+         */
+        private Table rebuild(Table table) {
+            int live = 0;
+            for (int idx = 0; idx < table.capacity(); idx++) {
+                if (table.m_keys.get(idx) != EMPTY && table.m_values.get(idx) != 0) {
+                    live++;
+                }
+            }
+
+            int capacity = INITIAL_CAPACITY;
+            while ((live + 1) * 4 > capacity) {
+                capacity <<= 1;
+            }
+
+            final Table result = new Table(capacity);
+            for (int idx = 0; idx < table.capacity(); idx++) {
+                final long key = table.m_keys.get(idx);
+                final long value = table.m_values.get(idx);
+                if (key != EMPTY && value != 0) {
+                    result.insert(key, hash(key), value);
+                }
+            }
+
+            m_table = result;
+            return result;
+        }
+    }
+
+    private static final class Table {
+
+        private final AtomicLongArray m_keys;
+
+        private final AtomicLongArray m_values;
+
+        private final int m_mask;
+
+        /**
+         * Number of used slots (including the removed entries)
+         */
+        private int m_used;
+
+        Table(int capacity) {
+            m_keys = new AtomicLongArray(capacity);
+            m_values = new AtomicLongArray(capacity);
+            m_mask = capacity - 1;
+
+            for (int i = 0; i < capacity; i++) {
+                m_keys.lazySet(i, EMPTY);
+            }
+        }
+
+        int capacity() {
+            return m_mask + 1;
+        }
+
+        int find(long key, int hash) {
+            int idx = hash & m_mask;
+            while (true) {
+                final long k = m_keys.get(idx);
+                if (k == key) {
+                    return idx;
+                }
+                if (k == EMPTY) {
+                    return -1;
+                }
+                idx = (idx + 1) & m_mask;
+            }
+        }
+
+        /**
+         * Insert a new key, the key is published after the value
+         */
+        int insert(long key, int hash, long value) {
+            int idx = hash & m_mask;
+            while (m_keys.get(idx) != EMPTY) {
+                idx = (idx + 1) & m_mask;
+            }
+
+            m_values.set(idx, value);
+            m_keys.set(idx, key);
+            m_used++;
+            return idx;
+        }
+    }
+}
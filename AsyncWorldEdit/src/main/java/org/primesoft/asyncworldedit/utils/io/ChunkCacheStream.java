@@ -70,7 +70,7 @@ public class ChunkCacheStream implements IChunkCacheStream {
     /**
      * The underlying stream
      */
-    private final RandomAccessFile m_stream;
+    protected final RandomAccessFile m_stream;
 
     /**
      * The current file position
@@ -83,10 +83,21 @@ public class ChunkCacheStream implements IChunkCacheStream {
     private long m_filePointer;
 
     /**
-     * The chunk cache
+     * The chunk cache (chunk start to chunk data)
      */
     private final HashMap<Long, byte[]> m_chunkCache;
 
+    /**
+     * The last used chunk
+     */
+    private byte[] m_chunk;
+
+    /**
+     * The last used chunk start and end positions
+     */
+    private long m_chunkStart;
+    private long m_chunkEnd;
+
     /**
      * The chunk size
      */
@@ -202,14 +213,7 @@ public class ChunkCacheStream implements IChunkCacheStream {
 
         m_filePointer++;
 
-        final int idx = (int) (position % m_chunkSize);
-        final byte[] data = getChunk(position / m_chunkSize, position - idx);
-
-        if (idx >= data.length) {
-            throw new IOException();
-        }
-
-        int i = data[idx];
+        int i = getChunkAt(position)[(int) (position - m_chunkStart)];
         if (i < 0) {
             i += BYTE_CONVERT;
         }
@@ -224,23 +228,19 @@ public class ChunkCacheStream implements IChunkCacheStream {
 
     @Override
     public void readFully(byte[] b, int off, int len) throws IOException {
-        int n = 0;
+        int n = off;
         long pos = m_filePointer;
-        int offset = (int) (pos % m_chunkSize);
 
         while (len > 0) {
-            final byte[] data = getChunk(pos / m_chunkSize, pos - offset);
+            final byte[] data = getChunkAt(pos);
+            final int offset = (int) (pos - m_chunkStart);
 
-            int toCopy = len > (m_chunkSize - offset) ? (m_chunkSize - offset) : len;
-            if (toCopy > data.length) {
-                throw new IOException();
-            }
+            int toCopy = len > (data.length - offset) ? (data.length - offset) : len;
 
             System.arraycopy(data, offset, b, n, toCopy);
             n += toCopy;
             len -= toCopy;
             pos += toCopy;
-            offset = 0;
         }
 
         m_filePointer = pos;
@@ -270,14 +270,7 @@ public class ChunkCacheStream implements IChunkCacheStream {
 
         m_filePointer++;
 
-        final int idx = (int) (position % m_chunkSize);
-        final byte[] data = getChunk(position / m_chunkSize, position - idx);
-                
-        if (idx >= data.length) {
-            throw new IOException();
-        }
-
-        return data[idx];
+        return getChunkAt(position)[(int) (position - m_chunkStart)];
     }
 
     @Override
@@ -376,18 +369,67 @@ public class ChunkCacheStream implements IChunkCacheStream {
         return DataInputStream.readUTF(this);
     }
 
+    /**
+     * Get the chunk containing the position
+     *
+     * @param position
+     * @return
+     * @throws IOException
+     */
+    private byte[] getChunkAt(long position) throws IOException {
+        if (position >= m_chunkStart && position < m_chunkEnd) {
+            return m_chunk;
+        }
+
+        final long start = getChunkStart(position);
+        final byte[] data = getChunk(start);
+        if (position - start >= data.length) {
+            throw new IOException();
+        }
+
+        m_chunk = data;
+        m_chunkStart = start;
+        m_chunkEnd = start + data.length;
+
+        return data;
+    }
+
+    /**
+     * Get the start position of the chunk containing the position
+     *
+     * @param position
+     * @return
+     */
+    protected long getChunkStart(long position) {
+        return position - position % m_chunkSize;
+    }
+
     /**
      * Get a chunk for a offset
      *
      * @param offset
      * @return
      */
-    private byte[] getChunk(Long chunkId, long offset) throws IOException {        
-        byte[] result = m_chunkCache.get(chunkId);
+    private byte[] getChunk(long offset) throws IOException {
+        byte[] result = m_chunkCache.get(offset);
         if (result != null) {
             return result;
         }
 
+        result = readChunk(offset);
+        m_chunkCache.put(offset, result);
+
+        return result;
+    }
+
+    /**
+     * Read the chunk data from the stream
+     *
+     * @param offset the chunk start
+     * @return
+     * @throws IOException
+     */
+    protected byte[] readChunk(long offset) throws IOException {
         long length = length();
         long dataAvailable = length - offset;
 
@@ -405,9 +447,6 @@ public class ChunkCacheStream implements IChunkCacheStream {
         m_stream.readFully(data);
         m_streamPos += toRead;
 
-        m_chunkCache.put(chunkId, data);
-
         return data;
-
     }
 }
@@ -0,0 +1,390 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2016, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The undo stream frame compression codec
+ *
+ * @author SBPrime
+ */
+public abstract class FrameCodec {
+
+    /**
+     * Frame stored without compression
+     */
+    public final static int NONE = 0;
+
+    /**
+     * Fast LZ77 (LZ4 like) compression
+     */
+    public final static int LZ = 1;
+
+    /**
+     * Deflate compression
+     */
+    public final static int DEFLATE = 2;
+
+    /**
+     * Create a new codec instance (the instances are not thread safe)
+     *
+     * @param id the codec id
+     * @param level the compression level (deflate only)
+     * @return the codec or null if the id is unknown
+     */
+    public static FrameCodec create(int id, int level) {
+        switch (id) {
+            case NONE:
+                return new NoneCodec();
+            case LZ:
+                return new LzCodec();
+            case DEFLATE:
+                return new DeflateCodec(level);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The codec id stored in the frame header
+     *
+     * @return
+     */
+    public abstract int getId();
+
+    /**
+     * Compress the data
+     *
+     * @param src the data to compress
+     * @param srcLen the data length
+     * @param dst the output buffer
+     * @return the compressed length or -1 if the output does not fit in dst
+     */
+    public abstract int compress(byte[] src, int srcLen, byte[] dst);
+
+    /**
+     * Decompress the data
+     *
+     * @param src the compressed data
+     * @param srcLen the compressed data length
+     * @param dst the output buffer
+     * @param dstLen the expected output length
+     * @throws IOException when the data is corrupted
+     */
+    public abstract void decompress(byte[] src, int srcLen, byte[] dst, int dstLen) throws IOException;
+
+    private static class NoneCodec extends FrameCodec {
+
+        @Override
+        public int getId() {
+            return NONE;
+        }
+
+        @Override
+        public int compress(byte[] src, int srcLen, byte[] dst) {
+            if (srcLen > dst.length) {
+                return -1;
+            }
+
+            System.arraycopy(src, 0, dst, 0, srcLen);
+            return srcLen;
+        }
+
+        @Override
+        public void decompress(byte[] src, int srcLen, byte[] dst, int dstLen) throws IOException {
+            if (srcLen != dstLen) {
+                throw new IOException("Invalid frame length");
+            }
+
+            System.arraycopy(src, 0, dst, 0, srcLen);
+        }
+    }
+
+    private static class DeflateCodec extends FrameCodec {
+
+        private final int m_level;
+
+        DeflateCodec(int level) {
+            m_level = level;
+        }
+
+        @Override
+        public int getId() {
+            return DEFLATE;
+        }
+
+        @Override
+        public int compress(byte[] src, int srcLen, byte[] dst) {
+            final Deflater deflater = new Deflater(m_level, true);
+            try {
+                deflater.setInput(src, 0, srcLen);
+                deflater.finish();
+
+                final int result = deflater.deflate(dst);
+                return deflater.finished() ? result : -1;
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public void decompress(byte[] src, int srcLen, byte[] dst, int dstLen) throws IOException {
+            final Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(src, 0, srcLen);
+
+                int pos = 0;
+                while (pos < dstLen && !inflater.finished()) {
+                    final int n = inflater.inflate(dst, pos, dstLen - pos);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    pos += n;
+                }
+
+                if (pos != dstLen) {
+                    throw new IOException("Invalid frame length");
+                }
+            } catch (DataFormatException ex) {
+                throw new IOException("Corrupted frame", ex);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * LZ77 codec using the LZ4 block layout: a token with the literal and
+     * match lengths, the literals, a 16 bit match offset and the length
+     * extension bytes. The last sequence contains only literals.
+     */
+    private static class LzCodec extends FrameCodec {
+
+        private final static int HASH_BITS = 14;
+        private final static int MIN_MATCH = 4;
+        private final static int MAX_OFFSET = 0xffff;
+
+        /**
+         * No match can start in the last bytes of the input
+         */
+        private final static int MATCH_LIMIT = 12;
+
+        /**
+         * The last bytes of the input are always literals
+         */
+        private final static int LAST_LITERALS = 5;
+
+        /**
+         * Position + 1 of the last sequence with the hash
+         */
+        private final int[] m_table = new int[1 << HASH_BITS];
+
+        @Override
+        public int getId() {
+            return LZ;
+        }
+
+        @Override
+        public int compress(byte[] src, int srcLen, byte[] dst) {
+            Arrays.fill(m_table, 0);
+
+            final int limit = srcLen - MATCH_LIMIT;
+            final int matchEnd = srcLen - LAST_LITERALS;
+            int ip = 0;
+            int anchor = 0;
+            int dp = 0;
+
+            while (ip < limit) {
+                final int sequence = readInt(src, ip);
+                final int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+                final int ref = m_table[hash] - 1;
+                m_table[hash] = ip + 1;
+
+                if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                    ip++;
+                    continue;
+                }
+
+                int length = MIN_MATCH;
+                while (ip + length < matchEnd && src[ref + length] == src[ip + length]) {
+                    length++;
+                }
+
+                dp = writeSequence(src, anchor, ip - anchor, ip - ref, length, dst, dp);
+                if (dp < 0) {
+                    return -1;
+                }
+
+                ip += length;
+                anchor = ip;
+            }
+
+            return writeSequence(src, anchor, srcLen - anchor, 0, 0, dst, dp);
+        }
+
+        @Override
+        public void decompress(byte[] src, int srcLen, byte[] dst, int dstLen) throws IOException {
+            int sp = 0;
+            int dp = 0;
+
+            try {
+                while (sp < srcLen) {
+                    final int token = src[sp++] & 0xff;
+
+                    int literals = token >>> 4;
+                    if (literals == 15) {
+                        int b;
+                        do {
+                            b = src[sp++] & 0xff;
+                            literals += b;
+                        } while (b == 255);
+                    }
+
+                    if (sp + literals > srcLen || dp + literals > dstLen) {
+                        throw new IOException("Corrupted frame");
+                    }
+                    System.arraycopy(src, sp, dst, dp, literals);
+                    sp += literals;
+                    dp += literals;
+
+                    if (sp >= srcLen) {
+                        break;
+                    }
+
+                    final int offset = (src[sp] & 0xff) | (src[sp + 1] & 0xff) << 8;
+                    sp += 2;
+
+                    int length = token & 0xf;
+                    if (length == 15) {
+                        int b;
+                        do {
+                            b = src[sp++] & 0xff;
+                            length += b;
+                        } while (b == 255);
+                    }
+                    length += MIN_MATCH;
+
+                    int ref = dp - offset;
+                    if (offset == 0 || ref < 0 || dp + length > dstLen) {
+                        throw new IOException("Corrupted frame");
+                    }
+                    for (int i = 0; i < length; i++) {
+                        dst[dp++] = dst[ref++];
+                    }
+                }
+            } catch (ArrayIndexOutOfBoundsException ex) {
+                throw new IOException("Corrupted frame", ex);
+            }
+
+            if (dp != dstLen) {
+                throw new IOException("Invalid frame length");
+            }
+        }
+
+        /**
+         * Write the sequence (match length 0 for the last sequence)
+         *
+         * @return the new output position or -1 if the output is full
+         */
+        private static int writeSequence(byte[] src, int anchor, int literals,
+                int offset, int length, byte[] dst, int dp) {
+            if (dp + literals + literals / 255 + length / 255 + 6 > dst.length) {
+                return -1;
+            }
+
+            final int matchLength = length - MIN_MATCH;
+            final int tokenPos = dp++;
+            int token = 0;
+
+            if (literals >= 15) {
+                token = 15 << 4;
+                dp = writeLength(dst, dp, literals - 15);
+            } else {
+                token = literals << 4;
+            }
+
+            System.arraycopy(src, anchor, dst, dp, literals);
+            dp += literals;
+
+            if (length > 0) {
+                dst[dp++] = (byte) offset;
+                dst[dp++] = (byte) (offset >>> 8);
+
+                if (matchLength >= 15) {
+                    token |= 15;
+                    dp = writeLength(dst, dp, matchLength - 15);
+                } else {
+                    token |= matchLength;
+                }
+            }
+
+            dst[tokenPos] = (byte) token;
+            return dp;
+        }
+
+        private static int writeLength(byte[] dst, int dp, int length) {
+            while (length >= 255) {
+                dst[dp++] = (byte) 255;
+                length -= 255;
+            }
+            dst[dp++] = (byte) length;
+
+            return dp;
+        }
+
+        private static int readInt(byte[] data, int pos) {
+            return (data[pos] & 0xff) | (data[pos + 1] & 0xff) << 8
+                    | (data[pos + 2] & 0xff) << 16 | (data[pos + 3] & 0xff) << 24;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2016, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils.io;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import org.primesoft.asyncworldedit.api.inner.IChunkCacheStream;
+
+/**
+ * Chunk cache stream reading the frames written by
+ * {@link FramedOutputStream}. The stream positions are the raw (uncompressed)
+ * data positions, the frame index is built when the stream is opened.
+ *
+ * @author SBPrime
+ */
+public class FramedCacheStream extends ChunkCacheStream {
+
+    /**
+     * Open the stream, detects if the stream is framed
+     *
+     * @param stream
+     * @return
+     * @throws IOException
+     */
+    public static IChunkCacheStream open(RandomAccessFile stream) throws IOException {
+        final byte[] magic = FramedOutputStream.MAGIC;
+        if (stream.length() < magic.length) {
+            return new ChunkCacheStream(stream);
+        }
+
+        final byte[] header = new byte[magic.length];
+        stream.seek(0);
+        stream.readFully(header);
+        stream.seek(0);
+
+        return Arrays.equals(magic, header)
+                ? new FramedCacheStream(stream, 16)
+                : new ChunkCacheStream(stream);
+    }
+
+    /**
+     * The frames raw data start positions
+     */
+    private long[] m_starts = new long[16];
+
+    /**
+     * The frames file positions (after the frame header)
+     */
+    private long[] m_offsets = new long[16];
+
+    /**
+     * The frames stored data length
+     */
+    private int[] m_lengths = new int[16];
+
+    /**
+     * The frames raw data length
+     */
+    private int[] m_rawLengths = new int[16];
+
+    /**
+     * The frames codec
+     */
+    private byte[] m_codecs = new byte[16];
+
+    private int m_count;
+
+    /**
+     * The raw data length
+     */
+    private final long m_rawLength;
+
+    /**
+     * The decoders
+     */
+    private final FrameCodec[] m_decoders = new FrameCodec[3];
+
+    private byte[] m_buffer = new byte[0];
+
+    public FramedCacheStream(RandomAccessFile stream, int maxFrames) throws IOException {
+        super(stream, maxFrames, 1);
+
+        m_rawLength = buildIndex();
+    }
+
+    @Override
+    public long length() throws IOException {
+        return m_rawLength;
+    }
+
+    @Override
+    protected long getChunkStart(long position) {
+        int idx = Arrays.binarySearch(m_starts, 0, m_count, position);
+        if (idx < 0) {
+            idx = -idx - 2;
+        }
+
+        return idx >= 0 ? m_starts[idx] : 0;
+    }
+
+    @Override
+    protected byte[] readChunk(long offset) throws IOException {
+        final int idx = Arrays.binarySearch(m_starts, 0, m_count, offset);
+        if (idx < 0) {
+            throw new IOException("Frame not found");
+        }
+
+        final int codecId = m_codecs[idx];
+        if (codecId < 0 || codecId >= m_decoders.length) {
+            throw new IOException("Unknown frame codec");
+        }
+
+        FrameCodec codec = m_decoders[codecId];
+        if (codec == null) {
+            codec = FrameCodec.create(codecId, 0);
+            m_decoders[codecId] = codec;
+        }
+
+        final int length = m_lengths[idx];
+        if (m_buffer.length < length) {
+            m_buffer = new byte[length];
+        }
+
+        m_stream.seek(m_offsets[idx]);
+        m_stream.readFully(m_buffer, 0, length);
+
+        final byte[] result = new byte[m_rawLengths[idx]];
+        codec.decompress(m_buffer, length, result, result.length);
+
+        return result;
+    }
+
+    /**
+     * Scan the frame headers, a truncated frame at the end of the file is
+     * ignored
+     *
+     * @return the raw data length
+     */
+    private long buildIndex() throws IOException {
+        final long fileLength = m_stream.length();
+        long pos = FramedOutputStream.MAGIC.length;
+        long rawPos = 0;
+
+        while (pos + FramedOutputStream.FRAME_HEADER <= fileLength) {
+            m_stream.seek(pos);
+            final int codec = m_stream.readUnsignedByte();
+            final int rawLength = m_stream.readInt();
+            final int length = m_stream.readInt();
+
+            pos += FramedOutputStream.FRAME_HEADER;
+            if (rawLength <= 0 || length < 0 || pos + length > fileLength) {
+                break;
+            }
+
+            if (m_count == m_starts.length) {
+                final int size = m_count * 2;
+                m_starts = Arrays.copyOf(m_starts, size);
+                m_offsets = Arrays.copyOf(m_offsets, size);
+                m_lengths = Arrays.copyOf(m_lengths, size);
+                m_rawLengths = Arrays.copyOf(m_rawLengths, size);
+                m_codecs = Arrays.copyOf(m_codecs, size);
+            }
+
+            m_starts[m_count] = rawPos;
+            m_offsets[m_count] = pos;
+            m_lengths[m_count] = length;
+            m_rawLengths[m_count] = rawLength;
+            m_codecs[m_count] = (byte) codec;
+            m_count++;
+
+            pos += length;
+            rawPos += rawLength;
+        }
+
+        return rawPos;
+    }
+}
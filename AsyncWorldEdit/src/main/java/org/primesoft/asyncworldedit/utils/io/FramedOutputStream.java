@@ -0,0 +1,184 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2016, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that splits the data into compressed frames.
+ *
+ * The stream starts with the {@link #MAGIC} header followed by the frames,
+ * each frame has a header: codec id (byte), raw length (int) and stored
+ * length (int). See {@link FramedCacheStream}.
+ *
+ * @author SBPrime
+ */
+public class FramedOutputStream extends OutputStream {
+
+    /**
+     * The framed stream header, the first byte never matches the first byte
+     * of the raw undo data
+     */
+    public final static byte[] MAGIC = new byte[]{'A', 'W', 'E', 'F', 1};
+
+    /**
+     * The frame header size
+     */
+    public final static int FRAME_HEADER = 9;
+
+    private final OutputStream m_out;
+
+    private final FrameCodec m_codec;
+
+    /**
+     * The raw frame data
+     */
+    private final byte[] m_buffer;
+
+    /**
+     * The compressed frame data
+     */
+    private final byte[] m_compressed;
+
+    /**
+     * The frame header
+     */
+    private final byte[] m_header = new byte[FRAME_HEADER];
+
+    private int m_size;
+
+    /**
+     * Create new framed stream
+     *
+     * @param out the underlying stream
+     * @param codec the frame codec
+     * @param frameSize the frame size (raw bytes)
+     * @param writeHeader write the stream header (new stream)
+     * @throws IOException
+     */
+    public FramedOutputStream(OutputStream out, FrameCodec codec, int frameSize, boolean writeHeader) throws IOException {
+        m_out = out;
+        m_codec = codec;
+        m_buffer = new byte[frameSize];
+        m_compressed = new byte[frameSize];
+
+        if (writeHeader) {
+            m_out.write(MAGIC);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (m_size == m_buffer.length) {
+            writeFrame();
+        }
+
+        m_buffer[m_size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (m_size == m_buffer.length) {
+                writeFrame();
+            }
+
+            final int toCopy = Math.min(len, m_buffer.length - m_size);
+            System.arraycopy(b, off, m_buffer, m_size, toCopy);
+            m_size += toCopy;
+            off += toCopy;
+            len -= toCopy;
+        }
+    }
+
+    /**
+     * Write the pending data as a (possibly short) frame
+     *
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        writeFrame();
+        m_out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeFrame();
+        } finally {
+            m_out.close();
+        }
+    }
+
+    private void writeFrame() throws IOException {
+        if (m_size == 0) {
+            return;
+        }
+
+        final int compressed = m_codec.compress(m_buffer, m_size, m_compressed);
+        final boolean isCompressed = compressed >= 0 && compressed < m_size;
+        final int length = isCompressed ? compressed : m_size;
+
+        m_header[0] = (byte) (isCompressed ? m_codec.getId() : FrameCodec.NONE);
+        writeInt(m_header, 1, m_size);
+        writeInt(m_header, 5, length);
+        m_out.write(m_header);
+        m_out.write(isCompressed ? m_compressed : m_buffer, 0, length);
+
+        m_size = 0;
+    }
+
+    private static void writeInt(byte[] data, int pos, int value) {
+        data[pos] = (byte) (value >>> 24);
+        data[pos + 1] = (byte) (value >>> 16);
+        data[pos + 2] = (byte) (value >>> 8);
+        data[pos + 3] = (byte) value;
+    }
+}
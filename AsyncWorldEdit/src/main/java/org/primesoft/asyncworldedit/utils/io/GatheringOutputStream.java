@@ -0,0 +1,212 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2016, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Output stream that stores the data in pooled direct buffers, the buffered
+ * data is written to a channel using a single gathering write.
+ *
+ * @author SBPrime
+ */
+public class GatheringOutputStream extends OutputStream {
+
+    /**
+     * The buffer block size
+     */
+    private final static int BLOCK_SIZE = 0x10000;
+
+    /**
+     * The maximum number of free blocks kept in the pool
+     */
+    private final static int MAX_POOLED = 128;
+
+    /**
+     * The free blocks
+     */
+    private final static Deque<ByteBuffer> s_pool = new ArrayDeque<>();
+
+    /**
+     * The number of blocks holding buffered data (all streams)
+     */
+    private final static AtomicInteger s_used = new AtomicInteger();
+
+    /**
+     * The number of bytes held by all streams
+     *
+     * @return
+     */
+    public static long getBufferedBytes() {
+        return (long) s_used.get() * BLOCK_SIZE;
+    }
+
+    private static ByteBuffer allocate() {
+        synchronized (s_pool) {
+            final ByteBuffer result = s_pool.poll();
+            if (result != null) {
+                return result;
+            }
+        }
+
+        return ByteBuffer.allocateDirect(BLOCK_SIZE);
+    }
+
+    private static void free(ByteBuffer block) {
+        block.clear();
+        synchronized (s_pool) {
+            if (s_pool.size() < MAX_POOLED) {
+                s_pool.push(block);
+            }
+        }
+    }
+
+    /**
+     * The filled blocks
+     */
+    private final List<ByteBuffer> m_blocks = new ArrayList<>();
+
+    /**
+     * The block that is currently filled
+     */
+    private ByteBuffer m_current;
+
+    /**
+     * The number of buffered bytes
+     */
+    private long m_size;
+
+    /**
+     * The number of buffered bytes
+     *
+     * @return
+     */
+    public long size() {
+        return m_size;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (m_current == null || !m_current.hasRemaining()) {
+            nextBlock();
+        }
+
+        m_current.put((byte) b);
+        m_size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (m_current == null || !m_current.hasRemaining()) {
+                nextBlock();
+            }
+
+            final int toCopy = Math.min(len, m_current.remaining());
+            m_current.put(b, off, toCopy);
+            m_size += toCopy;
+            off += toCopy;
+            len -= toCopy;
+        }
+    }
+
+    /**
+     * Write all buffered data to the channel and return the blocks to the
+     * pool. The buffered data is dropped even if the write fails.
+     *
+     * @param channel
+     * @throws IOException
+     */
+    public void writeTo(GatheringByteChannel channel) throws IOException {
+        if (m_size == 0) {
+            return;
+        }
+
+        final ByteBuffer[] blocks = m_blocks.toArray(new ByteBuffer[0]);
+        for (ByteBuffer block : blocks) {
+            block.flip();
+        }
+
+        try {
+            long remaining = m_size;
+            while (remaining > 0) {
+                remaining -= channel.write(blocks);
+            }
+        } finally {
+            reset();
+        }
+    }
+
+    /**
+     * Drop the buffered data
+     */
+    public void reset() {
+        for (ByteBuffer block : m_blocks) {
+            free(block);
+        }
+        s_used.addAndGet(-m_blocks.size());
+
+        m_blocks.clear();
+        m_current = null;
+        m_size = 0;
+    }
+
+    private void nextBlock() {
+        m_current = allocate();
+        m_blocks.add(m_current);
+        s_used.incrementAndGet();
+    }
+}
@@ -103,6 +103,17 @@ public class VarInt {
         } while (value != 0);
     }
 
+    /**
+     * Write variable length signed int (zig-zag encoded) to data output
+     *
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    public static void writeSignedInt(DataOutput out, int value) throws IOException {
+        writeLong(out, ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+
     /**
      * Write variable length short to data output
      *
@@ -172,6 +183,17 @@ public class VarInt {
         return result;
     }
     
+    /**
+     * Read variable length signed int (zig-zag encoded) from data input
+     * @param in
+     * @return
+     * @throws IOException 
+     */
+    public static int readSignedInt(DataInput in) throws IOException {
+        final int value = readInt(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
         /**
      * Read variable length short from data input
      * @param in
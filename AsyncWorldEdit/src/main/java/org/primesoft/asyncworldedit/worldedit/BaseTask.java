@@ -60,10 +60,12 @@ import org.primesoft.asyncworldedit.api.configuration.IPermissionGroup;
 import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
 import org.primesoft.asyncworldedit.api.worldedit.IThreadSafeEditSession;
 import org.primesoft.asyncworldedit.blockPlacer.entries.JobEntry;
+import org.primesoft.asyncworldedit.core.AwePlatform;
 import org.primesoft.asyncworldedit.strings.MessageType;
 import org.primesoft.asyncworldedit.utils.BukkitRunnable;
 import org.primesoft.asyncworldedit.utils.RequestCotext;
 import org.primesoft.asyncworldedit.utils.SessionCanceled;
+import org.primesoft.asyncworldedit.worldedit.regions.ChunkPrefetcher;
 
 /**
  *
@@ -192,6 +194,11 @@ public abstract class BaseTask extends BukkitRunnable {
                 }
             }
 
+            if (!flushBlocks()) {
+                printSessionCancelled();
+                result = null;
+            }
+
             m_job.setStatus(JobStatus.Waiting);
             getBlockPlacer().addTasks(getPlayer(), m_job);
             doPostRun(result);
@@ -209,10 +216,23 @@ public abstract class BaseTask extends BukkitRunnable {
             super.run();
         }
         finally {
+            if (!flushBlocks()) {
+                log(String.format("Warning: the buffered blocks of %1$s were not queued.", getCommand()));
+            }
+            ChunkPrefetcher.closeAll();
             TaskContext.remove();
         }
     }
 
+    /**
+     * Queue the blocks buffered by the task
+     *
+     * @return false if the buffered blocks were rejected by the block placer
+     */
+    private static boolean flushBlocks() {
+        return AwePlatform.getInstance().getCore().getInnerBlockPlacer().flushBlocks();
+    }
+
     private static void log(String m) {
         LoggerProvider.log(m);
     }
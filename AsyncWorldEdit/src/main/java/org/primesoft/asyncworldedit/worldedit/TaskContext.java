@@ -84,6 +84,14 @@ public final class TaskContext implements ITaskContext {
         return result;
     }
     
+    /**
+     * Is the current thread running an AWE task
+     * @return 
+     */
+    public static boolean isActive() {
+        return m_contexts.get() != null;
+    }
+    
     public static ITaskContext init(BaseTask task) {
         final TaskContext tc = new TaskContext(task);
         m_contexts.set(tc);
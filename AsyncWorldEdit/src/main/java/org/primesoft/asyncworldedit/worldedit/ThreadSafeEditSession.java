@@ -423,6 +423,30 @@ public class ThreadSafeEditSession extends AweEditSession implements IThreadSafe
         return r;
     }
 
+    /**
+     * Set a batch of blocks. The blocks pass the whole extent chain (history,
+     * mask, block bag, changed blocks limit), in async mode the async world
+     * buffers them and queues them in per chunk batches.
+     *
+     * @param jobId the job ID
+     * @param positions
+     * @param blocks
+     * @return Number of changed blocks
+     * @throws WorldEditException
+     */
+    @Override
+    public int setBlocks(int jobId, List<BlockVector3> positions,
+            List<? extends BlockStateHolder> blocks) throws WorldEditException {
+        final int size = positions.size();
+        int result = 0;
+        for (int i = 0; i < size; i++) {
+            if (setBlock(jobId, positions.get(i), blocks.get(i), Stage.BEFORE_HISTORY)) {
+                result++;
+            }
+        }
+        return result;
+    }
+
     @Override
     public boolean setBlock(BlockVector3 pt, Pattern pat, int jobId)
             throws MaxChangedBlocksException {
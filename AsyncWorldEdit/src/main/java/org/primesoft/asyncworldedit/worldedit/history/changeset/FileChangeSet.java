@@ -207,9 +207,9 @@ public final class FileChangeSet implements ChangeSet {
     }
 
     /**
-     * Save the change set
+     * Serialize the queued changes, the save is finished by {@link #commit()}
      *
-     * @return
+     * @return true if any data was queued for writing
      */
     boolean save() {
         List<Change> dataToSave = new LinkedList<>();
@@ -225,21 +225,47 @@ public final class FileChangeSet implements ChangeSet {
             }
         }
 
+        boolean result = false;
         try {
             if (dataToSave.isEmpty()) {
                 return false;
             }
 
-            m_changesetSerializer.save(m_storageFile, dataToSave);
+            m_changesetSerializer.queueSave(m_storageFile, dataToSave);
+            result = true;
             return true;
         } finally {
-            synchronized (m_saveMutex) {
-                m_savePending = false;
-                m_saveMutex.notifyAll();
+            if (!result) {
+                endSave();
             }
         }
     }
 
+    /**
+     * Write the data serialized by {@link #save()} to the undo file
+     */
+    void commit() {
+        try {
+            m_changesetSerializer.commit(m_storageFile);
+        } finally {
+            endSave();
+        }
+    }
+
+    /**
+     * Close the undo file handlers until the next save
+     */
+    void release() {
+        m_changesetSerializer.release(m_storageFile);
+    }
+
+    private void endSave() {
+        synchronized (m_saveMutex) {
+            m_savePending = false;
+            m_saveMutex.notifyAll();
+        }
+    }
+
     /**
      * Load all changes stored on disk and queued
      *
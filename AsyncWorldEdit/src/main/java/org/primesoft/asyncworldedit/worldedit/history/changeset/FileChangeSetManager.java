@@ -47,9 +47,11 @@
  */
 package org.primesoft.asyncworldedit.worldedit.history.changeset;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import org.primesoft.asyncworldedit.utils.ExceptionHelper;
+import org.primesoft.asyncworldedit.utils.io.GatheringOutputStream;
 
 /**
  *
@@ -57,6 +59,12 @@ import org.primesoft.asyncworldedit.utils.ExceptionHelper;
  */
 public class FileChangeSetManager {
 
+    /**
+     * The maximum number of buffered bytes in one save round, the queued
+     * change sets are committed when the limit is reached
+     */
+    private static final long MAX_ROUND_BUFFER = 0x800000;
+
     private static final List<FileChangeSet> s_fileSavers = new LinkedList<FileChangeSet>();
     private static boolean s_isRunning = false;
     private static final Object s_waitMutex = new Object();
@@ -109,9 +117,13 @@ public class FileChangeSetManager {
     }
 
     /**
-     * The change set save loop
+     * The change set save loop. All change sets are serialized first and the
+     * data is written in one commit round, the undo files of the idle change
+     * sets are closed.
      */
     private static void saveLoop() {
+        final List<FileChangeSet> toCommit = new ArrayList<>();
+
         while (s_isRunning) {
             boolean dataSaved;
             do {
@@ -126,22 +138,24 @@ public class FileChangeSetManager {
                     
                     try {
                         result = changeSet.save();
+                        if (result) {
+                            toCommit.add(changeSet);
+                        } else {
+                            changeSet.release();
+                        }
                     }
                     catch (Exception ex) {
                         ExceptionHelper.printException(ex, "Unable to save undo data. Preventing undo subsystem from breaking.");
                         result = true;
                     }
-                    if (result) {
-                        try {
-                            /**
-                             * HACK: Sleep is added to prevent IO overflow
-                             */
-                            Thread.sleep(5);
-                        } catch (InterruptedException ex) {
-                        }
-                    }
                     dataSaved |= result;
+
+                    if (GatheringOutputStream.getBufferedBytes() >= MAX_ROUND_BUFFER) {
+                        commit(toCommit);
+                    }
                 }
+
+                commit(toCommit);
             } while (dataSaved);
 
             synchronized (s_waitMutex) {
@@ -153,6 +167,23 @@ public class FileChangeSetManager {
         }
     }
 
+    /**
+     * Commit the saved change sets
+     *
+     * @param changeSets
+     */
+    private static void commit(List<FileChangeSet> changeSets) {
+        for (FileChangeSet changeSet : changeSets) {
+            try {
+                changeSet.commit();
+            }
+            catch (Exception ex) {
+                ExceptionHelper.printException(ex, "Unable to save undo data. Preventing undo subsystem from breaking.");
+            }
+        }
+        changeSets.clear();
+    }
+
     static void notiffy() {
         synchronized (s_waitMutex) {
             s_waitMutex.notifyAll();
@@ -67,6 +67,7 @@ public class ChunkBaseRegionIterator implements Iterator<BlockVector3>, ICountPr
     private final AbstractRegion m_region;
     private int m_count;
     private AtomicInteger m_delta = new AtomicInteger(0);
+    private final ChunkPrefetcher m_prefetcher;
 
     public ChunkBaseRegionIterator(AbstractRegion region) {
         BlockVector3 min = region.getMinimumPoint();
@@ -91,6 +92,8 @@ public class ChunkBaseRegionIterator implements Iterator<BlockVector3>, ICountPr
     
         m_count = (m_maxX - m_minX + 1) * (m_maxY - m_minY + 1) * (m_maxZ - m_minZ + 1);
         forward();
+        
+        m_prefetcher = hasNext() ? ChunkPrefetcher.create(region) : null;
     }
     
     private void forward() {
@@ -123,8 +126,16 @@ public class ChunkBaseRegionIterator implements Iterator<BlockVector3>, ICountPr
         }
 
         final BlockVector3 result = BlockVector3.at(m_x, m_y, m_z);
+        if (m_prefetcher != null) {
+            m_prefetcher.moveTo(m_x >> 4, m_z >> 4);
+        }
+        
         forwardOne();
         forward();
+        
+        if (m_prefetcher != null && !hasNext()) {
+            m_prefetcher.close();
+        }
 
         return result;
     }
@@ -66,6 +66,7 @@ public final class ChunkCuboidRegionIterator implements Iterator<BlockVector3>,
     private int m_xChunk, m_zChunk;
     private int m_count;
     private AtomicInteger m_delta = new AtomicInteger(0);
+    private final ChunkPrefetcher m_prefetcher;
 
     public ChunkCuboidRegionIterator(CuboidRegion region) {
         BlockVector3  min = region.getMinimumPoint();
@@ -87,6 +88,7 @@ public final class ChunkCuboidRegionIterator implements Iterator<BlockVector3>,
         m_maxZ = max.getBlockZ();
         
         m_count = (m_maxX - m_minX + 1) * (m_maxY - m_minY + 1) * (m_maxZ - m_minZ + 1);
+        m_prefetcher = ChunkPrefetcher.create(region);
     }    
 
     @Override
@@ -101,6 +103,9 @@ public final class ChunkCuboidRegionIterator implements Iterator<BlockVector3>,
         }
         
         final BlockVector3 result = BlockVector3.at(m_x, m_y, m_z);
+        if (m_prefetcher != null) {
+            m_prefetcher.moveTo(m_x >> 4, m_z >> 4);
+        }
         
         m_y ++;
         if (m_y > m_maxY) {
@@ -112,6 +117,10 @@ public final class ChunkCuboidRegionIterator implements Iterator<BlockVector3>,
         m_count--;
         m_delta.incrementAndGet();
         
+        if (m_prefetcher != null && !hasNext()) {
+            m_prefetcher.close();
+        }
+        
         return result;
     }
 
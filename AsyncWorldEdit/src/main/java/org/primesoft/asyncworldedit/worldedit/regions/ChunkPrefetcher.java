@@ -0,0 +1,254 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.worldedit.regions;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.World;
+import java.util.ArrayList;
+import java.util.List;
+import org.primesoft.asyncworldedit.api.inner.IChunkWatch;
+import org.primesoft.asyncworldedit.core.AwePlatform;
+import org.primesoft.asyncworldedit.worldedit.TaskContext;
+
+/**
+ * Loads the chunks ahead of a chunk ordered region iterator. The chunks are
+ * requested in the iteration order (Z rows of X chunks), held until the cursor
+ * passes them and released afterwards. The lookahead window follows the ratio
+ * of the observed chunk load latency and the time spent in one chunk.
+ *
+ * @author SBPrime
+ */
+public final class ChunkPrefetcher {
+
+    private final static int MIN_WINDOW = 1;
+
+    private final static int MAX_WINDOW = 32;
+
+    private final static int INITIAL_WINDOW = 4;
+
+    /**
+     * The initial chunk load latency (one tick)
+     */
+    private final static long INITIAL_LATENCY = 50_000_000L;
+
+    /**
+     * Prefetchers opened by the current task
+     */
+    private final static ThreadLocal<List<ChunkPrefetcher>> s_open = ThreadLocal.withInitial(ArrayList::new);
+
+    /**
+     * Create a prefetcher for the region (only inside an AWE task)
+     *
+     * @param region
+     * @return the prefetcher or null if not available
+     */
+    static ChunkPrefetcher create(Region region) {
+        if (!TaskContext.isActive()) {
+            return null;
+        }
+
+        final World world = region.getWorld();
+        if (world == null) {
+            return null;
+        }
+
+        final IChunkWatch chunkWatch = AwePlatform.getInstance().getCore().getInnerBlockPlacer().getChunkWatch();
+        if (chunkWatch == null) {
+            return null;
+        }
+
+        final ChunkPrefetcher result = new ChunkPrefetcher(chunkWatch, world.getName(),
+                region.getMinimumPoint(), region.getMaximumPoint());
+        s_open.get().add(result);
+        return result;
+    }
+
+    /**
+     * Release all the chunks held by the prefetchers of the current task
+     */
+    public static void closeAll() {
+        final List<ChunkPrefetcher> open = s_open.get();
+        if (open.isEmpty()) {
+            return;
+        }
+
+        for (ChunkPrefetcher prefetcher : open.toArray(new ChunkPrefetcher[0])) {
+            prefetcher.close();
+        }
+        s_open.remove();
+    }
+
+    private final IChunkWatch m_chunkWatch;
+
+    private final String m_worldName;
+
+    private final int m_minCx, m_minCz;
+
+    private final int m_width;
+
+    private final long m_total;
+
+    /**
+     * The first held chunk
+     */
+    private long m_firstIdx;
+
+    /**
+     * The next chunk to request
+     */
+    private long m_nextIdx;
+
+    private int m_cx, m_cz;
+
+    private boolean m_started;
+
+    private long m_lastEnter;
+
+    /**
+     * Average time (ns) spent in one chunk
+     */
+    private long m_chunkTime;
+
+    /**
+     * Average chunk load latency (ns), updated by the load callbacks
+     */
+    private volatile long m_latency = INITIAL_LATENCY;
+
+    private ChunkPrefetcher(IChunkWatch chunkWatch, String worldName,
+            BlockVector3 min, BlockVector3 max) {
+        m_chunkWatch = chunkWatch;
+        m_worldName = worldName;
+
+        m_minCx = min.getBlockX() >> 4;
+        m_minCz = min.getBlockZ() >> 4;
+        m_width = (max.getBlockX() >> 4) - m_minCx + 1;
+        m_total = (long) m_width * ((max.getBlockZ() >> 4) - m_minCz + 1);
+    }
+
+    /**
+     * The cursor is in the chunk
+     *
+     * @param cx
+     * @param cz
+     */
+    void moveTo(int cx, int cz) {
+        if (m_started && cx == m_cx && cz == m_cz) {
+            return;
+        }
+
+        m_started = true;
+        m_cx = cx;
+        m_cz = cz;
+
+        final long now = System.nanoTime();
+        if (m_lastEnter != 0) {
+            final long time = now - m_lastEnter;
+            m_chunkTime = m_chunkTime == 0 ? time : (m_chunkTime * 3 + time) / 4;
+        }
+        m_lastEnter = now;
+
+        final long cursor = (long) (cz - m_minCz) * m_width + (cx - m_minCx);
+        release(Math.min(cursor, m_nextIdx));
+        m_firstIdx = Math.max(m_firstIdx, cursor);
+        m_nextIdx = Math.max(m_nextIdx, m_firstIdx);
+
+        final long end = Math.min(m_total, cursor + window() + 1);
+        while (m_nextIdx < end) {
+            request(m_nextIdx++);
+        }
+    }
+
+    /**
+     * Release all held chunks
+     */
+    void close() {
+        release(m_nextIdx);
+        m_firstIdx = m_nextIdx = m_total;
+        s_open.get().remove(this);
+    }
+
+    private int window() {
+        if (m_chunkTime <= 0) {
+            return INITIAL_WINDOW;
+        }
+
+        final long window = m_latency / m_chunkTime + 1;
+        return (int) Math.max(MIN_WINDOW, Math.min(MAX_WINDOW, window));
+    }
+
+    private void release(long end) {
+        for (; m_firstIdx < end; m_firstIdx++) {
+            m_chunkWatch.remove(chunkX(m_firstIdx), chunkZ(m_firstIdx), m_worldName);
+        }
+    }
+
+    private void request(long idx) {
+        final int cx = chunkX(idx);
+        final int cz = chunkZ(idx);
+
+        m_chunkWatch.add(cx, cz, m_worldName);
+        if (m_chunkWatch.isChunkLoaded(cx, cz, m_worldName)) {
+            return;
+        }
+
+        final long start = System.nanoTime();
+        m_chunkWatch.loadChunkAsync(cx, cz, m_worldName).thenRun(() -> {
+            final long latency = System.nanoTime() - start;
+            m_latency = (m_latency * 3 + latency) / 4;
+        });
+    }
+
+    private int chunkX(long idx) {
+        return m_minCx + (int) (idx % m_width);
+    }
+
+    private int chunkZ(long idx) {
+        return m_minCz + (int) (idx / m_width);
+    }
+}
@@ -0,0 +1,623 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.worldedit.regions;
+
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.Vector2;
+import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
+import com.sk89q.worldedit.regions.Polygonal2DRegion;
+import com.sk89q.worldedit.regions.Region;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+import org.primesoft.asyncworldedit.api.blockPlacer.ICountProvider;
+
+/**
+ * Chunk ordered region iterator that visits only the blocks inside the region.
+ * For each chunk the Y spans of all the columns are computed up front (closed
+ * form for ellipsoids and cylinders, scanline for polygons) and the span edges
+ * are verified using the region contains method.
+ *
+ * @author SBPrime
+ */
+public final class ChunkSpanRegionIterator implements Iterator<BlockVector3>, ICountProvider {
+
+    private final static int COLUMNS = 256;
+
+    private final static long EMPTY = Long.MIN_VALUE;
+
+    /**
+     * Create the span iterator for the region
+     *
+     * @param region
+     * @return the iterator or null if the region is not supported
+     */
+    static ChunkSpanRegionIterator create(Region region) {
+        final Class<?> cls = region.getClass();
+
+        if (cls == EllipsoidRegion.class) {
+            return new ChunkSpanRegionIterator(region, new EllipsoidSpans((EllipsoidRegion) region));
+        }
+        if (cls == CylinderRegion.class) {
+            return new ChunkSpanRegionIterator(region, new CylinderSpans((CylinderRegion) region));
+        }
+        if (cls == Polygonal2DRegion.class) {
+            return new ChunkSpanRegionIterator(region, new PolygonSpans((Polygonal2DRegion) region));
+        }
+
+        return null;
+    }
+
+    private final Spans m_spans;
+    private final int m_minX, m_minY, m_minZ;
+    private final int m_maxX, m_maxY, m_maxZ;
+    private final int m_maxCx, m_minCx, m_maxCz;
+    private int m_cx, m_cz;
+
+    /**
+     * The column Y spans of the current chunk (z &lt;&lt; 4 | x)
+     */
+    private final int[] m_lo = new int[COLUMNS];
+    private final int[] m_hi = new int[COLUMNS];
+    private final int[] m_zSpans = new int[COLUMNS];
+
+    private int m_column;
+    private int m_y;
+    private boolean m_hasNext;
+    private boolean m_started;
+
+    private int m_count;
+    private final AtomicInteger m_delta = new AtomicInteger(0);
+    private final ChunkPrefetcher m_prefetcher;
+
+    private ChunkSpanRegionIterator(Region region, Spans spans) {
+        final BlockVector3 min = region.getMinimumPoint();
+        final BlockVector3 max = region.getMaximumPoint();
+
+        m_spans = spans;
+
+        m_minX = min.getBlockX();
+        m_minY = min.getBlockY();
+        m_minZ = min.getBlockZ();
+
+        m_maxX = max.getBlockX();
+        m_maxY = max.getBlockY();
+        m_maxZ = max.getBlockZ();
+
+        m_minCx = m_minX >> 4;
+        m_maxCx = m_maxX >> 4;
+        m_maxCz = m_maxZ >> 4;
+        m_cx = m_minCx;
+        m_cz = m_minZ >> 4;
+
+        m_count = (m_maxX - m_minX + 1) * (m_maxY - m_minY + 1) * (m_maxZ - m_minZ + 1);
+        m_column = COLUMNS;
+        m_hasNext = true;
+        findNext();
+
+        m_prefetcher = m_hasNext ? ChunkPrefetcher.create(region) : null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return m_hasNext;
+    }
+
+    @Override
+    public BlockVector3 next() {
+        if (!m_hasNext) {
+            throw new NoSuchElementException();
+        }
+
+        final BlockVector3 result = BlockVector3.at(
+                (m_cx << 4) | (m_column & 0xf), m_y, (m_cz << 4) | (m_column >> 4));
+        if (m_prefetcher != null) {
+            m_prefetcher.moveTo(m_cx, m_cz);
+        }
+
+        m_y++;
+        m_count--;
+        m_delta.incrementAndGet();
+        findNext();
+
+        if (m_prefetcher != null && !m_hasNext) {
+            m_prefetcher.close();
+        }
+
+        return result;
+    }
+
+    /**
+     * Move to the next block inside the region
+     */
+    private void findNext() {
+        while (true) {
+            if (m_column < COLUMNS) {
+                if (m_y <= m_hi[m_column]) {
+                    return;
+                }
+
+                m_column++;
+                if (m_column < COLUMNS) {
+                    m_y = m_lo[m_column];
+                }
+                continue;
+            }
+
+            if (!nextChunk()) {
+                m_hasNext = false;
+                return;
+            }
+
+            m_column = 0;
+            m_y = m_lo[0];
+        }
+    }
+
+    /**
+     * Find the next chunk that contains any blocks
+     */
+    private boolean nextChunk() {
+        while (true) {
+            if (m_started) {
+                m_cx++;
+                if (m_cx > m_maxCx) {
+                    m_cx = m_minCx;
+                    m_cz++;
+                }
+            }
+            m_started = true;
+
+            if (m_cz > m_maxCz) {
+                return false;
+            }
+
+            if (loadChunk()) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Compute the column spans of the current chunk
+     *
+     * @return true if the chunk contains any blocks
+     */
+    private boolean loadChunk() {
+        Arrays.fill(m_lo, 0);
+        Arrays.fill(m_hi, -1);
+
+        final int x0 = Math.max(m_cx << 4, m_minX);
+        final int x1 = Math.min((m_cx << 4) + 15, m_maxX);
+        final int z0 = Math.max(m_cz << 4, m_minZ);
+        final int z1 = Math.min((m_cz << 4) + 15, m_maxZ);
+
+        int blocks = 0;
+        for (int x = x0; x <= x1; x++) {
+            final int size = m_spans.zSpans(x, z0, z1, m_zSpans);
+            for (int i = 0; i < size; i += 2) {
+                for (int z = m_zSpans[i]; z <= m_zSpans[i + 1]; z++) {
+                    final long span = m_spans.ySpan(x, z, m_minY, m_maxY);
+                    if (span == EMPTY) {
+                        continue;
+                    }
+
+                    final int column = (z & 0xf) << 4 | (x & 0xf);
+                    m_lo[column] = (int) (span >> 32);
+                    m_hi[column] = (int) span;
+                    blocks += m_hi[column] - m_lo[column] + 1;
+                }
+            }
+        }
+
+        final int skipped = (x1 - x0 + 1) * (z1 - z0 + 1) * (m_maxY - m_minY + 1) - blocks;
+        m_count -= skipped;
+        m_delta.addAndGet(skipped);
+
+        return blocks > 0;
+    }
+
+    @Override
+    public int getCount() {
+        return m_count;
+    }
+
+    @Override
+    public int getAndResetDelta() {
+        return m_delta.getAndSet(0);
+    }
+
+    private static long span(int lo, int hi) {
+        return (long) lo << 32 | hi & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Fix the span edges using the inside test. The estimated span should
+     * overlap the real span.
+     *
+     * @return the span or EMPTY
+     */
+    private static long refine(int lo, int hi, int min, int max, IntPredicate inside) {
+        lo = Math.max(lo, min);
+        hi = Math.min(hi, max);
+
+        while (lo <= hi && !inside.test(lo)) {
+            lo++;
+        }
+        if (lo > hi) {
+            return EMPTY;
+        }
+        while (!inside.test(hi)) {
+            hi--;
+        }
+
+        while (lo > min && inside.test(lo - 1)) {
+            lo--;
+        }
+        while (hi < max && inside.test(hi + 1)) {
+            hi++;
+        }
+
+        return span(lo, hi);
+    }
+
+    /**
+     * The region shape
+     */
+    private static abstract class Spans {
+
+        protected final Region m_region;
+
+        protected Spans(Region region) {
+            m_region = region;
+        }
+
+        protected boolean contains(int x, int y, int z) {
+            return m_region.contains(BlockVector3.at(x, y, z));
+        }
+
+        /**
+         * Get the Z spans (pairs of inclusive bounds) of the column that
+         * may contain blocks
+         *
+         * @return number of stored values
+         */
+        abstract int zSpans(int x, int z0, int z1, int[] out);
+
+        /**
+         * Get the Y span of the column
+         *
+         * @return the span or EMPTY
+         */
+        abstract long ySpan(int x, int z, int minY, int maxY);
+    }
+
+    private static final class EllipsoidSpans extends Spans {
+
+        private final double m_cx, m_cy, m_cz;
+
+        /**
+         * The radius with a margin (the estimated spans contain the real
+         * spans)
+         */
+        private final double m_rx, m_ry, m_rz;
+
+        EllipsoidSpans(EllipsoidRegion region) {
+            super(region);
+
+            final Vector3 center = region.getCenter();
+            final Vector3 radius = region.getRadius();
+
+            m_cx = center.getX();
+            m_cy = center.getY();
+            m_cz = center.getZ();
+            m_rx = radius.getX() + 1;
+            m_ry = radius.getY() + 1;
+            m_rz = radius.getZ() + 1;
+        }
+
+        @Override
+        int zSpans(int x, int z0, int z1, int[] out) {
+            final double dx = (x - m_cx) / m_rx;
+            final double k = 1 - dx * dx;
+            if (k < 0) {
+                return 0;
+            }
+
+            final double h = m_rz * Math.sqrt(k);
+            final int lo = Math.max(z0, (int) Math.ceil(m_cz - h));
+            final int hi = Math.min(z1, (int) Math.floor(m_cz + h));
+            if (lo > hi) {
+                return 0;
+            }
+
+            out[0] = lo;
+            out[1] = hi;
+            return 2;
+        }
+
+        @Override
+        long ySpan(int x, int z, int minY, int maxY) {
+            final double dx = (x - m_cx) / m_rx;
+            final double dz = (z - m_cz) / m_rz;
+            final double k = 1 - dx * dx - dz * dz;
+            if (k < 0) {
+                return EMPTY;
+            }
+
+            final double h = m_ry * Math.sqrt(k);
+            return refine((int) Math.ceil(m_cy - h), (int) Math.floor(m_cy + h),
+                    minY, maxY, y -> contains(x, y, z));
+        }
+    }
+
+    private static final class CylinderSpans extends Spans {
+
+        private final double m_cx, m_cz;
+
+        /**
+         * The radius with a margin (the estimated spans contain the real
+         * spans)
+         */
+        private final double m_rx, m_rz;
+
+        private final int m_y;
+
+        CylinderSpans(CylinderRegion region) {
+            super(region);
+
+            final Vector3 center = region.getCenter();
+            final Vector2 radius = region.getRadius();
+
+            m_cx = center.getX();
+            m_cz = center.getZ();
+            m_rx = radius.getX() + 1;
+            m_rz = radius.getZ() + 1;
+            m_y = region.getMinimumPoint().getBlockY();
+        }
+
+        @Override
+        int zSpans(int x, int z0, int z1, int[] out) {
+            final double dx = (x - m_cx) / m_rx;
+            final double k = 1 - dx * dx;
+            if (k < 0) {
+                return 0;
+            }
+
+            final double h = m_rz * Math.sqrt(k);
+            final long span = refine((int) Math.ceil(m_cz - h), (int) Math.floor(m_cz + h),
+                    z0, z1, z -> contains(x, m_y, z));
+            if (span == EMPTY) {
+                return 0;
+            }
+
+            out[0] = (int) (span >> 32);
+            out[1] = (int) span;
+            return 2;
+        }
+
+        @Override
+        long ySpan(int x, int z, int minY, int maxY) {
+            return span(minY, maxY);
+        }
+    }
+
+    private static final class PolygonSpans extends Spans {
+
+        private final int[] m_x;
+        private final int[] m_z;
+        private final int m_y;
+
+        /**
+         * The crossing thresholds buffer
+         */
+        private final long[] m_thresholds;
+
+        /**
+         * The boundary spans buffer
+         */
+        private final int[] m_boundary = new int[COLUMNS];
+
+        PolygonSpans(Polygonal2DRegion region) {
+            super(region);
+
+            final List<BlockVector2> points = region.getPoints();
+            final int size = points.size();
+            m_x = new int[size];
+            m_z = new int[size];
+            for (int i = 0; i < size; i++) {
+                final BlockVector2 point = points.get(i);
+                m_x[i] = point.getBlockX();
+                m_z[i] = point.getBlockZ();
+            }
+
+            m_thresholds = new long[size];
+            m_y = region.getMinimumPoint().getBlockY();
+        }
+
+        /**
+         * Scanline along the Z axis. A block is inside if an odd number of
+         * edges cross the column above it or if it lies on an edge.
+         */
+        @Override
+        int zSpans(int x, int zMin, int zMax, int[] out) {
+            final int points = m_x.length;
+            if (points < 3) {
+                return 0;
+            }
+
+            int crossings = 0;
+            int boundary = 0;
+            int xOld = m_x[points - 1];
+            int zOld = m_z[points - 1];
+            for (int i = 0; i < points; i++) {
+                final int xNew = m_x[i];
+                final int zNew = m_z[i];
+                final int x1, z1, x2, z2;
+                if (xNew > xOld) {
+                    x1 = xOld; z1 = zOld;
+                    x2 = xNew; z2 = zNew;
+                } else {
+                    x1 = xNew; z1 = zNew;
+                    x2 = xOld; z2 = zOld;
+                }
+                xOld = xNew;
+                zOld = zNew;
+
+                if (x < x1 || x > x2) {
+                    continue;
+                }
+
+                final long dx = x2 - x1;
+                if (dx == 0) {
+                    boundary = addSpan(m_boundary, boundary, Math.min(z1, z2), Math.max(z1, z2), zMin, zMax);
+                    continue;
+                }
+
+                final long num = z1 * dx + (long) (z2 - z1) * (x - x1);
+                if (Math.floorMod(num, dx) == 0) {
+                    final long z = Math.floorDiv(num, dx);
+                    boundary = addSpan(m_boundary, boundary, z, z, zMin, zMax);
+                }
+                if (x1 < x) {
+                    m_thresholds[crossings++] = -Math.floorDiv(-num, dx);
+                }
+            }
+
+            Arrays.sort(m_thresholds, 0, crossings);
+
+            int size = 0;
+            for (int i = 0; i <= crossings; i++) {
+                if (((crossings - i) & 1) == 0) {
+                    continue;
+                }
+
+                final long lo = i == 0 ? Long.MIN_VALUE : m_thresholds[i - 1];
+                final long hi = i == crossings ? Long.MAX_VALUE : m_thresholds[i] - 1;
+                size = addSpan(out, size, lo, hi, zMin, zMax);
+            }
+            for (int i = 0; i < boundary; i += 2) {
+                size = addSpan(out, size, m_boundary[i], m_boundary[i + 1], zMin, zMax);
+            }
+
+            return verify(x, zMin, zMax, out, merge(out, size));
+        }
+
+        @Override
+        long ySpan(int x, int z, int minY, int maxY) {
+            return span(minY, maxY);
+        }
+
+        /**
+         * Fix the span edges using the region contains method
+         */
+        private int verify(int x, int z0, int z1, int[] out, int size) {
+            int result = 0;
+            for (int i = 0; i < size; i += 2) {
+                final long span = refine(out[i], out[i + 1], z0, z1, z -> contains(x, m_y, z));
+                if (span != EMPTY) {
+                    out[result++] = (int) (span >> 32);
+                    out[result++] = (int) span;
+                }
+            }
+
+            return merge(out, result);
+        }
+
+        private static int addSpan(int[] out, int size, long lo, long hi, int min, int max) {
+            lo = Math.max(lo, min);
+            hi = Math.min(hi, max);
+            if (lo > hi) {
+                return size;
+            }
+            if (size + 2 > out.length) {
+                size = merge(out, size);
+            }
+
+            out[size] = (int) lo;
+            out[size + 1] = (int) hi;
+            return size + 2;
+        }
+
+        /**
+         * Sort and merge the overlapping or adjacent spans
+         */
+        private static int merge(int[] spans, int size) {
+            for (int i = 2; i < size; i += 2) {
+                final int lo = spans[i];
+                final int hi = spans[i + 1];
+                int j = i - 2;
+                while (j >= 0 && spans[j] > lo) {
+                    spans[j + 2] = spans[j];
+                    spans[j + 3] = spans[j + 1];
+                    j -= 2;
+                }
+                spans[j + 2] = lo;
+                spans[j + 3] = hi;
+            }
+
+            int result = 0;
+            for (int i = 0; i < size; i += 2) {
+                if (result > 0 && spans[i] <= spans[result - 1] + 1) {
+                    spans[result - 1] = Math.max(spans[result - 1], spans[i + 1]);
+                } else {
+                    spans[result++] = spans[i];
+                    spans[result++] = spans[i + 1];
+                }
+            }
+
+            return result;
+        }
+    }
+}
@@ -94,6 +94,11 @@ public final class RegionIteratorFactory {
             return new ChunkCuboidRegionIterator((CuboidRegion)region);
         }
         
+        final Iterator<BlockVector3> spans = ChunkSpanRegionIterator.create(region);
+        if (spans != null) {
+            return spans;
+        }
+        
         if (region instanceof CylinderRegion ||
                 region instanceof Polygonal2DRegion ||
                 region instanceof RegionIntersection ||
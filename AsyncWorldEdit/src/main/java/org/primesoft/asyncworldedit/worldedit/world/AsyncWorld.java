@@ -49,13 +49,16 @@ package org.primesoft.asyncworldedit.worldedit.world;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 import com.google.common.collect.Sets;
@@ -91,13 +94,19 @@ import com.sk89q.worldedit.world.weather.WeatherType;
 import org.primesoft.asyncworldedit.api.IWorld;
 import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacer;
 import org.primesoft.asyncworldedit.api.inner.IAsyncWorldEditCore;
-import org.primesoft.asyncworldedit.api.inner.IBlocksHubIntegration;
+import org.primesoft.asyncworldedit.api.inner.IBlocksHubBridge;
 import org.primesoft.asyncworldedit.api.inner.IChunkWatch;
 import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+import org.primesoft.asyncworldedit.api.taskdispatcher.DispatcherKey;
 import org.primesoft.asyncworldedit.api.taskdispatcher.ITaskDispatcher;
 import org.primesoft.asyncworldedit.api.utils.IAction;
 import org.primesoft.asyncworldedit.api.utils.IFunc;
 import org.primesoft.asyncworldedit.api.utils.IFuncEx;
+import org.primesoft.asyncworldedit.api.worldedit.IBlocksWriter;
+import org.primesoft.asyncworldedit.api.worldedit.IChunkBlocks;
+import org.primesoft.asyncworldedit.api.worldedit.IRegionReader;
+import org.primesoft.asyncworldedit.blockPlacer.BlockPlacer;
+import org.primesoft.asyncworldedit.blockPlacer.IBlockSetter;
 import org.primesoft.asyncworldedit.blockPlacer.entries.ActionEntry;
 import org.primesoft.asyncworldedit.blockPlacer.entries.JobEntry;
 import org.primesoft.asyncworldedit.blockPlacer.entries.RegenerateEntry;
@@ -125,7 +134,7 @@ import static org.primesoft.asyncworldedit.utils.PositionHelper.positionToChunk;
  *
  * @author SBPrime
  */
-public class AsyncWorld extends AbstractWorldWrapper {
+public class AsyncWorld extends AbstractWorldWrapper implements IRegionReader, IBlocksWriter {
 
     /**
      * Wrap the world (if needed)
@@ -158,6 +167,11 @@ public class AsyncWorld extends AbstractWorldWrapper {
      */
     private final IWorld m_bukkitWorld;
 
+    /**
+     * The world name (used by the dispatcher read keys)
+     */
+    private final String m_worldName;
+
     /**
      * The block placer
      */
@@ -171,7 +185,7 @@ public class AsyncWorld extends AbstractWorldWrapper {
     /**
      * The blocks hub
      */
-    private final IBlocksHubIntegration m_blocksHub;
+    private final IBlocksHubBridge m_blocksHub;
 
     /**
      * Reference to chunk watcher
@@ -182,6 +196,36 @@ public class AsyncWorld extends AbstractWorldWrapper {
 
     private final Map<BlockVector3, BlockCacheEntry> m_blockCache = new LruMap<>(CACHE_SIZE);
 
+    /**
+     * The world section snapshots shared by all edit sessions
+     */
+    private final SectionSnapshotCache m_sectionCache;
+
+    private volatile int m_sectionMaxY = Integer.MIN_VALUE;
+
+    private final SectionSnapshotCache.IBlockReader m_sectionReader = (x, y, z) -> m_parent.getBlock(BlockVector3.at(x, y, z));
+
+    private final SectionSnapshotCache.ISectionLoader m_sectionLoader = (cx, cz, snapshot)
+            -> m_dispatcher.performSafeChunk(MutexProvider.getMutex(getWorld()), snapshot::run, m_bukkitWorld, BlockVector2.at(cx, cz));
+
+    /**
+     * The block placer that supports the packed block entries
+     */
+    private final BlockPlacer m_packedPlacer;
+
+    /**
+     * Block setters used by the packed block entries
+     */
+    private final IBlockSetter m_blockSetter = (player, v, newBlock)
+            -> beforeSetBlock(player, v, newBlock) && m_parent.setBlock(v, newBlock);
+    private final IBlockSetter m_notifyBlockSetter = (player, v, newBlock)
+            -> beforeSetBlock(player, v, newBlock) && m_parent.setBlock(v, newBlock, true);
+    private final IBlockSetter m_noNotifyBlockSetter = (player, v, newBlock)
+            -> beforeSetBlock(player, v, newBlock) && m_parent.setBlock(v, newBlock, false);
+    private final IBlockSetter m_checkedBlockSetter = (player, v, newBlock)
+            -> beforeSetBlock(player, v, newBlock, false) && m_parent.setBlock(v, newBlock);
+    private final Map<SideEffectSet, IBlockSetter> m_sideEffectBlockSetters = new ConcurrentHashMap<>();
+
     public AsyncWorld(World world, IPlayerEntry player) {
         super(world);
 
@@ -195,6 +239,9 @@ public class AsyncWorld extends AbstractWorldWrapper {
         m_blocksHub = aweCore.getBlocksHubBridge();
         m_bukkitWorld = aweCore.getWorldEditIntegrator().getWorld(world);
         m_chunkWatcher = aweCore.getChunkWatch();
+        m_packedPlacer = m_blockPlacer instanceof BlockPlacer ? (BlockPlacer) m_blockPlacer : null;
+        m_worldName = world.getName();
+        m_sectionCache = SectionSnapshotCache.get(m_worldName);
     }
 
     /**
@@ -247,6 +294,43 @@ public class AsyncWorld extends AbstractWorldWrapper {
         return !isTileEntity(oldBlock.getBlockType());
     }
 
+    /**
+     * Check if the block can be placed and log it
+     *
+     * @return true if the block should be set
+     */
+    private boolean beforeSetBlock(IPlayerEntry player, BlockVector3 v, BlockStateHolder newBlock) {
+        return beforeSetBlock(player, v, newBlock, true);
+    }
+
+    /**
+     * Check if the block can be placed and log it
+     *
+     * @param checkAccess false if the access was checked when the block was
+     * queued
+     * @return true if the block should be set
+     */
+    private boolean beforeSetBlock(IPlayerEntry player, BlockVector3 v, BlockStateHolder newBlock,
+            boolean checkAccess) {
+        final BlockStateHolder oldBlock = m_parent.getBlock(v);
+        if ((checkAccess && !canPlace(player, m_bukkitWorld, v, oldBlock, newBlock))
+                || isSame(oldBlock, newBlock)) {
+            return false;
+        }
+
+        markDirty(v);
+        logBlock(v, player, oldBlock, newBlock);
+        return true;
+    }
+
+    /**
+     * Get the packed entries block setter for the side effects
+     */
+    private IBlockSetter getBlockSetter(SideEffectSet sideEffectSet) {
+        return m_sideEffectBlockSetters.computeIfAbsent(sideEffectSet, ses -> (player, v, newBlock)
+                -> beforeSetBlock(player, v, newBlock) && m_parent.setBlock(v, newBlock, ses));
+    }
+
     /**
      * Log placed block using blocks hub
      */
@@ -314,6 +398,7 @@ public class AsyncWorld extends AbstractWorldWrapper {
                 return false;
             }
 
+            markDirty(v);
             logBlock(v, player, oldBlock, newBlock);
             final boolean result = m_parent.setBlock(v, newBlock, sideEffectSet);
 
@@ -324,11 +409,18 @@ public class AsyncWorld extends AbstractWorldWrapper {
             if (!canPlace(player, m_bukkitWorld, position, getBlock(v), newBlock)) {
                 return false;
             }
+            invalidateBlock(v);
+
+            if (m_packedPlacer != null) {
+                return m_packedPlacer.bufferBlock(player, this.getName(), paramBlock.getJobId(),
+                        v, newBlock, getBlockSetter(sideEffectSet));
+            }
 
             return m_blockPlacer.addTasks(player,
                     new WorldFuncEntryEx(this.getName(), paramBlock.getJobId(), v, func));
         }
 
+        invalidateBlock(v);
         return func.execute();
     }
 
@@ -352,6 +444,7 @@ public class AsyncWorld extends AbstractWorldWrapper {
                 return false;
             }
 
+            markDirty(v);
             logBlock(v, player, oldBlock, newBlock);
             final boolean result = m_parent.setBlock(v, newBlock, notifyAndLight);
 
@@ -362,11 +455,18 @@ public class AsyncWorld extends AbstractWorldWrapper {
             if (!canPlace(player, m_bukkitWorld, position, getBlock(v), newBlock)) {
                 return false;
             }
+            invalidateBlock(v);
+
+            if (m_packedPlacer != null) {
+                return m_packedPlacer.bufferBlock(player, this.getName(), paramBlock.getJobId(),
+                        v, newBlock, notifyAndLight ? m_notifyBlockSetter : m_noNotifyBlockSetter);
+            }
 
             return m_blockPlacer.addTasks(player,
                     new WorldFuncEntryEx(this.getName(), paramBlock.getJobId(), v, func));
         }
         
+        invalidateBlock(v);
         return func.execute();
     }
 
@@ -787,16 +887,17 @@ public class AsyncWorld extends AbstractWorldWrapper {
     }
     
     private BaseBlock getFullBlockDispatcher(final BlockVector3 position) {        
+        final DispatcherKey key = DispatcherKey.block("getFullBlock", m_worldName, position);
         BaseBlock result = m_dispatcher.performSafe(MutexProvider.getMutex(getWorld()), 
                 () -> m_parent.getFullBlock(position),
-            m_bukkitWorld, position);
+            m_bukkitWorld, position, key);
 
         if (result != null && !result.hasNbtData()) {
             final BlockType bType = result.getBlockType();
             final boolean isTile = isTileEntity(bType);
 
             if (isTile) {
-                result = m_dispatcher.queueFastOperation(() -> m_parent.getFullBlock(position));
+                result = m_dispatcher.queueFastOperation(key, () -> m_parent.getFullBlock(position));
             }
         }
         
@@ -820,21 +921,82 @@ public class AsyncWorld extends AbstractWorldWrapper {
         return get.apply(result);
     }
     
+    /**
+     * Get the block from the shared section snapshot
+     *
+     * @return The block state or null if not cached
+     */
+    private BlockState getSectionBlock(final BlockVector3 position) {
+        final int y = position.getY();
+        if (m_sectionMaxY == Integer.MIN_VALUE) {
+            m_sectionMaxY = getMaxY();
+        }
+        if (y < m_parent.getMinY() || y > m_sectionMaxY) {
+            return null;
+        }
+
+        return m_sectionCache.getBlock(position.getX(), y, position.getZ(), m_sectionReader, m_sectionLoader);
+    }
+
+    /**
+     * Mark the block as modified in the section snapshot cache. The dirty
+     * flags are atomic so this can be called from the block placer.
+     */
+    private void markDirty(final BlockVector3 position) {
+        m_sectionCache.markDirty(position.getX(), position.getY(), position.getZ());
+    }
+
+    /**
+     * Remove the block from the read caches. The block cache is not thread
+     * safe, call only from the thread that queues the block.
+     */
+    private void invalidateBlock(final BlockVector3 position) {
+        m_blockCache.remove(position);
+        markDirty(position);
+    }
+
+    @Override
+    public Iterator<IChunkBlocks> readRegion(final Region region, final boolean biomes) {
+        final int minY = Math.max(region.getMinimumPoint().getBlockY(), m_parent.getMinY());
+        final int maxY = Math.min(region.getMaximumPoint().getBlockY(), getMaxY());
+        final ChunkBlocks.IBiomeReader biomeReader = biomes
+                ? (x, y, z) -> m_parent.getBiome(BlockVector3.at(x, y, z)) : null;
+
+        final List<BlockVector2> chunks = new ArrayList<>(region.getChunks());
+        chunks.sort(Comparator.comparingInt(BlockVector2::getBlockZ).thenComparingInt(BlockVector2::getBlockX));
+
+        return m_dispatcher.performSafeChunks(MutexProvider.getMutex(getWorld()),
+                chunk -> (IChunkBlocks) ChunkBlocks.read(chunk.getBlockX(), chunk.getBlockZ(), region, minY, maxY,
+                        m_sectionReader, biomeReader, this::isTileEntity, this::getFullBlockDispatcher),
+                m_bukkitWorld, chunks);
+    }
+
     @Override
-    public BlockState getBlock(final BlockVector3 position) {        
+    public BlockState getBlock(final BlockVector3 position) {
+        final BlockState result = getSectionBlock(position);
+        if (result != null) {
+            return result;
+        }
+
         return getBlockEntry(position, BlockCacheEntry::state);
     }
 
     @Override
     public BaseBlock getFullBlock(final BlockVector3 position) {
+        final BlockState state = getSectionBlock(position);
+        if (state != null && !isTileEntity(state.getBlockType())) {
+            return state.toBaseBlock();
+        }
+
         return getBlockEntry(position, BlockCacheEntry::block);
     }
 
     @Override
     public BiomeType getBiome(BlockVector2 position) {
+        final BlockVector3 pos = BlockVector3.at(position.getX(), 0, position.getZ());
         return m_dispatcher.performSafe(MutexProvider.getMutex(getWorld()),
                 () -> m_parent.getBiome(position),
-                m_bukkitWorld, BlockVector3.at(position.getX(), 0, position.getZ()));
+                m_bukkitWorld, pos, DispatcherKey.block("getBiome2D", m_worldName, pos));
     }
 
 
@@ -842,15 +1004,86 @@ public class AsyncWorld extends AbstractWorldWrapper {
     public BiomeType getBiome(final BlockVector3 position) {
         return m_dispatcher.performSafe(MutexProvider.getMutex(getWorld()),
                 () -> m_parent.getBiome(position),
-                m_bukkitWorld, position);
+                m_bukkitWorld, position, DispatcherKey.block("getBiome", m_worldName, position));
     }
 
 
 
+    /**
+     * Set a batch of blocks (in async mode). The blocks should be grouped by
+     * chunk, the old blocks of a chunk are read in a single chunk visit, the
+     * access is checked once for the chunk and the accepted blocks are added
+     * to the block placer at once. The block placer does not check the access
+     * of the accepted blocks again.
+     *
+     * @param jobId the job ID
+     * @param positions
+     * @param blocks
+     * @return Number of queued blocks
+     * @throws WorldEditException
+     */
     @Override
-    public boolean setBlock(final BlockVector3 position, final BlockStateHolder block) throws WorldEditException {
-        m_blockCache.remove(position);
+    public int setBlocks(final int jobId, final List<BlockVector3> positions,
+            final List<? extends BlockStateHolder> blocks) throws WorldEditException {
+        final int size = positions.size();
+        int result = 0;
+
+        if (m_packedPlacer == null || m_dispatcher.isMainTask()) {
+            for (int i = 0; i < size; i++) {
+                if (setBlock(positions.get(i), blocks.get(i))) {
+                    result++;
+                }
+            }
+            return result;
+        }
+
+        final IPlayerEntry player = m_player;
+        int start = 0;
+        while (start < size) {
+            final int cx = positions.get(start).getBlockX() >> 4;
+            final int cz = positions.get(start).getBlockZ() >> 4;
+            int end = start + 1;
+            while (end < size && positions.get(end).getBlockX() >> 4 == cx
+                    && positions.get(end).getBlockZ() >> 4 == cz) {
+                end++;
+            }
+
+            final List<BlockVector3> chunkPositions = positions.subList(start, end);
+            final List<BlockState> oldBlocks = m_dispatcher.performSafeChunk(MutexProvider.getMutex(getWorld()), () -> {
+                final List<BlockState> old = new ArrayList<>(chunkPositions.size());
+                for (BlockVector3 v : chunkPositions) {
+                    old.add(m_parent.getBlock(v));
+                }
+                return old;
+            }, m_bukkitWorld, BlockVector2.at(cx, cz));
+            final BitSet allowed = m_blocksHub.canPlace(player, m_bukkitWorld,
+                    chunkPositions, oldBlocks, blocks.subList(start, end));
+
+            final List<BlockVector3> accepted = new ArrayList<>(chunkPositions.size());
+            final List<BlockStateHolder> acceptedBlocks = new ArrayList<>(chunkPositions.size());
+            for (int i = allowed.nextSetBit(0); i >= 0; i = allowed.nextSetBit(i + 1)) {
+                final BlockVector3 v = chunkPositions.get(i);
+                final BlockStateHolder newBlock = blocks.get(start + i);
+                if (isSame(oldBlocks.get(i), newBlock)) {
+                    continue;
+                }
+
+                invalidateBlock(v);
+                accepted.add(v);
+                acceptedBlocks.add(newBlock);
+            }
+
+            if (m_packedPlacer.addBlocks(player, getName(), jobId, accepted, acceptedBlocks, m_checkedBlockSetter)) {
+                result += accepted.size();
+            }
+            start = end;
+        }
 
+        return result;
+    }
+
+    @Override
+    public boolean setBlock(final BlockVector3 position, final BlockStateHolder block) throws WorldEditException {
         final DataAsyncParams<BlockStateHolder> paramBlock = DataAsyncParams.extract(block);
         final DataAsyncParams<BlockVector3> paramVector = DataAsyncParams.extract(position);
 
@@ -865,6 +1098,7 @@ public class AsyncWorld extends AbstractWorldWrapper {
                 return false;
             }
 
+            markDirty(v);
             logBlock(position, player, oldBlock, newBlock);
             final boolean result = m_parent.setBlock(position, newBlock);
 
@@ -875,11 +1109,18 @@ public class AsyncWorld extends AbstractWorldWrapper {
             if (!canPlace(player, m_bukkitWorld, position, getBlock(v), newBlock)) {
                 return false;
             }
+            invalidateBlock(v);
+
+            if (m_packedPlacer != null) {
+                return m_packedPlacer.bufferBlock(player, this.getName(), paramBlock.getJobId(),
+                        v, newBlock, m_blockSetter);
+            }
 
             return m_blockPlacer.addTasks(player,
                     new WorldFuncEntryEx(this.getName(), paramBlock.getJobId(), v, func));
         }
 
+        invalidateBlock(v);
         return func.execute();
     }
 
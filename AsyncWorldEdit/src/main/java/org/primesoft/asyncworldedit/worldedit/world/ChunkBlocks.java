@@ -0,0 +1,289 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2014, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.worldedit.world;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import org.primesoft.asyncworldedit.api.utils.IFuncParam;
+import org.primesoft.asyncworldedit.api.worldedit.IChunkBlocks;
+
+/**
+ * The region blocks of a single chunk stored in primitive buffers, the block
+ * states and biomes are stored as palette ids.
+ *
+ * @author SBPrime
+ */
+final class ChunkBlocks implements IChunkBlocks {
+
+    /**
+     * Reads a single biome from the world, called on the chunk access thread
+     */
+    @FunctionalInterface
+    interface IBiomeReader {
+
+        BiomeType getBiome(int x, int y, int z);
+    }
+
+    /**
+     * Read the region blocks from a chunk
+     *
+     * @param cx
+     * @param cz
+     * @param region
+     * @param minY the minimum world Y to read
+     * @param maxY the maximum world Y to read
+     * @param blockReader
+     * @param biomeReader the biome reader or null if biomes are not needed
+     * @param isTile
+     * @param fullBlockReader reads the tile entity blocks
+     * @return
+     */
+    static ChunkBlocks read(int cx, int cz, Region region, int minY, int maxY,
+            SectionSnapshotCache.IBlockReader blockReader, IBiomeReader biomeReader,
+            Predicate<BlockType> isTile, IFuncParam<BaseBlock, BlockVector3> fullBlockReader) {
+        final BlockVector3 min = region.getMinimumPoint();
+        final BlockVector3 max = region.getMaximumPoint();
+        final int x0 = Math.max(cx << 4, min.getBlockX());
+        final int x1 = Math.min((cx << 4) + 15, max.getBlockX());
+        final int z0 = Math.max(cz << 4, min.getBlockZ());
+        final int z1 = Math.min((cz << 4) + 15, max.getBlockZ());
+        final boolean cuboid = region instanceof CuboidRegion;
+
+        final ChunkBlocks result = new ChunkBlocks(cx, cz, minY, isTile, fullBlockReader);
+        if (x0 > x1 || z0 > z1 || minY > maxY) {
+            return result.seal(0, false);
+        }
+
+        final int capacity = (x1 - x0 + 1) * (z1 - z0 + 1) * (maxY - minY + 1);
+        result.m_positions = new int[capacity];
+        result.m_ids = new int[capacity];
+        result.m_biomeIds = biomeReader != null ? new int[capacity] : null;
+
+        final Palette<BlockState> blocks = new Palette<>();
+        final Palette<BiomeType> biomes = new Palette<>();
+        long lastCell = Long.MIN_VALUE;
+        int lastBiome = -1;
+        int size = 0;
+
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = z0; z <= z1; z++) {
+                for (int x = x0; x <= x1; x++) {
+                    if (!cuboid && !region.contains(BlockVector3.at(x, y, z))) {
+                        continue;
+                    }
+
+                    final BlockState state = blockReader.getBlock(x, y, z);
+                    if (state == null) {
+                        continue;
+                    }
+
+                    result.m_positions[size] = (y - minY) << 8 | (z & 15) << 4 | (x & 15);
+                    result.m_ids[size] = blocks.id(state);
+
+                    if (biomeReader != null) {
+                        final long cell = (long) (y >> 2) << 40 | (long) (z >> 2 & 0xFFFFF) << 20 | (x >> 2 & 0xFFFFF);
+                        if (cell != lastCell) {
+                            lastCell = cell;
+                            lastBiome = biomes.id(biomeReader.getBiome(x, y, z));
+                        }
+                        result.m_biomeIds[size] = lastBiome;
+                    }
+                    size++;
+                }
+            }
+        }
+
+        result.m_palette = blocks.toArray(new BlockState[blocks.size()]);
+        result.m_biomePalette = biomeReader != null ? biomes.toArray(new BiomeType[biomes.size()]) : null;
+        return result.seal(size, true);
+    }
+
+    private final int m_cx;
+
+    private final int m_cz;
+
+    private final int m_minY;
+
+    private final Predicate<BlockType> m_isTile;
+
+    private final IFuncParam<BaseBlock, BlockVector3> m_fullBlockReader;
+
+    private int m_size;
+
+    /**
+     * The packed chunk positions: (y - minY) &lt;&lt; 8 | z &lt;&lt; 4 | x
+     */
+    private int[] m_positions;
+
+    private int[] m_ids;
+
+    private int[] m_biomeIds;
+
+    private BlockState[] m_palette;
+
+    private BiomeType[] m_biomePalette;
+
+    /**
+     * The palette tile entity flags
+     */
+    private boolean[] m_tiles;
+
+    private ChunkBlocks(int cx, int cz, int minY,
+            Predicate<BlockType> isTile, IFuncParam<BaseBlock, BlockVector3> fullBlockReader) {
+        m_cx = cx;
+        m_cz = cz;
+        m_minY = minY;
+        m_isTile = isTile;
+        m_fullBlockReader = fullBlockReader;
+    }
+
+    private ChunkBlocks seal(int size, boolean hasData) {
+        m_size = size;
+
+        if (!hasData) {
+            m_positions = new int[0];
+            m_ids = new int[0];
+            m_palette = new BlockState[0];
+        }
+
+        m_tiles = new boolean[m_palette.length];
+        for (int i = 0; i < m_palette.length; i++) {
+            m_tiles[i] = m_isTile.test(m_palette[i].getBlockType());
+        }
+
+        return this;
+    }
+
+    @Override
+    public int getChunkX() {
+        return m_cx;
+    }
+
+    @Override
+    public int getChunkZ() {
+        return m_cz;
+    }
+
+    @Override
+    public int size() {
+        return m_size;
+    }
+
+    @Override
+    public int getX(int index) {
+        return m_cx << 4 | (m_positions[index] & 15);
+    }
+
+    @Override
+    public int getY(int index) {
+        return m_minY + (m_positions[index] >>> 8);
+    }
+
+    @Override
+    public int getZ(int index) {
+        return m_cz << 4 | (m_positions[index] >> 4 & 15);
+    }
+
+    @Override
+    public BlockState getBlock(int index) {
+        return m_palette[m_ids[index]];
+    }
+
+    @Override
+    public BaseBlock getFullBlock(int index) {
+        final int id = m_ids[index];
+        if (!m_tiles[id]) {
+            return m_palette[id].toBaseBlock();
+        }
+
+        return m_fullBlockReader.execute(BlockVector3.at(getX(index), getY(index), getZ(index)));
+    }
+
+    @Override
+    public BiomeType getBiome(int index) {
+        return m_biomePalette != null ? m_biomePalette[m_biomeIds[index]] : null;
+    }
+
+    /**
+     * Identity based palette builder
+     */
+    private static final class Palette<T> extends ArrayList<T> {
+
+        private final Map<T, Integer> m_ids = new IdentityHashMap<>();
+
+        private T m_last;
+
+        private int m_lastId = -1;
+
+        int id(T value) {
+            if (value == m_last && m_lastId >= 0) {
+                return m_lastId;
+            }
+
+            Integer id = m_ids.get(value);
+            if (id == null) {
+                id = size();
+                add(value);
+                m_ids.put(value, id);
+            }
+
+            m_last = value;
+            m_lastId = id;
+            return id;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2014, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.worldedit.world;
+
+import com.sk89q.worldedit.world.block.BlockState;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Read cache of the 16x16x16 chunk section snapshots shared by all the edit
+ * sessions of a world. A snapshot is taken in a single chunk visit and stored
+ * as a block state palette and bit packed palette ids. Blocks written by AWE
+ * are marked dirty and bypass the snapshot until it expires.
+ *
+ * @author SBPrime
+ */
+public final class SectionSnapshotCache {
+
+    /**
+     * Maximum number of cached sections per world
+     */
+    private final static int MAX_SECTIONS = 1024;
+
+    /**
+     * Maximum snapshot age (ms), the world can be modified outside of AWE
+     */
+    private final static long MAX_AGE = 5000;
+
+    private final static int SECTION_SIZE = 16 * 16 * 16;
+
+    /**
+     * The per world caches
+     */
+    private final static Map<String, SectionSnapshotCache> s_worlds = new ConcurrentHashMap<>();
+
+    /**
+     * Reads a single block from the world, called on the chunk access thread
+     */
+    @FunctionalInterface
+    public interface IBlockReader {
+
+        BlockState getBlock(int x, int y, int z);
+    }
+
+    /**
+     * Takes the section snapshot in a single chunk visit
+     */
+    @FunctionalInterface
+    public interface ISectionLoader {
+
+        void load(int cx, int cz, Runnable snapshot);
+    }
+
+    /**
+     * Get the section cache for a world
+     *
+     * @param worldName
+     * @return
+     */
+    public static SectionSnapshotCache get(String worldName) {
+        return s_worlds.computeIfAbsent(worldName, _wn -> new SectionSnapshotCache());
+    }
+
+    /**
+     * Drop all the cached sections of a chunk
+     *
+     * @param worldName
+     * @param cx
+     * @param cz
+     */
+    public static void invalidateChunk(String worldName, int cx, int cz) {
+        SectionSnapshotCache cache = worldName != null ? s_worlds.get(worldName) : null;
+        if (cache != null) {
+            cache.invalidateChunk(cx, cz);
+        }
+    }
+
+    private static long encode(int sx, int sy, int sz) {
+        return ((long) sx & 0x3FFFFFF) << 38 | ((long) sz & 0x3FFFFFF) << 12 | (sy & 0xFFF);
+    }
+
+    private static int index(int x, int y, int z) {
+        return (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+    }
+
+    private final Map<Long, Section> m_sections = new LinkedHashMap<Long, Section>(MAX_SECTIONS + 1, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Section> entry) {
+            return size() > MAX_SECTIONS;
+        }
+    };
+
+    private SectionSnapshotCache() {
+    }
+
+    /**
+     * Get the block from the section snapshot, the snapshot is taken when
+     * missing or expired.
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @param reader the block reader used for the snapshot
+     * @param loader the snapshot chunk access
+     * @return The block state or null if the block is not cached
+     */
+    public BlockState getBlock(int x, int y, int z, IBlockReader reader, ISectionLoader loader) {
+        final int sx = x >> 4;
+        final int sy = y >> 4;
+        final int sz = z >> 4;
+        final long key = encode(sx, sy, sz);
+        final long now = System.currentTimeMillis();
+
+        Section section;
+        boolean load = false;
+        synchronized (m_sections) {
+            section = m_sections.get(key);
+            if (section == null || section.isExpired(now)) {
+                section = new Section(now);
+                m_sections.put(key, section);
+                load = true;
+            }
+        }
+
+        if (load) {
+            final Section s = section;
+            loader.load(sx, sz, () -> s.fill(sx << 4, sy << 4, sz << 4, reader));
+        }
+
+        return section.get(index(x, y, z));
+    }
+
+    /**
+     * Mark the block as modified
+     *
+     * @param x
+     * @param y
+     * @param z
+     */
+    public void markDirty(int x, int y, int z) {
+        final Section section;
+        synchronized (m_sections) {
+            section = m_sections.get(encode(x >> 4, y >> 4, z >> 4));
+        }
+
+        if (section != null) {
+            section.markDirty(index(x, y, z));
+        }
+    }
+
+    private void invalidateChunk(int cx, int cz) {
+        final long chunk = encode(cx, 0, cz) >>> 12;
+        synchronized (m_sections) {
+            if (m_sections.isEmpty()) {
+                return;
+            }
+
+            for (Iterator<Long> it = m_sections.keySet().iterator(); it.hasNext();) {
+                if ((it.next() >>> 12) == chunk) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private static final class Section {
+
+        private final long m_created;
+
+        /**
+         * The modified blocks, written before the snapshot is ready
+         */
+        private final AtomicLongArray m_dirty = new AtomicLongArray(SECTION_SIZE / 64);
+
+        private BlockState[] m_palette;
+
+        private long[] m_data;
+
+        private int m_bits;
+
+        private volatile boolean m_ready;
+
+        Section(long created) {
+            m_created = created;
+        }
+
+        boolean isExpired(long now) {
+            return now - m_created > MAX_AGE;
+        }
+
+        void markDirty(int idx) {
+            final int word = idx >> 6;
+            final long mask = 1L << (idx & 63);
+            long value;
+            do {
+                value = m_dirty.get(word);
+            } while ((value & mask) == 0 && !m_dirty.compareAndSet(word, value, value | mask));
+        }
+
+        void fill(int bx, int by, int bz, IBlockReader reader) {
+            final Map<BlockState, Integer> ids = new IdentityHashMap<>();
+            final List<BlockState> palette = new ArrayList<>();
+            final int[] blocks = new int[SECTION_SIZE];
+
+            for (int idx = 0; idx < SECTION_SIZE; idx++) {
+                final BlockState state = reader.getBlock(bx + (idx & 15), by + (idx >> 8), bz + (idx >> 4 & 15));
+                if (state == null) {
+                    return;
+                }
+
+                blocks[idx] = ids.computeIfAbsent(state, _s -> {
+                    palette.add(_s);
+                    return palette.size() - 1;
+                });
+            }
+
+            final int bits = 32 - Integer.numberOfLeadingZeros(palette.size() - 1);
+            final long[] data = bits == 0 ? null : new long[(SECTION_SIZE * bits + 63) >> 6];
+            if (data != null) {
+                for (int idx = 0; idx < SECTION_SIZE; idx++) {
+                    final int bit = idx * bits;
+                    final int word = bit >> 6;
+                    final int offset = bit & 63;
+
+                    data[word] |= (long) blocks[idx] << offset;
+                    if (offset + bits > 64) {
+                        data[word + 1] |= (long) blocks[idx] >>> (64 - offset);
+                    }
+                }
+            }
+
+            m_palette = palette.toArray(new BlockState[palette.size()]);
+            m_data = data;
+            m_bits = bits;
+            m_ready = true;
+        }
+
+        BlockState get(int idx) {
+            if (!m_ready || (m_dirty.get(idx >> 6) & (1L << (idx & 63))) != 0) {
+                return null;
+            }
+
+            if (m_bits == 0) {
+                return m_palette[0];
+            }
+
+            final int bit = idx * m_bits;
+            final int word = bit >> 6;
+            final int offset = bit & 63;
+            final long mask = (1L << m_bits) - 1;
+
+            long value = m_data[word] >>> offset;
+            if (offset + m_bits > 64) {
+                value |= m_data[word + 1] << (64 - offset);
+            }
+
+            return m_palette[(int) (value & mask)];
+        }
+    }
+}
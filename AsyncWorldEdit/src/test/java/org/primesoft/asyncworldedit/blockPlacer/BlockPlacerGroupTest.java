@@ -96,4 +96,25 @@ public class BlockPlacerGroupTest {
         Assert.assertNotNull("Step 2: Get players", peResult2);
         Assert.assertEquals("Step 2: Number of players", 0, peResult2.length);
     }
+    
+    @Test
+    public void shouldRemovePlayerWhenBatchUsesAllBlocks() {
+        // Given
+        IPlayerEntry pe = Mockito.mock(IPlayerEntry.class);
+        Mockito.when(pe.getRenderBlocks()).thenReturn(5);
+        BlockPlacerGroup bpg = new BlockPlacerGroup(null, new IPlayerEntry[]{ pe });
+        
+        // When
+        bpg.updateProgress(-1, pe, 3);
+        int blocksLeft = bpg.getBlocksLeft(pe);
+        IPlayerEntry[] peResult1 = bpg.getPlayers();
+        
+        bpg.updateProgress(-1, pe, 2);
+        IPlayerEntry[] peResult2 = bpg.getPlayers();
+        
+        // Then
+        Assert.assertEquals("Step 1: Blocks left", 2, blocksLeft);
+        Assert.assertEquals("Step 1: Number of players", 1, peResult1.length);
+        Assert.assertEquals("Step 2: Number of players", 0, peResult2.length);
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.primesoft.asyncworldedit.api.IPhysicsWatch;
+import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacerEntry;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class BlockPlacerPlayerTest {
+
+    private final IPlayerEntry m_player = mock(IPlayerEntry.class);
+
+    private final IBlockSetter m_setter = mock(IBlockSetter.class);
+
+    private final BlockStateHolder m_block = mock(BlockStateHolder.class);
+
+    private final List<BlockVector3> m_locations = Arrays.asList(
+            BlockVector3.at(0, 64, 0), BlockVector3.at(1, 64, 0), BlockVector3.at(2, 64, 0));
+
+    private final List<BlockStateHolder> m_blocks = Arrays.asList(m_block, m_block, m_block);
+
+    @Test
+    public void shouldQueueBatchAsOneEntry() throws WorldEditException {
+        // Given
+        final BlockPlacerPlayer entry = new BlockPlacerPlayer(m_player);
+        final BlockPlacer bp = mock(BlockPlacer.class);
+        when(bp.getPhysicsWatcher()).thenReturn(mock(IPhysicsWatch.class));
+
+        // When
+        final boolean queued = entry.offerBlocks("world", 1, m_locations, m_blocks, m_setter, false, -1);
+        final int queueSize = entry.getQueueSize();
+        final IBlockPlacerEntry polled = entry.poll();
+        polled.process(bp);
+
+        // Then
+        Assert.assertTrue("Queued", queued);
+        Assert.assertEquals("Queue size", 3, queueSize);
+        Assert.assertTrue("Packed entry", polled instanceof PackedBlocksEntry);
+        Assert.assertEquals("Queue size after poll", 0, entry.getQueueSize());
+        Assert.assertNull("Next entry", entry.poll());
+
+        for (BlockVector3 location : m_locations) {
+            verify(m_setter).setBlock(m_player, location, m_block);
+        }
+    }
+
+    @Test
+    public void shouldAcceptBatchWhenQueueHasSpace() {
+        // Given
+        final BlockPlacerPlayer entry = new BlockPlacerPlayer(m_player);
+        entry.offerBlocks("world", 1, m_locations, m_blocks, m_setter, false, -1);
+
+        // When
+        final boolean queued = entry.offerBlocks("world", 1, m_locations, m_blocks, m_setter, false, 4);
+        final boolean rejected = entry.offerBlocks("world", 1, m_locations, m_blocks, m_setter, false, 4);
+
+        // Then
+        Assert.assertTrue("Batch with free space", queued);
+        Assert.assertFalse("Batch on full queue", rejected);
+        Assert.assertEquals("Queue size", 6, entry.getQueueSize());
+    }
+
+    @Test
+    public void shouldRejectBatchWhenRetired() {
+        // Given
+        final BlockPlacerPlayer entry = new BlockPlacerPlayer(m_player);
+        entry.tryRetire();
+
+        // When
+        final boolean queued = entry.offerBlocks("world", 1, m_locations, m_blocks, m_setter, false, -1);
+
+        // Then
+        Assert.assertFalse("Queued", queued);
+        Assert.assertNull("Next entry", entry.poll());
+    }
+}
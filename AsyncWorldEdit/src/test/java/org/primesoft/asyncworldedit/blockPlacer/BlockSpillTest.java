@@ -0,0 +1,184 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.primesoft.asyncworldedit.api.IPhysicsWatch;
+import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacerEntry;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class BlockSpillTest {
+
+    private File m_folder;
+
+    private LongAdder m_blocksCount;
+
+    private IPhysicsWatch m_physicsWatch;
+
+    private BlockSpill m_spill;
+
+    private IPlayerEntry m_player;
+
+    @Before
+    public void setUp() throws IOException {
+        m_folder = Files.createTempDirectory("awe-spill").toFile();
+        m_blocksCount = new LongAdder();
+        m_physicsWatch = mock(IPhysicsWatch.class);
+        m_spill = new BlockSpill(m_folder, m_blocksCount, m_physicsWatch);
+        m_spill.setConfig(true, 1, 0);
+
+        m_player = mock(IPlayerEntry.class);
+        when(m_player.getUUID()).thenReturn(UUID.randomUUID());
+    }
+
+    @After
+    public void tearDown() {
+        final File[] files = m_folder.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        m_folder.delete();
+    }
+
+    @Test
+    public void shouldRestoreSpilledBlocks() throws WorldEditException {
+        // Given
+        final IBlockSetter setter = mock(IBlockSetter.class);
+        final BlockStateHolder block = mock(BlockStateHolder.class);
+        final AtomicInteger spillCounter = new AtomicInteger();
+        final PackedBlocksEntry entry = new PackedBlocksEntry("world", 1, m_player, setter);
+        entry.add("world", 1, setter, BlockVector3.at(1, 2, 3), block);
+        entry.add("world", 1, setter, BlockVector3.at(-20, 64, 40), block);
+        entry.add("world", 1, setter, BlockVector3.at(-21, 0, 41), block);
+
+        // When
+        final int spilled = entry.spill(m_spill, spillCounter);
+        final int filesSpilled = spillFiles();
+        final long blocksSpilled = m_spill.getSpilledBlocks();
+        final PackedBlocksEntry slice = entry.take(100);
+
+        final BlockPlacer bp = mock(BlockPlacer.class);
+        when(bp.getPhysicsWatcher()).thenReturn(m_physicsWatch);
+        slice.process(bp);
+
+        // Then
+        Assert.assertEquals("Spilled", 3, spilled);
+        Assert.assertEquals("Spill files", 1, filesSpilled);
+        Assert.assertEquals("Spilled blocks", 3, blocksSpilled);
+
+        Assert.assertEquals("Restored", 3, slice.getBlockCount());
+        Assert.assertEquals("Spill files after restore", 0, spillFiles());
+        Assert.assertEquals("Spilled blocks after restore", 0, m_spill.getSpilledBlocks());
+        Assert.assertEquals("Player spilled blocks after restore", 0, spillCounter.get());
+
+        verify(setter).setBlock(m_player, BlockVector3.at(1, 2, 3), block);
+        verify(setter).setBlock(m_player, BlockVector3.at(-20, 64, 40), block);
+        verify(setter).setBlock(m_player, BlockVector3.at(-21, 0, 41), block);
+    }
+
+    @Test
+    public void shouldReleaseSpillFileWhenCanceled() {
+        // Given
+        final IBlockSetter setter = mock(IBlockSetter.class);
+        final BlockStateHolder block = mock(BlockStateHolder.class);
+        final AtomicInteger spillCounter = new AtomicInteger();
+        final JobQueue queue = new JobQueue(1);
+        final int blocks = PackedBlocksEntry.MAX_BLOCKS * 2 + 1;
+        m_blocksCount.add(blocks);
+
+        for (int i = 0; i < blocks; i++) {
+            queue.offerBlock(m_player, "world", BlockVector3.at(i, 64, 0), block, setter,
+                    m_spill, spillCounter, false);
+        }
+        final int filesSpilled = spillFiles();
+        final long blocksSpilled = m_spill.getSpilledBlocks();
+        final int playerSpilled = spillCounter.get();
+
+        // When
+        queue.close();
+        for (IBlockPlacerEntry entry : queue.getEntries()) {
+            ((PackedBlocksEntry) entry).discard();
+        }
+
+        // Then
+        Assert.assertEquals("Spill files", 1, filesSpilled);
+        Assert.assertEquals("Spilled blocks", PackedBlocksEntry.MAX_BLOCKS * 2, blocksSpilled);
+        Assert.assertEquals("Player spilled blocks", PackedBlocksEntry.MAX_BLOCKS * 2, playerSpilled);
+
+        Assert.assertEquals("Spill files after cancel", 0, spillFiles());
+        Assert.assertEquals("Spilled blocks after cancel", 0, m_spill.getSpilledBlocks());
+        Assert.assertEquals("Player spilled blocks after cancel", 0, spillCounter.get());
+        Assert.assertEquals("Blocks in memory", blocks, m_spill.getBlocksInMemory());
+    }
+
+    private int spillFiles() {
+        final File[] files = m_folder.listFiles();
+        return files == null ? 0 : files.length;
+    }
+}
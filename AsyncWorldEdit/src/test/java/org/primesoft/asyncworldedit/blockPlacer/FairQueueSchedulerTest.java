@@ -0,0 +1,162 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacerEntry;
+import org.primesoft.asyncworldedit.api.configuration.IPermissionGroup;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class FairQueueSchedulerTest {
+    private static IPermissionGroup mockGroup(int weight) {
+        IPermissionGroup group = Mockito.mock(IPermissionGroup.class);
+        Mockito.when(group.getRendererWeight()).thenReturn(weight);
+        
+        return group;
+    }
+    
+    private static IPlayerEntry mockPlayer(IPermissionGroup group) {
+        IPlayerEntry pe = Mockito.mock(IPlayerEntry.class);
+        Mockito.when(pe.getPermissionGroup()).thenReturn(group);
+        Mockito.when(pe.getRenderBlocks()).thenReturn(-1);
+        
+        return pe;
+    }
+    
+    private static BlockPlacerPlayer mockQueue(IPlayerEntry pe, int size) {
+        BlockPlacerPlayer result = new BlockPlacerPlayer(pe);
+        for (int i = 0; i < size; i++) {
+            result.offer(Mockito.mock(IBlockPlacerEntry.class), -1);
+        }
+        
+        return result;
+    }
+    
+    @Test
+    public void shouldServeShortQueueFirst() {
+        // Given
+        IPermissionGroup group = mockGroup(1);
+        IPlayerEntry builder = mockPlayer(group);
+        IPlayerEntry staff = mockPlayer(group);
+        
+        Map<IPlayerEntry, BlockPlacerPlayer> players = new LinkedHashMap<>();
+        players.put(builder, mockQueue(builder, 100));
+        players.put(staff, mockQueue(staff, 2));
+        
+        FairQueueScheduler scheduler = new FairQueueScheduler(10);
+        
+        // When
+        List<FairQueueScheduler.Flow> flows = scheduler.prepare(players, null);
+        
+        // Then
+        Assert.assertEquals("Number of flows", 2, flows.size());
+        Assert.assertEquals("First player", staff, flows.get(0).getPlayer());
+        Assert.assertEquals("Second player", builder, flows.get(1).getPlayer());
+    }
+    
+    @Test
+    public void shouldSplitQuantumByWeightAndPlayers() {
+        // Given
+        IPermissionGroup group1 = mockGroup(1);
+        IPermissionGroup group2 = mockGroup(2);
+        IPlayerEntry pe1 = mockPlayer(group1);
+        IPlayerEntry pe2 = mockPlayer(group1);
+        IPlayerEntry pe3 = mockPlayer(group2);
+        
+        Map<IPlayerEntry, BlockPlacerPlayer> players = new LinkedHashMap<>();
+        players.put(pe1, mockQueue(pe1, 1));
+        players.put(pe2, mockQueue(pe2, 2));
+        players.put(pe3, mockQueue(pe3, 3));
+        
+        FairQueueScheduler scheduler = new FairQueueScheduler(1000);
+        
+        // When
+        List<FairQueueScheduler.Flow> flows = scheduler.prepare(players, null);
+        for (FairQueueScheduler.Flow flow : flows) {
+            flow.addQuantum();
+        }
+        
+        // Then
+        Assert.assertEquals("Number of flows", 3, flows.size());
+        Assert.assertEquals("Player 1 quantum", 500, flows.get(0).getDeficit());
+        Assert.assertEquals("Player 2 quantum", 500, flows.get(1).getDeficit());
+        Assert.assertEquals("Player 3 quantum", 2000, flows.get(2).getDeficit());
+    }
+    
+    @Test
+    public void shouldKeepCreditBetweenRuns() {
+        // Given
+        IPermissionGroup group = mockGroup(1);
+        IPlayerEntry pe = mockPlayer(group);
+        
+        Map<IPlayerEntry, BlockPlacerPlayer> players = new LinkedHashMap<>();
+        players.put(pe, mockQueue(pe, 100));
+        
+        FairQueueScheduler scheduler = new FairQueueScheduler(10);
+        
+        // When
+        scheduler.prepare(players, null).get(0).addQuantum();
+        FairQueueScheduler.Flow flow = scheduler.prepare(players, null).get(0);
+        long credit = flow.getDeficit();
+        flow.addQuantum();
+        flow.consume(5);
+        
+        // Then
+        Assert.assertEquals("Credit", 10, credit);
+        Assert.assertEquals("Deficit", 15, flow.getDeficit());
+    }
+}
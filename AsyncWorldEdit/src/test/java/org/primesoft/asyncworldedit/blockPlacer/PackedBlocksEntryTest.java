@@ -0,0 +1,104 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import org.junit.Assert;
+import org.junit.Test;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+import static org.mockito.Mockito.mock;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class PackedBlocksEntryTest {
+    @Test
+    public void shouldPackAndUnpackPositions() {
+        // Given
+        BlockVector3[] positions = new BlockVector3[]{
+            BlockVector3.at(0, 0, 0),
+            BlockVector3.at(-1, -64, -1),
+            BlockVector3.at(29999999, 319, -29999999),
+            BlockVector3.at(-30000000, 2047, 30000000)
+        };
+
+        for (BlockVector3 position : positions) {
+            // When
+            BlockVector3 result = PackedBlocksEntry.unpack(PackedBlocksEntry.pack(
+                    position.getBlockX(), position.getBlockY(), position.getBlockZ()));
+
+            // Then
+            Assert.assertEquals("Position", position, result);
+        }
+    }
+
+    @Test
+    public void shouldNotAcceptBlocksWhenTaken() {
+        // Given
+        IBlockSetter setter = mock(IBlockSetter.class);
+        BlockStateHolder block = mock(BlockStateHolder.class);
+        PackedBlocksEntry entry = new PackedBlocksEntry("world", 1, mock(IPlayerEntry.class), setter);
+
+        // When
+        boolean add1 = entry.add("world", 1, setter, BlockVector3.at(1, 2, 3), block);
+        boolean add2 = entry.add("world", 2, setter, BlockVector3.at(1, 2, 3), block);
+        boolean add3 = entry.add("world", 1, setter, BlockVector3.at(4, 5, 6), block);
+        PackedBlocksEntry slice = entry.take(1);
+        boolean add4 = entry.add("world", 1, setter, BlockVector3.at(7, 8, 9), block);
+
+        // Then
+        Assert.assertTrue("Add", add1);
+        Assert.assertFalse("Other job", add2);
+        Assert.assertTrue("Same job", add3);
+        Assert.assertFalse("Sealed", add4);
+        Assert.assertEquals("Slice blocks", 1, slice.getBlockCount());
+        Assert.assertEquals("Blocks left", 1, entry.getBlockCount());
+    }
+}
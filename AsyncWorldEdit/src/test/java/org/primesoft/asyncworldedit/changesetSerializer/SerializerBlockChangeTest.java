@@ -0,0 +1,203 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.changesetSerializer;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.primesoft.asyncworldedit.api.changesetSerializer.IUndoEntry;
+import org.primesoft.asyncworldedit.changesetSerializer.serializers.SerializerBlockChange;
+import org.primesoft.asyncworldedit.utils.io.FrameCodec;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class SerializerBlockChangeTest {
+
+    private final SerializerBlockChange m_serializer = new SerializerBlockChange();
+
+    private UndoDescriptor m_descriptor;
+
+    @Before
+    public void setUp() throws IOException {
+        m_descriptor = new UndoDescriptor(new File("test.undo"), FrameCodec.create(FrameCodec.NONE, 0), 0x10000);
+    }
+
+    @Test
+    public void shouldRoundTripBlockStates() throws IOException {
+        // Given
+        final BlockState stone = mockState();
+        final BlockState dirt = mockState();
+
+        // When
+        final BlockChange first = roundTrip(mockChange(BlockVector3.at(-20, 64, 5), stone, dirt));
+        final BlockChange second = roundTrip(mockChange(BlockVector3.at(-35, 12, 300), dirt, stone));
+
+        // Then
+        Assert.assertEquals("Position", BlockVector3.at(-20, 64, 5), first.getPosition());
+        Assert.assertSame("Previous", stone, first.getPrevious().toImmutableState());
+        Assert.assertSame("Current", dirt, first.getCurrent().toImmutableState());
+
+        Assert.assertEquals("Position", BlockVector3.at(-35, 12, 300), second.getPosition());
+        Assert.assertSame("Previous", dirt, second.getPrevious().toImmutableState());
+        Assert.assertSame("Current", stone, second.getCurrent().toImmutableState());
+        Assert.assertEquals("States", 2, m_descriptor.getBlockStates().size());
+    }
+
+    @Test
+    public void shouldRoundTripBaseBlockWithoutNbt() throws IOException {
+        // Given
+        final BlockState stone = mockState();
+        final BlockState glass = mockState();
+        final BaseBlock block = mockBlock(glass, null);
+
+        // When
+        final BlockChange result = roundTrip(mockChange(BlockVector3.at(1, 2, 3), stone, block));
+
+        // Then
+        Assert.assertEquals("Position", BlockVector3.at(1, 2, 3), result.getPosition());
+        Assert.assertSame("Previous", stone, result.getPrevious().toImmutableState());
+        Assert.assertSame("Current", glass, result.getCurrent().toImmutableState());
+        Assert.assertFalse("Current NBT", result.getCurrent().toBaseBlock().hasNbtData());
+        verify(glass, never()).toBaseBlock(any(CompoundTag.class));
+    }
+
+    @Test
+    public void shouldRoundTripBaseBlockWithNbt() throws IOException {
+        // Given
+        final BlockState air = mockState();
+        final BlockState chest = mockState();
+        final Map<String, Tag> values = new HashMap<>();
+        values.put("id", new StringTag("minecraft:chest"));
+        values.put("CustomName", new StringTag("Loot"));
+        final BaseBlock block = mockBlock(chest, new CompoundTag(values));
+
+        // When
+        final BlockChange result = roundTrip(mockChange(BlockVector3.at(0, 255, -1), block, air));
+
+        // Then
+        final BaseBlock previous = result.getPrevious().toBaseBlock();
+        Assert.assertSame("Previous", chest, previous.toImmutableState());
+        Assert.assertTrue("Previous NBT", previous.hasNbtData());
+        Assert.assertEquals("NBT id", "minecraft:chest", previous.getNbtData().getString("id"));
+        Assert.assertEquals("NBT name", "Loot", previous.getNbtData().getString("CustomName"));
+        Assert.assertSame("Current", air, result.getCurrent().toImmutableState());
+    }
+
+    /**
+     * Serialize the change and read it back through a compact undo entry
+     */
+    private BlockChange roundTrip(BlockChange change) throws IOException {
+        final byte[] data = m_serializer.serialize(change, m_descriptor);
+        Assert.assertEquals("Format", UndoEntry.COMPACT, data[0]);
+
+        final UndoEntry entry = new UndoEntry(BlockChange.class.getName(), data, m_descriptor.getAndIncrementIdx());
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UndoEntry.saveCompact(new DataOutputStream(bytes), entry, m_descriptor.getTypes().getId(entry.getType()));
+
+        final IUndoEntry loaded = UndoEntry.load(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+                m_descriptor.getTypes());
+        Assert.assertEquals("Type", BlockChange.class.getName(), loaded.getType());
+        Assert.assertTrue("Serializer", m_serializer.canSerialize(loaded.getType()));
+
+        return (BlockChange) m_serializer.deserialize(loaded.getData(), m_descriptor);
+    }
+
+    private static BlockChange mockChange(BlockVector3 position,
+            BlockStateHolder previous, BlockStateHolder current) {
+        final BlockChange result = mock(BlockChange.class);
+        when(result.getPosition()).thenReturn(position);
+        when(result.getPrevious()).thenReturn(previous);
+        when(result.getCurrent()).thenReturn(current);
+
+        return result;
+    }
+
+    private static BlockState mockState() {
+        final BlockState result = mock(BlockState.class);
+        final BaseBlock block = mockBlock(result, null);
+        when(result.toImmutableState()).thenReturn(result);
+        when(result.toBaseBlock()).thenReturn(block);
+        when(result.toBaseBlock(any(CompoundTag.class))).thenAnswer(
+                invocation -> mockBlock(result, (CompoundTag) invocation.getArguments()[0]));
+
+        return result;
+    }
+
+    private static BaseBlock mockBlock(BlockState state, CompoundTag nbt) {
+        final BaseBlock result = mock(BaseBlock.class);
+        when(result.toImmutableState()).thenReturn(state);
+        when(result.toBaseBlock()).thenReturn(result);
+        when(result.hasNbtData()).thenReturn(nbt != null);
+        when(result.getNbtData()).thenReturn(nbt);
+
+        return result;
+    }
+}
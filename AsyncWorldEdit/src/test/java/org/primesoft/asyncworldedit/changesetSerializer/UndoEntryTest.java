@@ -0,0 +1,127 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.changesetSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+import org.primesoft.asyncworldedit.api.changesetSerializer.IUndoEntry;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class UndoEntryTest {
+
+    @Test
+    public void shouldReadCompactAndOldEntriesFromOneStream() throws IOException {
+        // Given
+        final UndoDictionary<String> types = new UndoDictionary<>();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        final int oldSize = UndoEntry.save(out, new UndoEntry("test.Old", new byte[]{1, 2, 3}, 0));
+        final int compactSize = UndoEntry.saveCompact(out, new UndoEntry("test.New", new byte[]{4, 5}, 1),
+                types.getId("test.New"));
+
+        // When
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        final IUndoEntry oldEntry = UndoEntry.load(in, types);
+        final IUndoEntry compactEntry = UndoEntry.load(in, types);
+
+        // Then
+        assertEquals(oldSize + compactSize, bytes.size());
+        assertEquals(0, oldEntry.getId());
+        assertEquals("test.Old", oldEntry.getType());
+        assertArrayEquals(new byte[]{1, 2, 3}, oldEntry.getData());
+
+        assertEquals(1, compactEntry.getId());
+        assertEquals("test.New", compactEntry.getType());
+        assertEquals(types.getId("test.New"), ((UndoEntry) compactEntry).getTypeId());
+        assertArrayEquals(new byte[]{4, 5}, compactEntry.getData());
+    }
+
+    @Test
+    public void shouldNotReturnNullTypeWithoutDictionary() throws IOException {
+        // Given
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        UndoEntry.saveCompact(out, new UndoEntry("test.New", new byte[]{4, 5}, 1), 0);
+
+        // When
+        final IUndoEntry entry = UndoEntry.load(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        // Then
+        assertEquals("", entry.getType());
+        assertEquals(0, ((UndoEntry) entry).getTypeId());
+    }
+
+    @Test
+    public void shouldIgnoreTruncatedCompactEntry() throws IOException {
+        // Given
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        UndoEntry.saveCompact(out, new UndoEntry("test.New", new byte[100], 300), 0);
+
+        final byte[] data = bytes.toByteArray();
+        final byte[] truncated = new byte[data.length - 10];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+
+        // When
+        final IUndoEntry entry = UndoEntry.load(new DataInputStream(new ByteArrayInputStream(truncated)));
+
+        // Then
+        assertNull(entry);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.taskdispatcher;
+
+import com.sk89q.worldedit.math.BlockVector2;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class ChunkLocksTest {
+
+    @Test
+    public void shouldLockStripesInAscendingOrder() {
+        // Given
+        final ChunkLocks locks = new ChunkLocks();
+        final UUID world = UUID.randomUUID();
+        final List<BlockVector2> chunks = new ArrayList<>();
+        final TreeMap<Integer, Lock> expected = new TreeMap<>();
+        for (int cx = 10; cx >= -10; cx -= 3) {
+            for (int cz = -10; cz <= 10; cz += 4) {
+                chunks.add(BlockVector2.at(cx, cz));
+
+                final Lock[] single = locks.lock(world, cx, cz);
+                ChunkLocks.unlock(single);
+                expected.put(ChunkLocks.stripe(world, cx, cz), single[1]);
+            }
+        }
+
+        // When
+        final Lock[] result = locks.lock(world, chunks);
+        ChunkLocks.unlock(result);
+
+        // Then
+        Assert.assertEquals("Number of locks", expected.size() + 1, result.length);
+        int pos = 1;
+        for (Lock lock : expected.values()) {
+            Assert.assertSame("Stripe lock " + pos, lock, result[pos++]);
+        }
+    }
+
+    @Test
+    public void shouldExcludeChunkOperationsWhenWorldLocked() throws InterruptedException {
+        // Given
+        final ChunkLocks locks = new ChunkLocks();
+        final UUID world = UUID.randomUUID();
+        final CountDownLatch locked = new CountDownLatch(1);
+        final Thread chunkOperation = new Thread(() -> {
+            ChunkLocks.unlock(locks.lock(world, 1, 2));
+            locked.countDown();
+        });
+
+        // When
+        final Lock worldLock = locks.lockWorld(world);
+        chunkOperation.start();
+        final boolean lockedWhileWorldLocked = locked.await(100, TimeUnit.MILLISECONDS);
+        worldLock.unlock();
+        final boolean lockedAfterWorldUnlocked = locked.await(5, TimeUnit.SECONDS);
+
+        // Then
+        Assert.assertFalse("Chunk locked during world lock", lockedWhileWorldLocked);
+        Assert.assertTrue("Chunk locked after world unlock", lockedAfterWorldUnlocked);
+    }
+
+    @Test
+    public void shouldNotLockWorldForOtherMutexes() {
+        // Given
+        final ChunkLocks locks = new ChunkLocks();
+        final Object session = new Object();
+
+        // When
+        final Lock worldLock = locks.lockWorld(session);
+        final Lock[] chunkLocks = locks.lock(session, 1, 2);
+        ChunkLocks.unlock(chunkLocks);
+
+        // Then
+        Assert.assertNull("World lock", worldLock);
+        Assert.assertEquals("Number of chunk locks", 1, chunkLocks.length);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class ConcurrentLongMapTest {
+    @Test
+    public void shouldRemoveEntryWhenUpdatedToZero() {
+        // Given
+        ConcurrentLongMap map = new ConcurrentLongMap();
+        map.put(-7, 5);
+
+        // When
+        long result = map.update(-7, (k, v) -> v - 5);
+        map.put(8, 0);
+
+        // Then
+        Assert.assertEquals("Result", 0, result);
+        Assert.assertEquals("Value", 0, map.get(-7));
+        Assert.assertFalse("Removed", map.containsKey(-7));
+        Assert.assertFalse("Not added", map.containsKey(8));
+        map.forEach((k, v) -> Assert.fail("Entry " + k));
+    }
+
+    @Test
+    public void shouldKeepEntriesWhenRebuilt() {
+        // Given
+        ConcurrentLongMap map = new ConcurrentLongMap();
+        Map<Long, Long> expected = new HashMap<>();
+
+        // When
+        for (int i = 0; i < 20000; i++) {
+            final long key = (i - 10000) * 0x100000001L;
+            map.put(key, i + 1);
+            expected.put(key, (long) i + 1);
+
+            if (i % 3 == 0) {
+                map.remove(key);
+                expected.remove(key);
+            }
+        }
+        for (int i = 0; i < 20000; i++) {
+            final long key = Long.MAX_VALUE - i;
+            map.put(key, 1);
+            map.remove(key);
+        }
+
+        // Then
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            Assert.assertEquals("Value of " + entry.getKey(),
+                    (long) entry.getValue(), map.get(entry.getKey()));
+        }
+        for (int i = 0; i < 20000; i += 3) {
+            Assert.assertFalse("Removed", map.containsKey((i - 10000) * 0x100000001L));
+        }
+    }
+
+    @Test
+    public void shouldUpdateConcurrentlyWhileGrowing() throws InterruptedException {
+        // Given
+        final ConcurrentLongMap map = new ConcurrentLongMap();
+        final int keys = 5000;
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int key = 0; key < keys; key++) {
+                    map.update(key, (k, v) -> v + 1);
+                }
+            });
+        }
+
+        // When
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Then
+        for (int key = 0; key < keys; key++) {
+            Assert.assertEquals("Value of " + key, threads.length, map.get(key));
+        }
+    }
+
+    @Test
+    public void shouldSkipRemovedEntriesInForEach() {
+        // Given
+        ConcurrentLongMap map = new ConcurrentLongMap();
+        for (int i = 1; i <= 100; i++) {
+            map.put(i, i);
+        }
+
+        // When
+        for (int i = 1; i <= 100; i += 2) {
+            map.remove(i);
+        }
+        final Map<Long, Long> result = new HashMap<>();
+        map.forEach((k, v) -> Assert.assertNull("Duplicate " + k, result.put(k, v)));
+
+        // Then
+        Assert.assertEquals("Entries", 50, result.size());
+        for (int i = 2; i <= 100; i += 2) {
+            Assert.assertEquals("Value of " + i, Long.valueOf(i), result.get((long) i));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import org.junit.Test;
+import org.primesoft.asyncworldedit.api.inner.IChunkCacheStream;
+import org.primesoft.asyncworldedit.api.io.SeekOrigin;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class FramedStreamTest {
+
+    private static byte[] createData(int size) {
+        final Random rnd = new Random(42);
+        final byte[] result = new byte[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = (byte) (rnd.nextInt(8) == 0 ? rnd.nextInt() : i / 64);
+        }
+
+        return result;
+    }
+
+    private static void roundTrip(int codecId) throws IOException {
+        // Given
+        final byte[] data = createData(10000);
+        final byte[] compressed = new byte[data.length];
+        final byte[] result = new byte[data.length];
+        final FrameCodec codec = FrameCodec.create(codecId, 6);
+
+        // When
+        final int length = codec.compress(data, data.length, compressed);
+        codec.decompress(compressed, length, result, result.length);
+
+        // Then
+        assertTrue(length > 0 && length < data.length);
+        assertArrayEquals(data, result);
+    }
+
+    @Test
+    public void lzShouldRoundTrip() throws IOException {
+        roundTrip(FrameCodec.LZ);
+    }
+
+    @Test
+    public void deflateShouldRoundTrip() throws IOException {
+        roundTrip(FrameCodec.DEFLATE);
+    }
+
+    @Test
+    public void shouldSeekInAppendedFrames() throws IOException {
+        // Given
+        final byte[] data = createData(5000);
+        final File file = File.createTempFile("awe", ".undo");
+        file.deleteOnExit();
+
+        try (FramedOutputStream out = new FramedOutputStream(new FileOutputStream(file),
+                FrameCodec.create(FrameCodec.LZ, 0), 1024, true)) {
+            out.write(data, 0, 3000);
+        }
+        try (FramedOutputStream out = new FramedOutputStream(new FileOutputStream(file, true),
+                FrameCodec.create(FrameCodec.LZ, 0), 1024, false)) {
+            out.write(data, 3000, 2000);
+        }
+
+        // When
+        final byte[] result = new byte[100];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            final IChunkCacheStream stream = FramedCacheStream.open(raf);
+            stream.seek(2990, SeekOrigin.Begin);
+            stream.readFully(result);
+
+            // Then
+            assertEquals(data.length, stream.length());
+            for (int i = 0; i < result.length; i++) {
+                assertEquals(data[2990 + i], result[i]);
+            }
+        }
+    }
+}
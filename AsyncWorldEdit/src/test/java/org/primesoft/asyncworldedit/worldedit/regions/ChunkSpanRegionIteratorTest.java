@@ -0,0 +1,133 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.worldedit.regions;
+
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.Vector2;
+import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
+import com.sk89q.worldedit.regions.Polygonal2DRegion;
+import com.sk89q.worldedit.regions.Region;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class ChunkSpanRegionIteratorTest {
+    @Test
+    public void shouldVisitEllipsoidBlocks() {
+        assertSameAsScan("Sphere", new EllipsoidRegion(BlockVector3.at(-16, 64, 15), Vector3.at(7, 7, 7)));
+        assertSameAsScan("Ellipsoid", new EllipsoidRegion(BlockVector3.at(-1, -3, -33), Vector3.at(12, 4, 9.5)));
+    }
+
+    @Test
+    public void shouldVisitCylinderBlocks() {
+        assertSameAsScan("Cylinder", new CylinderRegion(BlockVector3.at(-1, 0, 16), Vector2.at(10, 6.5), -5, 3));
+        assertSameAsScan("Thin cylinder", new CylinderRegion(BlockVector3.at(-32, 0, -17), Vector2.at(0, 20), 0, 0));
+    }
+
+    @Test
+    public void shouldVisitConcavePolygonBlocks() {
+        assertSameAsScan("U shape", new Polygonal2DRegion(null, Arrays.asList(
+                BlockVector2.at(-20, -20), BlockVector2.at(12, -20), BlockVector2.at(12, 15),
+                BlockVector2.at(0, 15), BlockVector2.at(0, -5), BlockVector2.at(-8, -5),
+                BlockVector2.at(-8, 15), BlockVector2.at(-20, 15)), 10, 12));
+        assertSameAsScan("Arrow", new Polygonal2DRegion(null, Arrays.asList(
+                BlockVector2.at(-33, 0), BlockVector2.at(-1, -17), BlockVector2.at(16, 0),
+                BlockVector2.at(-1, -6)), -2, -1));
+    }
+
+    /**
+     * Compare the iterator with a scan of the region bounding box
+     */
+    private static void assertSameAsScan(String name, Region region) {
+        // Given
+        final BlockVector3 min = region.getMinimumPoint();
+        final BlockVector3 max = region.getMaximumPoint();
+        final Set<BlockVector3> expected = new HashSet<>();
+        for (int x = min.getBlockX(); x <= max.getBlockX(); x++) {
+            for (int y = min.getBlockY(); y <= max.getBlockY(); y++) {
+                for (int z = min.getBlockZ(); z <= max.getBlockZ(); z++) {
+                    final BlockVector3 position = BlockVector3.at(x, y, z);
+                    if (region.contains(position)) {
+                        expected.add(position);
+                    }
+                }
+            }
+        }
+        final int volume = (max.getBlockX() - min.getBlockX() + 1)
+                * (max.getBlockY() - min.getBlockY() + 1)
+                * (max.getBlockZ() - min.getBlockZ() + 1);
+
+        // When
+        final ChunkSpanRegionIterator iterator = ChunkSpanRegionIterator.create(region);
+        Assert.assertNotNull(name + ": iterator", iterator);
+
+        final Set<BlockVector3> result = new HashSet<>();
+        int delta = 0;
+        while (iterator.hasNext()) {
+            final BlockVector3 position = iterator.next();
+            Assert.assertTrue(name + ": duplicate " + position, result.add(position));
+            delta += iterator.getAndResetDelta();
+        }
+        delta += iterator.getAndResetDelta();
+
+        // Then
+        Assert.assertFalse(name + ": empty region", expected.isEmpty());
+        Assert.assertEquals(name + ": positions", expected, result);
+        Assert.assertEquals(name + ": count", 0, iterator.getCount());
+        Assert.assertEquals(name + ": delta", volume, delta);
+    }
+}